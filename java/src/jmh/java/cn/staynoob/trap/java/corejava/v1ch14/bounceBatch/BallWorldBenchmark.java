@@ -0,0 +1,50 @@
+package cn.staynoob.trap.java.corejava.v1ch14.bounceBatch;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of the whole world, sequentially and on the common pool. At 120 steps per second a
+ * step must stay well below 8ms for the loop to keep up; {@code copyPositions} is what the
+ * component pays once per frame on top of that. The parallel step only pays off with more than
+ * one core.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BallWorldBenchmark {
+    @Param({"1000", "100000"})
+    int balls;
+
+    BallWorld world;
+    float[] positions;
+
+    @Setup
+    public void setUp() {
+        world = new BallWorld(1920, 1080);
+        world.addRandom(balls, BounceBatch.SPEED, new Random(42));
+    }
+
+    @Benchmark
+    public BallWorld step() {
+        world.step(1 / 120.0);
+        return world;
+    }
+
+    @Benchmark
+    public BallWorld stepParallel() {
+        world.step(1 / 120.0, ForkJoinPool.commonPool());
+        return world;
+    }
+
+    @Benchmark
+    public float[] copyPositions() {
+        return positions = world.copyPositions(positions);
+    }
+}
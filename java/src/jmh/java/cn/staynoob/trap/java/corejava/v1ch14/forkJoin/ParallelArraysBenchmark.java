@@ -0,0 +1,130 @@
+package cn.staynoob.trap.java.corejava.v1ch14.forkJoin;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.Random;
+import java.util.function.DoublePredicate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the book's {@code Counter} of {@link ForkJoinTest}, {@link ParallelArrays} and parallel
+ * streams. The benchmark has its own copy of {@code Counter}, which is an auxiliary class of
+ * ForkJoinTest.java.
+ * Pass {@code -p size=100000000} to reproduce the large-array case (needs ~1GB of heap).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelArraysBenchmark {
+    @Param({"1000000", "10000000"})
+    int size;
+
+    double[] doubles;
+    long[] longs;
+    ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        doubles = new double[size];
+        longs = new long[size];
+        for (int i = 0; i < size; i++) {
+            doubles[i] = random.nextDouble();
+            longs[i] = random.nextLong();
+        }
+        pool = ForkJoinPool.commonPool();
+    }
+
+    @Benchmark
+    public int countCounter() {
+        return pool.invoke(new Counter(doubles, 0, doubles.length, x -> x > 0.5));
+    }
+
+    @Benchmark
+    public long countParallelArrays() {
+        return ParallelArrays.count(pool, doubles, x -> x > 0.5);
+    }
+
+    @Benchmark
+    public long countStream() {
+        return Arrays.stream(doubles).parallel().filter(x -> x > 0.5).count();
+    }
+
+    @Benchmark
+    public DoubleSummaryStatistics summarizeParallelArrays() {
+        return ParallelArrays.summarize(pool, doubles, x -> x > 0.5);
+    }
+
+    @Benchmark
+    public DoubleSummaryStatistics summarizeStream() {
+        return Arrays.stream(doubles).parallel().filter(x -> x > 0.5).summaryStatistics();
+    }
+
+    @Benchmark
+    public long sumLongParallelArrays() {
+        return ParallelArrays.summarize(pool, longs, x -> true).getSum();
+    }
+
+    @Benchmark
+    public long sumLongStream() {
+        return Arrays.stream(longs).parallel().sum();
+    }
+
+    @Benchmark
+    public long[] histogramParallelArrays() {
+        return ParallelArrays.histogram(pool, doubles, 0, 1, 64);
+    }
+
+    @Benchmark
+    public long[] histogramStream() {
+        return Arrays.stream(doubles).parallel().collect(
+                () -> new long[64],
+                (bins, x) -> bins[Math.min((int) (x * 64), 63)]++,
+                (left, right) -> {
+                    for (int i = 0; i < left.length; i++) left[i] += right[i];
+                });
+    }
+
+    /**
+     * The book's Counter, with a DoublePredicate for its Filter.
+     */
+    static class Counter extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+        static final int THRESHOLD = 1000;
+        private final double[] values;
+        private final int from;
+        private final int to;
+        private final DoublePredicate filter;
+
+        Counter(double[] values, int from, int to, DoublePredicate filter) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from < THRESHOLD) {
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    if (filter.test(values[i])) count++;
+                }
+                return count;
+            } else {
+                int mid = (from + to) / 2;
+                Counter first = new Counter(values, from, mid, filter);
+                Counter second = new Counter(values, mid, to, filter);
+                invokeAll(first, second);
+                return first.join() + second.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package cn.staynoob.trap.java.corejava.v1ch14.forkJoin;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link ParallelSort} with {@link Arrays#parallelSort} and the list-copying quicksort
+ * of {@code SynchronizerSpec}. Run with {@code -prof gc} to see the allocation per sort. Pass
+ * {@code -p size=100000000} for the large case, which needs a few GB of heap for the boxed
+ * variants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelSortBenchmark {
+    @Param({"1000000", "10000000"})
+    int size;
+
+    int[] input;
+    Integer[] boxedInput;
+    int[] ints;
+    Integer[] boxed;
+    ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        input = new Random(42).ints(size).toArray();
+        boxedInput = Arrays.stream(input).boxed().toArray(Integer[]::new);
+        pool = ForkJoinPool.commonPool();
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        ints = input.clone();
+        boxed = boxedInput.clone();
+    }
+
+    @Benchmark
+    public int[] intParallelSort() {
+        ParallelSort.sort(pool, ints);
+        return ints;
+    }
+
+    @Benchmark
+    public int[] intArraysParallelSort() {
+        Arrays.parallelSort(ints);
+        return ints;
+    }
+
+    @Benchmark
+    public Integer[] boxedParallelSort() {
+        ParallelSort.sort(boxed);
+        return boxed;
+    }
+
+    @Benchmark
+    public Integer[] boxedArraysParallelSort() {
+        Arrays.parallelSort(boxed);
+        return boxed;
+    }
+
+    @Benchmark
+    public List<Integer> boxedListQuickSort() {
+        return pool.invoke(new QuickSort<>(Arrays.asList(boxed)));
+    }
+
+    /**
+     * The quicksort of {@code SynchronizerSpec.ForkJoinSpec}.
+     */
+    static class QuickSort<T extends Comparable<T>> extends RecursiveTask<List<T>> {
+        private final List<T> list;
+
+        QuickSort(List<T> list) {
+            this.list = list;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (this.list.size() <= 1) return this.list;
+
+            T pivot = this.list.get(this.list.size() - 1);
+            List<T> leftList = list.stream()
+                    .limit(this.list.size() - 1)
+                    .filter(e -> e.compareTo(pivot) <= 0)
+                    .collect(Collectors.toList());
+            List<T> rightList = list.stream()
+                    .limit(this.list.size() - 1)
+                    .filter(e -> e.compareTo(pivot) > 0)
+                    .collect(Collectors.toList());
+            QuickSort<T> leftSort = new QuickSort<>(leftList);
+            QuickSort<T> rightSort = new QuickSort<>(rightList);
+
+            invokeAll(leftSort, rightSort);
+
+            List<T> result = new ArrayList<>(this.list.size());
+            result.addAll(leftSort.join());
+            result.add(pivot);
+            result.addAll(rightSort.join());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cn.staynoob.trap.java.corejava.v1ch14.search;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the line-by-line {@link Scanner} search of the v1ch14 examples with {@link KeywordSearch}.
+ * The file is made of source-like lines with a hit on roughly one line in a thousand.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeywordSearchBenchmark {
+    private static final String KEYWORD = "volatile";
+
+    // below and above KeywordSearch.BUFFER_SIZE, to cover both the buffered and the mapped path
+    @Param({"16384", "16777216"})
+    int fileSize;
+
+    Path file;
+    KeywordSearch search;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("keyword-search", ".java");
+        Random random = new Random(42);
+        String[] words = {"private", "final", "int", "return", "synchronized", "this", "count", "{", "}", ";"};
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            long written = 0;
+            while (written < fileSize) {
+                StringBuilder line = new StringBuilder("   ");
+                int n = 4 + random.nextInt(8);
+                for (int i = 0; i < n; i++)
+                    line.append(words[random.nextInt(words.length)]).append(' ');
+                if (random.nextInt(1000) == 0) line.append(KEYWORD);
+                out.write(line.toString());
+                out.newLine();
+                written += line.length() + 1;
+            }
+        }
+        search = new KeywordSearch(KEYWORD);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public int searchScanner(Blackhole blackhole) throws IOException {
+        int hits = 0;
+        try (Scanner in = new Scanner(file.toFile())) {
+            int lineNumber = 0;
+            while (in.hasNextLine()) {
+                lineNumber++;
+                String line = in.nextLine();
+                if (line.contains(KEYWORD)) {
+                    blackhole.consume(lineNumber);
+                    blackhole.consume(line);
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int searchKeywordSearch(Blackhole blackhole) throws IOException {
+        return search.search(file, (lineNumber, line) -> {
+            blackhole.consume(lineNumber);
+            blackhole.consume(line);
+        });
+    }
+
+    @Benchmark
+    public boolean containsScanner() throws IOException {
+        File f = file.toFile();
+        try (Scanner in = new Scanner(f)) {
+            while (in.hasNextLine())
+                if (in.nextLine().contains("no such keyword")) return true;
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean containsKeywordSearch() throws IOException {
+        return new KeywordSearch("no such keyword").contains(file);
+    }
+}
@@ -0,0 +1,95 @@
+package cn.staynoob.trap.java.corejava.v1ch14.stamped;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auditors reading total balances while tellers transfer money, on the stamped bank and on the
+ * {@code synch} bank. The reader:writer ratio defaults to 3:1; change it with
+ * {@code -tg <readers>,<writers>}, e.g. {@code -tg 15,1}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Group)
+public class BankBenchmark {
+    @Param({"1000", "1000000"})
+    int accounts;
+
+    Bank stamped;
+    cn.staynoob.trap.java.corejava.v1ch14.synch.Bank synch;
+    PrintStream out;
+
+    @Setup
+    public void setUp() {
+        stamped = new Bank(accounts, 1_000_000_00L);
+        synch = new cn.staynoob.trap.java.corejava.v1ch14.synch.Bank(accounts, 1_000_000);
+        // the synch bank prints every transfer
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    @Group("stampedTotal")
+    @GroupThreads(3)
+    public long stampedTotalReader() {
+        return stamped.getTotalBalance();
+    }
+
+    @Benchmark
+    @Group("stampedTotal")
+    @GroupThreads(1)
+    public boolean stampedTotalWriter() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return stamped.transfer(random.nextInt(accounts), random.nextInt(accounts), random.nextInt(100));
+    }
+
+    @Benchmark
+    @Group("stampedBalance")
+    @GroupThreads(3)
+    public long stampedBalanceReader() {
+        return stamped.getBalance(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    @Benchmark
+    @Group("stampedBalance")
+    @GroupThreads(1)
+    public boolean stampedBalanceWriter() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return stamped.transfer(random.nextInt(accounts), random.nextInt(accounts), random.nextInt(100));
+    }
+
+    @Benchmark
+    @Group("synchTotal")
+    @GroupThreads(3)
+    public double synchTotalReader() {
+        return synch.getTotalBalance();
+    }
+
+    @Benchmark
+    @Group("synchTotal")
+    @GroupThreads(1)
+    public void synchTotalWriter() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        synch.transfer(random.nextInt(accounts), random.nextInt(accounts), random.nextDouble());
+    }
+}
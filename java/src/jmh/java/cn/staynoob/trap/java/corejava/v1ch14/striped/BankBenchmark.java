@@ -0,0 +1,81 @@
+package cn.staynoob.trap.java.corejava.v1ch14.striped;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput of the striped bank against the single-lock banks of v1ch14.
+ * Run with {@code -t 1,4,16} to see how each one scales with the number of threads.
+ * <p>
+ * The book's banks print every transfer; their output is discarded here, but the formatting
+ * still happens inside the critical section, which is part of what is being measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BankBenchmark {
+    private static final int NACCOUNTS = 100;
+    // large enough that the blocking banks practically never wait for funds
+    private static final double INITIAL_BALANCE = 1_000_000;
+
+    cn.staynoob.trap.java.corejava.v1ch14.synch.Bank synch;
+    cn.staynoob.trap.java.corejava.v1ch14.synch2.Bank synch2;
+    cn.staynoob.trap.java.corejava.v1ch14.unsynch.Bank unsynch;
+    Bank striped;
+    PrintStream out;
+
+    @Setup
+    public void setUp() {
+        synch = new cn.staynoob.trap.java.corejava.v1ch14.synch.Bank(NACCOUNTS, INITIAL_BALANCE);
+        synch2 = new cn.staynoob.trap.java.corejava.v1ch14.synch2.Bank(NACCOUNTS, INITIAL_BALANCE);
+        unsynch = new cn.staynoob.trap.java.corejava.v1ch14.unsynch.Bank(NACCOUNTS, INITIAL_BALANCE);
+        striped = new Bank(NACCOUNTS, (long) INITIAL_BALANCE * 100);
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public void synch() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        synch.transfer(random.nextInt(NACCOUNTS), random.nextInt(NACCOUNTS), random.nextDouble());
+    }
+
+    @Benchmark
+    public void synch2() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        synch2.transfer(random.nextInt(NACCOUNTS), random.nextInt(NACCOUNTS), random.nextDouble());
+    }
+
+    @Benchmark
+    public void unsynch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        unsynch.transfer(random.nextInt(NACCOUNTS), random.nextInt(NACCOUNTS), random.nextDouble());
+    }
+
+    @Benchmark
+    public boolean striped() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return striped.transfer(random.nextInt(NACCOUNTS), random.nextInt(NACCOUNTS), random.nextInt(100));
+    }
+}
@@ -0,0 +1,52 @@
+package cn.staynoob.trap.java.corejava.v1ch14.threadPool;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the instrumentation per task. The tasks run in the calling thread, so the
+ * difference between the plain executor, {@code sampleInterval=0}, and the instrumented one is
+ * all bookkeeping. Most of it is reading the clock, hence the sample intervals. Run with
+ * {@code -prof gc} to see that {@code submit} allocates no more with instrumentation than
+ * without, and with {@code -t 4} to see the recording scale.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstrumentedExecutorServiceBenchmark {
+    @Param({"0", "1", "8", "64"})
+    int sampleInterval;
+
+    ExecutorService executor;
+
+    final Runnable runnable = () -> { };
+    final Callable<Integer> callable = () -> 42;
+
+    @Setup
+    public void setUp() {
+        ExecutorService direct = MoreExecutors.newDirectExecutorService();
+        executor = sampleInterval == 0 ? direct : new InstrumentedExecutorService(direct, sampleInterval);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void execute() {
+        executor.execute(runnable);
+    }
+
+    @Benchmark
+    public Object submit() {
+        return executor.submit(callable);
+    }
+}
@@ -0,0 +1,61 @@
+package cn.staynoob.trap.java.corejava.v1ch14.timer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling and cancelling a timeout while {@code pending} others wait, which is what a server
+ * does with a read timeout per request. The heap of {@link ScheduledThreadPoolExecutor} gets
+ * slower as it grows; the wheel doesn't. Run with {@code -t 8} to add contention on the heap's
+ * lock, which the wheel's queues don't have.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashedWheelTimerBenchmark {
+    @Param({"1000", "1000000"})
+    int pending;
+
+    ExecutorService workers;
+    HashedWheelTimer timer;
+    ScheduledThreadPoolExecutor heap;
+
+    @Setup
+    public void setUp() {
+        workers = Executors.newFixedThreadPool(1);
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+        heap = new ScheduledThreadPoolExecutor(1);
+        heap.setRemoveOnCancelPolicy(true);
+        for (int i = 0; i < pending; i++) {
+            long delay = 60_000 + i % 60_000;
+            timer.newTimeout(() -> { }, delay, TimeUnit.MILLISECONDS);
+            heap.schedule(() -> { }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        timer.stop();
+        workers.shutdownNow();
+        heap.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean wheel() {
+        return timer.newTimeout(() -> { }, 30, TimeUnit.SECONDS).cancel();
+    }
+
+    @Benchmark
+    public boolean scheduledThreadPool() {
+        ScheduledFuture<?> future = heap.schedule(() -> { }, 30, TimeUnit.SECONDS);
+        return future.cancel(false);
+    }
+}
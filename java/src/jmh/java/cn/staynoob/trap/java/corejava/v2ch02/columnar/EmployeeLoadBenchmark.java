@@ -0,0 +1,108 @@
+package cn.staynoob.trap.java.corejava.v2ch02.columnar;
+
+import cn.staynoob.trap.java.corejava.v2ch02.textFile.Employee;
+import cn.staynoob.trap.java.corejava.v2ch02.textFile.TextFileTest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading employees from the text format of {@link TextFileTest} and from a columnar file.
+ * {@code columnarAll} builds every employee, as the text path does; {@code columnarSalaries}
+ * reads a single column, and {@code columnarRecentSalaries} also skips the blocks of employees
+ * hired before 2010. The employees are written in hiring order, as they would be appended.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeLoadBenchmark {
+    @Param({"1000000"})
+    int employees;
+
+    Path textFile;
+    Path columnarFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] firstNames = {"Carl", "Harry", "Tony", "Anna", "Maria", "Jürgen", "Wei", "Olga"};
+        String[] lastNames = {"Cracker", "Hacker", "Tester", "Smith", "Müller", "Zhang", "Ivanova"};
+        Random random = new Random(42);
+        textFile = Files.createTempFile("employees", ".txt");
+        columnarFile = Files.createTempFile("employees", ".col");
+        try (PrintWriter out = new PrintWriter(textFile.toFile(), "UTF-8");
+             ColumnarEmployeeWriter columnar = new ColumnarEmployeeWriter(columnarFile)) {
+            out.println(employees);
+            for (int i = 0; i < employees; i++) {
+                String name = firstNames[random.nextInt(firstNames.length)] + " "
+                        + lastNames[random.nextInt(lastNames.length)];
+                Employee e = new Employee(name, 30000 + random.nextInt(100000), 1980 + i * 40 / employees,
+                        1 + random.nextInt(12), 1 + random.nextInt(28));
+                TextFileTest.writeEmployee(out, e);
+                columnar.write(e);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(textFile);
+        Files.delete(columnarFile);
+    }
+
+    @Benchmark
+    public Employee[] text() throws IOException {
+        try (Scanner in = new Scanner(Files.newInputStream(textFile), "UTF-8")) {
+            int n = in.nextInt();
+            in.nextLine();
+            Employee[] result = new Employee[n];
+            for (int i = 0; i < n; i++)
+                result[i] = TextFileTest.readEmployee(in);
+            return result;
+        }
+    }
+
+    @Benchmark
+    public Employee[] columnarAll() throws IOException {
+        try (ColumnarEmployeeReader in = new ColumnarEmployeeReader(columnarFile)) {
+            return in.readAll();
+        }
+    }
+
+    @Benchmark
+    public double columnarSalaries() throws IOException {
+        double[] total = new double[1];
+        try (ColumnarEmployeeReader in = new ColumnarEmployeeReader(columnarFile)) {
+            in.scan(EnumSet.of(Column.SALARY), block -> true, batch -> {
+                double[] salaries = batch.getSalaries();
+                for (int i = 0; i < batch.getRows(); i++) total[0] += salaries[i];
+            });
+        }
+        return total[0];
+    }
+
+    @Benchmark
+    public double columnarRecentSalaries() throws IOException {
+        int since = (int) java.time.LocalDate.of(2010, 1, 1).toEpochDay();
+        double[] total = new double[1];
+        try (ColumnarEmployeeReader in = new ColumnarEmployeeReader(columnarFile)) {
+            in.scan(EnumSet.of(Column.SALARY, Column.HIRE_DAY), block -> block.getMaxHireDay().toEpochDay() >= since,
+                    batch -> {
+                        double[] salaries = batch.getSalaries();
+                        int[] hireDays = batch.getHireDays();
+                        for (int i = 0; i < batch.getRows(); i++)
+                            if (hireDays[i] >= since) total[0] += salaries[i];
+                    });
+        }
+        return total[0];
+    }
+}
@@ -0,0 +1,93 @@
+package cn.staynoob.trap.java.corejava.v2ch02.memoryMap;
+
+import cn.staynoob.trap.java.corejava.v2ch02.memoryMap.ParallelChecksum.Algorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The four methods of {@link MemoryMapTest}, which read a byte at a time, and of
+ * {@link MemoryMapTest2}, which read 1KB blocks, against {@link ParallelChecksum}. The file stays
+ * in the page cache, so this compares the cost of getting the bytes to the checksum, not disk
+ * speed. The byte-at-a-time methods make a file of more than a few MB impractical; pass e.g.
+ * {@code -p size=1073741824 -e byte} to compare the others on a large file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChecksumBenchmark {
+    @Param({"1048576"})
+    int size;
+
+    Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        file = Files.createTempFile("checksum-benchmark", ".bin");
+        Files.write(file, bytes);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public long byteInputStream() throws IOException {
+        return MemoryMapTest.checksumInputStream(file);
+    }
+
+    @Benchmark
+    public long byteBufferedInputStream() throws IOException {
+        return MemoryMapTest.checksumBufferedInputStream(file);
+    }
+
+    @Benchmark
+    public long byteRandomAccessFile() throws IOException {
+        return MemoryMapTest.checksumRandomAccessFile(file);
+    }
+
+    @Benchmark
+    public long byteMappedFile() throws IOException {
+        return MemoryMapTest.checksumMappedFile(file);
+    }
+
+    @Benchmark
+    public long blockInputStream() throws IOException {
+        return MemoryMapTest2.checksumInputStream(file);
+    }
+
+    @Benchmark
+    public long blockBufferedInputStream() throws IOException {
+        return MemoryMapTest2.checksumBufferedInputStream(file);
+    }
+
+    @Benchmark
+    public long blockRandomAccessFile() throws IOException {
+        return MemoryMapTest2.checksumRandomAccessFile(file);
+    }
+
+    @Benchmark
+    public long blockMappedFile() throws IOException {
+        return MemoryMapTest2.checksumMappedFile(file);
+    }
+
+    @Benchmark
+    public long parallelCrc32() throws IOException {
+        return ParallelChecksum.checksum(file, Algorithm.CRC32);
+    }
+
+    @Benchmark
+    public long parallelCrc32c() throws IOException {
+        return ParallelChecksum.checksum(file, Algorithm.CRC32C);
+    }
+}
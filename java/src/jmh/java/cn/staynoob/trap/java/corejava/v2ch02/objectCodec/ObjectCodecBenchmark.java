@@ -0,0 +1,104 @@
+package cn.staynoob.trap.java.corejava.v2ch02.objectCodec;
+
+import cn.staynoob.trap.java.corejava.v2ch02.objectStream.Employee;
+import cn.staynoob.trap.java.corejava.v2ch02.objectStream.Manager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Object streams against {@link ObjectCodec} for a staff of employees in which every tenth is
+ * a manager whose secretary is one of the others, so that references are shared. The
+ * {@code java*} benchmarks write a new object stream per graph, as {@code SerialCloneable} does;
+ * {@code codec*} reuse the codec's buffers. {@code javaClone} is the round trip that
+ * {@code SerialCloneable} used to do, {@code deepCopy} its replacement. The setup prints the
+ * bytes per employee of both encodings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectCodecBenchmark {
+    @Param({"3", "1000"})
+    int employees;
+
+    Employee[] staff;
+    ObjectCodec codec;
+    byte[] javaBytes;
+    ByteBuffer codecBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] names = {"Carl Cracker", "Harry Hacker", "Tony Tester", "Anna Smith", "Wei Zhang"};
+        Random random = new Random(42);
+        staff = new Employee[employees];
+        for (int i = 0; i < employees; i++) {
+            String name = names[random.nextInt(names.length)] + " " + i;
+            double salary = 30000 + random.nextInt(100000);
+            int year = 1980 + random.nextInt(40);
+            int month = 1 + random.nextInt(12);
+            int day = 1 + random.nextInt(28);
+            if (i % 10 == 0) {
+                Manager m = new Manager(name, salary, year, month, day);
+                if (i > 0) m.setSecretary(staff[random.nextInt(i)]);
+                staff[i] = m;
+            } else {
+                staff[i] = new Employee(name, salary, year, month, day);
+            }
+        }
+        codec = new ObjectCodec(Employee[].class, Employee.class, Manager.class);
+        javaBytes = javaSerialize();
+        ByteBuffer encoded = codec.encode(staff);
+        codecBytes = ByteBuffer.allocate(encoded.remaining()).put(encoded);
+        codecBytes.flip();
+        System.out.printf("%nbytes per employee: object stream %.1f, codec %.1f%n",
+                (double) javaBytes.length / employees, (double) codecBytes.remaining() / employees);
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bout)) {
+            out.writeObject(staff);
+        }
+        return bout.toByteArray();
+    }
+
+    @Benchmark
+    public Object javaDeserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(javaBytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public Object javaClone() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(javaSerialize()))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer codecEncode() {
+        return codec.encode(staff);
+    }
+
+    @Benchmark
+    public Object codecDecode() throws IOException {
+        return codec.decode(codecBytes.duplicate());
+    }
+
+    @Benchmark
+    public Employee[] deepCopy() {
+        return ObjectCodec.deepCopy(staff);
+    }
+}
@@ -0,0 +1,96 @@
+package cn.staynoob.trap.java.corejava.v2ch02.randomAccess3;
+
+import cn.staynoob.trap.java.corejava.v2ch02.randomAccess.Employee;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a random employee with the {@code readData} methods of the randomAccess programs, a
+ * seek and a read per field or a channel read per record, and through a mapped record file.
+ * {@code mappedSalary} reads a single field in place, the case the flyweight is meant for;
+ * {@code mappedEmployee} builds an {@link Employee} like the others do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RandomReadBenchmark {
+    @Param({"100000"})
+    int records;
+
+    Path dataFile;
+    Path mappedFile;
+    RandomAccessFile randomAccessFile;
+    FileChannel channel;
+    ByteBuffer buffer;
+    MappedRecordFile recordFile;
+    EmployeeRecord record;
+
+    @Setup
+    public void setUp() throws IOException {
+        dataFile = Files.createTempFile("random-read", ".dat");
+        mappedFile = Files.createTempFile("random-read", ".mapped");
+        recordFile = new MappedRecordFile(mappedFile, EmployeeRecord.RECORD_SIZE);
+        record = new EmployeeRecord(recordFile);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(dataFile))) {
+            for (int i = 0; i < records; i++) {
+                // randomAccess.readData passes month - 1 to LocalDate.of, so January can't be read back
+                Employee e = new Employee("Employee " + i, 1000 + i, 2000, 2 + i % 11, 1 + i % 28);
+                cn.staynoob.trap.java.corejava.v2ch02.randomAccess.RandomAccessTest.writeData(out, e);
+                record.moveTo(recordFile.append()).set(e);
+            }
+        }
+        randomAccessFile = new RandomAccessFile(dataFile.toFile(), "r");
+        channel = FileChannel.open(dataFile, StandardOpenOption.READ);
+        buffer = ByteBuffer.allocate(Employee.RECORD_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        randomAccessFile.close();
+        channel.close();
+        recordFile.close();
+        Files.delete(dataFile);
+        Files.delete(mappedFile);
+    }
+
+    int next() {
+        return ThreadLocalRandom.current().nextInt(records);
+    }
+
+    @Benchmark
+    public Object randomAccessFile() throws IOException {
+        randomAccessFile.seek((long) next() * Employee.RECORD_SIZE);
+        return cn.staynoob.trap.java.corejava.v2ch02.randomAccess.RandomAccessTest.readData(randomAccessFile);
+    }
+
+    @Benchmark
+    public Object fileChannel() throws IOException {
+        buffer.clear();
+        channel.read(buffer, (long) next() * Employee.RECORD_SIZE);
+        buffer.flip();
+        return cn.staynoob.trap.java.corejava.v2ch02.randomAccess2.RandomAccessTest.readData(buffer);
+    }
+
+    @Benchmark
+    public Object mappedEmployee() {
+        return record.moveTo(next()).toEmployee();
+    }
+
+    @Benchmark
+    public double mappedSalary() {
+        return record.moveTo(next()).getSalary();
+    }
+}
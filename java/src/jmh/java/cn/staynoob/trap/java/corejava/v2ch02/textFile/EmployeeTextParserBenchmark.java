@@ -0,0 +1,95 @@
+package cn.staynoob.trap.java.corejava.v2ch02.textFile;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading an employee file of {@link TextFileTest} with its scanner and with
+ * {@link EmployeeTextParser}. {@code parseFields} only parses, from a buffer mapped once, which
+ * gives the parser's own throughput: divide the file size, printed by the setup, by the score.
+ * {@code parseEmployees} also builds every employee, and {@code readData} adds mapping and the
+ * parallel chunks; it only beats the sequential parse with more than one core.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeTextParserBenchmark {
+    @Param({"1000000"})
+    int employees;
+
+    Path file;
+    FileChannel channel;
+    MappedByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        file = Files.createTempFile("employees", ".txt");
+        try (PrintWriter out = new PrintWriter(file.toFile(), "UTF-8")) {
+            out.println(employees);
+            for (int i = 0; i < employees; i++) {
+                TextFileTest.writeEmployee(out, new Employee("Employee " + i, random.nextInt(10_000_000) / 100.0,
+                        1950 + random.nextInt(70), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+            }
+        }
+        channel = FileChannel.open(file);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        System.out.println("file size: " + channel.size() + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Employee[] scanner() throws IOException {
+        try (Scanner in = new Scanner(Files.newInputStream(file), "UTF-8")) {
+            return TextFileTest.readData(in);
+        }
+    }
+
+    @Benchmark
+    public double parseFields() {
+        double[] total = new double[1];
+        buffer.clear();
+        while (buffer.get() != '\n') ; // the number of employees
+        EmployeeTextParser.parse(buffer, row -> total[0] += row.getSalary() + row.getHireDay());
+        return total[0];
+    }
+
+    @Benchmark
+    public int parseEmployees() {
+        int[] n = new int[1];
+        buffer.clear();
+        while (buffer.get() != '\n') ;
+        EmployeeTextParser.parse(buffer, row -> n[0] += row.toEmployee().getName().length());
+        return n[0];
+    }
+
+    @Benchmark
+    public Employee[] readData() throws IOException {
+        return EmployeeTextParser.readData(file);
+    }
+
+    @Benchmark
+    public List<double[]> parseParallel() throws IOException {
+        return EmployeeTextParser.parse(ForkJoinPool.commonPool(), file, () -> new double[1],
+                (total, row) -> total[0] += row.getSalary());
+    }
+}
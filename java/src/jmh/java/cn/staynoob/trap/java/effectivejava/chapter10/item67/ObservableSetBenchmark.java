@@ -0,0 +1,95 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item67;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds per second of the book's {@link ObservableSet} against {@link ConcurrentObservableSet}
+ * with synchronous and asynchronous observers. The wrapped set accepts every element without
+ * storing it, so only the notification is measured. Pass {@code -t 4} to see how the writers
+ * contend on the book's monitor.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObservableSetBenchmark {
+    @Param({"0", "10", "1000"})
+    int observers;
+
+    ObservableSet<Integer> book;
+    ConcurrentObservableSet<Integer> sync;
+    ConcurrentObservableSet<Integer> async;
+    ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        book = new ObservableSet<>(new AcceptingSet());
+        sync = new ConcurrentObservableSet<>(new AcceptingSet());
+        async = new ConcurrentObservableSet<>(new AcceptingSet());
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < observers; i++) {
+            Counter counter = new Counter();
+            book.addObserver((set, element) -> counter.count++);
+            sync.addObserver(counter);
+            async.addObserver(counter, executor, 1024, ConcurrentObservableSet.Backpressure.DROP);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean addBook() {
+        return book.add(1);
+    }
+
+    @Benchmark
+    public boolean addSync() {
+        return sync.add(1);
+    }
+
+    @Benchmark
+    public boolean addAsync() {
+        return async.add(1);
+    }
+
+    static class Counter implements BatchSetObserver<Integer> {
+        long count;
+
+        public void added(ConcurrentObservableSet<Integer> set, List<Integer> elements) {
+            count += elements.size();
+        }
+    }
+
+    /**
+     * A set to which every element is new.
+     */
+    static class AcceptingSet extends AbstractSet<Integer> {
+        @Override
+        public boolean add(Integer e) {
+            return true;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+}
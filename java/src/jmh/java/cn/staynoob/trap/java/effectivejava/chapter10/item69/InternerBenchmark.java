@@ -0,0 +1,77 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item69;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interns strings drawn from a pool of {@code keys} distinct values, as a log parser would. The
+ * {@code *Bytes} variants start from UTF-8 bytes, so the others have to decode them first.
+ * With more keys than the {@link Interner}'s capacity of 100000, it has to evict, while
+ * {@link Intern} and {@link String#intern} keep growing. Pass {@code -t 4} for contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InternerBenchmark {
+    @Param({"1000", "1000000"})
+    int keys;
+
+    String[] strings;
+    byte[][] bytes;
+    Interner interner;
+    Interner weakInterner;
+
+    @Setup
+    public void setUp() {
+        strings = new String[keys];
+        bytes = new byte[keys][];
+        for (int i = 0; i < keys; i++) {
+            strings[i] = "host-" + i + ".example.com";
+            bytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+        }
+        interner = new Interner.Builder(100_000).build();
+        weakInterner = new Interner.Builder(100_000).weakValues().build();
+    }
+
+    private int next() {
+        return ThreadLocalRandom.current().nextInt(keys);
+    }
+
+    @Benchmark
+    public String stringIntern() {
+        return strings[next()].intern();
+    }
+
+    @Benchmark
+    public String intern() {
+        return Intern.intern(strings[next()]);
+    }
+
+    @Benchmark
+    public String interner() {
+        return interner.intern(strings[next()]);
+    }
+
+    @Benchmark
+    public String weakInterner() {
+        return weakInterner.intern(strings[next()]);
+    }
+
+    @Benchmark
+    public String internBytes() {
+        byte[] b = bytes[next()];
+        return Intern.intern(new String(b, 0, b.length, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public String internerBytes() {
+        byte[] b = bytes[next()];
+        return interner.intern(b, 0, b.length);
+    }
+}
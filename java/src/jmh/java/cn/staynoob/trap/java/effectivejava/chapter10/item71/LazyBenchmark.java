@@ -0,0 +1,52 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item71;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of reading an initialized {@link Lazy} in each mode, against a final field. Run with
+ * {@code -t 1}, {@code -t 8} and {@code -t 64} to see how the modes scale; only
+ * {@code SYNCHRONIZED} contends. {@code -p ttlMillis=1000} adds the clock read of an expiring
+ * value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LazyBenchmark {
+    @Param({"SYNCHRONIZED", "DOUBLE_CHECKED", "RACY", "FINAL_WRAPPER"})
+    Lazy.Mode mode;
+
+    @Param({"0"})
+    long ttlMillis;
+
+    final Object eager = new Object();
+    Lazy<Object> lazy;
+    LazyLong lazyLong;
+
+    @Setup
+    public void setUp() {
+        lazy = Lazy.of(mode, Object::new, ttlMillis, TimeUnit.MILLISECONDS);
+        lazyLong = LazyLong.of(mode, System::nanoTime, ttlMillis, TimeUnit.MILLISECONDS);
+        lazy.get();
+        lazyLong.getAsLong();
+    }
+
+    @Benchmark
+    public Object eager() {
+        return eager;
+    }
+
+    @Benchmark
+    public Object get() {
+        return lazy.get();
+    }
+
+    @Benchmark
+    public long getAsLong() {
+        return lazyLong.getAsLong();
+    }
+}
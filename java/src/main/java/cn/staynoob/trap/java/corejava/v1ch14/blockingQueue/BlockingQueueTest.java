@@ -1,5 +1,7 @@
 package cn.staynoob.trap.java.corejava.v1ch14.blockingQueue;
 
+import cn.staynoob.trap.java.corejava.v1ch14.search.*;
+
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
@@ -83,7 +85,7 @@ class FileEnumerationTask implements Runnable
 class SearchTask implements Runnable
 {
    private BlockingQueue<File> queue;
-   private String keyword;
+   private KeywordSearch searcher;
 
    /**
     * Constructs a SearchTask.
@@ -93,7 +95,7 @@ class SearchTask implements Runnable
    public SearchTask(BlockingQueue<File> queue, String keyword)
    {
       this.queue = queue;
-      this.keyword = keyword;
+      this.searcher = new KeywordSearch(keyword);
    }
 
    public void run()
@@ -127,16 +129,7 @@ class SearchTask implements Runnable
     */
    public void search(File file) throws IOException
    {
-      try (Scanner in = new Scanner(file))
-      {
-         int lineNumber = 0;
-         while (in.hasNextLine())
-         {
-            lineNumber++;
-            String line = in.nextLine();
-            if (line.contains(keyword)) 
-               System.out.printf("%s:%d:%s%n", file.getPath(), lineNumber, line);
-         }
-      }
+      searcher.search(file.toPath(), (lineNumber, line) ->
+         System.out.printf("%s:%d:%s%n", file.getPath(), lineNumber, line));
    }
 }
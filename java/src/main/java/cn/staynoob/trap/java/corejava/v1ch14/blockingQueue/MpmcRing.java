@@ -0,0 +1,110 @@
+package cn.staynoob.trap.java.corejava.v1ch14.blockingQueue;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A bounded multi-producer, multi-consumer queue that doesn't lock. Every slot carries a sequence
+ * number that tells producers and consumers whose turn it is, so that a slot is claimed with a
+ * single compare-and-set on the tail or head counter (Dmitry Vyukov's bounded MPMC queue).
+ * @param <E> the element type
+ */
+public class MpmcRing<E>
+{
+   private final int mask;
+   private final AtomicLongArray sequences;
+   private final AtomicReferenceArray<E> elements;
+   private final AtomicLong head = new AtomicLong();
+   private final AtomicLong tail = new AtomicLong();
+
+   /**
+    * Constructs a MpmcRing.
+    * @param capacity the minimum capacity, rounded up to a power of two
+    */
+   public MpmcRing(int capacity)
+   {
+      if (capacity <= 0 || capacity > 1 << 30)
+         throw new IllegalArgumentException("capacity: " + capacity);
+      int size = Integer.highestOneBit(capacity);
+      if (size < capacity) size <<= 1;
+      mask = size - 1;
+      sequences = new AtomicLongArray(size);
+      elements = new AtomicReferenceArray<>(size);
+      for (int i = 0; i < size; i++)
+         sequences.set(i, i);
+   }
+
+   /**
+    * Adds an element if there is room.
+    * @param e the element to add
+    * @return false if the ring is full
+    */
+   public boolean offer(E e)
+   {
+      if (e == null) throw new NullPointerException();
+      long position = tail.get();
+      while (true)
+      {
+         int index = (int) position & mask;
+         long difference = sequences.get(index) - position;
+         if (difference == 0)
+         {
+            if (tail.compareAndSet(position, position + 1))
+            {
+               elements.lazySet(index, e);
+               // publishes the element, the consumer reads the sequence before the element
+               sequences.lazySet(index, position + 1);
+               return true;
+            }
+            position = tail.get();
+         }
+         else if (difference < 0)
+            return false; // the slot still holds an element from the previous lap
+         else
+            position = tail.get(); // another producer was faster
+      }
+   }
+
+   /**
+    * Removes an element if there is one.
+    * @return the element, or null if the ring is empty
+    */
+   public E poll()
+   {
+      long position = head.get();
+      while (true)
+      {
+         int index = (int) position & mask;
+         long difference = sequences.get(index) - (position + 1);
+         if (difference == 0)
+         {
+            if (head.compareAndSet(position, position + 1))
+            {
+               E e = elements.get(index);
+               elements.lazySet(index, null);
+               // hands the slot to the producer of the next lap
+               sequences.lazySet(index, position + mask + 1);
+               return e;
+            }
+            position = head.get();
+         }
+         else if (difference < 0)
+            return null; // the producer hasn't filled this slot yet
+         else
+            position = head.get(); // another consumer was faster
+      }
+   }
+
+   /**
+    * Gets the number of elements. The value is only a snapshot while other threads are active.
+    */
+   public int size()
+   {
+      long size = tail.get() - head.get();
+      return (int) Math.max(0, Math.min(size, mask + 1));
+   }
+
+   public int capacity()
+   {
+      return mask + 1;
+   }
+}
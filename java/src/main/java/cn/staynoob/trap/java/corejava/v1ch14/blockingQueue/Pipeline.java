@@ -0,0 +1,448 @@
+package cn.staynoob.trap.java.corejava.v1ch14.blockingQueue;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A chain of stages connected by bounded queues, each stage with its own pool of threads:
+ * <pre>
+ * Pipeline.from("enumerate", source)
+ *    .then("read", new Pipeline.Options().threads(4), reader)
+ *    .to("output", new Pipeline.Options(), sink)
+ *    .await();
+ * </pre>
+ * Items are handed to the next stage in batches, so that a queue operation is paid per batch
+ * rather than per item. There are no sentinel items: a stage knows how many upstream threads
+ * feed it, and it finishes once all of them have finished and its queue is empty.
+ * <p>
+ * {@link Execution#stats()} shows per-stage throughput and queue depths while the pipeline runs,
+ * which tells which stage is the bottleneck: it is the one with a full input queue and an empty
+ * output queue.
+ * @param <T> the type of the items produced by the last stage so far
+ */
+public class Pipeline<T>
+{
+   /**
+    * How often a waiting stage checks whether its upstream has finished.
+    */
+   private static final long POLL_MILLIS = 10;
+
+   /**
+    * Passes items on to the next stage.
+    */
+   public interface Emitter<T>
+   {
+      void emit(T item) throws InterruptedException;
+   }
+
+   /**
+    * Produces the items of the first stage. Runs on a single thread.
+    */
+   public interface Source<T>
+   {
+      void produce(Emitter<T> out) throws Exception;
+   }
+
+   /**
+    * Turns each item into any number of items for the next stage.
+    */
+   public interface Step<I, O>
+   {
+      void process(I item, Emitter<O> out) throws Exception;
+   }
+
+   /**
+    * Consumes the items of the last stage.
+    */
+   public interface Sink<T>
+   {
+      void accept(T item) throws Exception;
+   }
+
+   /**
+    * The threads and the input queue of a stage.
+    */
+   public static class Options
+   {
+      private int threads = 1;
+      private QueueType queueType = QueueType.ARRAY;
+      private int capacity = 16;
+      private int batchSize = 1;
+
+      /**
+       * @param threads the number of threads that run the stage
+       */
+      public Options threads(int threads)
+      {
+         if (threads <= 0) throw new IllegalArgumentException(threads + " <= 0");
+         this.threads = threads;
+         return this;
+      }
+
+      /**
+       * @param queueType the kind of the input queue
+       * @param capacity the capacity of the input queue, in batches
+       */
+      public Options queue(QueueType queueType, int capacity)
+      {
+         if (capacity <= 0) throw new IllegalArgumentException(capacity + " <= 0");
+         this.queueType = queueType;
+         this.capacity = capacity;
+         return this;
+      }
+
+      /**
+       * @param batchSize the number of items that the previous stage hands over at once
+       */
+      public Options batchSize(int batchSize)
+      {
+         if (batchSize <= 0) throw new IllegalArgumentException(batchSize + " <= 0");
+         this.batchSize = batchSize;
+         return this;
+      }
+   }
+
+   private final List<Stage<?, ?>> stages;
+   private final Stage<?, T> last;
+
+   private Pipeline(List<Stage<?, ?>> stages, Stage<?, T> last)
+   {
+      this.stages = stages;
+      this.last = last;
+   }
+
+   /**
+    * Starts a pipeline definition.
+    * @param name the name of the first stage
+    * @param source produces the items of the first stage
+    */
+   public static <T> Pipeline<T> from(String name, Source<T> source)
+   {
+      Stage<Void, T> stage = new Stage<>(name, new Options(), null);
+      stage.source = source;
+      List<Stage<?, ?>> stages = new ArrayList<>();
+      stages.add(stage);
+      return new Pipeline<>(stages, stage);
+   }
+
+   /**
+    * Appends a stage.
+    * @param name the name of the stage
+    * @param options the threads and input queue of the stage
+    * @param step processes the items of the previous stage
+    */
+   public <R> Pipeline<R> then(String name, Options options, Step<? super T, R> step)
+   {
+      Stage<T, R> stage = new Stage<>(name, options, step);
+      link(stage);
+      return new Pipeline<>(stages, stage);
+   }
+
+   /**
+    * Appends the last stage and starts all threads.
+    * @param name the name of the stage
+    * @param options the threads and input queue of the stage
+    * @param sink consumes the items of the previous stage
+    * @return the running pipeline
+    */
+   public Execution to(String name, Options options, Sink<? super T> sink)
+   {
+      Stage<T, Void> stage = new Stage<>(name, options, (item, out) -> sink.accept(item));
+      link(stage);
+      Execution execution = new Execution(stages);
+      execution.start();
+      return execution;
+   }
+
+   private void link(Stage<T, ?> stage)
+   {
+      if (last.next != null) throw new IllegalStateException(last.name + " already has a successor");
+      last.next = stage;
+      stage.producers = new AtomicInteger(last.threads);
+      stages.add(stage);
+   }
+
+   /**
+    * The state of a single stage while the pipeline runs.
+    */
+   private static class Stage<I, O>
+   {
+      final String name;
+      final int threads;
+      final int batchSize;
+      final QueueType.Channel<List<I>> input;
+      final Step<? super I, O> step;
+      Source<O> source;
+      Stage<O, ?> next;
+
+      AtomicInteger producers; // upstream threads that haven't finished yet
+      volatile boolean upstreamDone;
+      final AtomicInteger running;
+      volatile long finishedNanos;
+
+      final LongAdder processed = new LongAdder();
+      final LongAdder emitted = new LongAdder();
+      final AtomicInteger maxQueued = new AtomicInteger();
+
+      Stage(String name, Options options, Step<? super I, O> step)
+      {
+         this.name = name;
+         this.threads = step == null ? 1 : options.threads;
+         this.batchSize = options.batchSize;
+         this.input = step == null ? null : options.queueType.create(options.capacity);
+         this.step = step;
+         this.running = new AtomicInteger(threads);
+      }
+
+      /**
+       * Runs on each thread of the stage.
+       */
+      void work(Execution execution) throws Exception
+      {
+         BatchingEmitter<O> out = new BatchingEmitter<>(this, next);
+         if (source != null)
+            source.produce(out);
+         else
+         {
+            while (!execution.failed)
+            {
+               List<I> batch = input.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+               if (batch == null)
+               {
+                  // producers put their last batch before they count down
+                  if (upstreamDone && input.size() == 0) break;
+                  continue;
+               }
+               for (I item : batch)
+               {
+                  step.process(item, out);
+                  processed.increment();
+               }
+            }
+         }
+         out.flush();
+      }
+
+      /**
+       * Called once by every thread of the stage when it stops, normally or not.
+       */
+      void finished()
+      {
+         if (next != null && next.producers.decrementAndGet() == 0) next.upstreamDone = true;
+         if (running.decrementAndGet() == 0) finishedNanos = System.nanoTime();
+      }
+
+      void put(List<I> batch) throws InterruptedException
+      {
+         input.put(batch);
+         int queued = input.size();
+         if (queued > maxQueued.get()) maxQueued.accumulateAndGet(queued, Math::max);
+      }
+   }
+
+   /**
+    * Collects the output of one thread into batches of the size that the next stage wants.
+    */
+   private static class BatchingEmitter<O> implements Emitter<O>
+   {
+      private final Stage<?, O> stage;
+      private final Stage<O, ?> next;
+      private List<O> batch;
+
+      BatchingEmitter(Stage<?, O> stage, Stage<O, ?> next)
+      {
+         this.stage = stage;
+         this.next = next;
+         if (next != null) batch = new ArrayList<>(next.batchSize);
+      }
+
+      public void emit(O item) throws InterruptedException
+      {
+         if (stage.source != null) stage.processed.increment();
+         if (next == null) return;
+         stage.emitted.increment();
+         batch.add(item);
+         if (batch.size() == next.batchSize)
+         {
+            next.put(batch);
+            batch = new ArrayList<>(next.batchSize);
+         }
+      }
+
+      void flush() throws InterruptedException
+      {
+         if (next != null && !batch.isEmpty()) next.put(batch);
+      }
+   }
+
+   /**
+    * A started pipeline.
+    */
+   public static class Execution
+   {
+      private final List<Stage<?, ?>> stages;
+      private final List<Thread> threads = new ArrayList<>();
+      private final AtomicReference<Throwable> failure = new AtomicReference<>();
+      private volatile boolean failed;
+      private long startNanos;
+
+      Execution(List<Stage<?, ?>> stages)
+      {
+         this.stages = stages;
+      }
+
+      void start()
+      {
+         startNanos = System.nanoTime();
+         for (Stage<?, ?> stage : stages)
+            for (int i = 1; i <= stage.threads; i++)
+               threads.add(new Thread(() -> run(stage), stage.name + "-" + i));
+         for (Thread thread : threads)
+            thread.start();
+      }
+
+      private void run(Stage<?, ?> stage)
+      {
+         try
+         {
+            stage.work(this);
+         }
+         catch (InterruptedException e)
+         {
+            // only cancel() and fail() interrupt pipeline threads
+         }
+         catch (Throwable e)
+         {
+            fail(e);
+         }
+         finally
+         {
+            stage.finished();
+         }
+      }
+
+      private void fail(Throwable e)
+      {
+         if (failure.compareAndSet(null, e)) cancel();
+      }
+
+      /**
+       * Stops all stages, dropping the items that are still queued.
+       */
+      public void cancel()
+      {
+         failed = true;
+         for (Thread thread : threads)
+            thread.interrupt();
+      }
+
+      /**
+       * Waits until all stages have finished.
+       * @throws ExecutionException if a stage threw an exception
+       */
+      public void await() throws InterruptedException, ExecutionException
+      {
+         for (Thread thread : threads)
+            thread.join();
+         Throwable e = failure.get();
+         if (e != null) throw new ExecutionException(e);
+      }
+
+      /**
+       * Takes a snapshot of all stages, in pipeline order.
+       */
+      public List<StageStats> stats()
+      {
+         long now = System.nanoTime();
+         List<StageStats> result = new ArrayList<>();
+         for (Stage<?, ?> stage : stages)
+         {
+            long end = stage.running.get() == 0 ? stage.finishedNanos : now;
+            result.add(new StageStats(stage.name, stage.threads, stage.processed.sum(),
+               stage.emitted.sum(), stage.input == null ? 0 : stage.input.size(),
+               stage.maxQueued.get(), end - startNanos));
+         }
+         return result;
+      }
+   }
+
+   /**
+    * The progress of a single stage.
+    */
+   public static class StageStats
+   {
+      private final String name;
+      private final int threads;
+      private final long processed;
+      private final long emitted;
+      private final int queuedBatches;
+      private final int maxQueuedBatches;
+      private final long elapsedNanos;
+
+      StageStats(String name, int threads, long processed, long emitted, int queuedBatches,
+         int maxQueuedBatches, long elapsedNanos)
+      {
+         this.name = name;
+         this.threads = threads;
+         this.processed = processed;
+         this.emitted = emitted;
+         this.queuedBatches = queuedBatches;
+         this.maxQueuedBatches = maxQueuedBatches;
+         this.elapsedNanos = elapsedNanos;
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+
+      /**
+       * Gets the number of items the stage has taken from its queue, or produced if it is the
+       * first stage.
+       */
+      public long getProcessed()
+      {
+         return processed;
+      }
+
+      /**
+       * Gets the number of items the stage has passed on.
+       */
+      public long getEmitted()
+      {
+         return emitted;
+      }
+
+      /**
+       * Gets the current depth of the input queue, in batches.
+       */
+      public int getQueuedBatches()
+      {
+         return queuedBatches;
+      }
+
+      /**
+       * Gets the largest input queue depth that was observed, in batches.
+       */
+      public int getMaxQueuedBatches()
+      {
+         return maxQueuedBatches;
+      }
+
+      /**
+       * Gets the rate at which the stage processed items, until now or until it finished.
+       */
+      public double getItemsPerSecond()
+      {
+         return elapsedNanos <= 0 ? 0 : processed * 1e9 / elapsedNanos;
+      }
+
+      public String toString()
+      {
+         return String.format("%-10s threads=%d processed=%d emitted=%d queued=%d maxQueued=%d "
+            + "items/sec=%.0f", name, threads, processed, emitted, queuedBatches, maxQueuedBatches,
+            getItemsPerSecond());
+      }
+   }
+}
@@ -0,0 +1,98 @@
+package cn.staynoob.trap.java.corejava.v1ch14.blockingQueue;
+
+import cn.staynoob.trap.java.corejava.v1ch14.search.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The search of {@link BlockingQueueTest} as a pipeline of four stages: enumerate files, read
+ * them, match the keyword and print the hits. Every stage has its own threads and input queue,
+ * and the per-stage statistics are printed once a second.
+ */
+public class PipelineSearchTest
+{
+   public static void main(String[] args) throws Exception
+   {
+      Scanner in = new Scanner(System.in);
+      System.out.print("Enter base directory (e.g. /usr/local/jdk1.6.0/src): ");
+      String directory = in.nextLine();
+      System.out.print("Enter keyword (e.g. volatile): ");
+      String keyword = in.nextLine();
+      System.out.print("Enter queue type (ARRAY, LINKED or RING): ");
+      QueueType queueType = QueueType.valueOf(in.nextLine().trim().toUpperCase());
+
+      KeywordSearch search = new KeywordSearch(keyword);
+
+      Pipeline.Execution execution = Pipeline
+         .<Path>from("enumerate", out -> enumerate(Paths.get(directory), out))
+         .then("read", new Pipeline.Options().threads(4).queue(queueType, 64).batchSize(32),
+            (Path file, Pipeline.Emitter<Content> out) ->
+               out.emit(new Content(file, ByteBuffer.wrap(Files.readAllBytes(file)))))
+         .then("match", new Pipeline.Options().threads(8).queue(queueType, 16).batchSize(8),
+            (Content content, Pipeline.Emitter<String> out) ->
+            {
+               List<String> hits = new ArrayList<>();
+               search.search(content.bytes, (lineNumber, line) ->
+                  hits.add(String.format("%s:%d:%s", content.file, lineNumber, line)));
+               for (String hit : hits)
+                  out.emit(hit);
+            })
+         .to("output", new Pipeline.Options().queue(queueType, 64).batchSize(16),
+            System.out::println);
+
+      ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+      reporter.scheduleAtFixedRate(() -> printStats(execution), 1, 1, TimeUnit.SECONDS);
+      try
+      {
+         execution.await();
+      }
+      finally
+      {
+         reporter.shutdown();
+      }
+      printStats(execution);
+   }
+
+   private static void printStats(Pipeline.Execution execution)
+   {
+      for (Pipeline.StageStats stats : execution.stats())
+         System.err.println(stats);
+   }
+
+   /**
+    * Recursively enumerates all files in a given directory and its subdirectories.
+    * @param directory the directory in which to start
+    * @param out receives the files
+    */
+   private static void enumerate(Path directory, Pipeline.Emitter<Path> out)
+      throws IOException, InterruptedException
+   {
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory))
+      {
+         for (Path entry : entries)
+         {
+            if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) enumerate(entry, out);
+            else if (Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)) out.emit(entry);
+         }
+      }
+   }
+
+   /**
+    * The bytes of a file, passed from the read stage to the match stage.
+    */
+   private static class Content
+   {
+      final Path file;
+      final ByteBuffer bytes;
+
+      Content(Path file, ByteBuffer bytes)
+      {
+         this.file = file;
+         this.bytes = bytes;
+      }
+   }
+}
@@ -0,0 +1,130 @@
+package cn.staynoob.trap.java.corejava.v1ch14.blockingQueue;
+
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * The kinds of queue that can connect two stages of a {@link Pipeline}.
+ */
+public enum QueueType
+{
+   /**
+    * An {@link ArrayBlockingQueue}, with a single lock for producers and consumers.
+    */
+   ARRAY
+   {
+      <T> Channel<T> create(int capacity)
+      {
+         return new BlockingChannel<>(new ArrayBlockingQueue<>(capacity));
+      }
+   },
+
+   /**
+    * A bounded {@link LinkedBlockingQueue}, with separate locks for producers and consumers.
+    */
+   LINKED
+   {
+      <T> Channel<T> create(int capacity)
+      {
+         return new BlockingChannel<>(new LinkedBlockingQueue<>(capacity));
+      }
+   },
+
+   /**
+    * A lock-free {@link MpmcRing}. Waiting threads spin, yield and then park briefly.
+    */
+   RING
+   {
+      <T> Channel<T> create(int capacity)
+      {
+         return new RingChannel<>(new MpmcRing<>(capacity));
+      }
+   };
+
+   abstract <T> Channel<T> create(int capacity);
+
+   /**
+    * The operations that the pipeline needs from a queue.
+    */
+   interface Channel<T>
+   {
+      void put(T e) throws InterruptedException;
+
+      /**
+       * @return the head of the queue, or null if nothing arrived within the timeout
+       */
+      T poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+      int size();
+   }
+
+   private static class BlockingChannel<T> implements Channel<T>
+   {
+      private final BlockingQueue<T> queue;
+
+      BlockingChannel(BlockingQueue<T> queue)
+      {
+         this.queue = queue;
+      }
+
+      public void put(T e) throws InterruptedException
+      {
+         queue.put(e);
+      }
+
+      public T poll(long timeout, TimeUnit unit) throws InterruptedException
+      {
+         return queue.poll(timeout, unit);
+      }
+
+      public int size()
+      {
+         return queue.size();
+      }
+   }
+
+   private static class RingChannel<T> implements Channel<T>
+   {
+      private static final int SPINS = 100;
+      private static final int YIELDS = 10;
+      private static final long PARK_NANOS = 50_000;
+
+      private final MpmcRing<T> ring;
+
+      RingChannel(MpmcRing<T> ring)
+      {
+         this.ring = ring;
+      }
+
+      public void put(T e) throws InterruptedException
+      {
+         for (int attempt = 0; !ring.offer(e); attempt++)
+            backOff(attempt);
+      }
+
+      public T poll(long timeout, TimeUnit unit) throws InterruptedException
+      {
+         long deadline = System.nanoTime() + unit.toNanos(timeout);
+         for (int attempt = 0; ; attempt++)
+         {
+            T e = ring.poll();
+            if (e != null) return e;
+            if (System.nanoTime() - deadline >= 0) return null;
+            backOff(attempt);
+         }
+      }
+
+      public int size()
+      {
+         return ring.size();
+      }
+
+      private static void backOff(int attempt) throws InterruptedException
+      {
+         if (Thread.interrupted()) throw new InterruptedException();
+         if (attempt < SPINS) return;
+         if (attempt < SPINS + YIELDS) Thread.yield();
+         else LockSupport.parkNanos(PARK_NANOS);
+      }
+   }
+}
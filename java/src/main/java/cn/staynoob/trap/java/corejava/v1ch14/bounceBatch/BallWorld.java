@@ -0,0 +1,203 @@
+package cn.staynoob.trap.java.corejava.v1ch14.bounceBatch;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import cn.staynoob.trap.java.corejava.v1ch14.forkJoin.ParallelArrays;
+
+/**
+ * Balls that move and bounce off the edges of a rectangle, like the {@code Ball} of the bounce
+ * programs, but all of them at once. The positions and velocities are kept in one primitive
+ * array per coordinate instead of one object per ball, so that a step runs down the arrays
+ * without chasing pointers, and a large world can be split into ranges for a fork-join pool.
+ * <p>
+ * A world is not thread-safe: one thread adds balls and steps the world.
+ */
+public class BallWorld
+{
+   public static final int XSIZE = 15;
+   public static final int YSIZE = 15;
+
+   private double[] x = new double[16];
+   private double[] y = new double[16];
+   private double[] dx = new double[16];
+   private double[] dy = new double[16];
+   private int count;
+   private double width;
+   private double height;
+
+   /**
+    * Constructs an empty world.
+    * @param width the width of the rectangle
+    * @param height the height of the rectangle
+    */
+   public BallWorld(double width, double height)
+   {
+      setBounds(width, height);
+   }
+
+   /**
+    * Resizes the rectangle. Balls that end up outside of it bounce back in on the next step.
+    */
+   public void setBounds(double width, double height)
+   {
+      this.width = Math.max(width, XSIZE);
+      this.height = Math.max(height, YSIZE);
+   }
+
+   /**
+    * Adds a ball.
+    * @param x the x coordinate of the top left corner
+    * @param y the y coordinate of the top left corner
+    * @param dx the horizontal velocity, in units per second
+    * @param dy the vertical velocity, in units per second
+    */
+   public void add(double x, double y, double dx, double dy)
+   {
+      if (count == this.x.length)
+      {
+         int capacity = count * 2;
+         this.x = Arrays.copyOf(this.x, capacity);
+         this.y = Arrays.copyOf(this.y, capacity);
+         this.dx = Arrays.copyOf(this.dx, capacity);
+         this.dy = Arrays.copyOf(this.dy, capacity);
+      }
+      this.x[count] = x;
+      this.y[count] = y;
+      this.dx[count] = dx;
+      this.dy[count] = dy;
+      count++;
+   }
+
+   /**
+    * Adds balls in the top left corner that move in random directions.
+    * @param n the number of balls
+    * @param speed the speed of the balls, in units per second
+    * @param random the source of the directions
+    */
+   public void addRandom(int n, double speed, Random random)
+   {
+      for (int i = 0; i < n; i++)
+      {
+         double angle = random.nextDouble() * Math.PI / 2;
+         add(0, 0, speed * Math.cos(angle), speed * Math.sin(angle));
+      }
+   }
+
+   public int getCount()
+   {
+      return count;
+   }
+
+   public double getX(int i)
+   {
+      return x[i];
+   }
+
+   public double getY(int i)
+   {
+      return y[i];
+   }
+
+   /**
+    * Moves every ball by one time step.
+    * @param dt the length of the step, in seconds
+    */
+   public void step(double dt)
+   {
+      step(dt, 0, count);
+   }
+
+   /**
+    * Moves every ball by one time step, splitting the balls among the workers of a pool when
+    * there are enough of them to be worth it.
+    * @param dt the length of the step, in seconds
+    * @param pool the pool that runs the step
+    */
+   public void step(double dt, ForkJoinPool pool)
+   {
+      int threshold = ParallelArrays.threshold(pool, count);
+      if (count <= threshold || pool.getParallelism() == 1) step(dt, 0, count);
+      else pool.invoke(new Step(dt, 0, count, threshold));
+   }
+
+   private void step(double dt, int from, int to)
+   {
+      double maxX = width - XSIZE;
+      double maxY = height - YSIZE;
+      double[] x = this.x;
+      double[] y = this.y;
+      double[] dx = this.dx;
+      double[] dy = this.dy;
+      for (int i = from; i < to; i++)
+      {
+         double nx = x[i] + dx[i] * dt;
+         if (nx < 0)
+         {
+            nx = 0;
+            dx[i] = -dx[i];
+         }
+         else if (nx >= maxX)
+         {
+            nx = maxX;
+            dx[i] = -dx[i];
+         }
+         x[i] = nx;
+
+         double ny = y[i] + dy[i] * dt;
+         if (ny < 0)
+         {
+            ny = 0;
+            dy[i] = -dy[i];
+         }
+         else if (ny >= maxY)
+         {
+            ny = maxY;
+            dy[i] = -dy[i];
+         }
+         y[i] = ny;
+      }
+   }
+
+   /**
+    * Copies the positions of the balls, as x and y pairs.
+    * @param buffer the array to copy into, or null
+    * @return buffer, or a new array if buffer is too small for all the balls
+    */
+   public float[] copyPositions(float[] buffer)
+   {
+      if (buffer == null || buffer.length < 2 * count) buffer = new float[2 * x.length];
+      for (int i = 0; i < count; i++)
+      {
+         buffer[2 * i] = (float) x[i];
+         buffer[2 * i + 1] = (float) y[i];
+      }
+      return buffer;
+   }
+
+   private class Step extends RecursiveAction
+   {
+      private final double dt;
+      private final int from;
+      private final int to;
+      private final int threshold;
+
+      Step(double dt, int from, int to, int threshold)
+      {
+         this.dt = dt;
+         this.from = from;
+         this.to = to;
+         this.threshold = threshold;
+      }
+
+      protected void compute()
+      {
+         if (to - from <= threshold) step(dt, from, to);
+         else
+         {
+            int mid = (from + to) >>> 1;
+            invokeAll(new Step(dt, from, mid, threshold), new Step(dt, mid, to, threshold));
+         }
+      }
+   }
+}
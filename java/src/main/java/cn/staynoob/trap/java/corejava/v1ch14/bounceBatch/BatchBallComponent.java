@@ -0,0 +1,79 @@
+package cn.staynoob.trap.java.corejava.v1ch14.bounceBatch;
+
+import java.awt.*;
+import java.awt.image.*;
+import javax.swing.*;
+
+/**
+ * The component that draws the balls of a {@link BallWorld}. The simulation thread hands it a
+ * copy of the positions once per frame, so painting never sees a half-finished step. Beyond a
+ * few thousand balls, filling ovals takes longer than a frame, so the balls are drawn as dots
+ * straight into an image instead.
+ */
+public class BatchBallComponent extends JPanel
+{
+   private static final int DEFAULT_WIDTH = 450;
+   private static final int DEFAULT_HEIGHT = 350;
+   public static final int MAX_OVALS = 5000;
+
+   private float[] positions; // guarded by this
+   private int count; // guarded by this
+   private float[] spare; // used by the simulation thread only
+   private BufferedImage dots;
+
+   /**
+    * Takes a copy of the current positions and schedules a repaint. This method is called by
+    * the simulation thread; the repaints of several frames that come faster than the event
+    * dispatch thread can paint them are merged into one.
+    * @param world the world to show
+    */
+   public void showFrame(BallWorld world)
+   {
+      float[] buffer = world.copyPositions(spare);
+      synchronized (this)
+      {
+         spare = positions;
+         positions = buffer;
+         count = world.getCount();
+      }
+      repaint();
+   }
+
+   public void paintComponent(Graphics g)
+   {
+      super.paintComponent(g); // erase background
+      synchronized (this)
+      {
+         if (count <= MAX_OVALS)
+         {
+            for (int i = 0; i < count; i++)
+               g.fillOval((int) positions[2 * i], (int) positions[2 * i + 1], BallWorld.XSIZE,
+                  BallWorld.YSIZE);
+         }
+         else paintDots(g);
+      }
+   }
+
+   /**
+    * Draws the center of every ball as a pixel.
+    */
+   private void paintDots(Graphics g)
+   {
+      int width = getWidth();
+      int height = getHeight();
+      if (dots == null || dots.getWidth() != width || dots.getHeight() != height)
+         dots = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      int[] pixels = ((DataBufferInt) dots.getRaster().getDataBuffer()).getData();
+      java.util.Arrays.fill(pixels, 0);
+      int rgb = getForeground().getRGB();
+      for (int i = 0; i < count; i++)
+      {
+         int x = (int) positions[2 * i] + BallWorld.XSIZE / 2;
+         int y = (int) positions[2 * i + 1] + BallWorld.YSIZE / 2;
+         if (x >= 0 && x < width && y >= 0 && y < height) pixels[y * width + x] = rgb;
+      }
+      g.drawImage(dots, 0, 0, null);
+   }
+
+   public Dimension getPreferredSize() { return new Dimension(DEFAULT_WIDTH, DEFAULT_HEIGHT); }
+}
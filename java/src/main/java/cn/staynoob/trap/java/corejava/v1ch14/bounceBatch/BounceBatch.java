@@ -0,0 +1,151 @@
+package cn.staynoob.trap.java.corejava.v1ch14.bounceBatch;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.swing.*;
+
+/**
+ * Shows animated bouncing balls, like BounceThread, but with one simulation thread for all balls
+ * instead of one thread per ball. Run with {@code --headless [balls] [seconds]} to measure the
+ * simulation without a display.
+ */
+public class BounceBatch
+{
+   public static final long STEP_NANOS = TimeUnit.SECONDS.toNanos(1) / 120;
+   public static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+   public static final double SPEED = 200;
+
+   public static void main(String[] args) throws InterruptedException
+   {
+      if (args.length > 0 && args[0].equals("--headless"))
+      {
+         int balls = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+         int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+         runHeadless(balls, seconds);
+         return;
+      }
+      EventQueue.invokeLater(new Runnable()
+         {
+            public void run()
+            {
+               JFrame frame = new BounceBatchFrame();
+               frame.setTitle("BounceBatch");
+               frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+               frame.setVisible(true);
+            }
+         });
+   }
+
+   /**
+    * Runs the loop without a display, copying the positions every frame as the component would,
+    * and prints how well it kept up.
+    * @param balls the number of balls
+    * @param seconds how long to run
+    */
+   public static void runHeadless(int balls, int seconds) throws InterruptedException
+   {
+      BallWorld world = new BallWorld(1920, 1080);
+      world.addRandom(balls, SPEED, new Random(42));
+      float[][] buffer = new float[1][];
+      FixedStepLoop loop = new FixedStepLoop(world, STEP_NANOS, FRAME_NANOS,
+         ForkJoinPool.commonPool(), w -> buffer[0] = w.copyPositions(buffer[0]));
+      Thread t = new Thread(loop, "simulation");
+      t.start();
+      Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+      loop.stop();
+      t.join();
+
+      System.out.printf("%d balls, %d seconds: %.1f frames/s, %.1f steps/s, %d dropped steps%n",
+         balls, seconds, loop.getFrames() / (double) seconds, loop.getSteps() / (double) seconds,
+         loop.getDroppedSteps());
+      System.out.printf("%.3f ms per step, %.0f ns per ball%n", loop.getMeanStepTime() / 1e6,
+         loop.getMeanStepTime() / balls);
+   }
+}
+
+/**
+ * The frame with the component and buttons.
+ */
+class BounceBatchFrame extends JFrame
+{
+   private BatchBallComponent comp;
+   private FixedStepLoop loop;
+   private Random random = new Random();
+
+   /**
+    * Constructs the frame with the component for showing the bouncing balls and buttons to add
+    * balls and to close the frame. Starts the simulation thread.
+    */
+   public BounceBatchFrame()
+   {
+      comp = new BatchBallComponent();
+      add(comp, BorderLayout.CENTER);
+      JPanel buttonPanel = new JPanel();
+      addButton(buttonPanel, "Start", new ActionListener()
+         {
+            public void actionPerformed(ActionEvent event)
+            {
+               addBalls(1);
+            }
+         });
+
+      addButton(buttonPanel, "Start 10000", new ActionListener()
+         {
+            public void actionPerformed(ActionEvent event)
+            {
+               addBalls(10_000);
+            }
+         });
+
+      addButton(buttonPanel, "Close", new ActionListener()
+         {
+            public void actionPerformed(ActionEvent event)
+            {
+               System.exit(0);
+            }
+         });
+      add(buttonPanel, BorderLayout.SOUTH);
+      pack();
+
+      loop = new FixedStepLoop(new BallWorld(comp.getWidth(), comp.getHeight()),
+         BounceBatch.STEP_NANOS, BounceBatch.FRAME_NANOS, ForkJoinPool.commonPool(),
+         comp::showFrame);
+      comp.addComponentListener(new ComponentAdapter()
+         {
+            public void componentResized(ComponentEvent event)
+            {
+               int width = comp.getWidth();
+               int height = comp.getHeight();
+               loop.submit(world -> world.setBounds(width, height));
+            }
+         });
+      Thread t = new Thread(loop, "simulation");
+      t.setDaemon(true);
+      t.start();
+   }
+
+   /**
+    * Adds a button to a container.
+    * @param c the container
+    * @param title the button title
+    * @param listener the action listener for the button
+    */
+   public void addButton(Container c, String title, ActionListener listener)
+   {
+      JButton button = new JButton(title);
+      c.add(button);
+      button.addActionListener(listener);
+   }
+
+   /**
+    * Adds bouncing balls to the simulation.
+    * @param n the number of balls
+    */
+   public void addBalls(int n)
+   {
+      long seed = random.nextLong();
+      loop.submit(world -> world.addRandom(n, BounceBatch.SPEED, new Random(seed)));
+   }
+}
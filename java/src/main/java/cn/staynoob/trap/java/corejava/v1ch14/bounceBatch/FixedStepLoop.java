@@ -0,0 +1,162 @@
+package cn.staynoob.trap.java.corejava.v1ch14.bounceBatch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+/**
+ * Runs a {@link BallWorld} in a single thread. The world always advances in steps of the same
+ * length, however late the thread wakes up, so the simulation behaves the same on a fast and a
+ * slow machine; a frame is shown after the steps that are due, at most once per frame time. If
+ * the steps take longer than real time, some of them are dropped rather than making every
+ * following frame later still.
+ * <p>
+ * Other threads change the world by submitting commands, which run in the loop thread between
+ * frames.
+ */
+public class FixedStepLoop implements Runnable
+{
+   public static final int MAX_STEPS_PER_FRAME = 4;
+
+   private final BallWorld world;
+   private final long stepNanos;
+   private final long frameNanos;
+   private final ForkJoinPool pool;
+   private final Consumer<BallWorld> frameListener;
+   private final LongSupplier clock;
+   private final LongConsumer sleeper;
+   private final Queue<Consumer<BallWorld>> commands = new ConcurrentLinkedQueue<>();
+   private volatile boolean running = true;
+
+   // written by the loop thread only
+   private volatile long steps;
+   private volatile long droppedSteps;
+   private volatile long frames;
+   private volatile long stepTime;
+
+   /**
+    * Constructs a loop.
+    * @param world the world to run
+    * @param stepNanos the length of a step
+    * @param frameNanos the time between two frames
+    * @param pool the pool that runs large steps, or null to step in the loop thread
+    * @param frameListener called in the loop thread after every frame's steps, typically to
+    * copy the positions and repaint
+    */
+   public FixedStepLoop(BallWorld world, long stepNanos, long frameNanos, ForkJoinPool pool,
+      Consumer<BallWorld> frameListener)
+   {
+      this(world, stepNanos, frameNanos, pool, frameListener, System::nanoTime,
+         LockSupport::parkNanos);
+   }
+
+   /**
+    * Constructs a loop that reads the time from a clock and waits with a sleeper, such as fake
+    * ones in a test.
+    * @param clock supplies the time in nanoseconds, like {@link System#nanoTime}
+    * @param sleeper waits for a number of nanoseconds, like {@link LockSupport#parkNanos(long)}
+    */
+   FixedStepLoop(BallWorld world, long stepNanos, long frameNanos, ForkJoinPool pool,
+      Consumer<BallWorld> frameListener, LongSupplier clock, LongConsumer sleeper)
+   {
+      if (stepNanos <= 0 || frameNanos <= 0) throw new IllegalArgumentException();
+      this.world = world;
+      this.stepNanos = stepNanos;
+      this.frameNanos = frameNanos;
+      this.pool = pool;
+      this.frameListener = frameListener;
+      this.clock = clock;
+      this.sleeper = sleeper;
+   }
+
+   /**
+    * Runs a command in the loop thread before the next frame.
+    * @param command the command, which may change the world
+    */
+   public void submit(Consumer<BallWorld> command)
+   {
+      commands.add(command);
+   }
+
+   /**
+    * Makes the loop return after the current frame.
+    */
+   public void stop()
+   {
+      running = false;
+   }
+
+   public void run()
+   {
+      double dt = stepNanos / 1e9;
+      long previous = clock.getAsLong();
+      long nextFrame = previous;
+      long lag = 0;
+      while (running && !Thread.currentThread().isInterrupted())
+      {
+         Consumer<BallWorld> command;
+         while ((command = commands.poll()) != null)
+            command.accept(world);
+
+         long now = clock.getAsLong();
+         lag += now - previous;
+         previous = now;
+         int n = 0;
+         for (; lag >= stepNanos && n < MAX_STEPS_PER_FRAME; n++, lag -= stepNanos)
+         {
+            if (pool == null) world.step(dt);
+            else world.step(dt, pool);
+         }
+         if (lag >= stepNanos)
+         {
+            droppedSteps += lag / stepNanos;
+            lag %= stepNanos;
+         }
+         long stepped = clock.getAsLong();
+         steps += n;
+         stepTime += stepped - now;
+
+         frameListener.accept(world);
+         frames++;
+
+         nextFrame += frameNanos;
+         long delay = nextFrame - clock.getAsLong();
+         if (delay > 0) sleeper.accept(delay);
+         else nextFrame = clock.getAsLong(); // too late for this frame; don't try to catch up
+      }
+   }
+
+   /**
+    * Gets the number of steps so far.
+    */
+   public long getSteps()
+   {
+      return steps;
+   }
+
+   /**
+    * Gets the number of steps that were skipped because the loop fell behind.
+    */
+   public long getDroppedSteps()
+   {
+      return droppedSteps;
+   }
+
+   /**
+    * Gets the number of frames so far.
+    */
+   public long getFrames()
+   {
+      return frames;
+   }
+
+   /**
+    * Gets the average time of a step, in nanoseconds.
+    */
+   public double getMeanStepTime()
+   {
+      long n = steps;
+      return n == 0 ? 0 : stepTime / (double) n;
+   }
+}
@@ -22,6 +22,7 @@ public class ForkJoinTest
       ForkJoinPool pool = new ForkJoinPool();
       pool.invoke(counter);
       System.out.println(counter.join());
+      System.out.println(ParallelArrays.count(pool, numbers, x -> x > 0.5));
    }
 }
 
@@ -0,0 +1,572 @@
+package cn.staynoob.trap.java.corejava.v1ch14.forkJoin;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Parallel queries over primitive arrays, built on the same divide-and-conquer idea as
+ * {@link Counter}. Unlike {@code Counter}, the tasks keep their partial results in primitive
+ * fields, so nothing is boxed, and the leaf size is derived from the pool's parallelism and
+ * the array length instead of a fixed threshold.
+ */
+public final class ParallelArrays
+{
+   /**
+    * Leaves never get smaller than this, otherwise the task overhead dominates.
+    */
+   public static final int MIN_CHUNK = 1 << 13;
+
+   /**
+    * How many leaves each worker should get, so that work stealing can even out imbalances.
+    */
+   public static final int CHUNKS_PER_WORKER = 8;
+
+   private ParallelArrays()
+   {
+   }
+
+   /**
+    * Computes the leaf size for a query.
+    * @param pool the pool that runs the query
+    * @param length the number of elements to be processed
+    * @return the largest range that is processed sequentially
+    */
+   public static int threshold(ForkJoinPool pool, int length)
+   {
+      int leaves = pool.getParallelism() * CHUNKS_PER_WORKER;
+      return Math.max(MIN_CHUNK, length / leaves);
+   }
+
+   // count
+
+   public static long count(int[] values, IntPredicate filter)
+   {
+      return count(ForkJoinPool.commonPool(), values, filter);
+   }
+
+   public static long count(ForkJoinPool pool, int[] values, IntPredicate filter)
+   {
+      IntCount task = new IntCount(values, 0, values.length, threshold(pool, values.length), filter);
+      pool.invoke(task);
+      return task.count;
+   }
+
+   public static long count(long[] values, LongPredicate filter)
+   {
+      return count(ForkJoinPool.commonPool(), values, filter);
+   }
+
+   public static long count(ForkJoinPool pool, long[] values, LongPredicate filter)
+   {
+      LongCount task = new LongCount(values, 0, values.length, threshold(pool, values.length), filter);
+      pool.invoke(task);
+      return task.count;
+   }
+
+   public static long count(double[] values, DoublePredicate filter)
+   {
+      return count(ForkJoinPool.commonPool(), values, filter);
+   }
+
+   public static long count(ForkJoinPool pool, double[] values, DoublePredicate filter)
+   {
+      DoubleCount task = new DoubleCount(values, 0, values.length, threshold(pool, values.length),
+         filter);
+      pool.invoke(task);
+      return task.count;
+   }
+
+   // count, sum, min and max in a single pass
+
+   public static IntSummaryStatistics summarize(int[] values)
+   {
+      return summarize(ForkJoinPool.commonPool(), values, x -> true);
+   }
+
+   public static IntSummaryStatistics summarize(int[] values, IntPredicate filter)
+   {
+      return summarize(ForkJoinPool.commonPool(), values, filter);
+   }
+
+   public static IntSummaryStatistics summarize(ForkJoinPool pool, int[] values,
+      IntPredicate filter)
+   {
+      IntSummary task = new IntSummary(values, 0, values.length, threshold(pool, values.length),
+         filter);
+      pool.invoke(task);
+      return task.stats;
+   }
+
+   public static LongSummaryStatistics summarize(long[] values)
+   {
+      return summarize(ForkJoinPool.commonPool(), values, x -> true);
+   }
+
+   public static LongSummaryStatistics summarize(long[] values, LongPredicate filter)
+   {
+      return summarize(ForkJoinPool.commonPool(), values, filter);
+   }
+
+   public static LongSummaryStatistics summarize(ForkJoinPool pool, long[] values,
+      LongPredicate filter)
+   {
+      LongSummary task = new LongSummary(values, 0, values.length, threshold(pool, values.length),
+         filter);
+      pool.invoke(task);
+      return task.stats;
+   }
+
+   public static DoubleSummaryStatistics summarize(double[] values)
+   {
+      return summarize(ForkJoinPool.commonPool(), values, x -> true);
+   }
+
+   public static DoubleSummaryStatistics summarize(double[] values, DoublePredicate filter)
+   {
+      return summarize(ForkJoinPool.commonPool(), values, filter);
+   }
+
+   public static DoubleSummaryStatistics summarize(ForkJoinPool pool, double[] values,
+      DoublePredicate filter)
+   {
+      DoubleSummary task = new DoubleSummary(values, 0, values.length,
+         threshold(pool, values.length), filter);
+      pool.invoke(task);
+      return task.stats;
+   }
+
+   // histogram with equally wide bins over [low, high); values outside the range are ignored
+
+   public static long[] histogram(int[] values, double low, double high, int bins)
+   {
+      return histogram(ForkJoinPool.commonPool(), values, low, high, bins);
+   }
+
+   public static long[] histogram(ForkJoinPool pool, int[] values, double low, double high,
+      int bins)
+   {
+      Bins b = new Bins(low, high, bins);
+      IntHistogram task = new IntHistogram(values, 0, values.length,
+         threshold(pool, values.length), b);
+      pool.invoke(task);
+      return task.counts;
+   }
+
+   public static long[] histogram(long[] values, double low, double high, int bins)
+   {
+      return histogram(ForkJoinPool.commonPool(), values, low, high, bins);
+   }
+
+   public static long[] histogram(ForkJoinPool pool, long[] values, double low, double high,
+      int bins)
+   {
+      Bins b = new Bins(low, high, bins);
+      LongHistogram task = new LongHistogram(values, 0, values.length,
+         threshold(pool, values.length), b);
+      pool.invoke(task);
+      return task.counts;
+   }
+
+   public static long[] histogram(double[] values, double low, double high, int bins)
+   {
+      return histogram(ForkJoinPool.commonPool(), values, low, high, bins);
+   }
+
+   public static long[] histogram(ForkJoinPool pool, double[] values, double low, double high,
+      int bins)
+   {
+      Bins b = new Bins(low, high, bins);
+      DoubleHistogram task = new DoubleHistogram(values, 0, values.length,
+         threshold(pool, values.length), b);
+      pool.invoke(task);
+      return task.counts;
+   }
+
+   /**
+    * The skeleton shared by all queries: split the range in halves until it is no larger than
+    * the threshold, process the leaves sequentially and merge the partial results on the way up.
+    */
+   private abstract static class RangeTask<T extends RangeTask<T>> extends RecursiveAction
+   {
+      final int from;
+      final int to;
+      final int threshold;
+
+      RangeTask(int from, int to, int threshold)
+      {
+         this.from = from;
+         this.to = to;
+         this.threshold = threshold;
+      }
+
+      abstract T create(int from, int to);
+
+      abstract void leaf();
+
+      abstract void merge(T left, T right);
+
+      protected void compute()
+      {
+         if (to - from <= threshold)
+         {
+            leaf();
+         }
+         else
+         {
+            int mid = (from + to) >>> 1;
+            T first = create(from, mid);
+            T second = create(mid, to);
+            invokeAll(first, second);
+            merge(first, second);
+         }
+      }
+   }
+
+   private static class IntCount extends RangeTask<IntCount>
+   {
+      private final int[] values;
+      private final IntPredicate filter;
+      long count;
+
+      IntCount(int[] values, int from, int to, int threshold, IntPredicate filter)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.filter = filter;
+      }
+
+      IntCount create(int from, int to)
+      {
+         return new IntCount(values, from, to, threshold, filter);
+      }
+
+      void leaf()
+      {
+         long n = 0;
+         for (int i = from; i < to; i++)
+            if (filter.test(values[i])) n++;
+         count = n;
+      }
+
+      void merge(IntCount left, IntCount right)
+      {
+         count = left.count + right.count;
+      }
+   }
+
+   private static class LongCount extends RangeTask<LongCount>
+   {
+      private final long[] values;
+      private final LongPredicate filter;
+      long count;
+
+      LongCount(long[] values, int from, int to, int threshold, LongPredicate filter)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.filter = filter;
+      }
+
+      LongCount create(int from, int to)
+      {
+         return new LongCount(values, from, to, threshold, filter);
+      }
+
+      void leaf()
+      {
+         long n = 0;
+         for (int i = from; i < to; i++)
+            if (filter.test(values[i])) n++;
+         count = n;
+      }
+
+      void merge(LongCount left, LongCount right)
+      {
+         count = left.count + right.count;
+      }
+   }
+
+   private static class DoubleCount extends RangeTask<DoubleCount>
+   {
+      private final double[] values;
+      private final DoublePredicate filter;
+      long count;
+
+      DoubleCount(double[] values, int from, int to, int threshold, DoublePredicate filter)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.filter = filter;
+      }
+
+      DoubleCount create(int from, int to)
+      {
+         return new DoubleCount(values, from, to, threshold, filter);
+      }
+
+      void leaf()
+      {
+         long n = 0;
+         for (int i = from; i < to; i++)
+            if (filter.test(values[i])) n++;
+         count = n;
+      }
+
+      void merge(DoubleCount left, DoubleCount right)
+      {
+         count = left.count + right.count;
+      }
+   }
+
+   private static class IntSummary extends RangeTask<IntSummary>
+   {
+      private final int[] values;
+      private final IntPredicate filter;
+      IntSummaryStatistics stats;
+
+      IntSummary(int[] values, int from, int to, int threshold, IntPredicate filter)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.filter = filter;
+      }
+
+      IntSummary create(int from, int to)
+      {
+         return new IntSummary(values, from, to, threshold, filter);
+      }
+
+      void leaf()
+      {
+         IntSummaryStatistics s = new IntSummaryStatistics();
+         for (int i = from; i < to; i++)
+         {
+            int v = values[i];
+            if (filter.test(v)) s.accept(v);
+         }
+         stats = s;
+      }
+
+      void merge(IntSummary left, IntSummary right)
+      {
+         left.stats.combine(right.stats);
+         stats = left.stats;
+      }
+   }
+
+   private static class LongSummary extends RangeTask<LongSummary>
+   {
+      private final long[] values;
+      private final LongPredicate filter;
+      LongSummaryStatistics stats;
+
+      LongSummary(long[] values, int from, int to, int threshold, LongPredicate filter)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.filter = filter;
+      }
+
+      LongSummary create(int from, int to)
+      {
+         return new LongSummary(values, from, to, threshold, filter);
+      }
+
+      void leaf()
+      {
+         LongSummaryStatistics s = new LongSummaryStatistics();
+         for (int i = from; i < to; i++)
+         {
+            long v = values[i];
+            if (filter.test(v)) s.accept(v);
+         }
+         stats = s;
+      }
+
+      void merge(LongSummary left, LongSummary right)
+      {
+         left.stats.combine(right.stats);
+         stats = left.stats;
+      }
+   }
+
+   private static class DoubleSummary extends RangeTask<DoubleSummary>
+   {
+      private final double[] values;
+      private final DoublePredicate filter;
+      DoubleSummaryStatistics stats;
+
+      DoubleSummary(double[] values, int from, int to, int threshold, DoublePredicate filter)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.filter = filter;
+      }
+
+      DoubleSummary create(int from, int to)
+      {
+         return new DoubleSummary(values, from, to, threshold, filter);
+      }
+
+      void leaf()
+      {
+         DoubleSummaryStatistics s = new DoubleSummaryStatistics();
+         for (int i = from; i < to; i++)
+         {
+            double v = values[i];
+            if (filter.test(v)) s.accept(v);
+         }
+         stats = s;
+      }
+
+      void merge(DoubleSummary left, DoubleSummary right)
+      {
+         left.stats.combine(right.stats);
+         stats = left.stats;
+      }
+   }
+
+   /**
+    * Maps a value to its bin, or to -1 if it lies outside [low, high).
+    */
+   private static class Bins
+   {
+      final double low;
+      final double high;
+      final double scale;
+      final int size;
+
+      Bins(double low, double high, int size)
+      {
+         if (size <= 0) throw new IllegalArgumentException(size + " <= 0");
+         if (!(low < high)) throw new IllegalArgumentException(low + " >= " + high);
+         this.low = low;
+         this.high = high;
+         this.scale = size / (high - low);
+         this.size = size;
+      }
+
+      int indexOf(double v)
+      {
+         if (!(v >= low && v < high)) return -1;
+         // rounding may push values just below high into the bin past the end
+         return Math.min((int) ((v - low) * scale), size - 1);
+      }
+   }
+
+   private static class IntHistogram extends RangeTask<IntHistogram>
+   {
+      private final int[] values;
+      private final Bins bins;
+      long[] counts;
+
+      IntHistogram(int[] values, int from, int to, int threshold, Bins bins)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.bins = bins;
+      }
+
+      IntHistogram create(int from, int to)
+      {
+         return new IntHistogram(values, from, to, threshold, bins);
+      }
+
+      void leaf()
+      {
+         long[] c = new long[bins.size];
+         for (int i = from; i < to; i++)
+         {
+            int b = bins.indexOf(values[i]);
+            if (b >= 0) c[b]++;
+         }
+         counts = c;
+      }
+
+      void merge(IntHistogram left, IntHistogram right)
+      {
+         counts = add(left.counts, right.counts);
+      }
+   }
+
+   private static class LongHistogram extends RangeTask<LongHistogram>
+   {
+      private final long[] values;
+      private final Bins bins;
+      long[] counts;
+
+      LongHistogram(long[] values, int from, int to, int threshold, Bins bins)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.bins = bins;
+      }
+
+      LongHistogram create(int from, int to)
+      {
+         return new LongHistogram(values, from, to, threshold, bins);
+      }
+
+      void leaf()
+      {
+         long[] c = new long[bins.size];
+         for (int i = from; i < to; i++)
+         {
+            int b = bins.indexOf(values[i]);
+            if (b >= 0) c[b]++;
+         }
+         counts = c;
+      }
+
+      void merge(LongHistogram left, LongHistogram right)
+      {
+         counts = add(left.counts, right.counts);
+      }
+   }
+
+   private static class DoubleHistogram extends RangeTask<DoubleHistogram>
+   {
+      private final double[] values;
+      private final Bins bins;
+      long[] counts;
+
+      DoubleHistogram(double[] values, int from, int to, int threshold, Bins bins)
+      {
+         super(from, to, threshold);
+         this.values = values;
+         this.bins = bins;
+      }
+
+      DoubleHistogram create(int from, int to)
+      {
+         return new DoubleHistogram(values, from, to, threshold, bins);
+      }
+
+      void leaf()
+      {
+         long[] c = new long[bins.size];
+         for (int i = from; i < to; i++)
+         {
+            int b = bins.indexOf(values[i]);
+            if (b >= 0) c[b]++;
+         }
+         counts = c;
+      }
+
+      void merge(DoubleHistogram left, DoubleHistogram right)
+      {
+         counts = add(left.counts, right.counts);
+      }
+   }
+
+   /**
+    * Adds the second array into the first one and returns the first one.
+    */
+   private static long[] add(long[] into, long[] other)
+   {
+      for (int i = 0; i < into.length; i++)
+         into[i] += other[i];
+      return into;
+   }
+}
@@ -0,0 +1,782 @@
+package cn.staynoob.trap.java.corejava.v1ch14.forkJoin;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A parallel merge sort for arrays. The quicksort in {@code SynchronizerSpec} copies every
+ * partition into two new lists; this one sorts in place, with a single work array of the size of
+ * the range that the two halves of each merge are read from. Ranges up to
+ * {@link ParallelArrays#threshold} are sorted sequentially, and ranges of
+ * {@link #INSERTION_SORT_THRESHOLD} elements or less by insertion sort.
+ * <p>
+ * Merges of long runs are split as well: the longer run is cut in the middle, the matching
+ * position in the shorter run is found by binary search, and both parts are merged in parallel.
+ * Without that, the final merge would run on a single thread.
+ * <p>
+ * Sorting objects is stable. Doubles are ordered like {@link Double#compare}, as in
+ * {@link Arrays#sort(double[])}.
+ */
+public final class ParallelSort
+{
+   /**
+    * Ranges of this many elements or less are sorted by insertion sort.
+    */
+   public static final int INSERTION_SORT_THRESHOLD = 32;
+
+   private ParallelSort()
+   {
+   }
+
+   // int
+
+   public static void sort(int[] a)
+   {
+      sort(ForkJoinPool.commonPool(), a, 0, a.length);
+   }
+
+   public static void sort(ForkJoinPool pool, int[] a)
+   {
+      sort(pool, a, 0, a.length);
+   }
+
+   /**
+    * Sorts a range of an array.
+    * @param pool the pool that runs the sort
+    * @param a the array
+    * @param from the first index of the range
+    * @param to the index after the last index of the range
+    */
+   public static void sort(ForkJoinPool pool, int[] a, int from, int to)
+   {
+      rangeCheck(a.length, from, to);
+      int n = to - from;
+      if (n <= INSERTION_SORT_THRESHOLD)
+         insertionSort(a, from, to);
+      else
+         pool.invoke(new IntSort(a, new int[n], from, from, to, false,
+            ParallelArrays.threshold(pool, n)));
+   }
+
+   // long
+
+   public static void sort(long[] a)
+   {
+      sort(ForkJoinPool.commonPool(), a, 0, a.length);
+   }
+
+   public static void sort(ForkJoinPool pool, long[] a)
+   {
+      sort(pool, a, 0, a.length);
+   }
+
+   public static void sort(ForkJoinPool pool, long[] a, int from, int to)
+   {
+      rangeCheck(a.length, from, to);
+      int n = to - from;
+      if (n <= INSERTION_SORT_THRESHOLD)
+         insertionSort(a, from, to);
+      else
+         pool.invoke(new LongSort(a, new long[n], from, from, to, false,
+            ParallelArrays.threshold(pool, n)));
+   }
+
+   // double
+
+   public static void sort(double[] a)
+   {
+      sort(ForkJoinPool.commonPool(), a, 0, a.length);
+   }
+
+   public static void sort(ForkJoinPool pool, double[] a)
+   {
+      sort(pool, a, 0, a.length);
+   }
+
+   public static void sort(ForkJoinPool pool, double[] a, int from, int to)
+   {
+      rangeCheck(a.length, from, to);
+      int n = to - from;
+      if (n <= INSERTION_SORT_THRESHOLD)
+         insertionSort(a, from, to);
+      else
+         pool.invoke(new DoubleSort(a, new double[n], from, from, to, false,
+            ParallelArrays.threshold(pool, n)));
+   }
+
+   // objects
+
+   public static <T extends Comparable<? super T>> void sort(T[] a)
+   {
+      sort(ForkJoinPool.commonPool(), a, 0, a.length, Comparator.naturalOrder());
+   }
+
+   public static <T> void sort(T[] a, Comparator<? super T> comparator)
+   {
+      sort(ForkJoinPool.commonPool(), a, 0, a.length, comparator);
+   }
+
+   public static <T> void sort(ForkJoinPool pool, T[] a, Comparator<? super T> comparator)
+   {
+      sort(pool, a, 0, a.length, comparator);
+   }
+
+   /**
+    * Sorts a range of an array. Equal elements keep their order.
+    * @param pool the pool that runs the sort
+    * @param a the array
+    * @param from the first index of the range
+    * @param to the index after the last index of the range
+    * @param comparator the order of the elements
+    */
+   @SuppressWarnings("unchecked")
+   public static <T> void sort(ForkJoinPool pool, T[] a, int from, int to,
+      Comparator<? super T> comparator)
+   {
+      rangeCheck(a.length, from, to);
+      Comparator<Object> c = (Comparator<Object>) comparator;
+      int n = to - from;
+      if (n <= INSERTION_SORT_THRESHOLD)
+         insertionSort(a, from, to, c);
+      else
+         pool.invoke(new ObjectSort(a, new Object[n], from, from, to, false,
+            ParallelArrays.threshold(pool, n), c));
+   }
+
+   private static void rangeCheck(int length, int from, int to)
+   {
+      if (from > to) throw new IllegalArgumentException("from(" + from + ") > to(" + to + ")");
+      if (from < 0) throw new ArrayIndexOutOfBoundsException(from);
+      if (to > length) throw new ArrayIndexOutOfBoundsException(to);
+   }
+
+   /*
+    * All sorts below work the same way. The range [lo, hi) of a is sorted either back into a or
+    * into the work array w, where index i of a corresponds to index i - base of w. The halves are
+    * sorted into the other array, so that each merge reads one array and writes the other, and
+    * nothing needs to be copied back.
+    */
+
+   private static class IntSort extends RecursiveAction
+   {
+      private final int[] a;
+      private final int[] w;
+      private final int base;
+      private final int lo;
+      private final int hi;
+      private final boolean intoWork;
+      private final int threshold;
+
+      IntSort(int[] a, int[] w, int base, int lo, int hi, boolean intoWork, int threshold)
+      {
+         this.a = a;
+         this.w = w;
+         this.base = base;
+         this.lo = lo;
+         this.hi = hi;
+         this.intoWork = intoWork;
+         this.threshold = threshold;
+      }
+
+      protected void compute()
+      {
+         if (hi - lo <= threshold)
+         {
+            sort(a, w, base, lo, hi, intoWork);
+            return;
+         }
+         int mid = (lo + hi) >>> 1;
+         invokeAll(new IntSort(a, w, base, lo, mid, !intoWork, threshold),
+            new IntSort(a, w, base, mid, hi, !intoWork, threshold));
+         if (intoWork)
+            new IntMerge(a, lo, mid, mid, hi, w, lo - base, threshold).invoke();
+         else
+            new IntMerge(w, lo - base, mid - base, mid - base, hi - base, a, lo, threshold).invoke();
+      }
+   }
+
+   private static class IntMerge extends RecursiveAction
+   {
+      private final int[] src;
+      private final int lo1;
+      private final int hi1;
+      private final int lo2;
+      private final int hi2;
+      private final int[] dst;
+      private final int to;
+      private final int threshold;
+
+      IntMerge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int to, int threshold)
+      {
+         this.src = src;
+         this.lo1 = lo1;
+         this.hi1 = hi1;
+         this.lo2 = lo2;
+         this.hi2 = hi2;
+         this.dst = dst;
+         this.to = to;
+         this.threshold = threshold;
+      }
+
+      protected void compute()
+      {
+         if (hi1 - lo1 + hi2 - lo2 <= threshold)
+         {
+            merge(src, lo1, hi1, lo2, hi2, dst, to);
+            return;
+         }
+         int mid1;
+         int mid2;
+         if (hi1 - lo1 >= hi2 - lo2)
+         {
+            mid1 = (lo1 + hi1) >>> 1;
+            mid2 = lowerBound(src, lo2, hi2, src[mid1]);
+         }
+         else
+         {
+            mid2 = (lo2 + hi2) >>> 1;
+            mid1 = upperBound(src, lo1, hi1, src[mid2]);
+         }
+         invokeAll(new IntMerge(src, lo1, mid1, lo2, mid2, dst, to, threshold),
+            new IntMerge(src, mid1, hi1, mid2, hi2, dst, to + mid1 - lo1 + mid2 - lo2, threshold));
+      }
+   }
+
+   private static void sort(int[] a, int[] w, int base, int lo, int hi, boolean intoWork)
+   {
+      if (hi - lo <= INSERTION_SORT_THRESHOLD)
+      {
+         insertionSort(a, lo, hi);
+         if (intoWork) System.arraycopy(a, lo, w, lo - base, hi - lo);
+         return;
+      }
+      int mid = (lo + hi) >>> 1;
+      sort(a, w, base, lo, mid, !intoWork);
+      sort(a, w, base, mid, hi, !intoWork);
+      if (intoWork)
+         merge(a, lo, mid, mid, hi, w, lo - base);
+      else
+         merge(w, lo - base, mid - base, mid - base, hi - base, a, lo);
+   }
+
+   private static void insertionSort(int[] a, int lo, int hi)
+   {
+      for (int i = lo + 1; i < hi; i++)
+      {
+         int x = a[i];
+         int j = i - 1;
+         while (j >= lo && x < a[j])
+         {
+            a[j + 1] = a[j];
+            j--;
+         }
+         a[j + 1] = x;
+      }
+   }
+
+   private static void merge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int to)
+   {
+      if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2])
+      {
+         while (lo1 < hi1 && lo2 < hi2)
+            dst[to++] = src[lo2] < src[lo1] ? src[lo2++] : src[lo1++];
+      }
+      // the runs are already in order, or one of them is exhausted
+      System.arraycopy(src, lo1, dst, to, hi1 - lo1);
+      System.arraycopy(src, lo2, dst, to + hi1 - lo1, hi2 - lo2);
+   }
+
+   /**
+    * Finds the first element that is not less than x.
+    */
+   private static int lowerBound(int[] a, int lo, int hi, int x)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (a[mid] < x) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+
+   /**
+    * Finds the first element that is greater than x.
+    */
+   private static int upperBound(int[] a, int lo, int hi, int x)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (a[mid] <= x) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+
+   private static class LongSort extends RecursiveAction
+   {
+      private final long[] a;
+      private final long[] w;
+      private final int base;
+      private final int lo;
+      private final int hi;
+      private final boolean intoWork;
+      private final int threshold;
+
+      LongSort(long[] a, long[] w, int base, int lo, int hi, boolean intoWork, int threshold)
+      {
+         this.a = a;
+         this.w = w;
+         this.base = base;
+         this.lo = lo;
+         this.hi = hi;
+         this.intoWork = intoWork;
+         this.threshold = threshold;
+      }
+
+      protected void compute()
+      {
+         if (hi - lo <= threshold)
+         {
+            sort(a, w, base, lo, hi, intoWork);
+            return;
+         }
+         int mid = (lo + hi) >>> 1;
+         invokeAll(new LongSort(a, w, base, lo, mid, !intoWork, threshold),
+            new LongSort(a, w, base, mid, hi, !intoWork, threshold));
+         if (intoWork)
+            new LongMerge(a, lo, mid, mid, hi, w, lo - base, threshold).invoke();
+         else
+            new LongMerge(w, lo - base, mid - base, mid - base, hi - base, a, lo, threshold).invoke();
+      }
+   }
+
+   private static class LongMerge extends RecursiveAction
+   {
+      private final long[] src;
+      private final int lo1;
+      private final int hi1;
+      private final int lo2;
+      private final int hi2;
+      private final long[] dst;
+      private final int to;
+      private final int threshold;
+
+      LongMerge(long[] src, int lo1, int hi1, int lo2, int hi2, long[] dst, int to, int threshold)
+      {
+         this.src = src;
+         this.lo1 = lo1;
+         this.hi1 = hi1;
+         this.lo2 = lo2;
+         this.hi2 = hi2;
+         this.dst = dst;
+         this.to = to;
+         this.threshold = threshold;
+      }
+
+      protected void compute()
+      {
+         if (hi1 - lo1 + hi2 - lo2 <= threshold)
+         {
+            merge(src, lo1, hi1, lo2, hi2, dst, to);
+            return;
+         }
+         int mid1;
+         int mid2;
+         if (hi1 - lo1 >= hi2 - lo2)
+         {
+            mid1 = (lo1 + hi1) >>> 1;
+            mid2 = lowerBound(src, lo2, hi2, src[mid1]);
+         }
+         else
+         {
+            mid2 = (lo2 + hi2) >>> 1;
+            mid1 = upperBound(src, lo1, hi1, src[mid2]);
+         }
+         invokeAll(new LongMerge(src, lo1, mid1, lo2, mid2, dst, to, threshold),
+            new LongMerge(src, mid1, hi1, mid2, hi2, dst, to + mid1 - lo1 + mid2 - lo2, threshold));
+      }
+   }
+
+   private static void sort(long[] a, long[] w, int base, int lo, int hi, boolean intoWork)
+   {
+      if (hi - lo <= INSERTION_SORT_THRESHOLD)
+      {
+         insertionSort(a, lo, hi);
+         if (intoWork) System.arraycopy(a, lo, w, lo - base, hi - lo);
+         return;
+      }
+      int mid = (lo + hi) >>> 1;
+      sort(a, w, base, lo, mid, !intoWork);
+      sort(a, w, base, mid, hi, !intoWork);
+      if (intoWork)
+         merge(a, lo, mid, mid, hi, w, lo - base);
+      else
+         merge(w, lo - base, mid - base, mid - base, hi - base, a, lo);
+   }
+
+   private static void insertionSort(long[] a, int lo, int hi)
+   {
+      for (int i = lo + 1; i < hi; i++)
+      {
+         long x = a[i];
+         int j = i - 1;
+         while (j >= lo && x < a[j])
+         {
+            a[j + 1] = a[j];
+            j--;
+         }
+         a[j + 1] = x;
+      }
+   }
+
+   private static void merge(long[] src, int lo1, int hi1, int lo2, int hi2, long[] dst, int to)
+   {
+      if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2])
+      {
+         while (lo1 < hi1 && lo2 < hi2)
+            dst[to++] = src[lo2] < src[lo1] ? src[lo2++] : src[lo1++];
+      }
+      System.arraycopy(src, lo1, dst, to, hi1 - lo1);
+      System.arraycopy(src, lo2, dst, to + hi1 - lo1, hi2 - lo2);
+   }
+
+   private static int lowerBound(long[] a, int lo, int hi, long x)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (a[mid] < x) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+
+   private static int upperBound(long[] a, int lo, int hi, long x)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (a[mid] <= x) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+
+   private static class DoubleSort extends RecursiveAction
+   {
+      private final double[] a;
+      private final double[] w;
+      private final int base;
+      private final int lo;
+      private final int hi;
+      private final boolean intoWork;
+      private final int threshold;
+
+      DoubleSort(double[] a, double[] w, int base, int lo, int hi, boolean intoWork, int threshold)
+      {
+         this.a = a;
+         this.w = w;
+         this.base = base;
+         this.lo = lo;
+         this.hi = hi;
+         this.intoWork = intoWork;
+         this.threshold = threshold;
+      }
+
+      protected void compute()
+      {
+         if (hi - lo <= threshold)
+         {
+            sort(a, w, base, lo, hi, intoWork);
+            return;
+         }
+         int mid = (lo + hi) >>> 1;
+         invokeAll(new DoubleSort(a, w, base, lo, mid, !intoWork, threshold),
+            new DoubleSort(a, w, base, mid, hi, !intoWork, threshold));
+         if (intoWork)
+            new DoubleMerge(a, lo, mid, mid, hi, w, lo - base, threshold).invoke();
+         else
+            new DoubleMerge(w, lo - base, mid - base, mid - base, hi - base, a, lo, threshold)
+               .invoke();
+      }
+   }
+
+   private static class DoubleMerge extends RecursiveAction
+   {
+      private final double[] src;
+      private final int lo1;
+      private final int hi1;
+      private final int lo2;
+      private final int hi2;
+      private final double[] dst;
+      private final int to;
+      private final int threshold;
+
+      DoubleMerge(double[] src, int lo1, int hi1, int lo2, int hi2, double[] dst, int to,
+         int threshold)
+      {
+         this.src = src;
+         this.lo1 = lo1;
+         this.hi1 = hi1;
+         this.lo2 = lo2;
+         this.hi2 = hi2;
+         this.dst = dst;
+         this.to = to;
+         this.threshold = threshold;
+      }
+
+      protected void compute()
+      {
+         if (hi1 - lo1 + hi2 - lo2 <= threshold)
+         {
+            merge(src, lo1, hi1, lo2, hi2, dst, to);
+            return;
+         }
+         int mid1;
+         int mid2;
+         if (hi1 - lo1 >= hi2 - lo2)
+         {
+            mid1 = (lo1 + hi1) >>> 1;
+            mid2 = lowerBound(src, lo2, hi2, src[mid1]);
+         }
+         else
+         {
+            mid2 = (lo2 + hi2) >>> 1;
+            mid1 = upperBound(src, lo1, hi1, src[mid2]);
+         }
+         invokeAll(new DoubleMerge(src, lo1, mid1, lo2, mid2, dst, to, threshold),
+            new DoubleMerge(src, mid1, hi1, mid2, hi2, dst, to + mid1 - lo1 + mid2 - lo2,
+               threshold));
+      }
+   }
+
+   private static void sort(double[] a, double[] w, int base, int lo, int hi, boolean intoWork)
+   {
+      if (hi - lo <= INSERTION_SORT_THRESHOLD)
+      {
+         insertionSort(a, lo, hi);
+         if (intoWork) System.arraycopy(a, lo, w, lo - base, hi - lo);
+         return;
+      }
+      int mid = (lo + hi) >>> 1;
+      sort(a, w, base, lo, mid, !intoWork);
+      sort(a, w, base, mid, hi, !intoWork);
+      if (intoWork)
+         merge(a, lo, mid, mid, hi, w, lo - base);
+      else
+         merge(w, lo - base, mid - base, mid - base, hi - base, a, lo);
+   }
+
+   private static void insertionSort(double[] a, int lo, int hi)
+   {
+      for (int i = lo + 1; i < hi; i++)
+      {
+         double x = a[i];
+         int j = i - 1;
+         while (j >= lo && Double.compare(x, a[j]) < 0)
+         {
+            a[j + 1] = a[j];
+            j--;
+         }
+         a[j + 1] = x;
+      }
+   }
+
+   private static void merge(double[] src, int lo1, int hi1, int lo2, int hi2, double[] dst,
+      int to)
+   {
+      if (lo1 < hi1 && lo2 < hi2 && Double.compare(src[hi1 - 1], src[lo2]) > 0)
+      {
+         while (lo1 < hi1 && lo2 < hi2)
+            dst[to++] = Double.compare(src[lo2], src[lo1]) < 0 ? src[lo2++] : src[lo1++];
+      }
+      System.arraycopy(src, lo1, dst, to, hi1 - lo1);
+      System.arraycopy(src, lo2, dst, to + hi1 - lo1, hi2 - lo2);
+   }
+
+   private static int lowerBound(double[] a, int lo, int hi, double x)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (Double.compare(a[mid], x) < 0) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+
+   private static int upperBound(double[] a, int lo, int hi, double x)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (Double.compare(a[mid], x) <= 0) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+
+   private static class ObjectSort extends RecursiveAction
+   {
+      private final Object[] a;
+      private final Object[] w;
+      private final int base;
+      private final int lo;
+      private final int hi;
+      private final boolean intoWork;
+      private final int threshold;
+      private final Comparator<Object> c;
+
+      ObjectSort(Object[] a, Object[] w, int base, int lo, int hi, boolean intoWork, int threshold,
+         Comparator<Object> c)
+      {
+         this.a = a;
+         this.w = w;
+         this.base = base;
+         this.lo = lo;
+         this.hi = hi;
+         this.intoWork = intoWork;
+         this.threshold = threshold;
+         this.c = c;
+      }
+
+      protected void compute()
+      {
+         if (hi - lo <= threshold)
+         {
+            sort(a, w, base, lo, hi, intoWork, c);
+            return;
+         }
+         int mid = (lo + hi) >>> 1;
+         invokeAll(new ObjectSort(a, w, base, lo, mid, !intoWork, threshold, c),
+            new ObjectSort(a, w, base, mid, hi, !intoWork, threshold, c));
+         if (intoWork)
+            new ObjectMerge(a, lo, mid, mid, hi, w, lo - base, threshold, c).invoke();
+         else
+            new ObjectMerge(w, lo - base, mid - base, mid - base, hi - base, a, lo, threshold, c)
+               .invoke();
+      }
+   }
+
+   private static class ObjectMerge extends RecursiveAction
+   {
+      private final Object[] src;
+      private final int lo1;
+      private final int hi1;
+      private final int lo2;
+      private final int hi2;
+      private final Object[] dst;
+      private final int to;
+      private final int threshold;
+      private final Comparator<Object> c;
+
+      ObjectMerge(Object[] src, int lo1, int hi1, int lo2, int hi2, Object[] dst, int to,
+         int threshold, Comparator<Object> c)
+      {
+         this.src = src;
+         this.lo1 = lo1;
+         this.hi1 = hi1;
+         this.lo2 = lo2;
+         this.hi2 = hi2;
+         this.dst = dst;
+         this.to = to;
+         this.threshold = threshold;
+         this.c = c;
+      }
+
+      protected void compute()
+      {
+         if (hi1 - lo1 + hi2 - lo2 <= threshold)
+         {
+            merge(src, lo1, hi1, lo2, hi2, dst, to, c);
+            return;
+         }
+         // elements of the first run that equal the split element stay in front of those of
+         // the second run, which keeps the sort stable
+         int mid1;
+         int mid2;
+         if (hi1 - lo1 >= hi2 - lo2)
+         {
+            mid1 = (lo1 + hi1) >>> 1;
+            mid2 = lowerBound(src, lo2, hi2, src[mid1], c);
+         }
+         else
+         {
+            mid2 = (lo2 + hi2) >>> 1;
+            mid1 = upperBound(src, lo1, hi1, src[mid2], c);
+         }
+         invokeAll(new ObjectMerge(src, lo1, mid1, lo2, mid2, dst, to, threshold, c),
+            new ObjectMerge(src, mid1, hi1, mid2, hi2, dst, to + mid1 - lo1 + mid2 - lo2,
+               threshold, c));
+      }
+   }
+
+   private static void sort(Object[] a, Object[] w, int base, int lo, int hi, boolean intoWork,
+      Comparator<Object> c)
+   {
+      if (hi - lo <= INSERTION_SORT_THRESHOLD)
+      {
+         insertionSort(a, lo, hi, c);
+         if (intoWork) System.arraycopy(a, lo, w, lo - base, hi - lo);
+         return;
+      }
+      int mid = (lo + hi) >>> 1;
+      sort(a, w, base, lo, mid, !intoWork, c);
+      sort(a, w, base, mid, hi, !intoWork, c);
+      if (intoWork)
+         merge(a, lo, mid, mid, hi, w, lo - base, c);
+      else
+         merge(w, lo - base, mid - base, mid - base, hi - base, a, lo, c);
+   }
+
+   private static void insertionSort(Object[] a, int lo, int hi, Comparator<Object> c)
+   {
+      for (int i = lo + 1; i < hi; i++)
+      {
+         Object x = a[i];
+         int j = i - 1;
+         while (j >= lo && c.compare(x, a[j]) < 0)
+         {
+            a[j + 1] = a[j];
+            j--;
+         }
+         a[j + 1] = x;
+      }
+   }
+
+   private static void merge(Object[] src, int lo1, int hi1, int lo2, int hi2, Object[] dst,
+      int to, Comparator<Object> c)
+   {
+      if (lo1 < hi1 && lo2 < hi2 && c.compare(src[hi1 - 1], src[lo2]) > 0)
+      {
+         while (lo1 < hi1 && lo2 < hi2)
+            dst[to++] = c.compare(src[lo2], src[lo1]) < 0 ? src[lo2++] : src[lo1++];
+      }
+      System.arraycopy(src, lo1, dst, to, hi1 - lo1);
+      System.arraycopy(src, lo2, dst, to + hi1 - lo1, hi2 - lo2);
+   }
+
+   private static int lowerBound(Object[] a, int lo, int hi, Object x, Comparator<Object> c)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (c.compare(a[mid], x) < 0) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+
+   private static int upperBound(Object[] a, int lo, int hi, Object x, Comparator<Object> c)
+   {
+      while (lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if (c.compare(a[mid], x) <= 0) lo = mid + 1;
+         else hi = mid;
+      }
+      return lo;
+   }
+}
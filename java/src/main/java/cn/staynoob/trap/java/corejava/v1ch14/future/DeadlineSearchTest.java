@@ -0,0 +1,47 @@
+package cn.staynoob.trap.java.corejava.v1ch14.future;
+
+import cn.staynoob.trap.java.corejava.v1ch14.search.*;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Searches like {@link FutureTest}, but with an {@link AsyncSearch}: a fixed number of threads
+ * that never wait for each other, hits that are printed as they are found, and a deadline.
+ */
+public class DeadlineSearchTest
+{
+   public static void main(String[] args)
+   {
+      Scanner in = new Scanner(System.in);
+      System.out.print("Enter base directory (e.g. /usr/local/jdk5.0/src): ");
+      String directory = in.nextLine();
+      System.out.print("Enter keyword (e.g. volatile): ");
+      String keyword = in.nextLine();
+      System.out.print("Enter deadline in seconds (e.g. 10): ");
+      long seconds = in.nextLong();
+
+      ExecutorService pool = Executors.newFixedThreadPool(
+         Runtime.getRuntime().availableProcessors());
+      AsyncSearch search = new AsyncSearch(new KeywordSearch(keyword), pool);
+
+      long start = System.nanoTime();
+      AtomicBoolean first = new AtomicBoolean(true);
+      CompletableFuture<AsyncSearch.SearchResult> result = search.search(Paths.get(directory),
+         hit ->
+         {
+            if (first.getAndSet(false))
+               System.err.printf("first hit after %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            System.out.println(hit);
+         }, seconds, TimeUnit.SECONDS);
+      result.whenComplete((r, e) ->
+      {
+         if (e == null) System.out.println(r);
+         else if (e instanceof TimeoutException) System.out.println("Deadline passed.");
+         else e.printStackTrace();
+         pool.shutdown();
+      });
+   }
+}
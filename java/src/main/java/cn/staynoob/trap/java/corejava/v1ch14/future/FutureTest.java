@@ -1,5 +1,7 @@
 package cn.staynoob.trap.java.corejava.v1ch14.future;
 
+import cn.staynoob.trap.java.corejava.v1ch14.search.*;
+
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
@@ -43,6 +45,7 @@ class MatchCounter implements Callable<Integer>
 {
    private File directory;
    private String keyword;
+   private KeywordSearch searcher;
    private int count;
 
    /**
@@ -54,6 +57,7 @@ class MatchCounter implements Callable<Integer>
    {
       this.directory = directory;
       this.keyword = keyword;
+      this.searcher = new KeywordSearch(keyword);
    }
 
    public Integer call()
@@ -103,16 +107,7 @@ class MatchCounter implements Callable<Integer>
    {
       try
       {
-         try (Scanner in = new Scanner(file))
-         {
-            boolean found = false;
-            while (!found && in.hasNextLine())
-            {
-               String line = in.nextLine();
-               if (line.contains(keyword)) found = true;
-            }
-            return found;
-         }
+         return searcher.contains(file.toPath());
       }
       catch (IOException e)
       {
@@ -0,0 +1,246 @@
+package cn.staynoob.trap.java.corejava.v1ch14.search;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Searches a directory tree without blocking the caller. Every directory is listed by its own
+ * task, the files of a directory are searched by another one, and the results are combined with
+ * {@code thenCombine} on the way back up, so no thread ever waits for another.
+ * <p>
+ * Hits are passed to a callback as soon as they are found, long before the returned future
+ * completes. Cancelling that future, or letting it run past its deadline, stops the tasks that
+ * haven't started yet and the file loops of those that are running.
+ */
+public class AsyncSearch
+{
+   private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+      r ->
+      {
+         Thread t = new Thread(r, "AsyncSearch-timer");
+         t.setDaemon(true);
+         return t;
+      });
+
+   private final KeywordSearch search;
+   private final Executor executor;
+
+   /**
+    * Constructs an AsyncSearch.
+    * @param search the keyword search to apply to every file
+    * @param executor runs the directory and file tasks
+    */
+   public AsyncSearch(KeywordSearch search, Executor executor)
+   {
+      this.search = search;
+      this.executor = executor;
+   }
+
+   /**
+    * A line that contains the keyword.
+    */
+   public static class Hit
+   {
+      private final Path file;
+      private final long lineNumber;
+      private final String line;
+
+      Hit(Path file, long lineNumber, String line)
+      {
+         this.file = file;
+         this.lineNumber = lineNumber;
+         this.line = line;
+      }
+
+      public Path getFile()
+      {
+         return file;
+      }
+
+      public long getLineNumber()
+      {
+         return lineNumber;
+      }
+
+      public String getLine()
+      {
+         return line;
+      }
+
+      public String toString()
+      {
+         return file + ":" + lineNumber + ":" + line;
+      }
+   }
+
+   /**
+    * The totals of a search.
+    */
+   public static class SearchResult
+   {
+      static final SearchResult EMPTY = new SearchResult(0, 0, 0);
+
+      private final long searchedFiles;
+      private final long matchingFiles;
+      private final long matchingLines;
+
+      SearchResult(long searchedFiles, long matchingFiles, long matchingLines)
+      {
+         this.searchedFiles = searchedFiles;
+         this.matchingFiles = matchingFiles;
+         this.matchingLines = matchingLines;
+      }
+
+      SearchResult plus(SearchResult other)
+      {
+         return new SearchResult(searchedFiles + other.searchedFiles,
+            matchingFiles + other.matchingFiles, matchingLines + other.matchingLines);
+      }
+
+      public long getSearchedFiles()
+      {
+         return searchedFiles;
+      }
+
+      public long getMatchingFiles()
+      {
+         return matchingFiles;
+      }
+
+      public long getMatchingLines()
+      {
+         return matchingLines;
+      }
+
+      public String toString()
+      {
+         return String.format("%d matching lines in %d of %d files", matchingLines, matchingFiles,
+            searchedFiles);
+      }
+   }
+
+   /**
+    * Starts searching a directory and its subdirectories.
+    * @param root the directory in which to start
+    * @param onHit receives every matching line, on the thread that found it
+    * @return completes with the totals once every file has been searched
+    */
+   public CompletableFuture<SearchResult> search(Path root, Consumer<? super Hit> onHit)
+   {
+      Context context = new Context(onHit);
+      CompletableFuture<SearchResult> result = new CompletableFuture<>();
+      // cancelling or timing out the caller's future stops the whole tree
+      result.whenComplete((r, e) -> context.cancelled = true);
+      searchDirectory(root, context).whenComplete((r, e) ->
+      {
+         if (e == null) result.complete(r);
+         else result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+      });
+      return result;
+   }
+
+   /**
+    * Starts a search that must finish within a deadline.
+    * @param root the directory in which to start
+    * @param onHit receives every matching line, on the thread that found it
+    * @param timeout the time the search may take
+    * @param unit the unit of the timeout
+    * @return completes with the totals, or with a {@link TimeoutException} if the deadline passed
+    */
+   public CompletableFuture<SearchResult> search(Path root, Consumer<? super Hit> onHit,
+      long timeout, TimeUnit unit)
+   {
+      CompletableFuture<SearchResult> result = search(root, onHit);
+      ScheduledFuture<?> deadline = timer.schedule(
+         () -> result.completeExceptionally(new TimeoutException()), timeout, unit);
+      result.whenComplete((r, e) -> deadline.cancel(false));
+      return result;
+   }
+
+   /**
+    * The state shared by all tasks of one search.
+    */
+   private static class Context
+   {
+      final Consumer<? super Hit> onHit;
+      volatile boolean cancelled;
+
+      Context(Consumer<? super Hit> onHit)
+      {
+         this.onHit = onHit;
+      }
+   }
+
+   private CompletableFuture<SearchResult> searchDirectory(Path directory, Context context)
+   {
+      return CompletableFuture.supplyAsync(() -> list(directory, context), executor)
+         .thenCompose(files ->
+         {
+            List<Path> regularFiles = new ArrayList<>();
+            CompletableFuture<SearchResult> result = CompletableFuture.completedFuture(
+               SearchResult.EMPTY);
+            for (Path file : files)
+            {
+               if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS))
+                  result = result.thenCombine(searchDirectory(file, context), SearchResult::plus);
+               else
+                  regularFiles.add(file);
+            }
+            if (regularFiles.isEmpty()) return result;
+            return result.thenCombine(
+               CompletableFuture.supplyAsync(() -> searchFiles(regularFiles, context), executor),
+               SearchResult::plus);
+         });
+   }
+
+   private static List<Path> list(Path directory, Context context)
+   {
+      List<Path> files = new ArrayList<>();
+      if (context.cancelled) return files;
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory,
+         entry -> !Files.isSymbolicLink(entry)))
+      {
+         for (Path entry : entries)
+            files.add(entry);
+      }
+      catch (IOException | DirectoryIteratorException e)
+      {
+         // an unreadable directory counts as empty, as with File.listFiles
+      }
+      return files;
+   }
+
+   private SearchResult searchFiles(List<Path> files, Context context)
+   {
+      long searched = 0;
+      long matchingFiles = 0;
+      long matchingLines = 0;
+      for (Path file : files)
+      {
+         if (context.cancelled) break;
+         try
+         {
+            if (!Files.readAttributes(file, BasicFileAttributes.class).isRegularFile()) continue;
+            int lines = search.search(file, (lineNumber, line) ->
+            {
+               if (!context.cancelled) context.onHit.accept(new Hit(file, lineNumber, line));
+            });
+            searched++;
+            if (lines > 0)
+            {
+               matchingFiles++;
+               matchingLines += lines;
+            }
+         }
+         catch (IOException e)
+         {
+            // an unreadable file doesn't match, as in MatchCounter.search
+         }
+      }
+      return new SearchResult(searched, matchingFiles, matchingLines);
+   }
+}
@@ -0,0 +1,257 @@
+package cn.staynoob.trap.java.corejava.v1ch14.search;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Walks a directory tree on a fork-join pool. Unlike the thread-per-directory and cached pool
+ * versions of {@code MatchCounter}, the number of threads is fixed by the pool, and the number of
+ * directories and files that are open at the same time is capped by semaphores. Small files are
+ * handed out in batches, so that a directory with many tiny files doesn't turn into as many tasks.
+ */
+public class DirectoryCrawler
+{
+   /**
+    * Checks a single regular file.
+    */
+   public interface FileCheck
+   {
+      /**
+       * @param file the file to check
+       * @return true if the file should be counted
+       */
+      boolean test(Path file) throws IOException;
+   }
+
+   private final ForkJoinPool pool;
+   private final Semaphore openDirectories;
+   private final Semaphore openFiles;
+   private final long smallFileSize;
+   private final int batchSize;
+
+   private final LongAdder queuedDirectories = new LongAdder();
+   private final LongAdder visitedFiles = new LongAdder();
+   private volatile long startNanos;
+
+   /**
+    * Constructs a crawler that opens as many directories and files at once as the pool has
+    * workers, and batches files up to 64KB in groups of 64.
+    * @param pool the pool that runs the crawl
+    */
+   public DirectoryCrawler(ForkJoinPool pool)
+   {
+      this(pool, pool.getParallelism(), pool.getParallelism(), 64 * 1024, 64);
+   }
+
+   /**
+    * Constructs a DirectoryCrawler.
+    * @param pool the pool that runs the crawl
+    * @param maxOpenDirectories the maximum number of directories that are listed at once
+    * @param maxOpenFiles the maximum number of files that are checked at once
+    * @param smallFileSize files up to this size are checked in batches
+    * @param batchSize the number of small files per task
+    */
+   public DirectoryCrawler(ForkJoinPool pool, int maxOpenDirectories, int maxOpenFiles,
+      long smallFileSize, int batchSize)
+   {
+      if (batchSize <= 0) throw new IllegalArgumentException(batchSize + " <= 0");
+      this.pool = pool;
+      this.openDirectories = new Semaphore(maxOpenDirectories);
+      this.openFiles = new Semaphore(maxOpenFiles);
+      this.smallFileSize = smallFileSize;
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Counts the files in a directory and its subdirectories that pass a check. Symbolic links
+    * are not followed, and directories that cannot be read are skipped.
+    * @param root the directory in which to start
+    * @param check the check to apply to every regular file
+    * @return the number of files that passed the check
+    */
+   public long count(Path root, FileCheck check)
+   {
+      startNanos = System.nanoTime();
+      queuedDirectories.increment();
+      return pool.invoke(new DirectoryTask(root, check));
+   }
+
+   /**
+    * Takes a snapshot of the progress of the current crawl. May be called from any thread.
+    */
+   public Stats stats()
+   {
+      return new Stats(queuedDirectories.sum(), pool.getActiveThreadCount(), visitedFiles.sum(),
+         System.nanoTime() - startNanos);
+   }
+
+   /**
+    * The progress of a crawl.
+    */
+   public static class Stats
+   {
+      private final long queuedDirectories;
+      private final int activeWorkers;
+      private final long visitedFiles;
+      private final long elapsedNanos;
+
+      Stats(long queuedDirectories, int activeWorkers, long visitedFiles, long elapsedNanos)
+      {
+         this.queuedDirectories = queuedDirectories;
+         this.activeWorkers = activeWorkers;
+         this.visitedFiles = visitedFiles;
+         this.elapsedNanos = elapsedNanos;
+      }
+
+      /**
+       * Gets the number of directories that were found but not listed yet.
+       */
+      public long getQueuedDirectories()
+      {
+         return queuedDirectories;
+      }
+
+      /**
+       * Gets the number of pool threads that are currently busy.
+       */
+      public int getActiveWorkers()
+      {
+         return activeWorkers;
+      }
+
+      public long getVisitedFiles()
+      {
+         return visitedFiles;
+      }
+
+      /**
+       * Gets the average rate since the crawl started.
+       */
+      public double getFilesPerSecond()
+      {
+         return elapsedNanos == 0 ? 0 : visitedFiles * 1e9 / elapsedNanos;
+      }
+
+      public String toString()
+      {
+         return String.format("queued dirs=%d, active workers=%d, files=%d, files/sec=%.0f",
+            queuedDirectories, activeWorkers, visitedFiles, getFilesPerSecond());
+      }
+   }
+
+   /**
+    * Lists one directory, forks a task per subdirectory and per batch of files, and checks the
+    * last partial batch itself.
+    */
+   private class DirectoryTask extends RecursiveTask<Long>
+   {
+      private final Path directory;
+      private final FileCheck check;
+
+      DirectoryTask(Path directory, FileCheck check)
+      {
+         this.directory = directory;
+         this.check = check;
+      }
+
+      protected Long compute()
+      {
+         queuedDirectories.decrement();
+         List<ForkJoinTask<Long>> subtasks = new ArrayList<>();
+         List<Path> batch = new ArrayList<>();
+
+         openDirectories.acquireUninterruptibly();
+         try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory))
+         {
+            for (Path entry : entries)
+            {
+               BasicFileAttributes attributes;
+               try
+               {
+                  attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                     LinkOption.NOFOLLOW_LINKS);
+               }
+               catch (IOException e)
+               {
+                  continue;
+               }
+
+               if (attributes.isDirectory())
+               {
+                  queuedDirectories.increment();
+                  subtasks.add(new DirectoryTask(entry, check).fork());
+               }
+               else if (attributes.isRegularFile())
+               {
+                  if (attributes.size() > smallFileSize)
+                     subtasks.add(new FileBatch(Collections.singletonList(entry), check).fork());
+                  else
+                  {
+                     batch.add(entry);
+                     if (batch.size() == batchSize)
+                     {
+                        subtasks.add(new FileBatch(batch, check).fork());
+                        batch = new ArrayList<>();
+                     }
+                  }
+               }
+            }
+         }
+         catch (IOException | DirectoryIteratorException e)
+         {
+            // an unreadable directory counts as empty, as with File.listFiles
+         }
+         finally
+         {
+            openDirectories.release();
+         }
+
+         long count = new FileBatch(batch, check).compute();
+         for (ForkJoinTask<Long> subtask : subtasks)
+            count += subtask.join();
+         return count;
+      }
+   }
+
+   /**
+    * Checks a group of files one after the other.
+    */
+   private class FileBatch extends RecursiveTask<Long>
+   {
+      private final List<Path> files;
+      private final FileCheck check;
+
+      FileBatch(List<Path> files, FileCheck check)
+      {
+         this.files = files;
+         this.check = check;
+      }
+
+      protected Long compute()
+      {
+         long count = 0;
+         for (Path file : files)
+         {
+            openFiles.acquireUninterruptibly();
+            try
+            {
+               if (check.test(file)) count++;
+            }
+            catch (IOException e)
+            {
+               // an unreadable file doesn't match, as in MatchCounter.search
+            }
+            finally
+            {
+               openFiles.release();
+               visitedFiles.increment();
+            }
+         }
+         return count;
+      }
+   }
+}
@@ -0,0 +1,262 @@
+package cn.staynoob.trap.java.corejava.v1ch14.search;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+/**
+ * Searches files for a keyword without turning every line into a {@code String}. Small files
+ * are read into a pooled direct buffer, larger ones are memory-mapped in windows. The keyword
+ * is matched as bytes with the Boyer-Moore-Horspool algorithm, and only the lines that contain
+ * a hit are counted and decoded.
+ * <p>
+ * The keyword is encoded with the search charset, so the charset must be one in which the same
+ * characters always encode to the same bytes (UTF-8, ISO-8859-1 and other ASCII-compatible
+ * charsets do, UTF-16 does not). Lines are separated by {@code '\n'}; a trailing
+ * {@code '\r'} is stripped from the reported line.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public class KeywordSearch
+{
+   /**
+    * Files up to this size are read into a per-thread direct buffer instead of being mapped,
+    * since setting up a mapping costs more than copying a small file.
+    */
+   public static final int BUFFER_SIZE = 256 * 1024;
+
+   /**
+    * The largest region that is mapped at once. Consecutive windows overlap by the keyword length
+    * so that no match is lost at a boundary, but a reported line that crosses a boundary is cut
+    * off there. It is still reported only once.
+    */
+   public static final int WINDOW_SIZE = 1 << 30;
+
+   private static final ThreadLocal<ByteBuffer> buffers =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+   private final int windowSize;
+   private final byte[] pattern;
+   private final int[] skip = new int[256];
+   private final Charset charset;
+
+   /**
+    * Receives the lines that contain the keyword.
+    */
+   public interface HitHandler
+   {
+      /**
+       * @param lineNumber the 1-based number of the matching line
+       * @param line the matching line, without its line terminator
+       */
+      void hit(long lineNumber, String line);
+   }
+
+   /**
+    * Constructs a search that reads files in the platform charset, as {@link java.util.Scanner}
+    * does.
+    * @param keyword the keyword to look for
+    */
+   public KeywordSearch(String keyword)
+   {
+      this(keyword, Charset.defaultCharset());
+   }
+
+   /**
+    * Constructs a KeywordSearch.
+    * @param keyword the keyword to look for
+    * @param charset the charset of the files to search
+    */
+   public KeywordSearch(String keyword, Charset charset)
+   {
+      this(keyword, charset, WINDOW_SIZE);
+   }
+
+   KeywordSearch(String keyword, Charset charset, int windowSize)
+   {
+      if (keyword.isEmpty()) throw new IllegalArgumentException("empty keyword");
+      this.windowSize = windowSize;
+      this.charset = charset;
+      pattern = keyword.getBytes(charset);
+      int m = pattern.length;
+      for (int i = 0; i < skip.length; i++)
+         skip[i] = m;
+      for (int i = 0; i < m - 1; i++)
+         skip[pattern[i] & 0xff] = m - 1 - i;
+   }
+
+   /**
+    * Checks whether a file contains the keyword. Stops at the first hit and never counts lines.
+    * @param file the file to search
+    * @return true if the keyword is contained in the file
+    */
+   public boolean contains(Path file) throws IOException
+   {
+      return search(file, null) > 0;
+   }
+
+   /**
+    * Reports every line of a file that contains the keyword.
+    * @param file the file to search
+    * @param handler receives the matching lines, or null to stop at the first hit
+    * @return the number of matching lines
+    */
+   public int search(Path file, HitHandler handler) throws IOException
+   {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+      {
+         long size = channel.size();
+         Cursor cursor = new Cursor();
+         if (size <= BUFFER_SIZE)
+         {
+            ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+               ;
+            int length = buffer.position();
+            return scan(buffer, 0, length, length, cursor, handler);
+         }
+
+         int hits = 0;
+         for (long base = 0; base < size; base += windowSize)
+         {
+            // the window owns [base, base + windowSize) but extends into the next one,
+            // so that a match starting near the end is still seen in full
+            long owned = Math.min(windowSize, size - base);
+            long mapped = Math.min(owned + pattern.length - 1, size - base);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, mapped);
+            hits += scan(buffer, base, (int) owned, (int) mapped, cursor, handler);
+            if (hits > 0 && handler == null) break;
+         }
+         return hits;
+      }
+   }
+
+   /**
+    * Reports every line of a buffer that contains the keyword.
+    * @param content the bytes between position and limit are searched
+    * @param handler receives the matching lines, or null to stop at the first hit
+    * @return the number of matching lines
+    */
+   public int search(ByteBuffer content, HitHandler handler)
+   {
+      ByteBuffer buffer = content.slice();
+      int length = buffer.limit();
+      return scan(buffer, 0, length, length, new Cursor(), handler);
+   }
+
+   /**
+    * Progress through a file. Offsets are absolute, so they stay valid across windows.
+    */
+   private static class Cursor
+   {
+      long lineNumber = 1;
+      long counted; // newlines before this offset have been added to lineNumber
+      long resume; // matches before this offset belong to an already reported line
+      long reported; // the number of the last reported line, which may go on in the next window
+   }
+
+   /**
+    * Scans one buffer.
+    * @param buffer the bytes to scan, starting at index 0
+    * @param base the file offset of index 0
+    * @param owned matches must start before this index
+    * @param limit matches and lines must end before this index
+    */
+   private int scan(ByteBuffer buffer, long base, int owned, int limit, Cursor cursor,
+      HitHandler handler)
+   {
+      int hits = 0;
+      int from = (int) Math.max(0, cursor.resume - base);
+      while (from < owned)
+      {
+         int at = indexOf(buffer, from, limit);
+         if (at < 0 || at >= owned) break;
+         if (handler == null) return 1;
+
+         cursor.lineNumber += countLines(buffer, (int) (cursor.counted - base), at);
+         cursor.counted = base + at;
+         int end = lineEnd(buffer, at + pattern.length, limit);
+         // a line that started in an earlier window may have been reported there already
+         if (cursor.lineNumber != cursor.reported)
+         {
+            hits++;
+            cursor.reported = cursor.lineNumber;
+            handler.hit(cursor.lineNumber, decode(buffer, lineStart(buffer, at), end));
+         }
+
+         // a line is reported once, no matter how often the keyword occurs in it
+         from = end + 1;
+         cursor.resume = base + from;
+      }
+      if (handler != null && cursor.counted < base + owned)
+      {
+         cursor.lineNumber += countLines(buffer, (int) (cursor.counted - base), owned);
+         cursor.counted = base + owned;
+      }
+      return hits;
+   }
+
+   /**
+    * Finds the keyword with the Boyer-Moore-Horspool algorithm.
+    * @return the index of the first match in [from, limit), or -1
+    */
+   private int indexOf(ByteBuffer buffer, int from, int limit)
+   {
+      int m = pattern.length;
+      byte last = pattern[m - 1];
+      int i = from + m - 1;
+      while (i < limit)
+      {
+         byte b = buffer.get(i);
+         if (b == last)
+         {
+            int j = m - 2;
+            int k = i - 1;
+            while (j >= 0 && buffer.get(k) == pattern[j])
+            {
+               j--;
+               k--;
+            }
+            if (j < 0) return k + 1;
+         }
+         i += skip[b & 0xff];
+      }
+      return -1;
+   }
+
+   private static int countLines(ByteBuffer buffer, int from, int to)
+   {
+      int n = 0;
+      for (int i = Math.max(from, 0); i < to; i++)
+         if (buffer.get(i) == '\n') n++;
+      return n;
+   }
+
+   private static int lineStart(ByteBuffer buffer, int at)
+   {
+      int i = at;
+      while (i > 0 && buffer.get(i - 1) != '\n')
+         i--;
+      return i;
+   }
+
+   private static int lineEnd(ByteBuffer buffer, int from, int limit)
+   {
+      int i = from;
+      while (i < limit && buffer.get(i) != '\n')
+         i++;
+      return i;
+   }
+
+   private String decode(ByteBuffer buffer, int start, int end)
+   {
+      if (end > start && buffer.get(end - 1) == '\r') end--;
+      ByteBuffer line = buffer.duplicate();
+      line.limit(end);
+      line.position(start);
+      return charset.decode(line).toString();
+   }
+}
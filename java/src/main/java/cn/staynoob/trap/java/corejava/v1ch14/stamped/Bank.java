@@ -0,0 +1,259 @@
+package cn.staynoob.trap.java.corejava.v1ch14.stamped;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A bank for read-mostly workloads. The accounts are split into segments, each guarded by a
+ * {@link StampedLock}. Transfers take the write locks of the segments they touch, in segment
+ * order. Reads first try an optimistic read, which doesn't block and isn't blocked by anything,
+ * and only fall back to read locks if a transfer got in the way.
+ * <p>
+ * {@link #snapshot()} and {@link #getTotalBalance()} see all accounts at the same point in time:
+ * they validate the stamps of every segment after reading. If that fails on two passes in a
+ * row they take the read locks of all segments and read again, releasing each segment as soon
+ * as it has been read.
+ */
+public class Bank
+{
+   /**
+    * The number of accounts per segment if none is given.
+    */
+   public static final int SEGMENT_SIZE = 1024;
+
+   private final long[] accounts;
+   private final StampedLock[] locks;
+   private final int segmentSize;
+
+   private final LongAdder optimisticReads = new LongAdder();
+   private final LongAdder lockedReads = new LongAdder();
+
+   /**
+    * Constructs a bank with segments of {@link #SEGMENT_SIZE} accounts.
+    * @param n the number of accounts
+    * @param initialBalance the initial balance for each account, in cents
+    */
+   public Bank(int n, long initialBalance)
+   {
+      this(n, initialBalance, SEGMENT_SIZE);
+   }
+
+   /**
+    * Constructs the bank.
+    * @param n the number of accounts
+    * @param initialBalance the initial balance for each account, in cents
+    * @param segmentSize the number of accounts that share a lock
+    */
+   public Bank(int n, long initialBalance, int segmentSize)
+   {
+      if (segmentSize <= 0) throw new IllegalArgumentException(segmentSize + " <= 0");
+      accounts = new long[n];
+      Arrays.fill(accounts, initialBalance);
+      this.segmentSize = segmentSize;
+      locks = new StampedLock[Math.max(1, (n + segmentSize - 1) / segmentSize)];
+      for (int i = 0; i < locks.length; i++)
+         locks[i] = new StampedLock();
+   }
+
+   /**
+    * Transfers money from one account to another.
+    * @param from the account to transfer from
+    * @param to the account to transfer to
+    * @param amount the amount to transfer, in cents
+    * @return false if the source account has insufficient funds
+    */
+   public boolean transfer(int from, int to, long amount)
+   {
+      if (amount < 0) throw new IllegalArgumentException(amount + " < 0");
+      StampedLock first = locks[Math.min(from, to) / segmentSize];
+      StampedLock second = locks[Math.max(from, to) / segmentSize];
+      long firstStamp = first.writeLock();
+      try
+      {
+         long secondStamp = second == first ? 0 : second.writeLock();
+         try
+         {
+            if (accounts[from] < amount) return false;
+            accounts[from] -= amount;
+            accounts[to] += amount;
+            return true;
+         }
+         finally
+         {
+            if (second != first) second.unlockWrite(secondStamp);
+         }
+      }
+      finally
+      {
+         first.unlockWrite(firstStamp);
+      }
+   }
+
+   /**
+    * Gets the balance of a single account.
+    * @param account the account
+    * @return the balance, in cents
+    */
+   public long getBalance(int account)
+   {
+      StampedLock lock = locks[account / segmentSize];
+      long stamp = lock.tryOptimisticRead();
+      long balance = accounts[account];
+      if (lock.validate(stamp))
+      {
+         optimisticReads.increment();
+         return balance;
+      }
+
+      stamp = lock.readLock();
+      try
+      {
+         lockedReads.increment();
+         return accounts[account];
+      }
+      finally
+      {
+         lock.unlockRead(stamp);
+      }
+   }
+
+   /**
+    * Gets the sum of all account balances at a single point in time.
+    * @return the total balance, in cents
+    */
+   public long getTotalBalance()
+   {
+      return read(false).getTotalBalance();
+   }
+
+   /**
+    * Copies all account balances at a single point in time.
+    */
+   public Snapshot snapshot()
+   {
+      return read(true);
+   }
+
+   private Snapshot read(boolean copy)
+   {
+      long[] stamps = new long[locks.length];
+      // a single transfer that got in the way doesn't mean the next pass fails too
+      for (int attempt = 0; attempt < 2; attempt++)
+      {
+         Snapshot snapshot = tryOptimisticRead(copy, stamps);
+         if (snapshot != null)
+         {
+            optimisticReads.increment();
+            return snapshot;
+         }
+      }
+
+      // transfers lock segments in ascending order, and so do we. Once all locks are held
+      // nothing can change, so each segment is let go as soon as it has been read.
+      for (int i = 0; i < locks.length; i++)
+         stamps[i] = locks[i].readLock();
+      lockedReads.increment();
+      long[] balances = copy ? new long[accounts.length] : null;
+      long sum = 0;
+      int unlocked = 0;
+      try
+      {
+         for (int i = 0; i < locks.length; i++)
+         {
+            int from = i * segmentSize;
+            int to = Math.min(accounts.length, from + segmentSize);
+            for (int a = from; a < to; a++)
+               sum += accounts[a];
+            if (copy) System.arraycopy(accounts, from, balances, from, to - from);
+            locks[i].unlockRead(stamps[i]);
+            unlocked++;
+         }
+      }
+      finally
+      {
+         for (int i = unlocked; i < locks.length; i++)
+            locks[i].unlockRead(stamps[i]);
+      }
+      return new Snapshot(balances, sum);
+   }
+
+   /**
+    * Reads all segments without locking them.
+    * @return the snapshot, or null if a transfer got in the way
+    */
+   private Snapshot tryOptimisticRead(boolean copy, long[] stamps)
+   {
+      for (int i = 0; i < locks.length; i++)
+      {
+         stamps[i] = locks[i].tryOptimisticRead();
+         // a segment is being written, no point in reading it optimistically
+         if (stamps[i] == 0) return null;
+      }
+      long[] balances = copy ? accounts.clone() : null;
+      long sum = 0;
+      for (long a : copy ? balances : accounts)
+         sum += a;
+      for (int i = 0; i < locks.length; i++)
+         if (!locks[i].validate(stamps[i])) return null;
+      return new Snapshot(balances, sum);
+   }
+
+   /**
+    * Gets the number of reads that succeeded without taking a lock.
+    */
+   public long getOptimisticReads()
+   {
+      return optimisticReads.sum();
+   }
+
+   /**
+    * Gets the number of reads that had to fall back to read locks.
+    */
+   public long getLockedReads()
+   {
+      return lockedReads.sum();
+   }
+
+   /**
+    * Gets the number of accounts in the bank.
+    * @return the number of accounts
+    */
+   public int size()
+   {
+      return accounts.length;
+   }
+
+   /**
+    * The balances of all accounts at a single point in time.
+    */
+   public static class Snapshot
+   {
+      private final long[] balances;
+      private final long totalBalance;
+
+      Snapshot(long[] balances, long totalBalance)
+      {
+         this.balances = balances;
+         this.totalBalance = totalBalance;
+      }
+
+      /**
+       * Gets the balance of an account, in cents.
+       * @throws IllegalStateException if the snapshot only holds the total
+       */
+      public long getBalance(int account)
+      {
+         if (balances == null) throw new IllegalStateException("balances were not copied");
+         return balances[account];
+      }
+
+      /**
+       * Gets the sum of all balances, in cents.
+       */
+      public long getTotalBalance()
+      {
+         return totalBalance;
+      }
+   }
+}
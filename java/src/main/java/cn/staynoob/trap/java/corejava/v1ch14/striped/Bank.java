@@ -0,0 +1,196 @@
+package cn.staynoob.trap.java.corejava.v1ch14.striped;
+
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A bank whose accounts are guarded by a set of striped locks instead of a single bank lock, so
+ * that transfers between unrelated accounts run in parallel. A transfer takes the locks of both
+ * accounts in stripe order, which rules out deadlocks. Balances are kept in cents, and nothing is
+ * printed while a lock is held.
+ * <p>
+ * Transfers don't change the total balance, so it is only tracked for deposits and withdrawals,
+ * in a {@link LongAdder} that can be read without taking any lock.
+ */
+public class Bank
+{
+   private final long[] accounts;
+   private final ReentrantLock[] locks;
+   private final int mask;
+   private final LongAdder totalBalance = new LongAdder();
+
+   /**
+    * Constructs a bank with a lock per account, up to 1024 locks.
+    * @param n the number of accounts
+    * @param initialBalance the initial balance for each account, in cents
+    */
+   public Bank(int n, long initialBalance)
+   {
+      this(n, initialBalance, Math.min(n, 1024));
+   }
+
+   /**
+    * Constructs the bank.
+    * @param n the number of accounts
+    * @param initialBalance the initial balance for each account, in cents
+    * @param stripes the minimum number of locks, rounded up to a power of two
+    */
+   public Bank(int n, long initialBalance, int stripes)
+   {
+      if (stripes <= 0) throw new IllegalArgumentException(stripes + " <= 0");
+      accounts = new long[n];
+      for (int i = 0; i < accounts.length; i++)
+         accounts[i] = initialBalance;
+      totalBalance.add(n * initialBalance);
+
+      int size = Integer.highestOneBit(stripes);
+      if (size < stripes) size <<= 1;
+      locks = new ReentrantLock[size];
+      for (int i = 0; i < locks.length; i++)
+         locks[i] = new ReentrantLock();
+      mask = size - 1;
+   }
+
+   /**
+    * Transfers money from one account to another.
+    * @param from the account to transfer from
+    * @param to the account to transfer to
+    * @param amount the amount to transfer, in cents
+    * @return false if the source account has insufficient funds
+    */
+   public boolean transfer(int from, int to, long amount)
+   {
+      if (amount < 0) throw new IllegalArgumentException(amount + " < 0");
+      int fromStripe = from & mask;
+      int toStripe = to & mask;
+      // always lock the lower stripe first, so that two opposite transfers can't deadlock
+      Lock first = locks[Math.min(fromStripe, toStripe)];
+      Lock second = locks[Math.max(fromStripe, toStripe)];
+      first.lock();
+      try
+      {
+         if (second != first) second.lock();
+         try
+         {
+            if (accounts[from] < amount) return false;
+            accounts[from] -= amount;
+            accounts[to] += amount;
+            return true;
+         }
+         finally
+         {
+            if (second != first) second.unlock();
+         }
+      }
+      finally
+      {
+         first.unlock();
+      }
+   }
+
+   /**
+    * Adds money to an account.
+    * @param account the account to deposit to
+    * @param amount the amount to deposit, in cents
+    */
+   public void deposit(int account, long amount)
+   {
+      if (amount < 0) throw new IllegalArgumentException(amount + " < 0");
+      Lock lock = locks[account & mask];
+      lock.lock();
+      try
+      {
+         accounts[account] += amount;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+      totalBalance.add(amount);
+   }
+
+   /**
+    * Takes money from an account.
+    * @param account the account to withdraw from
+    * @param amount the amount to withdraw, in cents
+    * @return false if the account has insufficient funds
+    */
+   public boolean withdraw(int account, long amount)
+   {
+      if (amount < 0) throw new IllegalArgumentException(amount + " < 0");
+      Lock lock = locks[account & mask];
+      lock.lock();
+      try
+      {
+         if (accounts[account] < amount) return false;
+         accounts[account] -= amount;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+      totalBalance.add(-amount);
+      return true;
+   }
+
+   /**
+    * Gets the balance of a single account.
+    * @param account the account
+    * @return the balance, in cents
+    */
+   public long getBalance(int account)
+   {
+      Lock lock = locks[account & mask];
+      lock.lock();
+      try
+      {
+         return accounts[account];
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Gets the sum of all account balances without blocking transfers. Deposits and withdrawals
+    * that run concurrently may or may not be included.
+    * @return the total balance, in cents
+    */
+   public long getTotalBalance()
+   {
+      return totalBalance.sum();
+   }
+
+   /**
+    * Adds up the accounts while holding every lock, which gives an exact total at the price of
+    * stopping all transfers. Useful to check {@link #getTotalBalance()}.
+    * @return the total balance, in cents
+    */
+   public long sumAccounts()
+   {
+      for (Lock lock : locks)
+         lock.lock();
+      try
+      {
+         long sum = 0;
+         for (long a : accounts)
+            sum += a;
+         return sum;
+      }
+      finally
+      {
+         for (int i = locks.length - 1; i >= 0; i--)
+            locks[i].unlock();
+      }
+   }
+
+   /**
+    * Gets the number of accounts in the bank.
+    * @return the number of accounts
+    */
+   public int size()
+   {
+      return accounts.length;
+   }
+}
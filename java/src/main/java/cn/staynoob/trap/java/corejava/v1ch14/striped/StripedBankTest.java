@@ -0,0 +1,41 @@
+package cn.staynoob.trap.java.corejava.v1ch14.striped;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This program runs the transfers of SynchBankTest on a bank with striped locks. Instead of
+ * printing every transfer, it prints the transfer rate and the total balance once a second.
+ */
+public class StripedBankTest
+{
+   public static final int NACCOUNTS = 100;
+   public static final long INITIAL_BALANCE = 1000_00;
+
+   public static void main(String[] args)
+   {
+      Bank bank = new Bank(NACCOUNTS, INITIAL_BALANCE);
+      LongAdder transfers = new LongAdder();
+      for (int i = 0; i < NACCOUNTS; i++)
+      {
+         int from = i;
+         Thread t = new Thread(() ->
+         {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (!Thread.currentThread().isInterrupted())
+            {
+               int to = random.nextInt(bank.size());
+               long amount = random.nextLong(INITIAL_BALANCE);
+               if (bank.transfer(from, to, amount)) transfers.increment();
+            }
+         });
+         t.setDaemon(true);
+         t.start();
+      }
+
+      ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+      reporter.scheduleAtFixedRate(() -> System.out.printf("%,d transfers/sec, total %d.%02d%n",
+         transfers.sumThenReset(), bank.getTotalBalance() / 100, bank.getTotalBalance() % 100),
+         1, 1, TimeUnit.SECONDS);
+   }
+}
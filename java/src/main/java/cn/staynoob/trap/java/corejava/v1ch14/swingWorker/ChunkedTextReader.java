@@ -0,0 +1,92 @@
+package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+/**
+ * Reads a text file in large chunks instead of line by line. The bytes of a character that is
+ * split between two chunks are carried over to the next one, so that any charset decodes
+ * correctly. Malformed input is replaced, as {@link java.util.Scanner} does.
+ */
+public class ChunkedTextReader implements Closeable
+{
+   private final FileChannel channel;
+   private final CharsetDecoder decoder;
+   private final ByteBuffer bytes;
+   private final CharBuffer chars;
+   private final long size;
+   private long position;
+   private boolean eof;
+
+   /**
+    * Constructs a ChunkedTextReader.
+    * @param path the file to read
+    * @param charset the charset of the file
+    * @param chunkSize the number of bytes to read at a time
+    */
+   public ChunkedTextReader(Path path, Charset charset, int chunkSize) throws IOException
+   {
+      if (chunkSize < 16) throw new IllegalArgumentException("chunkSize: " + chunkSize);
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      size = channel.size();
+      decoder = charset.newDecoder()
+         .onMalformedInput(CodingErrorAction.REPLACE)
+         .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      bytes = ByteBuffer.allocateDirect(chunkSize);
+      chars = CharBuffer.allocate((int) Math.ceil(chunkSize * (double) decoder.maxCharsPerByte()) + 2);
+   }
+
+   /**
+    * Reads and decodes the next chunk.
+    * @return the decoded text, or null at the end of the file
+    */
+   public String next() throws IOException
+   {
+      while (true)
+      {
+         if (eof) return null;
+         int n = channel.read(bytes);
+         if (n < 0)
+         {
+            eof = true;
+            bytes.flip();
+            chars.clear();
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+            chars.flip();
+            return chars.hasRemaining() ? chars.toString() : null;
+         }
+         position += n;
+         bytes.flip();
+         chars.clear();
+         decoder.decode(bytes, chars, false);
+         bytes.compact(); // keeps the bytes of an incomplete character
+         chars.flip();
+         if (chars.hasRemaining()) return chars.toString();
+      }
+   }
+
+   /**
+    * Gets the number of bytes read so far.
+    */
+   public long getPosition()
+   {
+      return position;
+   }
+
+   /**
+    * Gets the size of the file when it was opened.
+    */
+   public long getSize()
+   {
+      return size;
+   }
+
+   public void close() throws IOException
+   {
+      channel.close();
+   }
+}
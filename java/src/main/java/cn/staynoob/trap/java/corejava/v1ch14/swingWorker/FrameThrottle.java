@@ -0,0 +1,74 @@
+package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Limits how often a worker publishes to the event dispatch thread. Every call to
+ * {@code publish} queues a runnable on the event queue, and every batch of them repaints, so
+ * publishing more often than the screen refreshes only keeps the EDT busy.
+ */
+public class FrameThrottle
+{
+   /**
+    * The length of a frame at 60 frames per second.
+    */
+   public static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+   private final int maxPerFrame;
+   private final long frameNanos;
+   private final LongSupplier clock;
+   private long frameStart;
+   private int count;
+
+   /**
+    * Constructs a FrameThrottle for 60 frames per second.
+    * @param maxPerFrame the number of publications allowed per frame
+    */
+   public FrameThrottle(int maxPerFrame)
+   {
+      this(maxPerFrame, FRAME_NANOS, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * Constructs a FrameThrottle.
+    * @param maxPerFrame the number of publications allowed per frame
+    * @param frame the length of a frame
+    * @param unit the unit of frame
+    */
+   public FrameThrottle(int maxPerFrame, long frame, TimeUnit unit)
+   {
+      this(maxPerFrame, frame, unit, System::nanoTime);
+   }
+
+   /**
+    * Constructs a FrameThrottle that reads the time from a clock, such as a fake one in a test.
+    * @param clock supplies the time in nanoseconds, like {@link System#nanoTime}
+    */
+   FrameThrottle(int maxPerFrame, long frame, TimeUnit unit, LongSupplier clock)
+   {
+      if (maxPerFrame <= 0) throw new IllegalArgumentException("maxPerFrame: " + maxPerFrame);
+      this.maxPerFrame = maxPerFrame;
+      this.frameNanos = unit.toNanos(frame);
+      this.clock = clock;
+      this.frameStart = clock.getAsLong() - frameNanos;
+   }
+
+   /**
+    * Counts a publication if the current frame has room for it. Only the worker thread may
+    * call this method.
+    * @return true if the caller may publish now, false if it should hold back its data
+    */
+   public boolean tryAcquire()
+   {
+      long now = clock.getAsLong();
+      if (now - frameStart >= frameNanos)
+      {
+         frameStart = now;
+         count = 0;
+      }
+      if (count == maxPerFrame) return false;
+      count++;
+      return true;
+   }
+}
@@ -0,0 +1,55 @@
+package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
+
+import java.io.*;
+
+import javax.swing.*;
+
+/**
+ * A list model that shows the lines of a {@link PagedTextFile}. The list only asks for the
+ * lines that it paints, so only their pages are read. Give the list a prototype cell value;
+ * otherwise it asks for every line to find the widest one.
+ */
+public class PagedListModel extends AbstractListModel<String>
+{
+   private final PagedTextFile file;
+   private int size;
+
+   /**
+    * Constructs a PagedListModel.
+    * @param file the file whose lines are shown
+    */
+   public PagedListModel(PagedTextFile file)
+   {
+      this.file = file;
+   }
+
+   /**
+    * Shows the lines that have been indexed since the last call. This method must be called on
+    * the event dispatch thread.
+    * @param lineCount the number of indexed lines
+    */
+   public void setSize(int lineCount)
+   {
+      if (lineCount <= size) return;
+      int first = size;
+      size = lineCount;
+      fireIntervalAdded(this, first, lineCount - 1);
+   }
+
+   public int getSize()
+   {
+      return size;
+   }
+
+   public String getElementAt(int index)
+   {
+      try
+      {
+         return file.getLine(index);
+      }
+      catch (IOException ex)
+      {
+         return ex.toString();
+      }
+   }
+}
@@ -0,0 +1,192 @@
+package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Gives access to the lines of a text file that may be larger than the heap. The file is
+ * indexed once, which records where every page of {@link #LINES_PER_PAGE} lines starts, and a
+ * page is only read and decoded when one of its lines is asked for. A few recently used pages
+ * are kept in memory.
+ * <p>
+ * Lines are found by their '\n' bytes, so the charset must encode '\n' as that single byte and
+ * never use the byte otherwise, as UTF-8 and the ISO 8859 charsets do. A "\r\n" line ending
+ * loses its '\r'.
+ * <p>
+ * One thread may build the index while others read the lines indexed so far.
+ */
+public class PagedTextFile implements Closeable
+{
+   public static final int LINES_PER_PAGE = 1024;
+   private static final int SCAN_BUFFER_SIZE = 1 << 20;
+
+   private final FileChannel channel;
+   private final Charset charset;
+   private final long size;
+   private final Map<Integer, String[]> cache;
+
+   // guarded by this
+   private long[] pageStarts = new long[16];
+   private int lineCount;
+   private long indexed; // the position up to which the file has been indexed
+   private long lastLineStart;
+
+   /**
+    * Constructs a PagedTextFile.
+    * @param path the file to read
+    * @param charset the charset of the file
+    * @param cachedPages the number of decoded pages to keep in memory
+    */
+   public PagedTextFile(Path path, Charset charset, int cachedPages) throws IOException
+   {
+      if (!"\n".equals(new String("\n".getBytes(charset), StandardCharsets.ISO_8859_1)))
+         throw new IllegalArgumentException("Unsupported charset: " + charset);
+      if (cachedPages <= 0) throw new IllegalArgumentException("cachedPages: " + cachedPages);
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      this.charset = charset;
+      this.size = channel.size();
+      this.cache = new LinkedHashMap<Integer, String[]>(16, 0.75f, true)
+         {
+            protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest)
+            {
+               return size() > cachedPages;
+            }
+         };
+   }
+
+   /**
+    * Indexes the next part of the file.
+    * @param maxBytes the maximum number of bytes to scan
+    * @return true if the whole file has been indexed
+    */
+   public boolean index(long maxBytes) throws IOException
+   {
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SCAN_BUFFER_SIZE, Math.max(1, maxBytes)));
+      long end = Math.min(size, getIndexed() + maxBytes);
+      long position = getIndexed();
+      while (position < end)
+      {
+         buffer.clear();
+         buffer.limit((int) Math.min(buffer.capacity(), end - position));
+         int n = channel.read(buffer, position);
+         if (n < 0) break;
+         synchronized (this)
+         {
+            for (int i = 0; i < n; i++)
+               if (buffer.get(i) == '\n') newLine(position + i + 1);
+            indexed = position + n;
+         }
+         position += n;
+      }
+      synchronized (this)
+      {
+         if (indexed >= size && lastLineStart < size)
+            newLine(size); // the last line has no line terminator
+         return indexed >= size;
+      }
+   }
+
+   /**
+    * Records the start of a line.
+    */
+   private void newLine(long nextStart)
+   {
+      if (lineCount % LINES_PER_PAGE == 0)
+      {
+         int page = lineCount / LINES_PER_PAGE;
+         if (page == pageStarts.length) pageStarts = Arrays.copyOf(pageStarts, page * 2);
+         pageStarts[page] = lastLineStart;
+      }
+      lineCount++;
+      lastLineStart = nextStart;
+   }
+
+   private synchronized long getIndexed()
+   {
+      return indexed;
+   }
+
+   /**
+    * Gets the number of lines indexed so far.
+    */
+   public synchronized int getLineCount()
+   {
+      return lineCount;
+   }
+
+   /**
+    * Gets the size of the file when it was opened.
+    */
+   public long getSize()
+   {
+      return size;
+   }
+
+   /**
+    * Gets the fraction of the file that has been indexed.
+    */
+   public double getIndexedFraction()
+   {
+      return size == 0 ? 1 : getIndexed() / (double) size;
+   }
+
+   /**
+    * Gets a line, reading its page if necessary.
+    * @param line a line number, starting with 0, less than {@link #getLineCount}
+    * @return the line without its terminator
+    */
+   public String getLine(int line) throws IOException
+   {
+      int page = line / LINES_PER_PAGE;
+      long start;
+      long end;
+      int lines;
+      synchronized (this)
+      {
+         if (line < 0 || line >= lineCount)
+            throw new IndexOutOfBoundsException("line " + line + " of " + lineCount);
+         String[] cached = cache.get(page);
+         if (cached != null && line % LINES_PER_PAGE < cached.length)
+            return cached[line % LINES_PER_PAGE];
+         start = pageStarts[page];
+         lines = Math.min(LINES_PER_PAGE, lineCount - page * LINES_PER_PAGE);
+         end = lines == LINES_PER_PAGE && (page + 1) * LINES_PER_PAGE < lineCount
+            ? pageStarts[page + 1] : lastLineStart;
+      }
+
+      String[] decoded = readPage(start, end, lines);
+      synchronized (this)
+      {
+         cache.put(page, decoded);
+      }
+      return decoded[line % LINES_PER_PAGE];
+   }
+
+   private String[] readPage(long start, long end, int lines) throws IOException
+   {
+      ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+      while (buffer.hasRemaining())
+         if (channel.read(buffer, start + buffer.position()) < 0) break;
+      String text = new String(buffer.array(), 0, buffer.position(), charset);
+      String[] result = new String[lines];
+      int from = 0;
+      for (int i = 0; i < lines; i++)
+      {
+         int to = text.indexOf('\n', from);
+         if (to < 0) to = text.length();
+         int stop = to > from && text.charAt(to - 1) == '\r' ? to - 1 : to;
+         result[i] = text.substring(from, stop);
+         from = to + 1;
+      }
+      return result;
+   }
+
+   public void close() throws IOException
+   {
+      channel.close();
+   }
+}
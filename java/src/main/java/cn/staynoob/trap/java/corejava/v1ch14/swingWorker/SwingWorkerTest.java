@@ -3,6 +3,7 @@ package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.charset.*;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
@@ -32,18 +33,24 @@ public class SwingWorkerTest
 
 /**
  * This frame has a text area to show the contents of a text file, a menu to open a file and cancel
- * the opening process, and a status line to show the file loading progress.
+ * the opening process, and a status line to show the file loading progress. Files that are too
+ * large for a text area are shown in a list that reads their lines on demand.
  */
 class SwingWorkerFrame extends JFrame
 {
    private JFileChooser chooser;
    private JTextArea textArea;
+   private JScrollPane scrollPane;
    private JLabel statusLine;
    private JMenuItem openItem;
    private JMenuItem cancelItem;
-   private SwingWorker<StringBuilder, ProgressData> textReader;
+   private SwingWorker<?, ?> textReader;
+   private PagedTextFile pagedFile;
    public static final int TEXT_ROWS = 20;
    public static final int TEXT_COLUMNS = 60;
+   public static final int CHUNK_SIZE = 1 << 20;
+   public static final long PAGED_THRESHOLD = 64L << 20;
+   public static final long INDEX_STEP = 16L << 20;
 
    public SwingWorkerFrame()
    {
@@ -51,7 +58,8 @@ class SwingWorkerFrame extends JFrame
       chooser.setCurrentDirectory(new File("."));
 
       textArea = new JTextArea(TEXT_ROWS, TEXT_COLUMNS);
-      add(new JScrollPane(textArea));
+      scrollPane = new JScrollPane(textArea);
+      add(scrollPane);
 
       statusLine = new JLabel(" ");
       add(statusLine, BorderLayout.SOUTH);
@@ -74,11 +82,14 @@ class SwingWorkerFrame extends JFrame
                // if file selected, set it as icon of the label
                if (result == JFileChooser.APPROVE_OPTION)
                {
-                  textArea.setText("");
-                  openItem.setEnabled(false);
-                  textReader = new TextReader(chooser.getSelectedFile());
-                  textReader.execute();
-                  cancelItem.setEnabled(true);
+                  try
+                  {
+                     open(chooser.getSelectedFile());
+                  }
+                  catch (IOException ex)
+                  {
+                     statusLine.setText("" + ex);
+                  }
                }
             }
          });
@@ -90,22 +101,58 @@ class SwingWorkerFrame extends JFrame
          {
             public void actionPerformed(ActionEvent event)
             {
-               textReader.cancel(true);
+               // the workers check for cancellation after every chunk; an interrupt would close
+               // the channel of the paged file while the list still reads from it
+               textReader.cancel(false);
             }
          });
       pack();
    }
 
-   private class ProgressData
+   /**
+    * Starts loading a file into the text area, or indexing it if it is too large for one.
+    * @param file the file to show
+    */
+   private void open(File file) throws IOException
    {
-      public int number;
-      public String line;
+      if (pagedFile != null)
+      {
+         pagedFile.close();
+         pagedFile = null;
+      }
+      textArea.setText("");
+      if (file.length() > PAGED_THRESHOLD)
+      {
+         pagedFile = new PagedTextFile(file.toPath(), Charset.defaultCharset(), 64);
+         PagedListModel model = new PagedListModel(pagedFile);
+         JList<String> list = new JList<>(model);
+         // without a prototype the list would read every line to find the widest one
+         char[] prototype = new char[TEXT_COLUMNS];
+         Arrays.fill(prototype, 'x');
+         list.setPrototypeCellValue(new String(prototype));
+         scrollPane.setViewportView(list);
+         textReader = new LineIndexer(pagedFile, model);
+      }
+      else
+      {
+         scrollPane.setViewportView(textArea);
+         textReader = new TextReader(file);
+      }
+      openItem.setEnabled(false);
+      textReader.execute();
+      cancelItem.setEnabled(true);
    }
 
-   private class TextReader extends SwingWorker<StringBuilder, ProgressData>
+   /**
+    * Reads a file in large chunks and appends them to the text area. The text area's document
+    * keeps its text in a gap buffer, so appending a chunk is cheap no matter how much text is
+    * already there; what is expensive is every trip to the event dispatch thread, so the chunks
+    * are published at most once per frame.
+    */
+   private class TextReader extends SwingWorker<Long, String>
    {
       private File file;
-      private StringBuilder text = new StringBuilder();
+      private FrameThrottle throttle = new FrameThrottle(1);
 
       public TextReader(File file)
       {
@@ -115,41 +162,46 @@ class SwingWorkerFrame extends JFrame
       // The following method executes in the worker thread; it doesn't touch Swing components.
 
       @Override
-      public StringBuilder doInBackground() throws IOException, InterruptedException
+      public Long doInBackground() throws IOException
       {
-         int lineNumber = 0;
-         try (Scanner in = new Scanner(new FileInputStream(file)))
+         StringBuilder pending = new StringBuilder();
+         try (ChunkedTextReader in = new ChunkedTextReader(file.toPath(), Charset.defaultCharset(),
+            CHUNK_SIZE))
          {
-            while (in.hasNextLine())         
+            String chunk;
+            while (!isCancelled() && (chunk = in.next()) != null)
             {
-               String line = in.nextLine();
-               lineNumber++;
-               text.append(line);
-               text.append("\n");
-               ProgressData data = new ProgressData();
-               data.number = lineNumber;
-               data.line = line;
-               publish(data);
-               Thread.sleep(1); // to test cancellation; no need to do this in your programs
+               pending.append(chunk);
+               if (throttle.tryAcquire()) publishLines(pending, false);
             }
+            publishLines(pending, true);
+            return in.getPosition();
          }
-         return text;
+      }
+
+      /**
+       * Publishes the pending text with "\r\n" turned into "\n", as the text area expects.
+       * @param pending the text to publish; a trailing '\r' stays in it unless last is set
+       * @param last true if no more text follows
+       */
+      private void publishLines(StringBuilder pending, boolean last)
+      {
+         int end = pending.length();
+         if (!last && end > 0 && pending.charAt(end - 1) == '\r') end--;
+         if (end == 0) return;
+         publish(pending.substring(0, end).replace("\r\n", "\n"));
+         pending.delete(0, end);
       }
 
       // The following methods execute in the event dispatch thread.
 
       @Override
-      public void process(List<ProgressData> data)
+      public void process(List<String> chunks)
       {
          if (isCancelled()) return;
-         StringBuilder b = new StringBuilder();
-         statusLine.setText("" + data.get(data.size() - 1).number);
-         for (ProgressData d : data)
-         {
-            b.append(d.line);
-            b.append("\n");
-         }
-         textArea.append(b.toString());
+         for (String chunk : chunks)
+            textArea.append(chunk);
+         statusLine.setText(textArea.getDocument().getLength() + " characters");
       }
 
       @Override
@@ -157,8 +209,7 @@ class SwingWorkerFrame extends JFrame
       {
          try
          {
-            StringBuilder result = get();
-            textArea.setText(result.toString());
+            get();
             statusLine.setText("Done");
          }
          catch (InterruptedException ex)
@@ -177,6 +228,63 @@ class SwingWorkerFrame extends JFrame
          cancelItem.setEnabled(false);
          openItem.setEnabled(true);
       }
+   }
+
+   /**
+    * Indexes a large file and shows its lines as they are found.
+    */
+   private class LineIndexer extends SwingWorker<Integer, Integer>
+   {
+      private PagedTextFile file;
+      private PagedListModel model;
+      private FrameThrottle throttle = new FrameThrottle(1);
+
+      public LineIndexer(PagedTextFile file, PagedListModel model)
+      {
+         this.file = file;
+         this.model = model;
+      }
+
+      @Override
+      public Integer doInBackground() throws IOException
+      {
+         while (!isCancelled() && !file.index(INDEX_STEP))
+            if (throttle.tryAcquire()) publish(file.getLineCount());
+         return file.getLineCount();
+      }
+
+      @Override
+      public void process(List<Integer> lineCounts)
+      {
+         if (isCancelled()) return;
+         model.setSize(lineCounts.get(lineCounts.size() - 1));
+         statusLine.setText(model.getSize() + " lines, "
+            + (int) (100 * file.getIndexedFraction()) + "% indexed");
+      }
+
+      @Override
+      public void done()
+      {
+         try
+         {
+            model.setSize(get());
+            statusLine.setText(model.getSize() + " lines");
+         }
+         catch (InterruptedException ex)
+         {
+         }
+         catch (CancellationException ex)
+         {
+            model.setSize(file.getLineCount());
+            statusLine.setText("Cancelled after " + model.getSize() + " lines");
+         }
+         catch (ExecutionException ex)
+         {
+            statusLine.setText("" + ex.getCause());
+         }
 
-   };
+         cancelItem.setEnabled(false);
+         openItem.setEnabled(true);
+      }
+   }
 }
@@ -1,9 +1,15 @@
 package cn.staynoob.trap.java.corejava.v1ch14.synch;
 
+import java.util.concurrent.atomic.*;
 import java.util.concurrent.locks.*;
 
 /**
  * A bank with a number of bank accounts that uses locks for serializing access.
+ * <p>
+ * By default every account has its own condition, and a transfer only signals the threads that
+ * wait for funds on the receiving account. With a single condition for the whole bank, every
+ * transfer wakes up all waiting threads, and most of them go straight back to waiting; the
+ * wakeup counters make that visible.
  * @version 1.30 2004-08-01
  * @author Cay Horstmann
  */
@@ -11,20 +17,37 @@ public class Bank
 {
    private final double[] accounts;
    private Lock bankLock;
-   private Condition sufficientFunds;
+   private Condition[] sufficientFunds;
+   private final LongAdder wakeups = new LongAdder();
+   private final LongAdder spuriousWakeups = new LongAdder();
 
    /**
-    * Constructs the bank.
+    * Constructs the bank with a condition per account.
     * @param n the number of accounts
     * @param initialBalance the initial balance for each account
     */
    public Bank(int n, double initialBalance)
+   {
+      this(n, initialBalance, true);
+   }
+
+   /**
+    * Constructs the bank.
+    * @param n the number of accounts
+    * @param initialBalance the initial balance for each account
+    * @param perAccountConditions true to signal only the receiving account, false to share one
+    * condition between all accounts
+    */
+   public Bank(int n, double initialBalance, boolean perAccountConditions)
    {
       accounts = new double[n];
       for (int i = 0; i < accounts.length; i++)
          accounts[i] = initialBalance;
       bankLock = new ReentrantLock();
-      sufficientFunds = bankLock.newCondition();
+      sufficientFunds = new Condition[n];
+      Condition shared = perAccountConditions ? null : bankLock.newCondition();
+      for (int i = 0; i < n; i++)
+         sufficientFunds[i] = perAccountConditions ? bankLock.newCondition() : shared;
    }
 
    /**
@@ -39,13 +62,18 @@ public class Bank
       try
       {
          while (accounts[from] < amount)
-            sufficientFunds.await();
+         {
+            sufficientFunds[from].await();
+            wakeups.increment();
+            if (accounts[from] < amount) spuriousWakeups.increment();
+         }
          System.out.print(Thread.currentThread());
          accounts[from] -= amount;
          System.out.printf(" %10.2f from %d to %d", amount, from, to);
          accounts[to] += amount;
          System.out.printf(" Total Balance: %10.2f%n", getTotalBalance());
-         sufficientFunds.signalAll();
+         // only the receiving account got richer
+         sufficientFunds[to].signalAll();
       }
       finally
       {
@@ -75,6 +103,24 @@ public class Bank
       }
    }
 
+   /**
+    * Gets the number of times a waiting transfer woke up.
+    * @return the number of wakeups
+    */
+   public long getWakeups()
+   {
+      return wakeups.sum();
+   }
+
+   /**
+    * Gets the number of times a waiting transfer woke up and still had insufficient funds.
+    * @return the number of wasted wakeups
+    */
+   public long getSpuriousWakeups()
+   {
+      return spuriousWakeups.sum();
+   }
+
    /**
     * Gets the number of accounts in the bank.
     * @return the number of accounts
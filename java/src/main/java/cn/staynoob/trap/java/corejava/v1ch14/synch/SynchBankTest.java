@@ -1,7 +1,11 @@
 package cn.staynoob.trap.java.corejava.v1ch14.synch;
 
+import java.util.*;
+
 /**
  * This program shows how multiple threads can safely access a data structure.
+ * Run it with the argument {@code shared} to use a single condition for all accounts; the
+ * wakeup rates are printed to {@code System.err} once a second.
  * @version 1.30 2004-08-01
  * @author Cay Horstmann
  */
@@ -12,7 +16,8 @@ public class SynchBankTest
 
    public static void main(String[] args)
    {
-      Bank b = new Bank(NACCOUNTS, INITIAL_BALANCE);
+      boolean perAccountConditions = !Arrays.asList(args).contains("shared");
+      Bank b = new Bank(NACCOUNTS, INITIAL_BALANCE, perAccountConditions);
       int i;
       for (i = 0; i < NACCOUNTS; i++)
       {
@@ -20,5 +25,22 @@ public class SynchBankTest
          Thread t = new Thread(r);
          t.start();
       }
+
+      Timer timer = new Timer(true);
+      timer.scheduleAtFixedRate(new TimerTask()
+      {
+         private long wakeups;
+         private long spuriousWakeups;
+
+         public void run()
+         {
+            long w = b.getWakeups();
+            long s = b.getSpuriousWakeups();
+            System.err.printf("wakeups/sec: %d, spurious wakeups/sec: %d%n", w - wakeups,
+               s - spuriousWakeups);
+            wakeups = w;
+            spuriousWakeups = s;
+         }
+      }, 1000, 1000);
    }
 }
@@ -0,0 +1,39 @@
+package cn.staynoob.trap.java.corejava.v1ch14.threadPool;
+
+import cn.staynoob.trap.java.corejava.v1ch14.search.*;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Counts the matching files of {@link ThreadPoolTest} with a {@link DirectoryCrawler}, which
+ * needs no more threads than the pool has, however deep the tree, and reports its progress
+ * every second.
+ */
+public class CrawlerTest
+{
+   public static void main(String[] args) throws Exception
+   {
+      Scanner in = new Scanner(System.in);
+      System.out.print("Enter base directory (e.g. /usr/local/jdk5.0/src): ");
+      String directory = in.nextLine();
+      System.out.print("Enter keyword (e.g. volatile): ");
+      String keyword = in.nextLine();
+
+      ForkJoinPool pool = new ForkJoinPool();
+      DirectoryCrawler crawler = new DirectoryCrawler(pool);
+      KeywordSearch search = new KeywordSearch(keyword);
+
+      ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+      reporter.scheduleAtFixedRate(() -> System.out.println(crawler.stats()), 1, 1,
+         TimeUnit.SECONDS);
+
+      long count = crawler.count(Paths.get(directory), search::contains);
+      reporter.shutdown();
+      pool.shutdown();
+
+      System.out.println(count + " matching files.");
+      System.out.println(crawler.stats());
+   }
+}
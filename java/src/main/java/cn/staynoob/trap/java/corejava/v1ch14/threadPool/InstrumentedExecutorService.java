@@ -0,0 +1,517 @@
+package cn.staynoob.trap.java.corejava.v1ch14.threadPool;
+
+import cn.staynoob.trap.java.effectivejava.chapter10.item69.LatencyHistogram;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/**
+ * An executor service that runs its tasks on another one and records what happens to them: how
+ * long they waited in the queue, how long they ran, how many failed or were rejected, how many
+ * threads were busy at once, and all that per task class.
+ * <p>
+ * The three clock reads that timing a task takes cost more than all the rest of the
+ * bookkeeping, especially in virtual machines. With a sample interval of n, only about every
+ * nth task is timed, chosen at random; counts are always exact.
+ * <p>
+ * Recording a task doesn't allocate. Tasks from {@code submit} and {@code invokeAll} carry their
+ * timestamps in the {@link FutureTask} that {@link AbstractExecutorService} creates for them
+ * anyway; only {@code execute} needs a wrapper, as the delegate would need one. The timed tasks
+ * are recorded into a fixed number of stripes of histograms, chosen by thread id, which are merged
+ * when a snapshot is taken. Each stripe has a lock, but with at least twice as many stripes as
+ * processors, the workers of a pool hardly ever contend for one; and since the stripes don't
+ * belong to threads, a pool that keeps replacing its threads doesn't make them grow.
+ */
+public class InstrumentedExecutorService extends AbstractExecutorService
+   implements InstrumentedExecutorServiceMBean
+{
+   private static final long NOT_TIMED = Long.MIN_VALUE;
+
+   private final ExecutorService delegate;
+   private final int sampleMask;
+
+   private final LongAdder submitted = new LongAdder();
+   private final LongAdder rejected = new LongAdder();
+   private final LongAdder failed = new LongAdder();
+   private final AtomicInteger active = new AtomicInteger();
+   private final AtomicInteger peak = new AtomicInteger();
+   private final ConcurrentMap<Class<?>, TypeCounters> types = new ConcurrentHashMap<>();
+   private final Recorder[] recorders = newRecorders();
+   private volatile ObjectName objectName;
+
+   /**
+    * Constructs an InstrumentedExecutorService that times about every 8th task.
+    * @param delegate runs the tasks
+    */
+   public InstrumentedExecutorService(ExecutorService delegate)
+   {
+      this(delegate, 8);
+   }
+
+   /**
+    * Constructs an InstrumentedExecutorService.
+    * @param delegate runs the tasks
+    * @param sampleInterval a power of two; about one in this many tasks is timed, 1 times all
+    */
+   public InstrumentedExecutorService(ExecutorService delegate, int sampleInterval)
+   {
+      if (sampleInterval <= 0 || Integer.bitCount(sampleInterval) != 1)
+         throw new IllegalArgumentException("sampleInterval: " + sampleInterval);
+      this.delegate = Objects.requireNonNull(delegate);
+      this.sampleMask = sampleInterval - 1;
+   }
+
+   public void execute(Runnable command)
+   {
+      Runnable task = command instanceof TimedTask ? command : new TimedRunnable(command);
+      submitted.increment();
+      try
+      {
+         delegate.execute(task);
+      }
+      catch (RejectedExecutionException e)
+      {
+         rejected.increment();
+         throw e;
+      }
+   }
+
+   protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value)
+   {
+      return new TimedTask<>(Executors.callable(runnable, value), runnable.getClass());
+   }
+
+   protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable)
+   {
+      return new TimedTask<>(callable, callable.getClass());
+   }
+
+   /**
+    * Registers this executor with the platform MBean server. It is unregistered on shutdown.
+    * @param name the name under which the executor appears
+    * @return the name of the MBean
+    */
+   public ObjectName registerMBean(String name) throws JMException
+   {
+      ObjectName objectName = new ObjectName(getClass().getPackage().getName()
+         + ":type=Executor,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      this.objectName = objectName;
+      return objectName;
+   }
+
+   public void shutdown()
+   {
+      unregisterMBean();
+      delegate.shutdown();
+   }
+
+   public List<Runnable> shutdownNow()
+   {
+      unregisterMBean();
+      return delegate.shutdownNow();
+   }
+
+   private void unregisterMBean()
+   {
+      ObjectName name = objectName;
+      objectName = null;
+      if (name == null) return;
+      try
+      {
+         ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      }
+      catch (JMException e)
+      {
+         // unregistered by someone else already
+      }
+   }
+
+   public boolean isShutdown()
+   {
+      return delegate.isShutdown();
+   }
+
+   public boolean isTerminated()
+   {
+      return delegate.isTerminated();
+   }
+
+   public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      return delegate.awaitTermination(timeout, unit);
+   }
+
+   /**
+    * Makes the stripes: a power of two, at least twice the number of processors.
+    */
+   private static Recorder[] newRecorders()
+   {
+      int n = Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1))
+         << 1;
+      Recorder[] recorders = new Recorder[Math.min(n, 256)];
+      for (int i = 0; i < recorders.length; i++)
+         recorders[i] = new Recorder();
+      return recorders;
+   }
+
+   /**
+    * Gets the submission time of a new task, or NOT_TIMED if it isn't sampled.
+    */
+   private long submitted()
+   {
+      if (sampleMask != 0 && (ThreadLocalRandom.current().nextInt() & sampleMask) != 0)
+         return NOT_TIMED;
+      return System.nanoTime();
+   }
+
+   private long begin(long submitNanos)
+   {
+      int now = active.incrementAndGet();
+      if (now > peak.get()) peak.accumulateAndGet(now, Math::max);
+      return submitNanos == NOT_TIMED ? NOT_TIMED : System.nanoTime();
+   }
+
+   private void end(Class<?> type, long submitNanos, long startNanos, boolean failure)
+   {
+      active.decrementAndGet();
+      if (failure) failed.increment();
+      TypeCounters counters = types.get(type);
+      if (counters == null) counters = types.computeIfAbsent(type, TypeCounters::new);
+      counters.count.increment();
+      if (startNanos == NOT_TIMED) return;
+
+      long nanos = System.nanoTime() - startNanos;
+      // thread ids are handed out in sequence, so the workers of a pool get different stripes
+      Recorder r = recorders[(int) Thread.currentThread().getId() & (recorders.length - 1)];
+      synchronized (r)
+      {
+         r.queueWait.record(Math.max(0, startNanos - submitNanos));
+         r.execution.record(nanos);
+      }
+      counters.timed.increment();
+      counters.nanos.add(nanos);
+   }
+
+   /**
+    * Takes a snapshot of the statistics so far.
+    */
+   public Stats getStats()
+   {
+      return new Stats(this);
+   }
+
+   public long getSubmittedTasks()
+   {
+      return submitted.sum();
+   }
+
+   public long getCompletedTasks()
+   {
+      long completed = 0;
+      for (TypeCounters counters : types.values())
+         completed += counters.count.sum();
+      return completed;
+   }
+
+   public long getFailedTasks()
+   {
+      return failed.sum();
+   }
+
+   public long getRejectedTasks()
+   {
+      return rejected.sum();
+   }
+
+   public int getActiveThreads()
+   {
+      return active.get();
+   }
+
+   public int getPeakThreads()
+   {
+      return peak.get();
+   }
+
+   public void resetPeakThreads()
+   {
+      peak.set(active.get());
+   }
+
+   public double getMeanQueueWait()
+   {
+      return getStats().getQueueWait().getMean() / 1e3;
+   }
+
+   public double getQueueWait99thPercentile()
+   {
+      return getStats().getQueueWait().getValueAtPercentile(99) / 1e3;
+   }
+
+   public double getMeanExecutionTime()
+   {
+      return getStats().getExecutionTime().getMean() / 1e3;
+   }
+
+   public double getExecutionTime99thPercentile()
+   {
+      return getStats().getExecutionTime().getValueAtPercentile(99) / 1e3;
+   }
+
+   public String[] getTaskTypes()
+   {
+      List<String> lines = new ArrayList<>();
+      for (TaskType type : getStats().getTaskTypes())
+         lines.add(type.toString());
+      return lines.toArray(new String[lines.size()]);
+   }
+
+   public String toString()
+   {
+      return super.toString() + "[" + delegate + "]";
+   }
+
+   /**
+    * A stripe of histograms, guarded by itself.
+    */
+   private static class Recorder
+   {
+      final LatencyHistogram queueWait = new LatencyHistogram();
+      final LatencyHistogram execution = new LatencyHistogram();
+   }
+
+   private static class TypeCounters
+   {
+      final Class<?> type;
+      final LongAdder count = new LongAdder();
+      final LongAdder timed = new LongAdder();
+      final LongAdder nanos = new LongAdder();
+
+      TypeCounters(Class<?> type)
+      {
+         this.type = type;
+      }
+   }
+
+   /**
+    * A task from submit or invokeAll.
+    */
+   private class TimedTask<T> extends FutureTask<T>
+   {
+      private final Class<?> type;
+      private final long submitNanos = submitted();
+      private boolean failure;
+
+      TimedTask(Callable<T> callable, Class<?> type)
+      {
+         super(callable);
+         this.type = type;
+      }
+
+      public void run()
+      {
+         if (isDone()) return; // cancelled before it ran
+         long start = begin(submitNanos);
+         try
+         {
+            super.run();
+         }
+         finally
+         {
+            end(type, submitNanos, start, failure);
+         }
+      }
+
+      protected void setException(Throwable t)
+      {
+         failure = true;
+         super.setException(t);
+      }
+   }
+
+   /**
+    * A task from execute, whose exceptions go to the worker thread as usual.
+    */
+   private class TimedRunnable implements Runnable
+   {
+      private final Runnable task;
+      private final long submitNanos = submitted();
+
+      TimedRunnable(Runnable task)
+      {
+         this.task = Objects.requireNonNull(task);
+      }
+
+      public void run()
+      {
+         long start = begin(submitNanos);
+         boolean failure = true;
+         try
+         {
+            task.run();
+            failure = false;
+         }
+         finally
+         {
+            end(task.getClass(), submitNanos, start, failure);
+         }
+      }
+
+      public String toString()
+      {
+         return task.toString();
+      }
+   }
+
+   /**
+    * The count and execution time of the tasks of one class.
+    */
+   public static final class TaskType
+   {
+      private final String name;
+      private final long count;
+      private final double meanNanos;
+
+      private TaskType(TypeCounters counters)
+      {
+         name = counters.type.getName();
+         long nanos = counters.nanos.sum();
+         long timed = counters.timed.sum();
+         count = counters.count.sum();
+         meanNanos = timed == 0 ? 0 : (double) nanos / timed;
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+
+      public long getCount()
+      {
+         return count;
+      }
+
+      /**
+       * Gets the mean execution time of the timed tasks in nanoseconds.
+       */
+      public double getMeanNanos()
+      {
+         return meanNanos;
+      }
+
+      /**
+       * Gets the total execution time in nanoseconds, estimated from the timed tasks.
+       */
+      public double getTotalNanos()
+      {
+         return meanNanos * count;
+      }
+
+      public String toString()
+      {
+         return String.format("%s count=%d mean=%.1fus", name, count, meanNanos / 1e3);
+      }
+   }
+
+   /**
+    * A snapshot of the statistics of an executor. Times are in nanoseconds, and only cover the
+    * tasks that were timed.
+    */
+   public static final class Stats
+   {
+      private final long submitted;
+      private final long completed;
+      private final long failed;
+      private final long rejected;
+      private final int active;
+      private final int peak;
+      private final LatencyHistogram queueWait = new LatencyHistogram();
+      private final LatencyHistogram execution = new LatencyHistogram();
+      private final List<TaskType> taskTypes = new ArrayList<>();
+
+      private Stats(InstrumentedExecutorService executor)
+      {
+         for (Recorder r : executor.recorders)
+            synchronized (r)
+            {
+               queueWait.add(r.queueWait);
+               execution.add(r.execution);
+            }
+         long completed = 0;
+         for (TypeCounters counters : executor.types.values())
+         {
+            TaskType type = new TaskType(counters);
+            taskTypes.add(type);
+            completed += type.count;
+         }
+         taskTypes.sort(Comparator.comparingDouble(TaskType::getTotalNanos).reversed());
+         this.completed = completed;
+         failed = executor.failed.sum();
+         rejected = executor.rejected.sum();
+         submitted = executor.submitted.sum();
+         active = executor.active.get();
+         peak = executor.peak.get();
+      }
+
+      public long getSubmittedTasks()
+      {
+         return submitted;
+      }
+
+      public long getCompletedTasks()
+      {
+         return completed;
+      }
+
+      public long getFailedTasks()
+      {
+         return failed;
+      }
+
+      public long getRejectedTasks()
+      {
+         return rejected;
+      }
+
+      public int getActiveThreads()
+      {
+         return active;
+      }
+
+      public int getPeakThreads()
+      {
+         return peak;
+      }
+
+      public LatencyHistogram getQueueWait()
+      {
+         return queueWait;
+      }
+
+      public LatencyHistogram getExecutionTime()
+      {
+         return execution;
+      }
+
+      /**
+       * Gets the task classes, those that took the most time first.
+       */
+      public List<TaskType> getTaskTypes()
+      {
+         return Collections.unmodifiableList(taskTypes);
+      }
+
+      public String toString()
+      {
+         return String.format(
+            "submitted=%d completed=%d failed=%d rejected=%d active=%d peak=%d%n"
+               + "queue wait %s%nexecution  %s",
+            submitted, completed, failed, rejected, active, peak,
+            queueWait.toString(TimeUnit.MICROSECONDS), execution.toString(TimeUnit.MICROSECONDS));
+      }
+   }
+}
@@ -0,0 +1,38 @@
+package cn.staynoob.trap.java.corejava.v1ch14.threadPool;
+
+/**
+ * The management interface of an {@link InstrumentedExecutorService}, as shown in JConsole.
+ * Times are in microseconds.
+ */
+public interface InstrumentedExecutorServiceMBean
+{
+   long getSubmittedTasks();
+
+   long getCompletedTasks();
+
+   long getFailedTasks();
+
+   long getRejectedTasks();
+
+   int getActiveThreads();
+
+   int getPeakThreads();
+
+   double getMeanQueueWait();
+
+   double getQueueWait99thPercentile();
+
+   double getMeanExecutionTime();
+
+   double getExecutionTime99thPercentile();
+
+   /**
+    * Gets a line per task class, with its count and mean execution time.
+    */
+   String[] getTaskTypes();
+
+   /**
+    * Starts the peak thread count over from the current number of active threads.
+    */
+   void resetPeakThreads();
+}
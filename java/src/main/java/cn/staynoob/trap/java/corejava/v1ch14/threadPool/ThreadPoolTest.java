@@ -1,5 +1,7 @@
 package cn.staynoob.trap.java.corejava.v1ch14.threadPool;
 
+import cn.staynoob.trap.java.corejava.v1ch14.search.*;
+
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
@@ -48,6 +50,7 @@ class MatchCounter implements Callable<Integer>
 {
    private File directory;
    private String keyword;
+   private KeywordSearch searcher;
    private ExecutorService pool;
    private int count;
 
@@ -61,6 +64,7 @@ class MatchCounter implements Callable<Integer>
    {
       this.directory = directory;
       this.keyword = keyword;
+      this.searcher = new KeywordSearch(keyword);
       this.pool = pool;
    }
 
@@ -109,16 +113,7 @@ class MatchCounter implements Callable<Integer>
    {
       try
       {
-         try (Scanner in = new Scanner(file))
-         {
-            boolean found = false;
-            while (!found && in.hasNextLine())
-            {
-               String line = in.nextLine();
-               if (line.contains(keyword)) found = true;
-            }         
-            return found;
-         }
+         return searcher.contains(file.toPath());
       }
       catch (IOException e)
       {
@@ -0,0 +1,346 @@
+package cn.staynoob.trap.java.corejava.v1ch14.timer;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A timer for very many timeouts, most of which are cancelled before they expire. Unlike
+ * {@link java.util.Timer} and {@link ScheduledThreadPoolExecutor}, which keep their tasks in a
+ * binary heap, scheduling and cancelling take constant time.
+ * <p>
+ * Time advances in ticks of a fixed length. A timeout that expires within 256 ticks goes into
+ * the bucket of its tick on the first wheel. A later one goes into a bucket of a coarser wheel,
+ * whose buckets each span 256 buckets of the wheel below, and moves down one wheel whenever its
+ * bucket comes up. Eight wheels cover every delay that fits into a long.
+ * <p>
+ * A single thread advances the wheels. New and cancelled timeouts reach it through lock-free
+ * queues, so callers never wait for it. The tasks of the timeouts that expire in a tick are
+ * handed to an executor in batches. An exception in one of them doesn't affect the others, nor
+ * the timer.
+ */
+public class HashedWheelTimer
+{
+   private static final int WHEEL_BITS = 8;
+   private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+   private static final int MASK = WHEEL_SIZE - 1;
+   private static final int WHEELS = (Long.SIZE + WHEEL_BITS - 1) / WHEEL_BITS;
+
+   private static final int CREATED = 0;
+   private static final int STARTED = 1;
+   private static final int STOPPED = 2;
+
+   private final long tickNanos;
+   private final Executor executor;
+   private final int batchSize;
+   private final Bucket[][] wheels = new Bucket[WHEELS][WHEEL_SIZE];
+   private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+   private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+   private final AtomicLong pending = new AtomicLong();
+   private final AtomicInteger state = new AtomicInteger(CREATED);
+   private final long startNanos;
+   private final Thread ticker;
+   private long tick; // the last tick that was processed, only used by the ticker
+
+   /**
+    * Constructs a timer with a batch size of 64.
+    * @param tick the resolution of the timer
+    * @param unit the unit of tick
+    * @param executor runs the tasks of expired timeouts
+    */
+   public HashedWheelTimer(long tick, TimeUnit unit, Executor executor)
+   {
+      this(tick, unit, executor, 64);
+   }
+
+   /**
+    * Constructs a timer.
+    * @param tick the resolution of the timer
+    * @param unit the unit of tick
+    * @param executor runs the tasks of expired timeouts
+    * @param batchSize the number of tasks that are passed to the executor as a single task
+    */
+   public HashedWheelTimer(long tick, TimeUnit unit, Executor executor, int batchSize)
+   {
+      if (tick <= 0) throw new IllegalArgumentException("tick: " + tick);
+      if (batchSize <= 0) throw new IllegalArgumentException("batchSize: " + batchSize);
+      this.tickNanos = unit.toNanos(tick);
+      this.executor = executor;
+      this.batchSize = batchSize;
+      for (Bucket[] wheel : wheels)
+         for (int i = 0; i < WHEEL_SIZE; i++)
+            wheel[i] = new Bucket();
+      startNanos = System.nanoTime();
+      ticker = new Thread(this::work, "HashedWheelTimer");
+      ticker.setDaemon(true);
+   }
+
+   /**
+    * Schedules a task. The task runs at the earliest after the delay, and at the latest one tick
+    * later, unless the executor or the timer's thread are overloaded.
+    * @param task the task to run
+    * @param delay the time from now on
+    * @param unit the unit of delay
+    * @return the handle to cancel the task
+    * @throws IllegalStateException if the timer was stopped
+    */
+   public Timeout newTimeout(Runnable task, long delay, TimeUnit unit)
+   {
+      Objects.requireNonNull(task);
+      if (state.get() == CREATED && state.compareAndSet(CREATED, STARTED)) ticker.start();
+      if (state.get() == STOPPED) throw new IllegalStateException("Timer already stopped");
+
+      // far enough in the future not to overflow
+      long delayNanos = Math.min(Math.max(0, unit.toNanos(delay)), Long.MAX_VALUE / 4);
+      long deadline = (System.nanoTime() - startNanos + delayNanos + tickNanos - 1) / tickNanos;
+      Timeout timeout = new Timeout(this, task, deadline);
+      pending.incrementAndGet();
+      added.add(timeout);
+      return timeout;
+   }
+
+   /**
+    * Gets the number of timeouts that have neither expired nor been cancelled.
+    */
+   public long getPendingTimeouts()
+   {
+      return pending.get();
+   }
+
+   /**
+    * Stops the timer. Timeouts that haven't expired won't expire any more.
+    * @return the timeouts that haven't expired and weren't cancelled
+    */
+   public Set<Timeout> stop()
+   {
+      Set<Timeout> unprocessed = new HashSet<>();
+      if (state.getAndSet(STOPPED) != STARTED) return unprocessed;
+      ticker.interrupt();
+      boolean interrupted = false;
+      while (ticker.isAlive())
+      {
+         try
+         {
+            ticker.join();
+         }
+         catch (InterruptedException e)
+         {
+            interrupted = true;
+         }
+      }
+      if (interrupted) Thread.currentThread().interrupt();
+
+      for (Bucket[] wheel : wheels)
+         for (Bucket bucket : wheel)
+            for (Timeout t = bucket.head; t != null; t = t.next)
+               unprocessed.add(t);
+      unprocessed.addAll(added);
+      unprocessed.removeIf(t -> t.state.get() != Timeout.WAITING);
+      return unprocessed;
+   }
+
+   private void work()
+   {
+      while (state.get() == STARTED)
+      {
+         long now = System.nanoTime();
+         long next = startNanos + (tick + 1) * tickNanos;
+         if (now - next < 0)
+         {
+            LockSupport.parkNanos(this, next - now);
+            continue;
+         }
+         // catch up with the ticks that passed while the previous one was processed
+         long current = (now - startNanos) / tickNanos;
+         while (tick < current && state.get() == STARTED)
+            process(++tick);
+      }
+   }
+
+   private void process(long t)
+   {
+      for (Timeout timeout; (timeout = cancelled.poll()) != null; )
+         if (timeout.bucket != null) timeout.bucket.remove(timeout);
+      for (Timeout timeout; (timeout = added.poll()) != null; )
+         if (timeout.state.get() == Timeout.WAITING) place(timeout, t);
+
+      // move timeouts down from the coarser wheels whose bucket begins at this tick,
+      // starting with the coarsest, so that they can fall through several wheels
+      int top = Math.min(WHEELS - 1, Long.numberOfTrailingZeros(t) / WHEEL_BITS);
+      for (int level = top; level >= 1; level--)
+      {
+         Bucket bucket = wheels[level][(int) (t >>> level * WHEEL_BITS) & MASK];
+         for (Timeout timeout = bucket.clear(); timeout != null; )
+         {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            if (timeout.state.get() == Timeout.WAITING) place(timeout, t);
+            timeout = next;
+         }
+      }
+
+      List<Timeout> batch = new ArrayList<>(batchSize);
+      for (Timeout timeout = wheels[0][(int) t & MASK].clear(); timeout != null; )
+      {
+         Timeout next = timeout.next;
+         timeout.next = null;
+         if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED))
+         {
+            pending.decrementAndGet();
+            batch.add(timeout);
+            if (batch.size() == batchSize)
+            {
+               submit(batch);
+               batch = new ArrayList<>(batchSize);
+            }
+         }
+         timeout = next;
+      }
+      if (!batch.isEmpty()) submit(batch);
+   }
+
+   /**
+    * Puts a timeout into the bucket of the finest wheel that reaches its deadline.
+    */
+   private void place(Timeout timeout, long t)
+   {
+      long delta = timeout.deadline - t;
+      if (delta < WHEEL_SIZE)
+      {
+         // overdue timeouts expire at this tick
+         wheels[0][(int) Math.max(timeout.deadline, t) & MASK].add(timeout);
+      }
+      else
+      {
+         int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(delta)) / WHEEL_BITS;
+         wheels[level][(int) (timeout.deadline >>> level * WHEEL_BITS) & MASK].add(timeout);
+      }
+   }
+
+   private void submit(List<Timeout> batch)
+   {
+      try
+      {
+         executor.execute(() ->
+         {
+            for (Timeout timeout : batch)
+            {
+               try
+               {
+                  timeout.task.run();
+               }
+               catch (Throwable e)
+               {
+                  Thread thread = Thread.currentThread();
+                  thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+               }
+            }
+         });
+      }
+      catch (RejectedExecutionException e)
+      {
+         // the executor was shut down, and with it the tasks
+      }
+   }
+
+   /**
+    * A doubly-linked list of timeouts, only used by the ticker.
+    */
+   private static class Bucket
+   {
+      Timeout head;
+      Timeout tail;
+
+      void add(Timeout timeout)
+      {
+         timeout.bucket = this;
+         timeout.prev = tail;
+         timeout.next = null;
+         if (tail == null) head = timeout;
+         else tail.next = timeout;
+         tail = timeout;
+      }
+
+      void remove(Timeout timeout)
+      {
+         if (timeout.prev == null) head = timeout.next;
+         else timeout.prev.next = timeout.next;
+         if (timeout.next == null) tail = timeout.prev;
+         else timeout.next.prev = timeout.prev;
+         timeout.prev = timeout.next = null;
+         timeout.bucket = null;
+      }
+
+      /**
+       * Empties the bucket.
+       * @return the former first timeout, linked to the others through next
+       */
+      Timeout clear()
+      {
+         Timeout first = head;
+         for (Timeout t = first; t != null; t = t.next)
+         {
+            t.bucket = null;
+            t.prev = null;
+         }
+         head = tail = null;
+         return first;
+      }
+   }
+
+   /**
+    * A scheduled task.
+    */
+   public static class Timeout
+   {
+      static final int WAITING = 0;
+      static final int CANCELLED = 1;
+      static final int EXPIRED = 2;
+
+      private final HashedWheelTimer timer;
+      private final Runnable task;
+      private final long deadline;
+      private final AtomicInteger state = new AtomicInteger(WAITING);
+
+      // only used by the ticker
+      private Bucket bucket;
+      private Timeout prev;
+      private Timeout next;
+
+      Timeout(HashedWheelTimer timer, Runnable task, long deadline)
+      {
+         this.timer = timer;
+         this.task = task;
+         this.deadline = deadline;
+      }
+
+      public Runnable getTask()
+      {
+         return task;
+      }
+
+      /**
+       * Cancels the timeout, unless it has expired already.
+       * @return true if the task won't run because of this call
+       */
+      public boolean cancel()
+      {
+         if (!state.compareAndSet(WAITING, CANCELLED)) return false;
+         timer.pending.decrementAndGet();
+         // the ticker unlinks the timeout from its bucket
+         timer.cancelled.add(this);
+         return true;
+      }
+
+      public boolean isCancelled()
+      {
+         return state.get() == CANCELLED;
+      }
+
+      public boolean isExpired()
+      {
+         return state.get() == EXPIRED;
+      }
+   }
+}
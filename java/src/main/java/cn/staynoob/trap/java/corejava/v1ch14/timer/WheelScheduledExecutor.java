@@ -0,0 +1,195 @@
+package cn.staynoob.trap.java.corejava.v1ch14.timer;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A {@link ScheduledExecutorService} on top of a {@link HashedWheelTimer}, for code that is
+ * written against the standard interface. Tasks run on a fixed pool of worker threads, and
+ * delays are rounded up to the next tick.
+ * <p>
+ * As with {@link ScheduledThreadPoolExecutor}, an exception in a periodic task cancels its
+ * further runs and is reported by the task's future. Unlike it, {@link #shutdown} also cancels
+ * the delayed tasks that haven't run yet.
+ */
+public class WheelScheduledExecutor extends AbstractExecutorService
+   implements ScheduledExecutorService
+{
+   private final ExecutorService workers;
+   private final HashedWheelTimer timer;
+   private volatile boolean shutdown;
+
+   /**
+    * Constructs a WheelScheduledExecutor.
+    * @param threads the number of worker threads
+    * @param tick the resolution of the timer
+    * @param unit the unit of tick
+    */
+   public WheelScheduledExecutor(int threads, long tick, TimeUnit unit)
+   {
+      workers = Executors.newFixedThreadPool(threads);
+      timer = new HashedWheelTimer(tick, unit, workers);
+   }
+
+   public void execute(Runnable command)
+   {
+      if (shutdown) throw new RejectedExecutionException("Executor already shut down");
+      workers.execute(command);
+   }
+
+   public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
+   {
+      return schedule(new ScheduledTask<Void>(Executors.callable(command, null),
+         triggerTime(delay, unit), 0));
+   }
+
+   public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit)
+   {
+      return schedule(new ScheduledTask<>(callable, triggerTime(delay, unit), 0));
+   }
+
+   public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+      TimeUnit unit)
+   {
+      if (period <= 0) throw new IllegalArgumentException("period: " + period);
+      return schedule(new ScheduledTask<Void>(Executors.callable(command, null),
+         triggerTime(initialDelay, unit), unit.toNanos(period)));
+   }
+
+   public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+      long delay, TimeUnit unit)
+   {
+      if (delay <= 0) throw new IllegalArgumentException("delay: " + delay);
+      return schedule(new ScheduledTask<Void>(Executors.callable(command, null),
+         triggerTime(initialDelay, unit), -unit.toNanos(delay)));
+   }
+
+   private static long triggerTime(long delay, TimeUnit unit)
+   {
+      return System.nanoTime() + unit.toNanos(Math.max(0, delay));
+   }
+
+   private <V> ScheduledTask<V> schedule(ScheduledTask<V> task)
+   {
+      if (shutdown) throw new RejectedExecutionException("Executor already shut down");
+      try
+      {
+         task.arm();
+      }
+      catch (IllegalStateException e)
+      {
+         throw new RejectedExecutionException("Executor already shut down", e);
+      }
+      return task;
+   }
+
+   public void shutdown()
+   {
+      shutdown = true;
+      for (HashedWheelTimer.Timeout timeout : timer.stop())
+         ((Future<?>) timeout.getTask()).cancel(false);
+      workers.shutdown();
+   }
+
+   public List<Runnable> shutdownNow()
+   {
+      shutdown = true;
+      List<Runnable> neverRun = new ArrayList<>();
+      for (HashedWheelTimer.Timeout timeout : timer.stop())
+      {
+         ((Future<?>) timeout.getTask()).cancel(false);
+         neverRun.add(timeout.getTask());
+      }
+      neverRun.addAll(workers.shutdownNow());
+      return neverRun;
+   }
+
+   public boolean isShutdown()
+   {
+      return shutdown;
+   }
+
+   public boolean isTerminated()
+   {
+      return workers.isTerminated();
+   }
+
+   public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      return workers.awaitTermination(timeout, unit);
+   }
+
+   /**
+    * A task that the timer hands to the workers when it is due.
+    */
+   private class ScheduledTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V>
+   {
+      private volatile long time;
+      /**
+       * Positive for a fixed rate, negative for a fixed delay, 0 for a single run.
+       */
+      private final long period;
+      private volatile HashedWheelTimer.Timeout timeout;
+
+      ScheduledTask(Callable<V> callable, long time, long period)
+      {
+         super(callable);
+         this.time = time;
+         this.period = period;
+      }
+
+      void arm()
+      {
+         timeout = timer.newTimeout(this, time - System.nanoTime(), TimeUnit.NANOSECONDS);
+         // a cancel that came before the timeout was assigned couldn't cancel it
+         if (isCancelled()) timeout.cancel();
+      }
+
+      public void run()
+      {
+         if (!isPeriodic())
+            super.run();
+         else if (runAndReset())
+         {
+            time = period > 0 ? time + period : System.nanoTime() - period;
+            if (shutdown)
+               cancel(false);
+            else
+            {
+               try
+               {
+                  arm();
+               }
+               catch (IllegalStateException e)
+               {
+                  cancel(false); // the timer was stopped meanwhile
+               }
+            }
+         }
+      }
+
+      public boolean cancel(boolean mayInterruptIfRunning)
+      {
+         boolean cancelled = super.cancel(mayInterruptIfRunning);
+         HashedWheelTimer.Timeout t = timeout;
+         if (cancelled && t != null) t.cancel();
+         return cancelled;
+      }
+
+      public boolean isPeriodic()
+      {
+         return period != 0;
+      }
+
+      public long getDelay(TimeUnit unit)
+      {
+         return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+
+      public int compareTo(Delayed other)
+      {
+         if (other == this) return 0;
+         return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+      }
+   }
+}
@@ -0,0 +1,9 @@
+package cn.staynoob.trap.java.corejava.v2ch02.columnar;
+
+/**
+ * The columns of a columnar employee file.
+ */
+public enum Column
+{
+   NAME, SALARY, HIRE_DAY
+}
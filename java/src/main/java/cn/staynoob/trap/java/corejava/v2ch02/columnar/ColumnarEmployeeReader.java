@@ -0,0 +1,235 @@
+package cn.staynoob.trap.java.corejava.v2ch02.columnar;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.textFile.Employee;
+
+/**
+ * Reads a file written by {@link ColumnarEmployeeWriter} a block at a time. Only the columns
+ * that are asked for are read, each with one read and a bulk conversion into an array, and
+ * blocks whose minimum and maximum rule them out are skipped without being read.
+ */
+public class ColumnarEmployeeReader implements Closeable
+{
+   static final int BLOCK_HEADER_SIZE = 4 + 8 + 8 + 4 + 4 + 4;
+
+   /**
+    * The header of a block.
+    */
+   public static class Block
+   {
+      private final long offset;
+      private final int rows;
+      private final double minSalary;
+      private final double maxSalary;
+      private final int minHireDay;
+      private final int maxHireDay;
+      private final int namesLength;
+
+      private Block(long offset, ByteBuffer header)
+      {
+         this.offset = offset;
+         rows = header.getInt();
+         minSalary = header.getDouble();
+         maxSalary = header.getDouble();
+         minHireDay = header.getInt();
+         maxHireDay = header.getInt();
+         namesLength = header.getInt();
+      }
+
+      public int getRows()
+      {
+         return rows;
+      }
+
+      public double getMinSalary()
+      {
+         return minSalary;
+      }
+
+      public double getMaxSalary()
+      {
+         return maxSalary;
+      }
+
+      public LocalDate getMinHireDay()
+      {
+         return LocalDate.ofEpochDay(minHireDay);
+      }
+
+      public LocalDate getMaxHireDay()
+      {
+         return LocalDate.ofEpochDay(maxHireDay);
+      }
+   }
+
+   private final FileChannel channel;
+   private final List<Block> blocks = new ArrayList<>();
+   private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+   /**
+    * Opens a columnar file and reads the headers of its blocks.
+    * @param path the file
+    */
+   public ColumnarEmployeeReader(Path path) throws IOException
+   {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      try
+      {
+         long size = channel.size();
+         boolean valid = size >= 16;
+         if (valid)
+         {
+            ByteBuffer start = read(0, 8);
+            valid = start.getInt() == ColumnarEmployeeWriter.MAGIC
+               && start.getInt() == ColumnarEmployeeWriter.VERSION;
+         }
+         ByteBuffer end = valid ? read(size - 8, 8) : null;
+         if (!valid || end.getInt(4) != ColumnarEmployeeWriter.MAGIC)
+            throw new IOException(path + " is not a columnar employee file");
+         int blockCount = end.getInt(0);
+         ByteBuffer offsets = ByteBuffer.allocate(8 * blockCount);
+         readFully(offsets, size - 8 - 8L * blockCount);
+         offsets.flip();
+         for (int i = 0; i < blockCount; i++)
+         {
+            long offset = offsets.getLong();
+            blocks.add(new Block(offset, read(offset, BLOCK_HEADER_SIZE)));
+         }
+      }
+      catch (IOException | RuntimeException ex)
+      {
+         channel.close();
+         throw ex;
+      }
+   }
+
+   /**
+    * Reads bytes into the shared buffer.
+    * @return the buffer, flipped
+    */
+   private ByteBuffer read(long position, int length) throws IOException
+   {
+      if (buffer.capacity() < length)
+         buffer = ByteBuffer.allocate(Math.max(length, 2 * buffer.capacity()));
+      buffer.clear().limit(length);
+      readFully(buffer, position);
+      buffer.flip();
+      return buffer;
+   }
+
+   private void readFully(ByteBuffer b, long position) throws IOException
+   {
+      while (b.hasRemaining())
+         if (channel.read(b, position + b.position()) < 0) throw new EOFException();
+   }
+
+   public List<Block> getBlocks()
+   {
+      return Collections.unmodifiableList(blocks);
+   }
+
+   /**
+    * Gets the number of employees in the file.
+    */
+   public long getRowCount()
+   {
+      long rows = 0;
+      for (Block block : blocks)
+         rows += block.rows;
+      return rows;
+   }
+
+   /**
+    * Reads columns of a block.
+    * @param block a block of this file
+    * @param batch the batch to fill in, from {@link #newBatch}
+    */
+   public void read(Block block, EmployeeBatch batch) throws IOException
+   {
+      int rows = block.rows;
+      batch.ensureCapacity(rows);
+      long position = block.offset + BLOCK_HEADER_SIZE;
+      if (batch.getColumns().contains(Column.NAME))
+         readNames(read(position, block.namesLength), rows, batch.names);
+      position += block.namesLength;
+      if (batch.getColumns().contains(Column.SALARY))
+         read(position, 8 * rows).asDoubleBuffer().get(batch.salaries, 0, rows);
+      position += 8 * rows;
+      if (batch.getColumns().contains(Column.HIRE_DAY))
+         read(position, 4 * rows).asIntBuffer().get(batch.hireDays, 0, rows);
+   }
+
+   private static void readNames(ByteBuffer in, int rows, String[] names)
+   {
+      int dictionarySize = in.getInt();
+      int bytesStart = in.position() + 4 * (dictionarySize + 1);
+      String[] dictionary = new String[dictionarySize];
+      for (int i = 0; i < dictionarySize; i++)
+      {
+         int from = in.getInt(in.position() + 4 * i);
+         int to = in.getInt(in.position() + 4 * i + 4);
+         dictionary[i] = new String(in.array(), in.arrayOffset() + bytesStart + from, to - from,
+            StandardCharsets.UTF_8);
+      }
+      int codesStart = bytesStart + in.getInt(in.position() + 4 * dictionarySize);
+      for (int i = 0; i < rows; i++)
+         names[i] = dictionary[in.getInt(codesStart + 4 * i)];
+   }
+
+   /**
+    * Makes a batch to read columns into.
+    * @param columns the columns to read
+    * @return an empty batch
+    */
+   public EmployeeBatch newBatch(Set<Column> columns)
+   {
+      return new EmployeeBatch(EnumSet.copyOf(columns));
+   }
+
+   /**
+    * Reads the blocks that pass a filter, one after the other, into the same batch.
+    * @param columns the columns to read
+    * @param filter tells from its header whether a block may have rows of interest
+    * @param action called with the batch after each block has been read into it
+    */
+   public void scan(Set<Column> columns, Predicate<? super Block> filter,
+      Consumer<? super EmployeeBatch> action) throws IOException
+   {
+      EmployeeBatch batch = newBatch(columns);
+      for (Block block : blocks)
+         if (filter.test(block))
+         {
+            read(block, batch);
+            action.accept(batch);
+         }
+   }
+
+   /**
+    * Reads all employees.
+    * @return the employees
+    */
+   public Employee[] readAll() throws IOException
+   {
+      Employee[] employees = new Employee[(int) getRowCount()];
+      int[] n = new int[1];
+      scan(EnumSet.allOf(Column.class), block -> true, batch ->
+         {
+            for (int i = 0; i < batch.getRows(); i++)
+               employees[n[0]++] = batch.toEmployee(i);
+         });
+      return employees;
+   }
+
+   public void close() throws IOException
+   {
+      channel.close();
+   }
+}
@@ -0,0 +1,162 @@
+package cn.staynoob.trap.java.corejava.v2ch02.columnar;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.textFile.Employee;
+
+/**
+ * Writes employees to a columnar file. The employees are written in blocks; within a block,
+ * all names come first, then all salaries, then all hire days, so that a reader can load one
+ * column of a block with a single read and skip the others. The layout of the file is:
+ * <pre>
+ * file:   MAGIC VERSION block* blockOffset* blockCount MAGIC
+ * block:  rows minSalary maxSalary minHireDay maxHireDay namesLength names salary* hireDay*
+ * names:  dictionarySize (dictionarySize + 1) * offset utf8Bytes rows * code
+ * </pre>
+ * Hire days are stored as epoch days, names as indexes into a dictionary of the distinct names
+ * of the block. The minimum and maximum in the header of a block let a reader skip blocks
+ * without reading them.
+ */
+public class ColumnarEmployeeWriter implements Closeable
+{
+   public static final int MAGIC = 0x454d5043; // "EMPC"
+   public static final int VERSION = 1;
+   public static final int DEFAULT_BLOCK_ROWS = 1 << 16;
+
+   private final FileChannel channel;
+   private final int blockRows;
+   private final List<Long> blockOffsets = new ArrayList<>();
+
+   // the current block
+   private final double[] salaries;
+   private final int[] hireDays;
+   private final int[] codes;
+   private final Map<String, Integer> dictionary = new HashMap<>();
+   private final List<byte[]> dictionaryBytes = new ArrayList<>();
+   private int rows;
+
+   /**
+    * Creates a columnar file with blocks of {@link #DEFAULT_BLOCK_ROWS} employees.
+    * @param path the file
+    */
+   public ColumnarEmployeeWriter(Path path) throws IOException
+   {
+      this(path, DEFAULT_BLOCK_ROWS);
+   }
+
+   /**
+    * Creates a columnar file.
+    * @param path the file
+    * @param blockRows the number of employees per block
+    */
+   public ColumnarEmployeeWriter(Path path, int blockRows) throws IOException
+   {
+      if (blockRows <= 0) throw new IllegalArgumentException("blockRows: " + blockRows);
+      this.blockRows = blockRows;
+      salaries = new double[blockRows];
+      hireDays = new int[blockRows];
+      codes = new int[blockRows];
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+         StandardOpenOption.TRUNCATE_EXISTING);
+      ByteBuffer header = ByteBuffer.allocate(8);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      writeFully(header);
+   }
+
+   /**
+    * Writes an employee.
+    * @param e the employee
+    */
+   public void write(Employee e) throws IOException
+   {
+      Integer code = dictionary.get(e.getName());
+      if (code == null)
+      {
+         code = dictionaryBytes.size();
+         dictionary.put(e.getName(), code);
+         dictionaryBytes.add(e.getName().getBytes(StandardCharsets.UTF_8));
+      }
+      codes[rows] = code;
+      salaries[rows] = e.getSalary();
+      hireDays[rows] = (int) e.getHireDay().toEpochDay();
+      if (++rows == blockRows) writeBlock();
+   }
+
+   private void writeBlock() throws IOException
+   {
+      double minSalary = Double.POSITIVE_INFINITY;
+      double maxSalary = Double.NEGATIVE_INFINITY;
+      int minHireDay = Integer.MAX_VALUE;
+      int maxHireDay = Integer.MIN_VALUE;
+      for (int i = 0; i < rows; i++)
+      {
+         minSalary = Math.min(minSalary, salaries[i]);
+         maxSalary = Math.max(maxSalary, salaries[i]);
+         minHireDay = Math.min(minHireDay, hireDays[i]);
+         maxHireDay = Math.max(maxHireDay, hireDays[i]);
+      }
+      int utf8Length = 0;
+      for (byte[] bytes : dictionaryBytes)
+         utf8Length += bytes.length;
+      int namesLength = 4 + 4 * (dictionaryBytes.size() + 1) + utf8Length + 4 * rows;
+
+      ByteBuffer block = ByteBuffer.allocate(ColumnarEmployeeReader.BLOCK_HEADER_SIZE + namesLength
+         + 12 * rows);
+      block.putInt(rows).putDouble(minSalary).putDouble(maxSalary).putInt(minHireDay)
+         .putInt(maxHireDay).putInt(namesLength);
+      block.putInt(dictionaryBytes.size());
+      int offset = 0;
+      for (byte[] bytes : dictionaryBytes)
+      {
+         block.putInt(offset);
+         offset += bytes.length;
+      }
+      block.putInt(offset);
+      for (byte[] bytes : dictionaryBytes)
+         block.put(bytes);
+      block.asIntBuffer().put(codes, 0, rows);
+      block.position(block.position() + 4 * rows);
+      block.asDoubleBuffer().put(salaries, 0, rows);
+      block.position(block.position() + 8 * rows);
+      block.asIntBuffer().put(hireDays, 0, rows);
+      block.position(block.position() + 4 * rows);
+      block.flip();
+
+      blockOffsets.add(channel.position());
+      writeFully(block);
+      rows = 0;
+      dictionary.clear();
+      dictionaryBytes.clear();
+   }
+
+   private void writeFully(ByteBuffer buffer) throws IOException
+   {
+      while (buffer.hasRemaining())
+         channel.write(buffer);
+   }
+
+   /**
+    * Writes the last block and the index of the blocks, and closes the file.
+    */
+   public void close() throws IOException
+   {
+      try
+      {
+         if (rows > 0) writeBlock();
+         ByteBuffer footer = ByteBuffer.allocate(8 * blockOffsets.size() + 8);
+         for (long offset : blockOffsets)
+            footer.putLong(offset);
+         footer.putInt(blockOffsets.size()).putInt(MAGIC).flip();
+         writeFully(footer);
+      }
+      finally
+      {
+         channel.close();
+      }
+   }
+}
@@ -0,0 +1,45 @@
+package cn.staynoob.trap.java.corejava.v2ch02.columnar;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.textFile.Employee;
+
+/**
+ * Writes the employees of TextFileTest to a columnar file, reads them back, and then reads just
+ * the salaries of the employees hired after 1989.
+ */
+public class ColumnarFileTest
+{
+   public static void main(String[] args) throws IOException
+   {
+      Employee[] staff = new Employee[3];
+
+      staff[0] = new Employee("Carl Cracker", 75000, 1987, 12, 15);
+      staff[1] = new Employee("Harry Hacker", 50000, 1989, 10, 1);
+      staff[2] = new Employee("Tony Tester", 40000, 1990, 3, 15);
+
+      Path path = Paths.get("employee.col");
+      try (ColumnarEmployeeWriter out = new ColumnarEmployeeWriter(path))
+      {
+         for (Employee e : staff)
+            out.write(e);
+      }
+
+      try (ColumnarEmployeeReader in = new ColumnarEmployeeReader(path))
+      {
+         for (Employee e : in.readAll())
+            System.out.println(e);
+
+         int since = (int) java.time.LocalDate.of(1989, 1, 1).toEpochDay();
+         in.scan(EnumSet.of(Column.SALARY, Column.HIRE_DAY),
+            block -> block.getMaxHireDay().toEpochDay() >= since, batch ->
+            {
+               for (int i = 0; i < batch.getRows(); i++)
+                  if (batch.getHireDays()[i] >= since)
+                     System.out.println(batch.getSalaries()[i]);
+            });
+      }
+   }
+}
@@ -0,0 +1,81 @@
+package cn.staynoob.trap.java.corejava.v2ch02.columnar;
+
+import java.time.*;
+import java.util.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.textFile.Employee;
+
+/**
+ * The employees of one block of a columnar file, one array per column. Only the columns that
+ * were asked for are filled in. The arrays may be longer than the number of rows, because a
+ * reader reuses them for the next block.
+ */
+public class EmployeeBatch
+{
+   private final Set<Column> columns;
+   int rows;
+   String[] names = new String[0];
+   double[] salaries = new double[0];
+   int[] hireDays = new int[0];
+
+   EmployeeBatch(Set<Column> columns)
+   {
+      this.columns = columns;
+   }
+
+   /**
+    * Makes sure that the arrays of the requested columns can hold a number of rows.
+    */
+   void ensureCapacity(int rows)
+   {
+      if (columns.contains(Column.NAME) && names.length < rows) names = new String[rows];
+      if (columns.contains(Column.SALARY) && salaries.length < rows) salaries = new double[rows];
+      if (columns.contains(Column.HIRE_DAY) && hireDays.length < rows) hireDays = new int[rows];
+      this.rows = rows;
+   }
+
+   public Set<Column> getColumns()
+   {
+      return columns;
+   }
+
+   public int getRows()
+   {
+      return rows;
+   }
+
+   /**
+    * Gets the names. The rows of a block that have the same name share one string.
+    */
+   public String[] getNames()
+   {
+      return names;
+   }
+
+   public double[] getSalaries()
+   {
+      return salaries;
+   }
+
+   /**
+    * Gets the hire days, as days since the epoch.
+    */
+   public int[] getHireDays()
+   {
+      return hireDays;
+   }
+
+   /**
+    * Makes an employee from a row. This requires all columns.
+    * @param i the row
+    * @return the employee
+    */
+   public Employee toEmployee(int i)
+   {
+      if (columns.size() != Column.values().length)
+         throw new IllegalStateException("Not all columns were read: " + columns);
+      LocalDate hireDay = LocalDate.ofEpochDay(hireDays[i]);
+      return new Employee(names[i], salaries[i], hireDay.getYear(), hireDay.getMonthValue(),
+         hireDay.getDayOfMonth());
+   }
+}
@@ -0,0 +1,103 @@
+package cn.staynoob.trap.java.corejava.v2ch02.memoryMap;
+
+import java.nio.*;
+import java.util.zip.*;
+
+/**
+ * Computes the CRC-32C (Castagnoli) checksum of a data stream, as used by iSCSI, ext4 and
+ * many storage formats. The Java 8 library only has {@link CRC32}, so this is a table driven
+ * implementation that processes eight bytes at a time ("slicing-by-8").
+ */
+public class CRC32C implements Checksum
+{
+   /**
+    * The Castagnoli polynomial, bit reversed.
+    */
+   public static final int POLYNOMIAL = 0x82F63B78;
+
+   private static final int[][] TABLES = new int[8][256];
+
+   static
+   {
+      for (int i = 0; i < 256; i++)
+      {
+         int c = i;
+         for (int k = 0; k < 8; k++)
+            c = (c & 1) != 0 ? (c >>> 1) ^ POLYNOMIAL : c >>> 1;
+         TABLES[0][i] = c;
+      }
+      for (int i = 0; i < 256; i++)
+         for (int t = 1; t < 8; t++)
+            TABLES[t][i] = (TABLES[t - 1][i] >>> 8) ^ TABLES[0][TABLES[t - 1][i] & 0xff];
+   }
+
+   private int crc = 0xffffffff;
+
+   public void update(int b)
+   {
+      crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xff];
+   }
+
+   public void update(byte[] b, int off, int len)
+   {
+      if (off < 0 || len < 0 || off > b.length - len) throw new ArrayIndexOutOfBoundsException();
+      int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+      int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+      int c = crc;
+      int end = off + len;
+      for (; end - off >= 8; off += 8)
+      {
+         int lo = c ^ ((b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16
+            | (b[off + 3] & 0xff) << 24);
+         int hi = (b[off + 4] & 0xff) | (b[off + 5] & 0xff) << 8 | (b[off + 6] & 0xff) << 16
+            | (b[off + 7] & 0xff) << 24;
+         c = t7[lo & 0xff] ^ t6[(lo >>> 8) & 0xff] ^ t5[(lo >>> 16) & 0xff] ^ t4[lo >>> 24]
+            ^ t3[hi & 0xff] ^ t2[(hi >>> 8) & 0xff] ^ t1[(hi >>> 16) & 0xff] ^ t0[hi >>> 24];
+      }
+      for (; off < end; off++)
+         c = (c >>> 8) ^ t0[(c ^ b[off]) & 0xff];
+      crc = c;
+   }
+
+   /**
+    * Updates the checksum with the remaining bytes of a buffer, without copying them out of a
+    * direct or mapped buffer. Afterwards the position of the buffer is its limit.
+    * @param buffer the bytes to add
+    */
+   public void update(ByteBuffer buffer)
+   {
+      if (buffer.hasArray())
+      {
+         update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+         buffer.position(buffer.limit());
+         return;
+      }
+      ByteBuffer b = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+      int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+      int c = crc;
+      int p = b.position();
+      int end = b.limit();
+      for (; end - p >= 8; p += 8)
+      {
+         int lo = c ^ b.getInt(p);
+         int hi = b.getInt(p + 4);
+         c = t7[lo & 0xff] ^ t6[(lo >>> 8) & 0xff] ^ t5[(lo >>> 16) & 0xff] ^ t4[lo >>> 24]
+            ^ t3[hi & 0xff] ^ t2[(hi >>> 8) & 0xff] ^ t1[(hi >>> 16) & 0xff] ^ t0[hi >>> 24];
+      }
+      for (; p < end; p++)
+         c = (c >>> 8) ^ t0[(c ^ b.get(p)) & 0xff];
+      crc = c;
+      buffer.position(end);
+   }
+
+   public long getValue()
+   {
+      return ~crc & 0xffffffffL;
+   }
+
+   public void reset()
+   {
+      crc = 0xffffffff;
+   }
+}
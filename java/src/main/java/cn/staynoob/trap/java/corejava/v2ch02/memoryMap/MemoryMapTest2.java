@@ -7,7 +7,7 @@ import java.nio.file.*;
 import java.util.zip.*;
 
 /**
- * This program computes the CRC checksum of a file in four ways. <br>
+ * This program computes the CRC checksum of a file in four ways, and in parallel. <br>
  * Usage: java memoryMap.MemoryMapTest filename
  * @version 1.01 2012-05-30
  * @author Cay Horstmann
@@ -111,5 +111,19 @@ public class MemoryMapTest2
       end = System.currentTimeMillis();
       System.out.println(Long.toHexString(crcValue));
       System.out.println((end - start) + " milliseconds");
+
+      System.out.println("Parallel Mapped File:");
+      start = System.currentTimeMillis();
+      crcValue = ParallelChecksum.checksum(filename, ParallelChecksum.Algorithm.CRC32);
+      end = System.currentTimeMillis();
+      System.out.println(Long.toHexString(crcValue));
+      System.out.println((end - start) + " milliseconds");
+
+      System.out.println("Parallel Mapped File, CRC32C:");
+      start = System.currentTimeMillis();
+      crcValue = ParallelChecksum.checksum(filename, ParallelChecksum.Algorithm.CRC32C);
+      end = System.currentTimeMillis();
+      System.out.println(Long.toHexString(crcValue));
+      System.out.println((end - start) + " milliseconds");
    }
 }
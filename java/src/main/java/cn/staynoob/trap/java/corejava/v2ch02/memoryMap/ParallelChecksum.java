@@ -0,0 +1,238 @@
+package cn.staynoob.trap.java.corejava.v2ch02.memoryMap;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * Computes the CRC checksum of a file of any size by mapping it one segment at a time and
+ * checksumming the segments in parallel. The mapped segments are handed to the checksum as they
+ * are, without copying them into an array, and the checksums of the segments are then combined
+ * into the checksum of the whole file, as zlib's {@code crc32_combine} does.
+ */
+public final class ParallelChecksum
+{
+   /**
+    * The largest segment that is mapped at once.
+    */
+   public static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+   /**
+    * The default segment size, small enough that a few segments keep every worker busy.
+    */
+   public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+   /**
+    * The supported checksums. Both are reflected CRCs that start and end by inverting all bits,
+    * so they only differ in their polynomial. The constants hide the classes of the same name,
+    * hence the qualified names.
+    */
+   public enum Algorithm
+   {
+      CRC32(0xEDB88320)
+      {
+         long checksum(ByteBuffer buffer)
+         {
+            java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(buffer);
+            return crc.getValue();
+         }
+      },
+      CRC32C(cn.staynoob.trap.java.corejava.v2ch02.memoryMap.CRC32C.POLYNOMIAL)
+      {
+         long checksum(ByteBuffer buffer)
+         {
+            cn.staynoob.trap.java.corejava.v2ch02.memoryMap.CRC32C crc =
+               new cn.staynoob.trap.java.corejava.v2ch02.memoryMap.CRC32C();
+            crc.update(buffer);
+            return crc.getValue();
+         }
+      };
+
+      private final int polynomial;
+
+      Algorithm(int polynomial)
+      {
+         this.polynomial = polynomial;
+      }
+
+      /**
+       * Computes the checksum of the remaining bytes of a buffer.
+       */
+      abstract long checksum(ByteBuffer buffer);
+
+      /**
+       * Computes the checksum of two blocks of data from their checksums.
+       * @param crc1 the checksum of the first block
+       * @param crc2 the checksum of the second block
+       * @param length2 the length of the second block
+       * @return the checksum of the first block followed by the second
+       */
+      public long combine(long crc1, long crc2, long length2)
+      {
+         if (length2 <= 0) return crc1;
+
+         // odd is the operator that feeds one zero bit into the crc; squaring it doubles the
+         // number of bits, so the operator for length2 bytes takes log(length2) squarings
+         int[] even = new int[32];
+         int[] odd = new int[32];
+         odd[0] = polynomial;
+         for (int n = 1, row = 1; n < 32; n++, row <<= 1)
+            odd[n] = row;
+         square(even, odd); // two zero bits
+         square(odd, even); // four zero bits
+
+         int c = (int) crc1;
+         while (true)
+         {
+            square(even, odd); // the first time, one zero byte
+            if ((length2 & 1) != 0) c = times(even, c);
+            length2 >>>= 1;
+            if (length2 == 0) break;
+            square(odd, even);
+            if ((length2 & 1) != 0) c = times(odd, c);
+            length2 >>>= 1;
+            if (length2 == 0) break;
+         }
+         return (c ^ (int) crc2) & 0xffffffffL;
+      }
+
+      private static int times(int[] matrix, int vector)
+      {
+         int sum = 0;
+         for (int i = 0; vector != 0; i++, vector >>>= 1)
+            if ((vector & 1) != 0) sum ^= matrix[i];
+         return sum;
+      }
+
+      private static void square(int[] square, int[] matrix)
+      {
+         for (int n = 0; n < 32; n++)
+            square[n] = times(matrix, matrix[n]);
+      }
+   }
+
+   private ParallelChecksum()
+   {
+   }
+
+   /**
+    * Computes the checksum of a file with the default segment size in the common pool.
+    * @param filename the file
+    * @param algorithm the checksum to compute
+    * @return the checksum
+    */
+   public static long checksum(Path filename, Algorithm algorithm) throws IOException
+   {
+      return checksum(ForkJoinPool.commonPool(), filename, algorithm, DEFAULT_SEGMENT_SIZE);
+   }
+
+   /**
+    * Computes the checksum of a file.
+    * @param pool the pool that checksums the segments
+    * @param filename the file
+    * @param algorithm the checksum to compute
+    * @param segmentSize the number of bytes that a task maps and checksums at once
+    * @return the checksum
+    */
+   public static long checksum(ForkJoinPool pool, Path filename, Algorithm algorithm,
+      long segmentSize) throws IOException
+   {
+      if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE)
+         throw new IllegalArgumentException("segmentSize: " + segmentSize);
+      try (FileChannel channel = FileChannel.open(filename))
+      {
+         long size = channel.size();
+         if (size == 0) return algorithm.checksum(ByteBuffer.allocate(0));
+         long segments = (size + segmentSize - 1) / segmentSize;
+         return pool.invoke(new Segments(channel, algorithm, size, segmentSize, 0, segments));
+      }
+      catch (UncheckedIOException ex)
+      {
+         throw ex.getCause();
+      }
+   }
+
+   /**
+    * Checksums a range of segments, and combines the checksums of its halves.
+    */
+   private static class Segments extends RecursiveTask<Long>
+   {
+      private final FileChannel channel;
+      private final Algorithm algorithm;
+      private final long size;
+      private final long segmentSize;
+      private final long from;
+      private final long to;
+
+      Segments(FileChannel channel, Algorithm algorithm, long size, long segmentSize, long from,
+         long to)
+      {
+         this.channel = channel;
+         this.algorithm = algorithm;
+         this.size = size;
+         this.segmentSize = segmentSize;
+         this.from = from;
+         this.to = to;
+      }
+
+      protected Long compute()
+      {
+         if (to - from == 1) return checksumSegment();
+         long mid = (from + to) >>> 1;
+         Segments left = new Segments(channel, algorithm, size, segmentSize, from, mid);
+         Segments right = new Segments(channel, algorithm, size, segmentSize, mid, to);
+         right.fork();
+         long crc1 = left.compute();
+         long crc2 = right.join();
+         long length2 = Math.min(size, to * segmentSize) - mid * segmentSize;
+         return algorithm.combine(crc1, crc2, length2);
+      }
+
+      private long checksumSegment()
+      {
+         long position = from * segmentSize;
+         long length = Math.min(segmentSize, size - position);
+         try
+         {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            try
+            {
+               return algorithm.checksum(buffer);
+            }
+            finally
+            {
+               unmap(buffer);
+            }
+         }
+         catch (IOException ex)
+         {
+            throw new UncheckedIOException(ex);
+         }
+      }
+   }
+
+   /**
+    * Releases a mapping right away instead of when the buffer is garbage collected. Mapped
+    * buffers take up almost no heap, so a checksum of a large file could otherwise run into
+    * the limit on the number of mappings of a process long before a collection. This only works
+    * on the Java 8 JDK; elsewhere the mapping is left to the collector.
+    */
+   private static void unmap(MappedByteBuffer buffer)
+   {
+      try
+      {
+         Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+         cleanerMethod.setAccessible(true);
+         Object cleaner = cleanerMethod.invoke(buffer);
+         if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+      catch (ReflectiveOperationException | RuntimeException ex)
+      {
+         // leave it to the garbage collector
+      }
+   }
+}
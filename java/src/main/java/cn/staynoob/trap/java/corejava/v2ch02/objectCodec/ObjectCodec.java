@@ -0,0 +1,557 @@
+package cn.staynoob.trap.java.corejava.v2ch02.objectCodec;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.objectCodec.Schema.Kind;
+
+/**
+ * A binary codec for graphs of objects, as an alternative to object streams. Instead of
+ * describing every class in the stream, the codec relies on a schema that both sides share:
+ * the classes that may occur are registered in the same order on both sides, and an object is
+ * written as the number of its class followed by its fields, in the order of {@link Schema}.
+ * <p>
+ * As in an object stream, an object that is reached more than once is written once and then
+ * referred to by its serial number, so shared and cyclic references survive a round trip.
+ * Numbers are written as varints: integers in zigzag form, and floating-point numbers with
+ * their bytes reversed, so that whole numbers such as salaries take three or four bytes
+ * instead of eight. Strings are written as UTF-8, and local dates as epoch days.
+ * <p>
+ * The codec reuses its buffers from one call to the next. It is not thread-safe.
+ */
+public class ObjectCodec
+{
+   private static final int STRING_ID = 0;
+   private static final int DATE_ID = 1;
+   private static final int FIRST_CLASS_ID = 2;
+
+   private final List<Schema> schemas = new ArrayList<>();
+   private final Map<Class<?>, Integer> ids = new HashMap<>();
+
+   // encoding
+   private byte[] out = new byte[256];
+   private int length;
+   private final Map<Object, Integer> written = new IdentityHashMap<>();
+   private final byte[] lengthBytes = new byte[5];
+
+   // decoding
+   private byte[] in;
+   private int position;
+   private int limit;
+   private final List<Object> read = new ArrayList<>();
+   private byte[] inputBuffer = new byte[256];
+
+   /**
+    * Constructs a codec.
+    * @param types the classes of the objects to encode, see {@link #register}
+    */
+   public ObjectCodec(Class<?>... types)
+   {
+      ids.put(String.class, STRING_ID);
+      ids.put(LocalDate.class, DATE_ID);
+      for (Class<?> type : types)
+         register(type);
+   }
+
+   /**
+    * Adds a class to the schema of this codec. A class can be registered if it is serializable
+    * and has no serialization methods of its own, or if it is an array class. Strings and local
+    * dates need not be registered.
+    * @param type the class
+    * @throws IllegalArgumentException if the codec can't handle the class
+    */
+   public void register(Class<?> type)
+   {
+      if (ids.containsKey(type)) return;
+      Schema schema = Schema.of(type);
+      ids.put(type, FIRST_CLASS_ID + schemas.size());
+      schemas.add(schema);
+   }
+
+   /**
+    * Encodes a graph of objects.
+    * @param root the object to start from; it may be null
+    * @return the bytes, in a buffer that is only valid until the next call of this method
+    * @throws IllegalArgumentException if an object of a class that isn't registered is reached
+    */
+   public ByteBuffer encode(Object root)
+   {
+      length = 0;
+      try
+      {
+         writeReference(root);
+      }
+      catch (ReflectiveOperationException ex)
+      {
+         throw new IllegalStateException(ex);
+      }
+      finally
+      {
+         written.clear();
+      }
+      return ByteBuffer.wrap(out, 0, length);
+   }
+
+   /**
+    * Encodes a graph of objects to a stream, preceded by its length, so that graphs can be
+    * written one after the other.
+    * @param root the object to start from; it may be null
+    * @param stream the stream
+    */
+   public void write(Object root, OutputStream stream) throws IOException
+   {
+      ByteBuffer encoded = encode(root);
+      stream.write(lengthBytes, 0, putVarLong(lengthBytes, 0, encoded.remaining()));
+      stream.write(encoded.array(), 0, encoded.remaining());
+   }
+
+   /**
+    * Decodes a graph of objects, starting at the position of a buffer. The position is moved
+    * past the bytes of the graph.
+    * @param buffer the bytes written by {@link #encode}
+    * @return the root object
+    */
+   public Object decode(ByteBuffer buffer) throws IOException
+   {
+      if (buffer.hasArray())
+      {
+         int offset = buffer.arrayOffset();
+         Object root = decode(buffer.array(), offset + buffer.position(), offset + buffer.limit());
+         buffer.position(position - offset);
+         return root;
+      }
+      int start = buffer.position();
+      int n = buffer.remaining();
+      if (inputBuffer.length < n) inputBuffer = new byte[Math.max(n, 2 * inputBuffer.length)];
+      buffer.get(inputBuffer, 0, n);
+      Object root = decode(inputBuffer, 0, n);
+      buffer.position(start + position);
+      return root;
+   }
+
+   /**
+    * Decodes a graph of objects written by {@link #write}.
+    * @param stream the stream
+    * @return the root object
+    */
+   public Object read(InputStream stream) throws IOException
+   {
+      long n = 0;
+      for (int shift = 0;; shift += 7)
+      {
+         int b = stream.read();
+         if (b < 0) throw new EOFException();
+         if (shift > 28) throw new StreamCorruptedException("Bad length");
+         n |= (long) (b & 0x7f) << shift;
+         if (b < 0x80) break;
+      }
+      if (n > Integer.MAX_VALUE) throw new StreamCorruptedException("Bad length " + n);
+      if (inputBuffer.length < n) inputBuffer = new byte[Math.max((int) n, 2 * inputBuffer.length)];
+      for (int i = 0; i < n;)
+      {
+         int count = stream.read(inputBuffer, i, (int) n - i);
+         if (count < 0) throw new EOFException();
+         i += count;
+      }
+      return decode(inputBuffer, 0, (int) n);
+   }
+
+   private Object decode(byte[] bytes, int from, int to) throws IOException
+   {
+      in = bytes;
+      position = from;
+      limit = to;
+      try
+      {
+         return readReference();
+      }
+      catch (ReflectiveOperationException ex)
+      {
+         throw new IllegalStateException(ex);
+      }
+      finally
+      {
+         in = null;
+         read.clear();
+      }
+   }
+
+   /**
+    * Makes a deep copy of a graph of objects, with the same shared and cyclic references,
+    * without encoding it. Strings and local dates are immutable and are shared, not copied.
+    * The classes of the graph need not be registered anywhere, but they must meet the
+    * conditions of {@link #register}.
+    * @param root the object to start from; it may be null
+    * @return the copy
+    * @throws IllegalArgumentException if the codec can't handle an object of the graph
+    */
+   @SuppressWarnings("unchecked")
+   public static <T> T deepCopy(T root)
+   {
+      try
+      {
+         return (T) copy(root, new IdentityHashMap<>());
+      }
+      catch (ReflectiveOperationException ex)
+      {
+         throw new IllegalStateException(ex);
+      }
+   }
+
+   private static Object copy(Object original, Map<Object, Object> copies)
+      throws ReflectiveOperationException
+   {
+      if (original == null || Schema.isValue(original.getClass())) return original;
+      Object copy = copies.get(original);
+      if (copy != null) return copy;
+      Schema schema = Schema.of(original.getClass());
+      if (schema.componentKind != null)
+      {
+         int n = Array.getLength(original);
+         copy = Array.newInstance(schema.type.getComponentType(), n);
+         copies.put(original, copy);
+         if (schema.componentKind == Kind.REFERENCE)
+         {
+            Object[] from = (Object[]) original;
+            Object[] to = (Object[]) copy;
+            for (int i = 0; i < n; i++)
+               to[i] = copy(from[i], copies);
+         }
+         else System.arraycopy(original, 0, copy, 0, n);
+         return copy;
+      }
+      copy = schema.newInstance();
+      copies.put(original, copy);
+      for (int i = 0; i < schema.fields.length; i++)
+      {
+         Field f = schema.fields[i];
+         switch (schema.kinds[i])
+         {
+            case BOOLEAN: f.setBoolean(copy, f.getBoolean(original)); break;
+            case BYTE: f.setByte(copy, f.getByte(original)); break;
+            case CHAR: f.setChar(copy, f.getChar(original)); break;
+            case SHORT: f.setShort(copy, f.getShort(original)); break;
+            case INT: f.setInt(copy, f.getInt(original)); break;
+            case LONG: f.setLong(copy, f.getLong(original)); break;
+            case FLOAT: f.setFloat(copy, f.getFloat(original)); break;
+            case DOUBLE: f.setDouble(copy, f.getDouble(original)); break;
+            case STRING: case DATE: f.set(copy, f.get(original)); break;
+            default: f.set(copy, copy(f.get(original), copies));
+         }
+      }
+      return copy;
+   }
+
+   // ---- encoding
+
+   /**
+    * Writes a reference as a single varint: 0 for null, 2 * n + 1 for the n-th object of the
+    * graph when it has been written before, and 2 * (id + 1) for a new object of the class with
+    * the given id, which is then followed by the object.
+    */
+   private void writeReference(Object obj) throws ReflectiveOperationException
+   {
+      if (obj == null)
+      {
+         writeVarLong(0);
+         return;
+      }
+      Integer serial = written.get(obj);
+      if (serial != null)
+      {
+         writeVarLong(2L * serial + 1);
+         return;
+      }
+      Class<?> type = obj.getClass();
+      Integer id = ids.get(type);
+      if (id == null) throw new IllegalArgumentException(type.getName() + " isn't registered");
+      writeVarLong(2L * (id + 1));
+      if (id == STRING_ID) writeString((String) obj);
+      else if (id == DATE_ID) writeDate((LocalDate) obj);
+      else
+      {
+         written.put(obj, written.size());
+         writeObject(schemas.get(id - FIRST_CLASS_ID), obj);
+      }
+   }
+
+   private void writeObject(Schema schema, Object obj) throws ReflectiveOperationException
+   {
+      if (schema.componentKind != null)
+      {
+         int n = Array.getLength(obj);
+         writeVarLong(n);
+         for (int i = 0; i < n; i++)
+            writeElement(schema.componentKind, obj, i);
+         return;
+      }
+      for (int i = 0; i < schema.fields.length; i++)
+      {
+         Field f = schema.fields[i];
+         switch (schema.kinds[i])
+         {
+            case BOOLEAN: writeByte(f.getBoolean(obj) ? 1 : 0); break;
+            case BYTE: writeByte(f.getByte(obj)); break;
+            case CHAR: writeVarLong(f.getChar(obj)); break;
+            case SHORT: case INT: writeVarLong(zigzag(f.getInt(obj))); break;
+            case LONG: writeVarLong(zigzag(f.getLong(obj))); break;
+            case FLOAT: writeFloat(f.getFloat(obj)); break;
+            case DOUBLE: writeDouble(f.getDouble(obj)); break;
+            case STRING: writeString((String) f.get(obj)); break;
+            case DATE: writeDate((LocalDate) f.get(obj)); break;
+            default: writeReference(f.get(obj));
+         }
+      }
+   }
+
+   private void writeElement(Kind kind, Object array, int i) throws ReflectiveOperationException
+   {
+      switch (kind)
+      {
+         case BOOLEAN: writeByte(Array.getBoolean(array, i) ? 1 : 0); break;
+         case BYTE: writeByte(Array.getByte(array, i)); break;
+         case CHAR: writeVarLong(Array.getChar(array, i)); break;
+         case SHORT: case INT: writeVarLong(zigzag(Array.getInt(array, i))); break;
+         case LONG: writeVarLong(zigzag(Array.getLong(array, i))); break;
+         case FLOAT: writeFloat(Array.getFloat(array, i)); break;
+         case DOUBLE: writeDouble(Array.getDouble(array, i)); break;
+         case STRING: writeString((String) Array.get(array, i)); break;
+         case DATE: writeDate((LocalDate) Array.get(array, i)); break;
+         default: writeReference(((Object[]) array)[i]);
+      }
+   }
+
+   private void ensureCapacity(int n)
+   {
+      if (out.length - length < n)
+         out = Arrays.copyOf(out, Math.max(length + n, 2 * out.length));
+   }
+
+   private void writeByte(int b)
+   {
+      ensureCapacity(1);
+      out[length++] = (byte) b;
+   }
+
+   private void writeVarLong(long value)
+   {
+      ensureCapacity(10);
+      length = putVarLong(out, length, value);
+   }
+
+   /**
+    * Puts an unsigned varint: seven bits per byte, least significant first, with the high bit
+    * set in all bytes but the last.
+    * @return the position after the varint
+    */
+   private static int putVarLong(byte[] bytes, int p, long value)
+   {
+      while ((value & ~0x7fL) != 0)
+      {
+         bytes[p++] = (byte) (value | 0x80);
+         value >>>= 7;
+      }
+      bytes[p++] = (byte) value;
+      return p;
+   }
+
+   private static long zigzag(long value)
+   {
+      return (value << 1) ^ (value >> 63);
+   }
+
+   private void writeFloat(float value)
+   {
+      writeVarLong(Integer.reverseBytes(Float.floatToRawIntBits(value)) & 0xffffffffL);
+   }
+
+   private void writeDouble(double value)
+   {
+      writeVarLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
+   }
+
+   /**
+    * Writes a string as the varint 0 for null, or its number of UTF-8 bytes plus one, followed
+    * by the bytes.
+    */
+   private void writeString(String s)
+   {
+      if (s == null)
+      {
+         writeVarLong(0);
+         return;
+      }
+      int n = s.length();
+      boolean ascii = true;
+      for (int i = 0; ascii && i < n; i++)
+         ascii = s.charAt(i) < 0x80;
+      if (ascii)
+      {
+         writeVarLong(n + 1);
+         ensureCapacity(n);
+         for (int i = 0; i < n; i++)
+            out[length++] = (byte) s.charAt(i);
+      }
+      else
+      {
+         byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+         writeVarLong(bytes.length + 1);
+         ensureCapacity(bytes.length);
+         System.arraycopy(bytes, 0, out, length, bytes.length);
+         length += bytes.length;
+      }
+   }
+
+   /**
+    * Writes a date as the varint 0 for null, or its epoch day in zigzag form plus one.
+    */
+   private void writeDate(LocalDate date)
+   {
+      writeVarLong(date == null ? 0 : zigzag(date.toEpochDay()) + 1);
+   }
+
+   // ---- decoding
+
+   private Object readReference() throws IOException, ReflectiveOperationException
+   {
+      long tag = readVarLong();
+      if (tag == 0) return null;
+      if ((tag & 1) != 0)
+      {
+         long serial = tag >>> 1;
+         if (serial >= read.size()) throw new StreamCorruptedException("Bad reference " + serial);
+         return read.get((int) serial);
+      }
+      long id = (tag >>> 1) - 1;
+      if (id == STRING_ID) return readString();
+      if (id == DATE_ID) return readDate();
+      if (id >= FIRST_CLASS_ID + schemas.size())
+         throw new StreamCorruptedException("Unknown class " + id);
+      Schema schema = schemas.get((int) id - FIRST_CLASS_ID);
+      if (schema.componentKind != null)
+      {
+         int n = readLength();
+         Object array = Array.newInstance(schema.type.getComponentType(), n);
+         read.add(array);
+         for (int i = 0; i < n; i++)
+            readElement(schema.componentKind, array, i);
+         return array;
+      }
+      Object obj = schema.newInstance();
+      read.add(obj); // before the fields, which may refer back to it
+      for (int i = 0; i < schema.fields.length; i++)
+      {
+         Field f = schema.fields[i];
+         switch (schema.kinds[i])
+         {
+            case BOOLEAN: f.setBoolean(obj, readByte() != 0); break;
+            case BYTE: f.setByte(obj, readByte()); break;
+            case CHAR: f.setChar(obj, (char) readVarLong()); break;
+            case SHORT: f.setShort(obj, (short) unzigzag(readVarLong())); break;
+            case INT: f.setInt(obj, (int) unzigzag(readVarLong())); break;
+            case LONG: f.setLong(obj, unzigzag(readVarLong())); break;
+            case FLOAT: f.setFloat(obj, readFloat()); break;
+            case DOUBLE: f.setDouble(obj, readDouble()); break;
+            case STRING: f.set(obj, readString()); break;
+            case DATE: f.set(obj, readDate()); break;
+            default: f.set(obj, checkType(f.getType(), readReference()));
+         }
+      }
+      return obj;
+   }
+
+   private void readElement(Kind kind, Object array, int i)
+      throws IOException, ReflectiveOperationException
+   {
+      switch (kind)
+      {
+         case BOOLEAN: Array.setBoolean(array, i, readByte() != 0); break;
+         case BYTE: Array.setByte(array, i, readByte()); break;
+         case CHAR: Array.setChar(array, i, (char) readVarLong()); break;
+         case SHORT: Array.setShort(array, i, (short) unzigzag(readVarLong())); break;
+         case INT: Array.setInt(array, i, (int) unzigzag(readVarLong())); break;
+         case LONG: Array.setLong(array, i, unzigzag(readVarLong())); break;
+         case FLOAT: Array.setFloat(array, i, readFloat()); break;
+         case DOUBLE: Array.setDouble(array, i, readDouble()); break;
+         case STRING: Array.set(array, i, readString()); break;
+         case DATE: Array.set(array, i, readDate()); break;
+         default:
+            ((Object[]) array)[i] = checkType(array.getClass().getComponentType(), readReference());
+      }
+   }
+
+   /**
+    * Checks that a decoded reference fits where it goes, so that corrupt input fails with a
+    * stream exception rather than a class cast or an illegal argument.
+    */
+   private static Object checkType(Class<?> type, Object obj) throws StreamCorruptedException
+   {
+      if (obj != null && !type.isInstance(obj))
+         throw new StreamCorruptedException(obj.getClass().getName() + " isn't a " + type.getName());
+      return obj;
+   }
+
+   private byte readByte() throws EOFException
+   {
+      if (position == limit) throw new EOFException();
+      return in[position++];
+   }
+
+   private long readVarLong() throws IOException
+   {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7)
+      {
+         byte b = readByte();
+         value |= (long) (b & 0x7f) << shift;
+         if (b >= 0) return value;
+      }
+      throw new StreamCorruptedException("Bad varint");
+   }
+
+   /**
+    * Reads a length, which can't be more than the number of bytes left, since every element
+    * takes at least a byte.
+    */
+   private int readLength() throws IOException
+   {
+      long n = readVarLong();
+      if (n > limit - position) throw new StreamCorruptedException("Bad length " + n);
+      return (int) n;
+   }
+
+   private static long unzigzag(long value)
+   {
+      return (value >>> 1) ^ -(value & 1);
+   }
+
+   private float readFloat() throws IOException
+   {
+      return Float.intBitsToFloat(Integer.reverseBytes((int) readVarLong()));
+   }
+
+   private double readDouble() throws IOException
+   {
+      return Double.longBitsToDouble(Long.reverseBytes(readVarLong()));
+   }
+
+   private String readString() throws IOException
+   {
+      long n = readVarLong();
+      if (n == 0) return null;
+      if (n - 1 > limit - position) throw new StreamCorruptedException("Bad length " + (n - 1));
+      String s = new String(in, position, (int) n - 1, StandardCharsets.UTF_8);
+      position += n - 1;
+      return s;
+   }
+
+   private LocalDate readDate() throws IOException
+   {
+      long n = readVarLong();
+      return n == 0 ? null : LocalDate.ofEpochDay(unzigzag(n - 1));
+   }
+}
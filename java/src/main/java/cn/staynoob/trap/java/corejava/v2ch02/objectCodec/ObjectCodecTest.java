@@ -0,0 +1,56 @@
+package cn.staynoob.trap.java.corejava.v2ch02.objectCodec;
+
+import java.io.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.objectStream.*;
+
+/**
+ * Saves the employees of {@link ObjectStreamTest} with an object codec, and compares the size
+ * with that of an object stream.
+ */
+class ObjectCodecTest
+{
+   public static void main(String[] args) throws IOException
+   {
+      Employee harry = new Employee("Harry Hacker", 50000, 1989, 10, 1);
+      Manager carl = new Manager("Carl Cracker", 80000, 1987, 12, 15);
+      carl.setSecretary(harry);
+      Manager tony = new Manager("Tony Tester", 40000, 1990, 3, 15);
+      tony.setSecretary(harry);
+
+      Employee[] staff = new Employee[3];
+
+      staff[0] = carl;
+      staff[1] = harry;
+      staff[2] = tony;
+
+      ObjectCodec codec = new ObjectCodec(Employee[].class, Employee.class, Manager.class);
+
+      // save all employee records to the file employee.bin
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream("employee.bin")))
+      {
+         codec.write(staff, out);
+      }
+
+      try (InputStream in = new BufferedInputStream(new FileInputStream("employee.bin")))
+      {
+         // retrieve all records into a new array
+         Employee[] newStaff = (Employee[]) codec.read(in);
+
+         // raise secretary's salary
+         newStaff[1].raiseSalary(10);
+
+         // print the newly read employee records
+         for (Employee e : newStaff)
+            System.out.println(e);
+      }
+
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bout))
+      {
+         out.writeObject(staff);
+      }
+      System.out.println("object stream: " + bout.size() + " bytes, codec: "
+         + codec.encode(staff).remaining() + " bytes");
+   }
+}
@@ -0,0 +1,197 @@
+package cn.staynoob.trap.java.corejava.v2ch02.objectCodec;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * The layout of a class for an {@link ObjectCodec}: the fields that Java serialization would
+ * write, in a fixed order, each with the kind of value it holds. A schema is worked out once per
+ * class and cached.
+ */
+final class Schema
+{
+   /**
+    * The kinds of values of fields and array elements. Strings and dates are immutable values
+    * that are written in place; everything else that isn't a primitive is a reference.
+    */
+   enum Kind
+   {
+      BOOLEAN, BYTE, CHAR, SHORT, INT, LONG, FLOAT, DOUBLE, STRING, DATE, REFERENCE;
+
+      static Kind of(Class<?> type)
+      {
+         if (type == boolean.class) return BOOLEAN;
+         if (type == byte.class) return BYTE;
+         if (type == char.class) return CHAR;
+         if (type == short.class) return SHORT;
+         if (type == int.class) return INT;
+         if (type == long.class) return LONG;
+         if (type == float.class) return FLOAT;
+         if (type == double.class) return DOUBLE;
+         if (type == String.class) return STRING;
+         if (type == LocalDate.class) return DATE;
+         return REFERENCE;
+      }
+   }
+
+   private static final ClassValue<Object> SCHEMAS = new ClassValue<Object>()
+   {
+      protected Object computeValue(Class<?> type)
+      {
+         try
+         {
+            return new Schema(type);
+         }
+         catch (IllegalArgumentException ex)
+         {
+            return ex; // remembered, so that the class isn't inspected again
+         }
+      }
+   };
+
+   /**
+    * Gets the schema of a class.
+    * @param type an array class, or a serializable class without custom serialization
+    * @return the schema
+    * @throws IllegalArgumentException if the codec can't handle the class
+    */
+   static Schema of(Class<?> type)
+   {
+      Object schema = SCHEMAS.get(type);
+      if (schema instanceof IllegalArgumentException)
+         throw new IllegalArgumentException(((IllegalArgumentException) schema).getMessage());
+      return (Schema) schema;
+   }
+
+   /**
+    * Tells whether values of a class are written in place rather than as objects.
+    */
+   static boolean isValue(Class<?> type)
+   {
+      return type == String.class || type == LocalDate.class;
+   }
+
+   final Class<?> type;
+   final Field[] fields;
+   final Kind[] kinds;
+   final Kind componentKind; // null for classes that aren't arrays
+   private final Constructor<?> constructor;
+
+   private Schema(Class<?> type)
+   {
+      this.type = type;
+      if (type.isArray())
+      {
+         fields = new Field[0];
+         kinds = new Kind[0];
+         componentKind = Kind.of(type.getComponentType());
+         constructor = null;
+         return;
+      }
+      componentKind = null;
+      if (type.isPrimitive() || isValue(type))
+         throw new IllegalArgumentException(type.getName() + " is a value, not an object");
+      if (type.isInterface() || type.isEnum() || Modifier.isAbstract(type.getModifiers()))
+         throw new IllegalArgumentException("Can't make instances of " + type.getName());
+      if (!Serializable.class.isAssignableFrom(type))
+         throw new IllegalArgumentException(type.getName() + " isn't serializable");
+      if (Externalizable.class.isAssignableFrom(type))
+         throw new IllegalArgumentException(type.getName() + " is externalizable");
+
+      // the fields of the serializable superclasses come first, as in Java serialization
+      Deque<Class<?>> hierarchy = new ArrayDeque<>();
+      Class<?> top = type;
+      for (; Serializable.class.isAssignableFrom(top); top = top.getSuperclass())
+         hierarchy.push(top);
+      List<Field> list = new ArrayList<>();
+      for (Class<?> cl : hierarchy)
+      {
+         checkNoCustomSerialization(cl);
+         List<Field> declared = new ArrayList<>();
+         for (Field f : cl.getDeclaredFields())
+            if ((f.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0)
+               declared.add(f);
+         declared.sort(Comparator.comparing(Field::getName));
+         list.addAll(declared);
+      }
+      fields = list.toArray(new Field[list.size()]);
+      kinds = new Kind[fields.length];
+      try
+      {
+         for (int i = 0; i < fields.length; i++)
+         {
+            fields[i].setAccessible(true);
+            kinds[i] = Kind.of(fields[i].getType());
+         }
+         constructor = serializationConstructor(type, top);
+         constructor.setAccessible(true);
+      }
+      catch (ReflectiveOperationException | RuntimeException ex)
+      {
+         throw new IllegalArgumentException("Can't access " + type.getName(), ex);
+      }
+   }
+
+   private static final String[] CUSTOM_METHODS = {
+      "writeObject", "readObject", "readObjectNoData", "writeReplace", "readResolve" };
+
+   /**
+    * Rejects a class that takes part in its own serialization, since the codec would silently
+    * bypass it.
+    */
+   private static void checkNoCustomSerialization(Class<?> cl)
+   {
+      for (Method m : cl.getDeclaredMethods())
+         if (!Modifier.isStatic(m.getModifiers())
+            && Arrays.asList(CUSTOM_METHODS).contains(m.getName()))
+            throw new IllegalArgumentException(cl.getName() + " has its own " + m.getName());
+   }
+
+   /**
+    * Finds the constructor that Java serialization uses: it makes an instance of a class but
+    * runs only the no-argument constructor of the first superclass that isn't serializable. If
+    * that is not available, the no-argument constructor of the class itself is used.
+    */
+   private static Constructor<?> serializationConstructor(Class<?> type, Class<?> top)
+      throws ReflectiveOperationException
+   {
+      Constructor<?> topConstructor = top.getDeclaredConstructor();
+      try
+      {
+         Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+         Object factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+         Method newConstructor = factoryClass.getMethod("newConstructorForSerialization",
+            Class.class, Constructor.class);
+         Constructor<?> constructor
+            = (Constructor<?>) newConstructor.invoke(factory, type, topConstructor);
+         if (constructor != null) return constructor;
+      }
+      catch (ReflectiveOperationException | RuntimeException ex)
+      {
+         // fall back to a constructor of the class
+      }
+      return type.getDeclaredConstructor();
+   }
+
+   /**
+    * Makes an instance of the class, with all its fields at their defaults.
+    */
+   Object newInstance()
+   {
+      try
+      {
+         return constructor.newInstance();
+      }
+      catch (InvocationTargetException ex)
+      {
+         throw new IllegalStateException("Can't make an instance of " + type.getName(),
+            ex.getCause());
+      }
+      catch (ReflectiveOperationException ex)
+      {
+         throw new IllegalStateException("Can't make an instance of " + type.getName(), ex);
+      }
+   }
+}
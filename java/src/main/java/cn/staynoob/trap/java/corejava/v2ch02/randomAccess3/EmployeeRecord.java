@@ -0,0 +1,116 @@
+package cn.staynoob.trap.java.corejava.v2ch02.randomAccess3;
+
+import java.time.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.randomAccess.Employee;
+
+/**
+ * The fields of an {@link Employee} in a record file. The name takes 40 bytes of UTF-8 instead
+ * of 40 UTF-16 chars, and the record is padded to 64 bytes, so that records don't straddle
+ * cache lines: 64 bytes instead of the 100 of {@link Employee#RECORD_SIZE}.
+ */
+public class EmployeeRecord extends MappedRecord
+{
+   public static final int NAME_SIZE = 40;
+   private static final int NAME = 0;
+   private static final int SALARY = NAME + NAME_SIZE;
+   private static final int YEAR = SALARY + 8;
+   private static final int MONTH = YEAR + 4;
+   private static final int DAY = MONTH + 4;
+   public static final int RECORD_SIZE = 64;
+
+   /**
+    * Constructs a flyweight for the records of a file.
+    * @param file a file of {@link #RECORD_SIZE} byte records
+    */
+   public EmployeeRecord(MappedRecordFile file)
+   {
+      super(file);
+      if (file.getRecordSize() != RECORD_SIZE)
+         throw new IllegalArgumentException("Not a file of employee records");
+   }
+
+   public EmployeeRecord moveTo(long index)
+   {
+      super.moveTo(index);
+      return this;
+   }
+
+   public String getName()
+   {
+      return getString(NAME, NAME_SIZE);
+   }
+
+   public void setName(String name)
+   {
+      putString(NAME, NAME_SIZE, name);
+   }
+
+   public double getSalary()
+   {
+      return getDouble(SALARY);
+   }
+
+   public void setSalary(double salary)
+   {
+      putDouble(SALARY, salary);
+   }
+
+   public int getHireYear()
+   {
+      return getInt(YEAR);
+   }
+
+   public int getHireMonth()
+   {
+      return getInt(MONTH);
+   }
+
+   public int getHireDayOfMonth()
+   {
+      return getInt(DAY);
+   }
+
+   public LocalDate getHireDay()
+   {
+      return LocalDate.of(getHireYear(), getHireMonth(), getHireDayOfMonth());
+   }
+
+   public void setHireDay(LocalDate hireDay)
+   {
+      putInt(YEAR, hireDay.getYear());
+      putInt(MONTH, hireDay.getMonthValue());
+      putInt(DAY, hireDay.getDayOfMonth());
+   }
+
+   /**
+      Raises the salary of this employee.
+      @param byPercent the percentage of the raise
+   */
+   public void raiseSalary(double byPercent)
+   {
+      double salary = getSalary();
+      setSalary(salary + salary * byPercent / 100);
+   }
+
+   /**
+    * Copies an employee into this record.
+    * @param e the employee
+    */
+   public void set(Employee e)
+   {
+      setName(e.getName());
+      setSalary(e.getSalary());
+      setHireDay(e.getHireDay());
+   }
+
+   /**
+    * Copies this record into a new employee.
+    * @return the employee
+    */
+   public Employee toEmployee()
+   {
+      return new Employee(getName(), getSalary(), getHireYear(), getHireMonth(),
+         getHireDayOfMonth());
+   }
+}
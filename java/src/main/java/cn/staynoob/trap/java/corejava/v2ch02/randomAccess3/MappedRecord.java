@@ -0,0 +1,155 @@
+package cn.staynoob.trap.java.corejava.v2ch02.randomAccess3;
+
+import java.nio.*;
+
+/**
+ * A view of one record of a {@link MappedRecordFile} at a time. Subclasses define the layout
+ * of a record by the offsets that they pass to the accessors of this class. A program typically
+ * creates one such flyweight and moves it from record to record, instead of creating an object
+ * per record.
+ * <p>
+ * Strings are stored in UTF-8, after a byte with their length, and are cut short at a character
+ * boundary if they don't fit in their field.
+ */
+public abstract class MappedRecord
+{
+   private final MappedRecordFile file;
+   private ByteBuffer window;
+   private int base;
+   private long index = -1;
+   private char[] chars = new char[16];
+
+   protected MappedRecord(MappedRecordFile file)
+   {
+      this.file = file;
+   }
+
+   /**
+    * Makes this flyweight show another record.
+    * @param index the index of the record
+    * @return this flyweight
+    */
+   public MappedRecord moveTo(long index)
+   {
+      window = file.window(index);
+      base = file.offset(index);
+      this.index = index;
+      return this;
+   }
+
+   /**
+    * Gets the index of the record that this flyweight shows.
+    */
+   public long getIndex()
+   {
+      return index;
+   }
+
+   protected int getInt(int offset)
+   {
+      return window.getInt(base + offset);
+   }
+
+   protected void putInt(int offset, int value)
+   {
+      window.putInt(base + offset, value);
+   }
+
+   protected long getLong(int offset)
+   {
+      return window.getLong(base + offset);
+   }
+
+   protected void putLong(int offset, long value)
+   {
+      window.putLong(base + offset, value);
+   }
+
+   protected double getDouble(int offset)
+   {
+      return window.getDouble(base + offset);
+   }
+
+   protected void putDouble(int offset, double value)
+   {
+      window.putDouble(base + offset, value);
+   }
+
+   /**
+    * Reads a string.
+    * @param offset the offset of the field
+    * @param size the size of the field, at most 256
+    * @return the string
+    */
+   protected String getString(int offset, int size)
+   {
+      int p = base + offset;
+      int length = Math.min(window.get(p++) & 0xff, size - 1);
+      if (chars.length < length) chars = new char[Math.max(length, 2 * chars.length)];
+      int end = p + length;
+      int n = 0;
+      while (p < end)
+      {
+         int b = window.get(p++);
+         if (b >= 0) chars[n++] = (char) b;
+         else if ((b & 0xe0) == 0xc0)
+            chars[n++] = (char) ((b & 0x1f) << 6 | window.get(p++) & 0x3f);
+         else if ((b & 0xf0) == 0xe0)
+         {
+            chars[n++] = (char) ((b & 0x0f) << 12 | (window.get(p) & 0x3f) << 6
+               | window.get(p + 1) & 0x3f);
+            p += 2;
+         }
+         else
+         {
+            int codePoint = (b & 0x07) << 18 | (window.get(p) & 0x3f) << 12
+               | (window.get(p + 1) & 0x3f) << 6 | window.get(p + 2) & 0x3f;
+            p += 3;
+            chars[n++] = Character.highSurrogate(codePoint);
+            chars[n++] = Character.lowSurrogate(codePoint);
+         }
+      }
+      return new String(chars, 0, n);
+   }
+
+   /**
+    * Writes a string.
+    * @param offset the offset of the field
+    * @param size the size of the field, at most 256
+    * @param s the string
+    */
+   protected void putString(int offset, int size, String s)
+   {
+      int start = base + offset;
+      int p = start + 1;
+      int end = start + size;
+      for (int i = 0; i < s.length(); i++)
+      {
+         int c = s.codePointAt(i);
+         int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+         if (p + bytes > end) break;
+         if (bytes == 1) window.put(p, (byte) c);
+         else if (bytes == 2)
+         {
+            window.put(p, (byte) (0xc0 | c >> 6));
+            window.put(p + 1, (byte) (0x80 | c & 0x3f));
+         }
+         else if (bytes == 3)
+         {
+            window.put(p, (byte) (0xe0 | c >> 12));
+            window.put(p + 1, (byte) (0x80 | c >> 6 & 0x3f));
+            window.put(p + 2, (byte) (0x80 | c & 0x3f));
+         }
+         else
+         {
+            window.put(p, (byte) (0xf0 | c >> 18));
+            window.put(p + 1, (byte) (0x80 | c >> 12 & 0x3f));
+            window.put(p + 2, (byte) (0x80 | c >> 6 & 0x3f));
+            window.put(p + 3, (byte) (0x80 | c & 0x3f));
+            i++; // the low surrogate
+         }
+         p += bytes;
+      }
+      window.put(start, (byte) (p - start - 1));
+   }
+}
@@ -0,0 +1,186 @@
+package cn.staynoob.trap.java.corejava.v2ch02.randomAccess3;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * A file of fixed size records that is mapped into memory. The fields of a record are read and
+ * written in place through a {@link MappedRecord}, so nothing is copied and nothing is
+ * allocated per record. The file is mapped in windows of at most {@link #MAX_WINDOW_SIZE}
+ * bytes that hold a whole number of records, so it can grow beyond 2GB.
+ * <p>
+ * Appending grows the file by doubling it and mapping the new part; closing the file cuts it
+ * back to the records that were appended, so that the file holds nothing but records, like the
+ * files of the other randomAccess programs. The number of records is therefore not stored
+ * anywhere but in the size of the file: if the program dies before it closes the file, the file
+ * is left at its doubled size, and reopening it shows the unused part as records whose bytes
+ * are all zero, after the ones that were appended. A record file is not thread-safe.
+ */
+public class MappedRecordFile implements Closeable
+{
+   public static final int MAX_WINDOW_SIZE = 1 << 30;
+   private static final int MIN_CAPACITY = 64;
+
+   private final FileChannel channel;
+   private final int recordSize;
+   private final int windowRecords;
+   private final List<MappedByteBuffer> windows = new ArrayList<>();
+   private long count;
+   private long capacity;
+
+   /**
+    * Opens a record file, creating it if it doesn't exist.
+    * @param path the file
+    * @param recordSize the size of a record in bytes
+    */
+   public MappedRecordFile(Path path, int recordSize) throws IOException
+   {
+      this(path, recordSize, MAX_WINDOW_SIZE);
+   }
+
+   MappedRecordFile(Path path, int recordSize, int windowSize) throws IOException
+   {
+      if (recordSize <= 0 || recordSize > windowSize)
+         throw new IllegalArgumentException("recordSize: " + recordSize);
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+         StandardOpenOption.WRITE);
+      this.recordSize = recordSize;
+      this.windowRecords = windowSize / recordSize;
+      long size = channel.size();
+      if (size % recordSize != 0)
+      {
+         channel.close();
+         throw new IOException(path + " is not a file of " + recordSize + " byte records");
+      }
+      count = size / recordSize;
+      map(count);
+   }
+
+   /**
+    * Maps the file up to a new capacity, remapping the last window if it grows.
+    */
+   private void map(long newCapacity) throws IOException
+   {
+      int first = windows.isEmpty() ? 0 : windows.size() - 1;
+      while (windows.size() > first) windows.remove(windows.size() - 1);
+      for (long start = (long) first * windowRecords; start < newCapacity; start += windowRecords)
+      {
+         long records = Math.min(windowRecords, newCapacity - start);
+         windows.add(channel.map(FileChannel.MapMode.READ_WRITE, start * recordSize,
+            records * recordSize));
+      }
+      capacity = newCapacity;
+   }
+
+   /**
+    * Gets the size of a record in bytes.
+    */
+   public int getRecordSize()
+   {
+      return recordSize;
+   }
+
+   /**
+    * Gets the number of records.
+    */
+   public long getRecordCount()
+   {
+      return count;
+   }
+
+   /**
+    * Adds a record at the end of the file. All its bytes are zero.
+    * @return the index of the new record
+    */
+   public long append() throws IOException
+   {
+      if (count == capacity) map(Math.max(MIN_CAPACITY, 2 * capacity));
+      return count++;
+   }
+
+   /**
+    * Gets the window that holds a record.
+    */
+   ByteBuffer window(long index)
+   {
+      if (index < 0 || index >= count)
+         throw new IndexOutOfBoundsException("record " + index + " of " + count);
+      return windows.get((int) (index / windowRecords));
+   }
+
+   /**
+    * Gets the position of a record in its window.
+    */
+   int offset(long index)
+   {
+      return (int) (index % windowRecords) * recordSize;
+   }
+
+   /**
+    * Visits every record with the same flyweight.
+    * @param record the flyweight to move from record to record
+    * @param action the action for each record
+    */
+   public <R extends MappedRecord> void forEach(R record, Consumer<? super R> action)
+   {
+      for (long i = 0; i < count; i++)
+      {
+         record.moveTo(i);
+         action.accept(record);
+      }
+   }
+
+   /**
+    * Writes changes to the records to the storage device.
+    */
+   public void force()
+   {
+      for (MappedByteBuffer window : windows)
+         window.force();
+   }
+
+   /**
+    * Writes the records to the storage device, unmaps them and cuts the file back to the records
+    * that were appended. Flyweights of this file must not be used afterwards.
+    */
+   public void close() throws IOException
+   {
+      try
+      {
+         force();
+         // some systems can't truncate a file that is still mapped
+         for (MappedByteBuffer window : windows)
+            unmap(window);
+         windows.clear();
+         channel.truncate(count * recordSize);
+      }
+      finally
+      {
+         channel.close();
+      }
+   }
+
+   /**
+    * Releases a mapping right away instead of when the buffer is garbage collected. This only
+    * works on the Java 8 JDK; elsewhere the mapping is left to the collector.
+    */
+   private static void unmap(MappedByteBuffer buffer)
+   {
+      try
+      {
+         Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+         cleanerMethod.setAccessible(true);
+         Object cleaner = cleanerMethod.invoke(buffer);
+         if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+      catch (ReflectiveOperationException | RuntimeException ex)
+      {
+         // leave it to the garbage collector
+      }
+   }
+}
@@ -0,0 +1,44 @@
+package cn.staynoob.trap.java.corejava.v2ch02.randomAccess3;
+
+import java.io.*;
+import java.nio.file.*;
+
+import cn.staynoob.trap.java.corejava.v2ch02.randomAccess.Employee;
+
+/**
+ * Writes and reads the employees of the other randomAccess programs through a memory-mapped
+ * record file.
+ */
+public class RandomAccessTest
+{
+   public static void main(String[] args) throws IOException
+   {
+      Employee[] staff = new Employee[3];
+
+      staff[0] = new Employee("Carl Cracker", 75000, 1987, 12, 15);
+      staff[1] = new Employee("Harry Hacker", 50000, 1989, 10, 1);
+      staff[2] = new Employee("Tony Tester", 40000, 1990, 3, 15);
+
+      Path path = Paths.get("employee.dat");
+      Files.deleteIfExists(path);
+      try (MappedRecordFile file = new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE))
+      {
+         // save all employee records to the file employee.dat
+         EmployeeRecord record = new EmployeeRecord(file);
+         for (Employee e : staff)
+            record.moveTo(file.append()).set(e);
+      }
+
+      try (MappedRecordFile file = new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE))
+      {
+         EmployeeRecord record = new EmployeeRecord(file);
+
+         // raise all salaries in place
+         file.forEach(record, r -> r.raiseSalary(10));
+
+         // read employees in reverse order
+         for (long i = file.getRecordCount() - 1; i >= 0; i--)
+            System.out.println(record.moveTo(i).toEmployee());
+      }
+   }
+}
@@ -9,6 +9,8 @@ import java.io.*;
 import java.util.*;
 import java.time.*;
 
+import cn.staynoob.trap.java.corejava.v2ch02.objectCodec.*;
+
 public class SerialCloneTest
 {  
    public static void main(String[] args) throws CloneNotSupportedException
@@ -27,12 +29,22 @@ public class SerialCloneTest
 }
 
 /**
- * A class whose clone method uses serialization.
+ * A class whose clone method uses serialization. Graphs that an {@link ObjectCodec} can handle
+ * are copied field by field, without going through bytes at all.
  */
 class SerialCloneable implements Cloneable, Serializable
 {  
    public Object clone() throws CloneNotSupportedException
    {
+      try
+      {
+         return ObjectCodec.deepCopy(this);
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // a class with serialization methods of its own, which only serialization runs
+      }
+
       try {
          // save the object to a byte array
          ByteArrayOutputStream bout = new ByteArrayOutputStream();
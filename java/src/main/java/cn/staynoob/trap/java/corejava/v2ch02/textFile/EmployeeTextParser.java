@@ -0,0 +1,362 @@
+package cn.staynoob.trap.java.corejava.v2ch02.textFile;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Parses the employee files of {@link TextFileTest} straight from their UTF-8 bytes. Fields are
+ * found by scanning for the delimiters, and salaries and hire days are parsed from the bytes of
+ * their fields, so no line, token array or substring is created. Only the name becomes a
+ * string, and only when it is asked for. A file is mapped, split into chunks at line
+ * boundaries, and the chunks are parsed in parallel.
+ */
+public final class EmployeeTextParser
+{
+   public static final long CHUNK_SIZE = 16L << 20;
+
+   private static final double[] POWERS_OF_TEN = new double[23];
+
+   static
+   {
+      for (int i = 0; i < POWERS_OF_TEN.length; i++)
+         POWERS_OF_TEN[i] = Double.parseDouble("1e" + i);
+   }
+
+   private EmployeeTextParser()
+   {
+   }
+
+   /**
+    * The fields of the current line. The parser moves one row from line to line, so a row must
+    * not be kept beyond the call it is passed to.
+    */
+   public static class Row
+   {
+      private byte[] bytes;
+      private int nameStart;
+      private int nameEnd;
+      private double salary;
+      private int hireDay;
+
+      public String getName()
+      {
+         return new String(bytes, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+      }
+
+      public double getSalary()
+      {
+         return salary;
+      }
+
+      /**
+       * Gets the hire day, as days since the epoch.
+       */
+      public int getHireDay()
+      {
+         return hireDay;
+      }
+
+      public Employee toEmployee()
+      {
+         LocalDate day = LocalDate.ofEpochDay(hireDay);
+         return new Employee(getName(), salary, day.getYear(), day.getMonthValue(),
+            day.getDayOfMonth());
+      }
+   }
+
+   /**
+    * Parses the lines of a buffer, from its position to its limit. The lines of a direct or
+    * mapped buffer are copied to an array a block at a time, since the accessors of such a
+    * buffer cost several times as much per byte as an array access.
+    * @param buffer the lines, in UTF-8, each of the form {@code name|salary|hireDay}
+    * @param action called for each line that is not blank
+    */
+   public static void parse(ByteBuffer buffer, Consumer<? super Row> action)
+   {
+      Row row = new Row();
+      if (buffer.hasArray())
+      {
+         int offset = buffer.arrayOffset();
+         parse(buffer.array(), offset + buffer.position(), offset + buffer.limit(), row, action);
+         buffer.position(buffer.limit());
+         return;
+      }
+      byte[] block = new byte[BLOCK_SIZE];
+      int carried = 0; // the start of a line that didn't fit into the last block
+      while (true)
+      {
+         int n = Math.min(block.length - carried, buffer.remaining());
+         buffer.get(block, carried, n);
+         int end = carried + n;
+         if (!buffer.hasRemaining())
+         {
+            parse(block, 0, end, row, action);
+            return;
+         }
+         int lines = end;
+         while (lines > 0 && block[lines - 1] != '\n') lines--;
+         if (lines == 0) // a line longer than the block
+         {
+            block = Arrays.copyOf(block, 2 * block.length);
+            carried = end;
+            continue;
+         }
+         parse(block, 0, lines, row, action);
+         carried = end - lines;
+         System.arraycopy(block, lines, block, 0, carried);
+      }
+   }
+
+   private static final int BLOCK_SIZE = 1 << 16;
+
+   private static void parse(byte[] bytes, int p, int limit, Row row,
+      Consumer<? super Row> action)
+   {
+      row.bytes = bytes;
+      while (p < limit)
+      {
+         int start = p;
+         int bar1 = -1;
+         int bar2 = -1;
+         byte b;
+         for (; p < limit && (b = bytes[p]) != '\n'; p++)
+            if (b == '|')
+            {
+               if (bar1 < 0) bar1 = p;
+               else if (bar2 < 0) bar2 = p;
+            }
+         int end = p > start && bytes[p - 1] == '\r' ? p - 1 : p;
+         p++; // the '\n'
+         if (end == start) continue;
+         if (bar2 < 0)
+            throw new IllegalArgumentException("Not an employee: " + text(bytes, start, end));
+         row.nameStart = start;
+         row.nameEnd = bar1;
+         row.salary = parseDouble(bytes, bar1 + 1, bar2);
+         row.hireDay = parseEpochDay(bytes, bar2 + 1, end);
+         action.accept(row);
+      }
+   }
+
+   /**
+    * Parses a decimal number. Numbers with at most 15 significant digits and a small exponent,
+    * which covers everything {@code Double.toString} writes for a salary, are computed from
+    * their digits with a single, correctly rounded division or multiplication; other numbers are
+    * left to {@link Double#parseDouble}.
+    */
+   static double parseDouble(byte[] bytes, int from, int to)
+   {
+      int p = from;
+      boolean negative = p < to && bytes[p] == '-';
+      if (negative) p++;
+      long mantissa = 0;
+      int digits = 0; // significant digits
+      boolean anyDigits = false;
+      int scale = 0;
+      boolean point = false;
+      for (; p < to; p++)
+      {
+         int b = bytes[p];
+         if (b >= '0' && b <= '9')
+         {
+            anyDigits = true;
+            if (digits < 18)
+            {
+               mantissa = 10 * mantissa + (b - '0');
+               if (mantissa != 0) digits++;
+               if (point) scale--;
+            }
+            else if (!point) scale++;
+         }
+         else if (b == '.' && !point) point = true;
+         else break;
+      }
+      int exponent = 0;
+      if (p < to && (bytes[p] == 'E' || bytes[p] == 'e'))
+      {
+         p++;
+         boolean negativeExponent = p < to && bytes[p] == '-';
+         if (negativeExponent || p < to && bytes[p] == '+') p++;
+         int exponentStart = p;
+         for (; p < to && bytes[p] >= '0' && bytes[p] <= '9' && exponent < 1000; p++)
+            exponent = 10 * exponent + bytes[p] - '0';
+         if (p == exponentStart) p = -1; // no digits
+         if (negativeExponent) exponent = -exponent;
+      }
+      exponent += scale;
+      if (p != to || !anyDigits || digits > 15 || Math.abs(exponent) >= POWERS_OF_TEN.length)
+         return Double.parseDouble(text(bytes, from, to));
+      double value = mantissa;
+      value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+      return negative ? -value : value;
+   }
+
+   /**
+    * Parses an ISO date of the form yyyy-mm-dd into days since the epoch. Other forms are left
+    * to {@link LocalDate#parse}.
+    */
+   static int parseEpochDay(byte[] bytes, int from, int to)
+   {
+      if (to - from == 10 && bytes[from + 4] == '-' && bytes[from + 7] == '-')
+      {
+         int year = digits(bytes, from, 4);
+         int month = digits(bytes, from + 5, 2);
+         int day = digits(bytes, from + 8, 2);
+         if (year >= 0 && month >= 1 && month <= 12 && day >= 1
+            && (day <= 28 || day <= Month.of(month).length(Year.isLeap(year))))
+            return epochDay(year, month, day);
+      }
+      return (int) LocalDate.parse(text(bytes, from, to)).toEpochDay();
+   }
+
+   /**
+    * Parses a fixed number of digits.
+    * @return the value, or -1 if not all of them are digits
+    */
+   private static int digits(byte[] bytes, int from, int n)
+   {
+      int value = 0;
+      for (int i = from; i < from + n; i++)
+      {
+         int d = bytes[i] - '0';
+         if (d < 0 || d > 9) return -1;
+         value = 10 * value + d;
+      }
+      return value;
+   }
+
+   /**
+    * Computes the epoch day of a valid date, as {@link LocalDate#toEpochDay} does.
+    */
+   private static int epochDay(int year, int month, int day)
+   {
+      long total = 365L * year;
+      total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+      total += (367 * month - 362) / 12;
+      total += day - 1;
+      if (month > 2)
+      {
+         total--;
+         if (!Year.isLeap(year)) total--;
+      }
+      return (int) (total - 719528); // days from year 0 to 1970
+   }
+
+   private static String text(byte[] bytes, int from, int to)
+   {
+      return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Reads an employee file written by {@link TextFileTest}, parsing its chunks in the common
+    * pool.
+    * @param path the file
+    * @return the employees, in the order of the file
+    */
+   public static Employee[] readData(Path path) throws IOException
+   {
+      List<List<Employee>> chunks = parse(ForkJoinPool.commonPool(), path, ArrayList::new,
+         (list, row) -> list.add(row.toEmployee()));
+      int n = 0;
+      for (List<Employee> chunk : chunks)
+         n += chunk.size();
+      Employee[] employees = new Employee[n];
+      int i = 0;
+      for (List<Employee> chunk : chunks)
+         for (Employee e : chunk)
+            employees[i++] = e;
+      return employees;
+   }
+
+   /**
+    * Parses an employee file written by {@link TextFileTest} in parallel. The first line, which
+    * holds the number of employees, is skipped.
+    * @param pool the pool that parses the chunks
+    * @param path the file
+    * @param supplier makes the result of a chunk
+    * @param accumulator adds a row to the result of its chunk
+    * @return the results of the chunks, in the order of the file
+    */
+   public static <R> List<R> parse(ForkJoinPool pool, Path path, Supplier<R> supplier,
+      BiConsumer<R, ? super Row> accumulator) throws IOException
+   {
+      try (FileChannel channel = FileChannel.open(path))
+      {
+         List<Long> boundaries = boundaries(channel);
+         List<ForkJoinTask<R>> tasks = new ArrayList<>();
+         for (int i = 0; i + 1 < boundaries.size(); i++)
+         {
+            long start = boundaries.get(i);
+            long end = boundaries.get(i + 1);
+            tasks.add(pool.submit(() ->
+               {
+                  R result = supplier.get();
+                  MappedByteBuffer buffer;
+                  try
+                  {
+                     buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                  }
+                  catch (IOException ex)
+                  {
+                     throw new UncheckedIOException(ex);
+                  }
+                  parse(buffer, row -> accumulator.accept(result, row));
+                  return result;
+               }));
+         }
+         List<R> results = new ArrayList<>();
+         for (ForkJoinTask<R> task : tasks)
+            results.add(task.join());
+         return results;
+      }
+      catch (UncheckedIOException ex)
+      {
+         throw ex.getCause();
+      }
+   }
+
+   /**
+    * Splits a file into chunks of about {@link #CHUNK_SIZE} bytes that start at the beginning of
+    * a line, leaving out the first line.
+    * @return the start of every chunk, followed by the size of the file
+    */
+   private static List<Long> boundaries(FileChannel channel) throws IOException
+   {
+      long size = channel.size();
+      List<Long> boundaries = new ArrayList<>();
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+      long start = nextLine(channel, buffer, 0, size);
+      while (start < size)
+      {
+         boundaries.add(start);
+         start = nextLine(channel, buffer, start + CHUNK_SIZE, size);
+      }
+      boundaries.add(size);
+      return boundaries;
+   }
+
+   /**
+    * Finds the start of the line after a position.
+    */
+   private static long nextLine(FileChannel channel, ByteBuffer buffer, long position, long size)
+      throws IOException
+   {
+      while (position < size)
+      {
+         buffer.clear();
+         int n = channel.read(buffer, position);
+         if (n < 0) break;
+         for (int i = 0; i < n; i++)
+            if (buffer.get(i) == '\n') return position + i + 1;
+         position += n;
+      }
+      return size;
+   }
+}
@@ -1,6 +1,7 @@
 package cn.staynoob.trap.java.corejava.v2ch02.textFile;
 
 import java.io.*;
+import java.nio.file.*;
 import java.time.*;
 import java.util.*;
 
@@ -34,6 +35,10 @@ public class TextFileTest
          for (Employee e : newStaff)
             System.out.println(e);
       }
+
+      // once more, parsing the bytes of the file without a scanner
+      for (Employee e : EmployeeTextParser.readData(Paths.get("employee.dat")))
+         System.out.println(e);
    }
 
    /**
@@ -55,7 +60,7 @@ public class TextFileTest
     * @param in the scanner
     * @return the array of employees
     */
-   private static Employee[] readData(Scanner in)
+   public static Employee[] readData(Scanner in)
    {
       // retrieve the array size
       int n = in.nextInt();
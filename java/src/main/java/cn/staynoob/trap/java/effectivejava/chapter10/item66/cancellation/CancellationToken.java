@@ -0,0 +1,117 @@
+// Cooperative cancellation that is as cheap to poll as a volatile field
+package cn.staynoob.trap.java.effectivejava.chapter10.item66.cancellation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The stopRequested flag of fixedstopthread2, handed to a task instead of kept in a static
+ * field. Polling it is a single volatile read. A task that blocks where it can't poll registers
+ * a callback that unblocks it: closing the channel it reads from, as
+ * {@code InterruptibleSocketTest.connectInterruptibly} relies on, or interrupting its thread.
+ * <p>
+ * Tokens are created and cancelled by a {@link Scope}.
+ */
+public final class CancellationToken {
+	private volatile boolean cancelled;
+	private volatile long cancelledAt; // System.nanoTime, written before cancelled
+	private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+
+	CancellationToken() {
+	}
+
+	public boolean isCancellationRequested() {
+		return cancelled;
+	}
+
+	public void throwIfCancellationRequested() {
+		if (cancelled)
+			throw new CancellationException();
+	}
+
+	/**
+	 * Runs the callback when the token is cancelled, in the cancelling thread, or right away if it
+	 * is cancelled already. An exception goes to that thread's uncaught exception handler.
+	 *
+	 * @return the registration, to be closed when the callback isn't needed any more
+	 */
+	public Registration onCancel(Runnable callback) {
+		if (callback == null)
+			throw new NullPointerException("callback");
+		Registration registration = new Registration(callback);
+		registrations.add(registration);
+		if (cancelled)
+			registration.fire();
+		return registration;
+	}
+
+	// Unblocks a thread that waits for I/O on an interruptible channel, a socket or a stream
+	public Registration closeOnCancel(Closeable resource) {
+		return onCancel(() -> {
+			try {
+				resource.close();
+			} catch (IOException e) {
+				// the blocked thread sees the closed resource either way
+			}
+		});
+	}
+
+	// Unblocks the current thread in sleep, wait, join, or interruptible I/O
+	public Registration interruptOnCancel() {
+		Thread current = Thread.currentThread();
+		return onCancel(current::interrupt);
+	}
+
+	// Returns false if the token was cancelled already
+	boolean cancel() {
+		synchronized (this) {
+			if (cancelled)
+				return false;
+			cancelledAt = System.nanoTime();
+			cancelled = true;
+		}
+		for (Registration registration : registrations)
+			registration.fire();
+		return true;
+	}
+
+	// The System.nanoTime of the cancellation; only meaningful once cancelled
+	long cancelledAt() {
+		return cancelledAt;
+	}
+
+	/**
+	 * A registered callback, which runs at most once.
+	 */
+	public final class Registration implements AutoCloseable {
+		private final Runnable callback;
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		private Registration(Runnable callback) {
+			this.callback = callback;
+		}
+
+		void fire() {
+			if (!done.compareAndSet(false, true))
+				return;
+			registrations.remove(this);
+			try {
+				callback.run();
+			} catch (Throwable e) {
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			}
+		}
+
+		// Keeps the callback from running, unless it has started already
+		@Override
+		public void close() {
+			if (done.compareAndSet(false, true))
+				registrations.remove(this);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+// Tasks that are cancelled together, with child scopes that are cancelled with their parent
+package cn.staynoob.trap.java.effectivejava.chapter10.item66.cancellation;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import cn.staynoob.trap.java.effectivejava.chapter10.item69.LatencyHistogram;
+
+/**
+ * Owns a {@link CancellationToken} and the tasks that were forked with it. Cancelling a scope
+ * is a volatile write plus the callbacks that tasks registered; it doesn't wait for the tasks,
+ * so stopping thousands of them takes no longer than stopping the slowest. Use
+ * {@link #awaitStopped} for that, and {@link #getStopTimes} to see how long each task took to
+ * notice.
+ * <p>
+ * A {@link #child} scope is cancelled when its parent is, but not the other way round. Closing
+ * a scope cancels it and detaches it from its parent, so that try-with-resources leaves nothing
+ * running behind.
+ */
+public final class Scope implements AutoCloseable {
+	// A task that stops when its token is cancelled
+	public interface Task {
+		void run(CancellationToken token) throws Exception;
+	}
+
+	private final CancellationToken token = new CancellationToken();
+	private final Object lock = new Object();
+	private int running; // guarded by lock
+	private final LatencyHistogram stopTimes = new LatencyHistogram(); // guarded by itself
+	private final CancellationToken.Registration parentRegistration;
+
+	private Scope(Scope parent) {
+		parentRegistration = parent == null ? null : parent.token.onCancel(this::cancel);
+	}
+
+	public static Scope open() {
+		return new Scope(null);
+	}
+
+	public Scope child() {
+		return new Scope(this);
+	}
+
+	public CancellationToken token() {
+		return token;
+	}
+
+	// Runs the task in a new thread
+	public Future<?> fork(Task task) {
+		return fork(runnable -> new Thread(runnable).start(), task);
+	}
+
+	/**
+	 * Runs the task with the executor. If the scope is cancelled already, the task doesn't run
+	 * and the returned future is cancelled.
+	 */
+	public Future<?> fork(Executor executor, Task task) {
+		// claimed by the task body, or by done() if the future is cancelled before the body runs
+		AtomicBoolean claimed = new AtomicBoolean();
+		FutureTask<Void> future = new FutureTask<Void>(() -> {
+			if (!claimed.compareAndSet(false, true))
+				return null;
+			// counted before the future completes, so that whoever sees it done sees it stopped
+			try {
+				task.run(token);
+			} finally {
+				stopped(true);
+			}
+			return null;
+		}) {
+			@Override
+			protected void done() {
+				if (claimed.compareAndSet(false, true))
+					stopped(false);
+			}
+		};
+		if (token.isCancellationRequested()) {
+			claimed.set(true);
+			future.cancel(false);
+			return future;
+		}
+		synchronized (lock) {
+			running++;
+		}
+		try {
+			executor.execute(future);
+		} catch (RuntimeException e) {
+			if (claimed.compareAndSet(false, true))
+				stopped(false);
+			throw e;
+		}
+		return future;
+	}
+
+	// Records the stop time of a task that ran, then counts the task out
+	private void stopped(boolean ran) {
+		if (ran && token.isCancellationRequested()) {
+			long stopTime = System.nanoTime() - token.cancelledAt();
+			synchronized (stopTimes) {
+				stopTimes.record(Math.max(0, stopTime));
+			}
+		}
+		synchronized (lock) {
+			if (--running == 0)
+				lock.notifyAll();
+		}
+	}
+
+	// Returns false if the scope was cancelled already
+	public boolean cancel() {
+		return token.cancel();
+	}
+
+	public boolean isCancelled() {
+		return token.isCancellationRequested();
+	}
+
+	/**
+	 * Waits until every forked task has finished, however it finished.
+	 *
+	 * @return false if the time ran out first
+	 */
+	public boolean awaitStopped(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (lock) {
+			while (running > 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+					return false;
+				TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			}
+		}
+		return true;
+	}
+
+	public int getRunningTasks() {
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	/**
+	 * Returns, in nanoseconds, how long each task that was running at the cancellation took to
+	 * finish after it. Tasks of child scopes are counted by their own scope.
+	 */
+	public LatencyHistogram getStopTimes() {
+		LatencyHistogram copy = new LatencyHistogram();
+		synchronized (stopTimes) {
+			copy.add(stopTimes);
+		}
+		return copy;
+	}
+
+	@Override
+	public void close() {
+		cancel();
+		if (parentRegistration != null)
+			parentRegistration.close();
+	}
+}
@@ -0,0 +1,57 @@
+// Cooperative termination of many threads with a Scope, some of them blocked in I/O
+package cn.staynoob.trap.java.effectivejava.chapter10.item66.cancellation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Pipe;
+import java.util.concurrent.TimeUnit;
+
+public class StopThread {
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+		try (Scope scope = Scope.open()) {
+			for (int t = 0; t < threads; t++) {
+				if (t % 2 == 0) {
+					// polls between units of work, like the background thread of fixedstopthread2
+					scope.fork(token -> {
+						while (!token.isCancellationRequested())
+							Thread.yield(); // let thousands of these share a few cores
+					});
+				} else {
+					// blocks in a read that no flag can end
+					Pipe pipe = Pipe.open();
+					scope.fork(token -> {
+						CancellationToken.Registration registration = token.closeOnCancel(pipe.source());
+						try {
+							pipe.source().read(ByteBuffer.allocate(1));
+						} catch (ClosedChannelException e) {
+							// closed on cancellation
+						} finally {
+							registration.close();
+							closeQuietly(pipe);
+						}
+					});
+				}
+			}
+
+			TimeUnit.SECONDS.sleep(1);
+			long start = System.nanoTime();
+			scope.cancel();
+			boolean stopped = scope.awaitStopped(10, TimeUnit.SECONDS);
+			System.out.printf("%d threads %s in %.1f ms%n", threads,
+					stopped ? "stopped" : "not all stopped",
+					(System.nanoTime() - start) / 1e6);
+			System.out.println("stop times " + scope.getStopTimes().toString(TimeUnit.MILLISECONDS));
+		}
+	}
+
+	private static void closeQuietly(Pipe pipe) {
+		try {
+			pipe.sink().close();
+			pipe.source().close();
+		} catch (IOException ignored) {
+		}
+	}
+}
@@ -0,0 +1,9 @@
+// Observer callback interface that receives added elements in batches
+package cn.staynoob.trap.java.effectivejava.chapter10.item67;
+
+import java.util.List;
+
+public interface BatchSetObserver<E> {
+	// Invoked with the elements of a single add or addAll, or of several if they were coalesced
+	void added(ConcurrentObservableSet<E> set, List<E> elements);
+}
@@ -0,0 +1,296 @@
+// Observable set with lock-free registration and optional asynchronous delivery
+package cn.staynoob.trap.java.effectivejava.chapter10.item67;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The observable set of item 67, taken further than the {@code CopyOnWriteArrayList} version on
+ * page 269. The observers live in an array that is replaced with compare-and-set, so neither
+ * registration nor notification takes a lock, and {@code addAll} notifies once for all elements
+ * it added instead of once per element.
+ * <p>
+ * An observer can also be registered with an {@link Executor}. It then runs on that executor and
+ * receives its notifications through a queue of bounded length, and a full queue is handled as
+ * the observer's {@link Backpressure} says. Such an observer can't slow down the writers of the
+ * set, unless it asks for {@link Backpressure#BLOCK}.
+ * <p>
+ * The set is as thread-safe as the set it wraps, e.g. {@code ConcurrentHashMap.newKeySet()}.
+ */
+public class ConcurrentObservableSet<E> extends ForwardingSet<E> {
+	/**
+	 * What an asynchronous observer does when its queue is full.
+	 */
+	public enum Backpressure {
+		// Discard the new notification and count it in getDroppedNotifications
+		DROP,
+		// Make the writer wait until the observer catches up
+		BLOCK,
+		// Append the new elements to the last queued notification, so nothing is lost
+		COALESCE
+	}
+
+	private static final Subscription<?>[] NONE = new Subscription<?>[0];
+
+	@SuppressWarnings("unchecked")
+	private final AtomicReference<Subscription<E>[]> subscriptions = new AtomicReference<Subscription<E>[]>(
+			(Subscription<E>[]) NONE);
+	private final LongAdder dropped = new LongAdder();
+
+	public ConcurrentObservableSet(Set<E> set) {
+		super(set);
+	}
+
+	/**
+	 * Registers an observer that is called on the thread that added the elements.
+	 */
+	public void addObserver(BatchSetObserver<E> observer) {
+		register(new Subscription<E>(this, observer));
+	}
+
+	/**
+	 * Registers an observer that is called on the given executor.
+	 *
+	 * @param capacity the number of notifications that may wait for the observer
+	 */
+	public void addObserver(BatchSetObserver<E> observer, Executor executor,
+			int capacity, Backpressure backpressure) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity: " + capacity);
+		register(new Mailbox<E>(this, observer, executor, capacity, backpressure));
+	}
+
+	public boolean removeObserver(BatchSetObserver<E> observer) {
+		while (true) {
+			Subscription<E>[] current = subscriptions.get();
+			int index = -1;
+			for (int i = 0; i < current.length && index < 0; i++)
+				if (current[i].observer == observer)
+					index = i;
+			if (index < 0)
+				return false;
+			Subscription<E>[] updated = newArray(current.length - 1);
+			System.arraycopy(current, 0, updated, 0, index);
+			System.arraycopy(current, index + 1, updated, index, updated.length - index);
+			if (subscriptions.compareAndSet(current, updated))
+				return true;
+		}
+	}
+
+	private void register(Subscription<E> subscription) {
+		while (true) {
+			Subscription<E>[] current = subscriptions.get();
+			Subscription<E>[] updated = newArray(current.length + 1);
+			System.arraycopy(current, 0, updated, 0, current.length);
+			updated[current.length] = subscription;
+			if (subscriptions.compareAndSet(current, updated))
+				return;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> Subscription<E>[] newArray(int length) {
+		return (Subscription<E>[]) new Subscription<?>[length];
+	}
+
+	/**
+	 * Returns the number of notifications that observers with {@link Backpressure#DROP} missed,
+	 * plus those that were discarded because an observer's executor rejected them.
+	 */
+	public long getDroppedNotifications() {
+		return dropped.sum();
+	}
+
+	private void notifyElementsAdded(List<E> elements) {
+		// a snapshot: observers that are added or removed meanwhile don't affect this loop
+		for (Subscription<E> subscription : subscriptions.get())
+			subscription.deliver(elements);
+	}
+
+	@Override
+	public boolean add(E element) {
+		boolean added = super.add(element);
+		if (added && subscriptions.get().length > 0)
+			notifyElementsAdded(Collections.singletonList(element));
+		return added;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		List<E> added = new ArrayList<E>();
+		for (E element : c)
+			if (super.add(element))
+				added.add(element);
+		if (!added.isEmpty() && subscriptions.get().length > 0)
+			notifyElementsAdded(Collections.unmodifiableList(added));
+		return !added.isEmpty();
+	}
+
+	private static class Subscription<E> {
+		final ConcurrentObservableSet<E> set;
+		final BatchSetObserver<E> observer;
+
+		Subscription(ConcurrentObservableSet<E> set, BatchSetObserver<E> observer) {
+			this.set = set;
+			this.observer = observer;
+		}
+
+		void deliver(List<E> elements) {
+			observer.added(set, elements);
+		}
+	}
+
+	/**
+	 * The queue of an asynchronous observer. At most one task per mailbox is submitted to the
+	 * executor at a time, so the observer sees its notifications in order and never concurrently.
+	 * The monitor only guards this mailbox, the observer is always called without it.
+	 */
+	private static class Mailbox<E> extends Subscription<E> implements Runnable {
+		private final Executor executor;
+		private final int capacity;
+		private final Backpressure backpressure;
+		private final ArrayDeque<List<E>> queue = new ArrayDeque<List<E>>();
+		private boolean scheduled;
+		private Thread runner; // the thread in run, if any
+
+		Mailbox(ConcurrentObservableSet<E> set, BatchSetObserver<E> observer,
+				Executor executor, int capacity, Backpressure backpressure) {
+			super(set, observer);
+			this.executor = executor;
+			this.capacity = capacity;
+			this.backpressure = backpressure;
+		}
+
+		@Override
+		void deliver(List<E> elements) {
+			if (enqueue(elements))
+				start();
+		}
+
+		/**
+		 * Queues a notification.
+		 *
+		 * @return true if the caller must submit the mailbox, once it has left the monitor
+		 */
+		private synchronized boolean enqueue(List<E> elements) {
+			while (queue.size() >= capacity) {
+				switch (backpressure) {
+				case DROP:
+					set.dropped.increment();
+					return false;
+				case COALESCE:
+					List<E> last = queue.peekLast();
+					if (!(last instanceof Coalesced)) {
+						queue.pollLast();
+						last = new Coalesced<E>(last);
+						queue.addLast(last);
+					}
+					last.addAll(elements);
+					return false;
+				case BLOCK:
+					if (runner == Thread.currentThread()) {
+						// the observer adds to the set itself, and only it could make room
+						queue.addLast(elements);
+						return false;
+					}
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// the element is already in the set, so deliver it anyway
+						Thread.currentThread().interrupt();
+						queue.addLast(elements);
+						return schedule();
+					}
+				}
+			}
+			queue.addLast(elements);
+			return schedule();
+		}
+
+		// Called with the monitor held
+		private boolean schedule() {
+			if (scheduled)
+				return false;
+			scheduled = true;
+			return true;
+		}
+
+		/**
+		 * Submits the mailbox without holding its monitor, since a direct or caller-runs
+		 * executor runs the observer right here. If the executor rejects it, the queued
+		 * notifications are counted as dropped, so that the next one schedules the mailbox again.
+		 */
+		private void start() {
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				synchronized (this) {
+					set.dropped.add(queue.size());
+					queue.clear();
+					scheduled = false;
+					notifyAll(); // wakes writers that wait for BLOCK
+				}
+			}
+		}
+
+		public void run() {
+			boolean idle = false;
+			try {
+				while (true) {
+					List<E> elements;
+					synchronized (this) {
+						elements = queue.pollFirst();
+						if (elements == null) {
+							scheduled = false;
+							runner = null;
+							idle = true;
+							return;
+						}
+						runner = Thread.currentThread();
+						notifyAll(); // wakes writers that wait for BLOCK
+					}
+					try {
+						observer.added(set, elements);
+					} catch (RuntimeException e) {
+						Thread thread = Thread.currentThread();
+						thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+					}
+				}
+			} finally {
+				// an Error ends this run, but not the mailbox
+				if (!idle && abandon())
+					start();
+			}
+		}
+
+		/**
+		 * Lets go of the mailbox after run ended abruptly.
+		 *
+		 * @return true if notifications are still queued and the caller must submit the mailbox
+		 */
+		private synchronized boolean abandon() {
+			runner = null;
+			scheduled = false;
+			notifyAll(); // wakes writers that wait for BLOCK
+			return !queue.isEmpty() && schedule();
+		}
+	}
+
+	/**
+	 * A notification that later ones were appended to. Only the mailbox writes to it, while it
+	 * is still queued.
+	 */
+	private static class Coalesced<E> extends ArrayList<E> {
+		Coalesced(Collection<? extends E> c) {
+			super(c);
+		}
+	}
+}
@@ -0,0 +1,391 @@
+// Bounded, sharded canonicalizing map with CLOCK eviction and optional weak values
+package cn.staynoob.trap.java.effectivejava.chapter10.item69;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A string interner that, unlike {@link Intern}, holds at most a configured number of strings.
+ * When a shard is full, the CLOCK algorithm picks the string to forget: every hit sets a flag
+ * on its entry, and the clock hand passes over flagged entries once, clearing the flag, before
+ * it evicts one. Strings that are looked up often therefore stay, and one-off strings go first.
+ * <p>
+ * Lookups don't lock. A miss locks only the shard of the string, checks again, and inserts.
+ * Strings can be interned from any {@link CharSequence} or from a slice of UTF-8 bytes, and a
+ * hit on those doesn't create a {@code String}; only a miss does.
+ * <p>
+ * With {@link Builder#weakValues()} the interner doesn't keep its strings alive either, so a
+ * string that nobody uses any more can be collected before it is evicted.
+ */
+public class Interner {
+	private final Shard[] shards;
+	private final int shardShift;
+	private final boolean weakValues;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public static class Builder {
+		// required parameters
+		private final int capacity;
+		// optional parameters
+		private int shards = Math.min(64, Runtime.getRuntime().availableProcessors() * 4);
+		private boolean weakValues = false;
+
+		public Builder(int capacity) {
+			if (capacity <= 0)
+				throw new IllegalArgumentException("capacity: " + capacity);
+			this.capacity = capacity;
+		}
+
+		// Rounded up to a power of two
+		public Builder shards(int val) {
+			if (val <= 0 || val > 1 << 16)
+				throw new IllegalArgumentException("shards: " + val);
+			this.shards = val;
+			return this;
+		}
+
+		public Builder weakValues() {
+			this.weakValues = true;
+			return this;
+		}
+
+		public Interner build() {
+			return new Interner(this);
+		}
+	}
+
+	private Interner(Builder builder) {
+		// fewer shards for small capacities, so that CLOCK has something to choose from
+		int count = Math.max(1, Math.min(builder.shards, builder.capacity / 16));
+		count = Integer.highestOneBit(count - 1) << 1;
+		if (count == 0)
+			count = 1;
+		shards = new Shard[count];
+		shardShift = 32 - Integer.numberOfTrailingZeros(count);
+		int shardCapacity = (builder.capacity + count - 1) / count;
+		for (int i = 0; i < count; i++)
+			shards[i] = new Shard(shardCapacity);
+		weakValues = builder.weakValues;
+	}
+
+	public String intern(String s) {
+		int hash = s.hashCode();
+		Shard shard = shardFor(hash);
+		String result = shard.find(hash, s);
+		if (result != null) {
+			hits.increment();
+			return result;
+		}
+		return insert(shard, hash, s);
+	}
+
+	public String intern(CharSequence cs) {
+		if (cs instanceof String)
+			return intern((String) cs);
+		int hash = 0;
+		for (int i = 0; i < cs.length(); i++)
+			hash = 31 * hash + cs.charAt(i);
+		Shard shard = shardFor(hash);
+		String result = shard.find(hash, cs);
+		if (result != null) {
+			hits.increment();
+			return result;
+		}
+		return insert(shard, hash, cs.toString());
+	}
+
+	/**
+	 * Interns the string that the given UTF-8 bytes decode to. The bytes are hashed and compared
+	 * as UTF-16 chars, which gives the same result as {@code String.hashCode}. Malformed input is
+	 * decoded with {@code new String} first, which replaces the bad bytes.
+	 */
+	public String intern(byte[] utf8, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > utf8.length - length)
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+		int end = offset + length;
+		int hash = 0;
+		int chars = 0;
+		for (int i = offset; i < end;) {
+			int b = utf8[i];
+			if (b >= 0) { // ASCII, without the call
+				hash = 31 * hash + b;
+				chars++;
+				i++;
+				continue;
+			}
+			long decoded = decode(utf8, i, end);
+			if (decoded < 0)
+				return intern(new String(utf8, offset, length, StandardCharsets.UTF_8));
+			int codePoint = (int) (decoded >>> 8);
+			if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				hash = 31 * hash + codePoint;
+				chars++;
+			} else {
+				hash = 31 * hash + Character.highSurrogate(codePoint);
+				hash = 31 * hash + Character.lowSurrogate(codePoint);
+				chars += 2;
+			}
+			i += (int) decoded & 0xff;
+		}
+		Shard shard = shardFor(hash);
+		String result = shard.find(hash, utf8, offset, end, chars);
+		if (result != null) {
+			hits.increment();
+			return result;
+		}
+		return insert(shard, hash, new String(utf8, offset, length, StandardCharsets.UTF_8));
+	}
+
+	private String insert(Shard shard, int hash, String s) {
+		synchronized (shard) {
+			String result = shard.find(hash, s);
+			if (result != null) {
+				hits.increment(); // another thread was faster
+				return result;
+			}
+			misses.increment();
+			if (shard.insert(new Entry(hash, s, weakValues)))
+				evictions.increment();
+			return s;
+		}
+	}
+
+	private Shard shardFor(int hash) {
+		return shards[spread(hash) >>> shardShift & shards.length - 1];
+	}
+
+	static int spread(int hash) {
+		return hash ^ hash >>> 16;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	// Includes weakly held strings that were collected
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Shard shard : shards)
+			synchronized (shard) {
+				size += shard.count;
+			}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("size=%d hits=%d misses=%d evictions=%d", size(),
+				getHits(), getMisses(), getEvictions());
+	}
+
+	/**
+	 * Decodes one code point.
+	 *
+	 * @return the code point shifted left by 8 bits, plus the number of bytes it took, or -1
+	 *         if the bytes aren't well-formed UTF-8
+	 */
+	static long decode(byte[] b, int i, int end) {
+		int b0 = b[i];
+		if (b0 >= 0)
+			return (long) b0 << 8 | 1;
+		int size;
+		int codePoint;
+		int min;
+		if ((b0 & 0xe0) == 0xc0) {
+			size = 2;
+			codePoint = b0 & 0x1f;
+			min = 0x80;
+		} else if ((b0 & 0xf0) == 0xe0) {
+			size = 3;
+			codePoint = b0 & 0x0f;
+			min = 0x800;
+		} else if ((b0 & 0xf8) == 0xf0) {
+			size = 4;
+			codePoint = b0 & 0x07;
+			min = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+		} else {
+			return -1;
+		}
+		if (end - i < size)
+			return -1;
+		for (int k = 1; k < size; k++) {
+			int next = b[i + k];
+			if ((next & 0xc0) != 0x80)
+				return -1;
+			codePoint = codePoint << 6 | next & 0x3f;
+		}
+		if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+				|| codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+			return -1;
+		return (long) codePoint << 8 | size;
+	}
+
+	private static class Entry {
+		final int hash;
+		private final String strong;
+		private final WeakReference<String> weak;
+		// Set by hits, cleared by the clock hand; a lost update only costs a little precision
+		boolean referenced;
+
+		Entry(int hash, String value, boolean weakValue) {
+			this.hash = hash;
+			this.strong = weakValue ? null : value;
+			this.weak = weakValue ? new WeakReference<String>(value) : null;
+		}
+
+		// Returns null if the string was collected
+		String get() {
+			return strong != null ? strong : weak.get();
+		}
+	}
+
+	/**
+	 * An open-addressing table of at most capacity entries, at most half full, plus the ring that
+	 * the clock hand goes around. Writers hold the monitor. Readers don't; an entry they miss
+	 * because it is being moved only sends them to the locked path, which looks again.
+	 */
+	private static class Shard {
+		private final Entry[] table;
+		private final int mask;
+		private final Entry[] clock;
+		private int hand;
+		int count;
+
+		Shard(int capacity) {
+			int length = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+			table = new Entry[length];
+			mask = length - 1;
+			clock = new Entry[capacity];
+		}
+
+		String find(int hash, String s) {
+			for (int i = spread(hash) & mask, probes = 0; probes <= mask; i = i + 1 & mask, probes++) {
+				Entry e = table[i];
+				if (e == null)
+					return null;
+				if (e.hash == hash) {
+					String value = e.get();
+					if (value != null && value.equals(s))
+						return hit(e, value);
+				}
+			}
+			return null;
+		}
+
+		String find(int hash, CharSequence cs) {
+			for (int i = spread(hash) & mask, probes = 0; probes <= mask; i = i + 1 & mask, probes++) {
+				Entry e = table[i];
+				if (e == null)
+					return null;
+				if (e.hash == hash) {
+					String value = e.get();
+					if (value != null && value.contentEquals(cs))
+						return hit(e, value);
+				}
+			}
+			return null;
+		}
+
+		String find(int hash, byte[] utf8, int offset, int end, int chars) {
+			for (int i = spread(hash) & mask, probes = 0; probes <= mask; i = i + 1 & mask, probes++) {
+				Entry e = table[i];
+				if (e == null)
+					return null;
+				if (e.hash == hash) {
+					String value = e.get();
+					if (value != null && value.length() == chars
+							&& equals(value, utf8, offset, end))
+						return hit(e, value);
+				}
+			}
+			return null;
+		}
+
+		// The bytes were decoded once already, so they are well-formed
+		private static boolean equals(String s, byte[] utf8, int offset, int end) {
+			int k = 0;
+			for (int i = offset; i < end;) {
+				int b = utf8[i];
+				if (b >= 0) {
+					if (s.charAt(k++) != b)
+						return false;
+					i++;
+					continue;
+				}
+				long decoded = decode(utf8, i, end);
+				int codePoint = (int) (decoded >>> 8);
+				if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+					if (s.charAt(k++) != codePoint)
+						return false;
+				} else {
+					if (s.charAt(k++) != Character.highSurrogate(codePoint)
+							|| s.charAt(k++) != Character.lowSurrogate(codePoint))
+						return false;
+				}
+				i += (int) decoded & 0xff;
+			}
+			return true;
+		}
+
+		private static String hit(Entry e, String value) {
+			if (!e.referenced)
+				e.referenced = true; // avoids writing to shared cache lines on every hit
+			return value;
+		}
+
+		/**
+		 * Adds an entry, evicting another one if the shard is full.
+		 *
+		 * @return true if an entry was evicted
+		 */
+		boolean insert(Entry entry) {
+			boolean evicted = false;
+			if (count < clock.length) {
+				clock[count++] = entry;
+			} else {
+				// collected strings are never referenced again, so they go first
+				while (clock[hand].referenced && clock[hand].get() != null) {
+					clock[hand].referenced = false;
+					hand = (hand + 1) % clock.length;
+				}
+				remove(clock[hand]);
+				clock[hand] = entry;
+				hand = (hand + 1) % clock.length;
+				evicted = true;
+			}
+			int i = spread(entry.hash) & mask;
+			while (table[i] != null)
+				i = i + 1 & mask;
+			table[i] = entry;
+			return evicted;
+		}
+
+		// Deletes by shifting the following entries back, so that no tombstones are needed
+		private void remove(Entry entry) {
+			int i = spread(entry.hash) & mask;
+			while (table[i] != entry)
+				i = i + 1 & mask;
+			for (int j = i + 1 & mask; table[j] != null; j = j + 1 & mask) {
+				int home = spread(table[j].hash) & mask;
+				// move table[j] to i unless its home lies cyclically in (i, j]
+				boolean stays = i <= j ? i < home && home <= j : i < home || home <= j;
+				if (!stays) {
+					table[i] = table[j];
+					i = j;
+				}
+			}
+			table[i] = null;
+		}
+	}
+}
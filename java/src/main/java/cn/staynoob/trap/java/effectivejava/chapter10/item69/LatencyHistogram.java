@@ -0,0 +1,125 @@
+// Log-linear latency histogram with bounded relative error, in the spirit of HdrHistogram
+package cn.staynoob.trap.java.effectivejava.chapter10.item69;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records non-negative values, typically latencies in nanoseconds, into buckets whose width grows
+ * with the value: values below 128 are counted exactly, larger ones with a relative error below
+ * 1/64. Every long fits into 3712 buckets, so recording never allocates.
+ * <p>
+ * Instances are not thread-safe. Give each thread its own histogram and {@link #add} them up
+ * when the threads are done.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF = SUB_BUCKETS / 2;
+	private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * HALF;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long min = Long.MAX_VALUE;
+	private long max;
+	private double sum;
+
+	public void record(long value) {
+		if (value < 0)
+			throw new IllegalArgumentException("negative value: " + value);
+		counts[index(value)]++;
+		count++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Adds the values of another histogram to this one.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] += other.counts[i];
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	/**
+	 * Returns the smallest recorded value such that the given percentage of all values is less
+	 * than or equal to it, rounded up to the end of its bucket.
+	 *
+	 * @param percentile between 0 and 100, e.g. 99.9
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("percentile: " + percentile);
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(highestValue(i), max);
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return toString(TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * Formats the usual percentiles of values that were recorded in nanoseconds.
+	 */
+	public String toString(TimeUnit unit) {
+		double scale = unit.toNanos(1);
+		return String.format("count=%d min=%.1f p50=%.1f p99=%.1f p999=%.1f max=%.1f (%s)", count,
+				getMin() / scale, getValueAtPercentile(50) / scale,
+				getValueAtPercentile(99) / scale, getValueAtPercentile(99.9) / scale,
+				getMax() / scale, unit.name().toLowerCase());
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		// keep the 7 highest bits of the value, the first of which is always 1
+		int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - HALF;
+		return SUB_BUCKETS + (shift - 1) * HALF + subBucket;
+	}
+
+	static long lowestValue(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = (index - SUB_BUCKETS) / HALF + 1;
+		long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+		return subBucket << shift;
+	}
+
+	static long highestValue(int index) {
+		if (index == BUCKETS - 1)
+			return Long.MAX_VALUE;
+		return lowestValue(index + 1) - 1;
+	}
+}
@@ -0,0 +1,308 @@
+// Load test harness with warmup, measurement rounds and latency percentiles
+package cn.staynoob.trap.java.effectivejava.chapter10.item69;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs an action repeatedly on a number of threads and records the latency of every call.
+ * Like {@link ConcurrentTimer}, each round lines the threads up behind a latch before it starts
+ * the clock, but a round lasts for a fixed time instead of a single call, the first rounds are
+ * thrown away as warmup, and the result holds a {@link LatencyHistogram} and the throughput of
+ * each thread rather than a single total.
+ * <p>
+ * By default every thread calls the action again as soon as the previous call returns. With
+ * {@link Builder#rate} the calls are scheduled at fixed intervals instead, and latency is
+ * measured from the time a call was due, not from the time it actually started. A stall then
+ * shows up in the latencies of all the calls that should have happened during the stall, rather
+ * than in a single slow call (the "coordinated omission" of closed-loop load generators).
+ */
+public class LoadGenerator {
+	private final Runnable action;
+	private final int threads;
+	private final int warmupRounds;
+	private final int rounds;
+	private final long roundNanos;
+	private final double rate;
+
+	public static class Builder {
+		// required parameters
+		private final Runnable action;
+		// optional parameters
+		private int threads = 1;
+		private int warmupRounds = 1;
+		private int rounds = 3;
+		private long roundNanos = TimeUnit.SECONDS.toNanos(1);
+		private double rate = 0;
+
+		public Builder(Runnable action) {
+			if (action == null)
+				throw new NullPointerException("action");
+			this.action = action;
+		}
+
+		public Builder threads(int val) {
+			if (val <= 0)
+				throw new IllegalArgumentException("threads: " + val);
+			this.threads = val;
+			return this;
+		}
+
+		public Builder warmupRounds(int val) {
+			if (val < 0)
+				throw new IllegalArgumentException("warmupRounds: " + val);
+			this.warmupRounds = val;
+			return this;
+		}
+
+		public Builder rounds(int val) {
+			if (val <= 0)
+				throw new IllegalArgumentException("rounds: " + val);
+			this.rounds = val;
+			return this;
+		}
+
+		public Builder roundTime(long duration, TimeUnit unit) {
+			if (duration <= 0)
+				throw new IllegalArgumentException("duration: " + duration);
+			this.roundNanos = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * Switches to fixed-rate mode.
+		 *
+		 * @param val the calls per second of all threads together
+		 */
+		public Builder rate(double val) {
+			if (!(val > 0))
+				throw new IllegalArgumentException("rate: " + val);
+			this.rate = val;
+			return this;
+		}
+
+		public LoadGenerator build() {
+			return new LoadGenerator(this);
+		}
+	}
+
+	private LoadGenerator(Builder builder) {
+		action = builder.action;
+		threads = builder.threads;
+		warmupRounds = builder.warmupRounds;
+		rounds = builder.rounds;
+		roundNanos = builder.roundNanos;
+		rate = builder.rate;
+	}
+
+	/**
+	 * Runs the warmup and measurement rounds. The executor must be able to run all threads at
+	 * once, or the first round never starts.
+	 *
+	 * @throws ExecutionException if the action threw an exception
+	 */
+	public Result run(Executor executor) throws InterruptedException,
+			ExecutionException {
+		for (int i = 0; i < warmupRounds; i++)
+			round(executor);
+		LatencyHistogram histogram = new LatencyHistogram();
+		double[] roundThroughput = new double[rounds];
+		double[] threadThroughput = new double[threads];
+		long missed = 0;
+		for (int r = 0; r < rounds; r++) {
+			Worker[] workers = round(executor);
+			long operations = 0;
+			for (int i = 0; i < threads; i++) {
+				Worker worker = workers[i];
+				histogram.add(worker.histogram);
+				operations += worker.operations;
+				missed += worker.missed;
+				threadThroughput[i] += worker.operations * 1e9 / worker.elapsedNanos / rounds;
+			}
+			roundThroughput[r] = operations * 1e9 / elapsed(workers);
+		}
+		return new Result(histogram, roundThroughput, threadThroughput, missed);
+	}
+
+	private Worker[] round(Executor executor) throws InterruptedException,
+			ExecutionException {
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final Worker[] workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i, ready, start, done);
+			executor.execute(workers[i]);
+		}
+
+		ready.await(); // Wait for all workers to be ready
+		long startNanos = System.nanoTime();
+		for (Worker worker : workers)
+			worker.startNanos = startNanos; // published by the start latch
+		start.countDown();
+		done.await();
+
+		for (Worker worker : workers)
+			if (worker.failure != null)
+				throw new ExecutionException(worker.failure);
+		return workers;
+	}
+
+	private static long elapsed(Worker[] workers) {
+		long elapsed = 0;
+		for (Worker worker : workers)
+			elapsed = Math.max(elapsed, worker.elapsedNanos);
+		return elapsed;
+	}
+
+	private class Worker implements Runnable {
+		private final int index;
+		private final CountDownLatch ready;
+		private final CountDownLatch start;
+		private final CountDownLatch done;
+		final LatencyHistogram histogram = new LatencyHistogram();
+		long startNanos;
+		long elapsedNanos;
+		long operations;
+		long missed;
+		Throwable failure;
+
+		Worker(int index, CountDownLatch ready, CountDownLatch start,
+				CountDownLatch done) {
+			this.index = index;
+			this.ready = ready;
+			this.start = start;
+			this.done = done;
+		}
+
+		public void run() {
+			ready.countDown();
+			try {
+				start.await();
+				if (rate > 0)
+					runAtFixedRate();
+				else
+					runClosedLoop();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (RuntimeException | Error e) {
+				failure = e;
+			} finally {
+				elapsedNanos = System.nanoTime() - startNanos;
+				done.countDown(); // publishes the results to the timer
+			}
+		}
+
+		private void runClosedLoop() {
+			long end = startNanos + roundNanos;
+			long before = System.nanoTime();
+			while (before - end < 0) {
+				action.run();
+				long after = System.nanoTime();
+				histogram.record(after - before);
+				operations++;
+				before = after;
+			}
+		}
+
+		private void runAtFixedRate() throws InterruptedException {
+			long interval = Math.max(1, (long) (threads * 1e9 / rate));
+			long end = startNanos + roundNanos;
+			// the threads take turns, so that the calls are spread evenly
+			long due = startNanos + interval * index / threads;
+			while (due - end < 0) {
+				long now;
+				while ((now = System.nanoTime()) - due < 0) {
+					LockSupport.parkNanos(due - now);
+					if (Thread.interrupted()) // or parkNanos returns at once
+						throw new InterruptedException();
+				}
+				if (Thread.interrupted())
+					throw new InterruptedException();
+				action.run();
+				now = System.nanoTime();
+				// a call that is late because of its predecessors counts as late
+				histogram.record(now - due);
+				operations++;
+				due += interval;
+				if (now - end >= 0) {
+					// the round is over; the calls still due were never made
+					for (; due - end < 0; due += interval) {
+						histogram.record(now - due);
+						missed++;
+					}
+				}
+			}
+		}
+	}
+
+	public static class Result {
+		private final LatencyHistogram histogram;
+		private final double[] roundThroughput;
+		private final double[] threadThroughput;
+		private final long missed;
+
+		Result(LatencyHistogram histogram, double[] roundThroughput,
+				double[] threadThroughput, long missed) {
+			this.histogram = histogram;
+			this.roundThroughput = roundThroughput;
+			this.threadThroughput = threadThroughput;
+			this.missed = missed;
+		}
+
+		/**
+		 * Returns the latencies of all calls of the measurement rounds, in nanoseconds.
+		 */
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+
+		/**
+		 * Returns the number of calls in fixed-rate mode that were due when a round ended while
+		 * the action was still running. They are not made, but their latencies up to the end of
+		 * that call are in the histogram.
+		 */
+		public long getMissed() {
+			return missed;
+		}
+
+		/**
+		 * Returns the calls per second of all threads together, averaged over the rounds.
+		 */
+		public double getThroughput() {
+			double sum = 0;
+			for (double throughput : roundThroughput)
+				sum += throughput;
+			return sum / roundThroughput.length;
+		}
+
+		/**
+		 * Returns the calls per second of every measurement round.
+		 */
+		public double[] getRoundThroughput() {
+			return roundThroughput.clone();
+		}
+
+		/**
+		 * Returns the calls per second of every thread, averaged over the rounds.
+		 */
+		public double[] getThreadThroughput() {
+			return threadThroughput.clone();
+		}
+
+		@Override
+		public String toString() {
+			double min = Double.MAX_VALUE;
+			double max = 0;
+			for (double throughput : threadThroughput) {
+				min = Math.min(min, throughput);
+				max = Math.max(max, throughput);
+			}
+			return String.format("%.0f ops/s (per thread %.0f..%.0f), latency %s",
+					getThroughput(), min, max, histogram);
+		}
+	}
+}
@@ -0,0 +1,197 @@
+// Lazily initialized values, one implementation per initialization idiom
+package cn.staynoob.trap.java.effectivejava.chapter10.item71;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * A value that is computed on first use, with the idioms of {@link Initialization} to choose
+ * from. The value is optionally recomputed when it is older than a time to live, or after
+ * {@link #reset}. Null values are allowed.
+ * <p>
+ * For static fields, the holder class idiom of page 283 is still the cheapest; it needs no
+ * check at all once the class is initialized.
+ */
+public abstract class Lazy<T> implements Supplier<T> {
+	public enum Mode {
+		// Every access takes the lock - page 282
+		SYNCHRONIZED,
+		// A volatile read per access, the lock only while uninitialized - page 283
+		DOUBLE_CHECKED,
+		// A volatile read per access, never a lock. Several threads may compute the value at
+		// once, but all of them return the one that was published first - page 284
+		RACY,
+		// A plain read per access. The value is published in an object with final fields,
+		// which the memory model guarantees to be seen fully constructed even without a
+		// volatile read. The cheapest, but a reset may take a while to be seen by other threads
+		FINAL_WRAPPER
+	}
+
+	private final Supplier<? extends T> supplier;
+	private final long ttlNanos;
+
+	private Lazy(Supplier<? extends T> supplier, long ttlNanos) {
+		this.supplier = supplier;
+		this.ttlNanos = ttlNanos;
+	}
+
+	public static <T> Lazy<T> of(Supplier<? extends T> supplier) {
+		return of(Mode.DOUBLE_CHECKED, supplier);
+	}
+
+	public static <T> Lazy<T> of(Mode mode, Supplier<? extends T> supplier) {
+		return of(mode, supplier, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param ttl how long a computed value is used, or 0 to use it until reset
+	 */
+	public static <T> Lazy<T> of(Mode mode, Supplier<? extends T> supplier,
+			long ttl, TimeUnit unit) {
+		if (supplier == null)
+			throw new NullPointerException("supplier");
+		if (ttl < 0)
+			throw new IllegalArgumentException("ttl: " + ttl);
+		long ttlNanos = unit.toNanos(ttl);
+		switch (mode) {
+		case SYNCHRONIZED:
+			return new SynchronizedLazy<T>(supplier, ttlNanos);
+		case DOUBLE_CHECKED:
+			return new DoubleCheckedLazy<T>(supplier, ttlNanos);
+		case RACY:
+			return new RacyLazy<T>(supplier, ttlNanos);
+		case FINAL_WRAPPER:
+			return new FinalWrapperLazy<T>(supplier, ttlNanos);
+		default:
+			throw new AssertionError(mode);
+		}
+	}
+
+	// Returns the value, computing it if necessary
+	public abstract T get();
+
+	// Makes the next get compute the value again
+	public abstract void reset();
+
+	final Value<T> compute() {
+		T value = supplier.get();
+		return new Value<T>(value, ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos);
+	}
+
+	final boolean isValid(Value<T> value) {
+		return value != null
+				&& (ttlNanos == 0 || System.nanoTime() - value.expiresAt < 0);
+	}
+
+	// Immutable, so that it can be published without a volatile write - page 283
+	static final class Value<T> {
+		final T value;
+		final long expiresAt;
+
+		Value(T value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private static class SynchronizedLazy<T> extends Lazy<T> {
+		private Value<T> value;
+
+		SynchronizedLazy(Supplier<? extends T> supplier, long ttlNanos) {
+			super(supplier, ttlNanos);
+		}
+
+		public synchronized T get() {
+			if (!isValid(value))
+				value = compute();
+			return value.value;
+		}
+
+		public synchronized void reset() {
+			value = null;
+		}
+	}
+
+	private static class DoubleCheckedLazy<T> extends Lazy<T> {
+		private volatile Value<T> value;
+
+		DoubleCheckedLazy(Supplier<? extends T> supplier, long ttlNanos) {
+			super(supplier, ttlNanos);
+		}
+
+		public T get() {
+			Value<T> result = value;
+			if (!isValid(result)) { // First check (no locking)
+				synchronized (this) {
+					result = value;
+					if (!isValid(result)) // Second check (with locking)
+						value = result = compute();
+				}
+			}
+			return result.value;
+		}
+
+		public void reset() {
+			value = null;
+		}
+	}
+
+	private static class RacyLazy<T> extends Lazy<T> {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<RacyLazy, Value> VALUE = AtomicReferenceFieldUpdater
+				.newUpdater(RacyLazy.class, Value.class, "value");
+
+		private volatile Value<T> value;
+
+		RacyLazy(Supplier<? extends T> supplier, long ttlNanos) {
+			super(supplier, ttlNanos);
+		}
+
+		public T get() {
+			Value<T> result = value;
+			if (!isValid(result)) {
+				Value<T> computed = compute();
+				if (VALUE.compareAndSet(this, result, computed)) {
+					result = computed;
+				} else {
+					// another thread was faster, use its value unless it is stale already
+					result = value;
+					if (!isValid(result))
+						result = computed;
+				}
+			}
+			return result.value;
+		}
+
+		public void reset() {
+			value = null;
+		}
+	}
+
+	private static class FinalWrapperLazy<T> extends Lazy<T> {
+		private Value<T> value; // not volatile, see Mode.FINAL_WRAPPER
+
+		FinalWrapperLazy(Supplier<? extends T> supplier, long ttlNanos) {
+			super(supplier, ttlNanos);
+		}
+
+		public T get() {
+			Value<T> result = value;
+			if (!isValid(result))
+				result = initialize();
+			return result.value;
+		}
+
+		private synchronized Value<T> initialize() {
+			Value<T> result = value;
+			if (!isValid(result))
+				value = result = compute();
+			return result;
+		}
+
+		public synchronized void reset() {
+			value = null;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+// Lazily initialized long, with the same idioms as Lazy
+package cn.staynoob.trap.java.effectivejava.chapter10.item71;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A long that is computed on first use. The value is boxed once per computation, not once per
+ * access, so reading it doesn't allocate.
+ */
+public final class LazyLong implements LongSupplier {
+	private final Lazy<Long> lazy;
+
+	private LazyLong(Lazy<Long> lazy) {
+		this.lazy = lazy;
+	}
+
+	public static LazyLong of(LongSupplier supplier) {
+		return of(Lazy.Mode.DOUBLE_CHECKED, supplier);
+	}
+
+	public static LazyLong of(Lazy.Mode mode, LongSupplier supplier) {
+		return of(mode, supplier, 0, TimeUnit.NANOSECONDS);
+	}
+
+	public static LazyLong of(Lazy.Mode mode, LongSupplier supplier, long ttl,
+			TimeUnit unit) {
+		if (supplier == null)
+			throw new NullPointerException("supplier");
+		return new LazyLong(Lazy.of(mode, () -> supplier.getAsLong(), ttl, unit));
+	}
+
+	public long getAsLong() {
+		return lazy.get();
+	}
+
+	public void reset() {
+		lazy.reset();
+	}
+}
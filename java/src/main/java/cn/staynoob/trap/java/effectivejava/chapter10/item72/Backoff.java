@@ -0,0 +1,46 @@
+// How long a waiting thread spins and yields before it parks
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+/**
+ * The waiting strategy of the spin-then-park synchronizers. A waiter first rechecks its
+ * condition {@code spins} times in a tight loop, then {@code yields} times with
+ * {@link Thread#yield} in between, and only then parks until it is woken.
+ * <p>
+ * Spinning answers a release that comes within a microsecond or so without the cost of parking
+ * and unparking, but burns its core meanwhile; {@link SlowCountDownLatch} does nothing else.
+ * Spinning only helps if the releasing thread runs on another core at the same time, so
+ * {@link #DEFAULT} doesn't spin on a single processor.
+ */
+public final class Backoff {
+	private static final boolean MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+
+	public static final Backoff DEFAULT = new Backoff(MULTIPROCESSOR ? 1 << 10 : 0, 4);
+
+	// Parks right away, like the java.util.concurrent synchronizers
+	public static final Backoff PARK = new Backoff(0, 0);
+
+	private final int spins;
+	private final int yields;
+
+	public Backoff(int spins, int yields) {
+		if (spins < 0)
+			throw new IllegalArgumentException("spins: " + spins);
+		if (yields < 0)
+			throw new IllegalArgumentException("yields: " + yields);
+		this.spins = spins;
+		this.yields = yields;
+	}
+
+	public int spins() {
+		return spins;
+	}
+
+	public int yields() {
+		return yields;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Backoff[spins=%d, yields=%d]", spins, yields);
+	}
+}
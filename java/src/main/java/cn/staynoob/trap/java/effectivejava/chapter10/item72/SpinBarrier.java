@@ -0,0 +1,116 @@
+// Reusable barrier in the style of Phaser, with spin-then-park waiting
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A barrier for a fixed number of parties that can be used over and over, like
+ * {@link java.util.concurrent.CyclicBarrier}. As with {@link java.util.concurrent.Phaser},
+ * arriving and waiting are separate steps: each cycle is a numbered phase, {@link #arrive}
+ * returns the phase it arrived at, and {@link #awaitAdvance} waits for that phase to end. The
+ * optional barrier action runs in the last arriving thread before the phase advances.
+ * <p>
+ * Unlike CyclicBarrier, the barrier never breaks. A waiter that is interrupted or times out has
+ * still arrived, and the others don't notice.
+ */
+public class SpinBarrier extends SpinParkSynchronizer {
+	private final int parties;
+	private final Runnable action;
+	// phase in the high half, parties yet to arrive in the low half
+	private final AtomicLong state;
+
+	public SpinBarrier(int parties) {
+		this(parties, null, Backoff.DEFAULT);
+	}
+
+	public SpinBarrier(int parties, Runnable action) {
+		this(parties, action, Backoff.DEFAULT);
+	}
+
+	public SpinBarrier(int parties, Runnable action, Backoff backoff) {
+		super(backoff);
+		if (parties <= 0)
+			throw new IllegalArgumentException("parties: " + parties);
+		this.parties = parties;
+		this.action = action;
+		this.state = new AtomicLong(parties);
+	}
+
+	/**
+	 * Arrives without waiting. The last party to arrive runs the barrier action and advances the
+	 * phase, even if the action throws.
+	 *
+	 * @return the phase arrived at
+	 */
+	public int arrive() {
+		while (true) {
+			long s = state.get();
+			int phase = phase(s);
+			int unarrived = (int) s;
+			if (unarrived == 0) {
+				// the action of this phase is still running
+				Thread.yield();
+			} else if (state.compareAndSet(s, s - 1)) {
+				if (unarrived == 1)
+					advance(phase);
+				return phase;
+			}
+		}
+	}
+
+	private void advance(int phase) {
+		try {
+			if (action != null)
+				action.run();
+		} finally {
+			state.set((long) (phase + 1) << 32 | parties);
+			release();
+		}
+	}
+
+	// Returns the next phase once the given one has ended
+	public int awaitAdvance(int phase) throws InterruptedException {
+		await(phase, -1);
+		return phase + 1;
+	}
+
+	// Returns false if the time ran out before the phase ended
+	public boolean awaitAdvance(int phase, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return await(phase, Math.max(0, unit.toNanos(timeout)));
+	}
+
+	// The counterpart of CyclicBarrier.await; returns the next phase
+	public int arriveAndAwaitAdvance() throws InterruptedException {
+		return awaitAdvance(arrive());
+	}
+
+	public int getPhase() {
+		return phase(state.get());
+	}
+
+	public int getParties() {
+		return parties;
+	}
+
+	public int getArrivedParties() {
+		return parties - (int) state.get();
+	}
+
+	private static int phase(long state) {
+		return (int) (state >>> 32);
+	}
+
+	@Override
+	boolean isReleased(int phase) {
+		return phase(state.get()) != phase;
+	}
+
+	@Override
+	public String toString() {
+		long s = state.get();
+		return super.toString() + "[phase = " + phase(s) + " parties = " + parties
+				+ " arrived = " + (parties - (int) s) + "]";
+	}
+}
@@ -0,0 +1,46 @@
+// One-shot event that waiting threads spin on briefly, then park
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An event that happens once, such as a service having started. Cheaper than a latch with a
+ * count of one: setting it is a volatile write, and checking it a volatile read.
+ */
+public class SpinEvent extends SpinParkSynchronizer {
+	private volatile boolean set;
+
+	public SpinEvent() {
+		this(Backoff.DEFAULT);
+	}
+
+	public SpinEvent(Backoff backoff) {
+		super(backoff);
+	}
+
+	// Lets all current and future waiters go on; later calls do nothing
+	public void set() {
+		if (!set) {
+			set = true;
+			release();
+		}
+	}
+
+	public boolean isSet() {
+		return set;
+	}
+
+	public void await() throws InterruptedException {
+		await(0, -1);
+	}
+
+	// Returns false if the time ran out before the event was set
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return await(0, Math.max(0, unit.toNanos(timeout)));
+	}
+
+	@Override
+	boolean isReleased(int token) {
+		return set;
+	}
+}
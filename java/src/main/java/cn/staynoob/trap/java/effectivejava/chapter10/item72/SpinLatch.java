@@ -0,0 +1,61 @@
+// CountDownLatch that spins briefly, then parks - instead of busy-waiting incessantly
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A latch with the semantics of {@link java.util.concurrent.CountDownLatch}, but waiting
+ * according to a {@link Backoff}. Unlike {@link SlowCountDownLatch}, a waiter only burns CPU for
+ * the few microseconds the backoff allows, and countDown never takes a lock.
+ */
+public class SpinLatch extends SpinParkSynchronizer {
+	private final AtomicInteger count;
+
+	public SpinLatch(int count) {
+		this(count, Backoff.DEFAULT);
+	}
+
+	public SpinLatch(int count, Backoff backoff) {
+		super(backoff);
+		if (count < 0)
+			throw new IllegalArgumentException(count + " < 0");
+		this.count = new AtomicInteger(count);
+	}
+
+	public void await() throws InterruptedException {
+		await(0, -1);
+	}
+
+	// Returns false if the time ran out before the count reached zero
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return await(0, Math.max(0, unit.toNanos(timeout)));
+	}
+
+	public void countDown() {
+		while (true) {
+			int c = count.get();
+			if (c == 0)
+				return;
+			if (count.compareAndSet(c, c - 1)) {
+				if (c == 1)
+					release();
+				return;
+			}
+		}
+	}
+
+	public int getCount() {
+		return count.get();
+	}
+
+	@Override
+	boolean isReleased(int token) {
+		return count.get() == 0;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + "[Count = " + count.get() + "]";
+	}
+}
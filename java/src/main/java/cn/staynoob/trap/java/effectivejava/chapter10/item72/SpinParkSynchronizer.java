@@ -0,0 +1,148 @@
+// Common waiting logic of the spin-then-park synchronizers
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for a subclass condition according to a {@link Backoff}. Parked threads are kept on a
+ * lock-free stack, which {@link #release} empties and unparks. A waiter pushes itself before it
+ * checks the condition for the last time, so a release can't slip in between unnoticed.
+ * <p>
+ * A waiter pushes one node, and only pushes another when a release has taken its node off the
+ * stack without satisfying it, as a barrier's release of the previous generation may. A waiter
+ * that times out or is interrupted clears the thread of its node and unlinks the cleared nodes,
+ * as {@code FutureTask.removeWaiter} does, so a synchronizer that is polled with timed awaits
+ * but never released doesn't accumulate nodes.
+ */
+abstract class SpinParkSynchronizer {
+	private static final class Waiter {
+		volatile Thread thread; // null once released or cancelled
+		volatile Waiter next;
+
+		Waiter(Thread thread, Waiter next) {
+			this.thread = thread;
+			this.next = next;
+		}
+	}
+
+	private final Backoff backoff;
+	private final AtomicReference<Waiter> waiters = new AtomicReference<>();
+
+	SpinParkSynchronizer(Backoff backoff) {
+		if (backoff == null)
+			throw new NullPointerException("backoff");
+		this.backoff = backoff;
+	}
+
+	// Whether threads that wait with the given token may go on
+	abstract boolean isReleased(int token);
+
+	/**
+	 * Waits until {@link #isReleased} holds for the token.
+	 *
+	 * @param nanos the maximum time to wait, or a negative number to wait forever
+	 * @return false if the time ran out
+	 */
+	final boolean await(int token, long nanos) throws InterruptedException {
+		if (isReleased(token))
+			return true;
+		if (Thread.interrupted())
+			throw new InterruptedException();
+		long deadline = nanos < 0 ? 0 : System.nanoTime() + nanos;
+
+		for (int i = backoff.spins(); i > 0; i--)
+			if (isReleased(token))
+				return true;
+		for (int i = backoff.yields(); i > 0; i--) {
+			Thread.yield();
+			if (isReleased(token))
+				return true;
+		}
+
+		Thread current = Thread.currentThread();
+		Waiter node = null;
+		boolean cancelled = true;
+		try {
+			while (true) {
+				// first time round, or a release took the node off the stack
+				if (node == null || node.thread == null)
+					node = push(current);
+				if (isReleased(token)) {
+					cancelled = false;
+					return true;
+				}
+				if (nanos < 0) {
+					LockSupport.park(this);
+				} else {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+						return false;
+					LockSupport.parkNanos(this, remaining);
+				}
+				if (isReleased(token)) {
+					cancelled = false;
+					return true;
+				}
+				if (Thread.interrupted())
+					throw new InterruptedException();
+			}
+		} finally {
+			if (cancelled && node != null)
+				remove(node);
+		}
+	}
+
+	private Waiter push(Thread thread) {
+		Waiter head;
+		Waiter node;
+		do {
+			head = waiters.get();
+			node = new Waiter(thread, head);
+		} while (!waiters.compareAndSet(head, node));
+		return node;
+	}
+
+	// Clears the node and unlinks all cleared nodes, starting over whenever it races with another
+	private void remove(Waiter node) {
+		node.thread = null;
+		retry:
+		while (true) {
+			for (Waiter pred = null, q = waiters.get(), s; q != null; q = s) {
+				s = q.next;
+				if (q.thread != null)
+					pred = q;
+				else if (pred != null) {
+					pred.next = s;
+					if (pred.thread == null)
+						continue retry;
+				} else if (!waiters.compareAndSet(q, s))
+					continue retry;
+			}
+			return;
+		}
+	}
+
+	// Wakes all parked threads; call after making the condition true
+	final void release() {
+		for (Waiter w = waiters.getAndSet(null); w != null; w = w.next) {
+			Thread thread = w.thread;
+			if (thread != null) {
+				w.thread = null;
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+
+	// The number of nodes on the stack, for tests
+	final int waiterCount() {
+		int n = 0;
+		for (Waiter w = waiters.get(); w != null; w = w.next)
+			n++;
+		return n;
+	}
+
+	public final Backoff getBackoff() {
+		return backoff;
+	}
+}
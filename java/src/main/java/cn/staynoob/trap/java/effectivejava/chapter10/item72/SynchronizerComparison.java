@@ -0,0 +1,164 @@
+// Release latency and CPU use of the spin-then-park synchronizers against java.util.concurrent
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import cn.staynoob.trap.java.effectivejava.chapter10.item69.LatencyHistogram;
+
+/**
+ * Runs the two scenarios of SynchronizerSpec with each implementation:
+ * <ul>
+ * <li>waiters block on a latch until another thread counts it down after a while; reported are
+ * the times from countDown until each waiter runs again, and the CPU time each waiter used
+ * while waiting</li>
+ * <li>parties meet at a barrier over and over; reported are the time and the CPU time of all
+ * parties per round</li>
+ * </ul>
+ * Arguments: waiters, parties, rounds. The CPU times are meaningful only on a machine with at
+ * least as many cores as threads.
+ */
+public class SynchronizerComparison {
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final int TRIALS = 20;
+	private static final long DELAY_MILLIS = 20;
+
+	private interface Latch {
+		void await() throws InterruptedException;
+
+		void countDown();
+	}
+
+	private interface Barrier {
+		void await() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int waiters = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int parties = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+		Map<String, IntFunction<Latch>> latches = new LinkedHashMap<>();
+		latches.put("SlowCountDownLatch", count -> {
+			SlowCountDownLatch latch = new SlowCountDownLatch(count);
+			return latch(latch::await, latch::countDown);
+		});
+		latches.put("CountDownLatch", count -> {
+			CountDownLatch latch = new CountDownLatch(count);
+			return latch(latch::await, latch::countDown);
+		});
+		for (Backoff backoff : new Backoff[] { Backoff.PARK, Backoff.DEFAULT }) {
+			latches.put("SpinLatch " + backoff, count -> {
+				SpinLatch latch = new SpinLatch(count, backoff);
+				return latch(latch::await, latch::countDown);
+			});
+		}
+
+		System.out.printf("Latch, %d waiters, released after %d ms%n", waiters, DELAY_MILLIS);
+		for (Map.Entry<String, IntFunction<Latch>> e : latches.entrySet()) {
+			compareLatch(e.getKey(), e.getValue(), waiters); // warmup
+			compareLatch(e.getKey(), e.getValue(), waiters);
+		}
+
+		Map<String, IntFunction<Barrier>> barriers = new LinkedHashMap<>();
+		barriers.put("CyclicBarrier", n -> new CyclicBarrier(n)::await);
+		for (Backoff backoff : new Backoff[] { Backoff.PARK, Backoff.DEFAULT }) {
+			barriers.put("SpinBarrier " + backoff, n -> new SpinBarrier(n, null, backoff)
+					::arriveAndAwaitAdvance);
+		}
+
+		System.out.printf("%nBarrier, %d parties, %d rounds%n", parties, rounds);
+		for (Map.Entry<String, IntFunction<Barrier>> e : barriers.entrySet()) {
+			compareBarrier(e.getKey(), e.getValue().apply(parties), parties, rounds); // warmup
+			compareBarrier(e.getKey(), e.getValue().apply(parties), parties, rounds);
+		}
+	}
+
+	private interface Await {
+		void await() throws InterruptedException;
+	}
+
+	private static Latch latch(Await await, Runnable countDown) {
+		return new Latch() {
+			public void await() throws InterruptedException {
+				await.await();
+			}
+
+			public void countDown() {
+				countDown.run();
+			}
+		};
+	}
+
+	private static void compareLatch(String name, IntFunction<Latch> factory, int waiters)
+			throws InterruptedException {
+		LatencyHistogram latency = new LatencyHistogram();
+		LatencyHistogram cpu = new LatencyHistogram();
+		for (int trial = 0; trial < TRIALS; trial++) {
+			Latch ready = factory.apply(waiters);
+			Latch latch = factory.apply(1);
+			AtomicLong releasedAt = new AtomicLong();
+			Thread[] threads = new Thread[waiters];
+			for (int i = 0; i < waiters; i++) {
+				threads[i] = new Thread(() -> {
+					try {
+						ready.countDown();
+						long cpuStart = THREADS.getCurrentThreadCpuTime();
+						latch.await();
+						long wokeAt = System.nanoTime();
+						long cpuTime = THREADS.getCurrentThreadCpuTime() - cpuStart;
+						synchronized (latency) {
+							latency.record(wokeAt - releasedAt.get());
+							cpu.record(cpuTime);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				threads[i].start();
+			}
+			ready.await();
+			Thread.sleep(DELAY_MILLIS);
+			releasedAt.set(System.nanoTime());
+			latch.countDown();
+			for (Thread thread : threads)
+				thread.join();
+		}
+		System.out.printf("%-40s release %s%n%-40s cpu     %s%n", name,
+				latency.toString(TimeUnit.MICROSECONDS), "",
+				cpu.toString(TimeUnit.MICROSECONDS));
+	}
+
+	private static void compareBarrier(String name, Barrier barrier, int parties, int rounds)
+			throws InterruptedException {
+		LongAdder cpu = new LongAdder();
+		Thread[] threads = new Thread[parties];
+		long start = System.nanoTime();
+		for (int i = 0; i < parties; i++) {
+			threads[i] = new Thread(() -> {
+				long cpuStart = THREADS.getCurrentThreadCpuTime();
+				try {
+					for (int r = 0; r < rounds; r++)
+						barrier.await();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				cpu.add(THREADS.getCurrentThreadCpuTime() - cpuStart);
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%-40s %8.2f us/round, %8.2f us cpu/round%n", name,
+				elapsed / 1e3 / rounds, cpu.sum() / 1e3 / rounds);
+	}
+}
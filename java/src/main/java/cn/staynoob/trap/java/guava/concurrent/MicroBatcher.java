@@ -0,0 +1,265 @@
+package cn.staynoob.trap.java.guava.concurrent;
+
+import cn.staynoob.trap.java.effectivejava.chapter10.item69.LatencyHistogram;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single-key requests into bulk calls. A batch is sent when it holds
+ * {@code maxBatchSize} distinct keys, or {@code maxDelay} after its first request, whichever
+ * comes first, and each request's future completes with the value for its key.
+ * <p>
+ * Requests for a key that is in the open batch already share its entry. To also share loads
+ * that are in flight, put a {@link SingleFlight} in front:
+ * {@code new SingleFlight<>(batcher::get)}.
+ */
+public class MicroBatcher<K, V> {
+
+    /**
+     * Loads the values of several keys at once.
+     */
+    public interface BulkLoader<K, V> {
+        /**
+         * @param keys distinct keys
+         * @return a value for each of the keys; a missing key fails its requests
+         */
+        ListenableFuture<Map<K, V>> load(List<K> keys) throws Exception;
+    }
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "MicroBatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BulkLoader<K, V> loader;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService timer;
+    private Batch open; // guarded by this
+
+    // guarded by stats
+    private final LatencyHistogram batchSizes = new LatencyHistogram();
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LatencyHistogram loadTimes = new LatencyHistogram();
+    private long requests;
+    private long failedBatches;
+    private final Object stats = new Object();
+
+    public static class Builder<K, V> {
+        private final BulkLoader<K, V> loader;
+        private int maxBatchSize = 100;
+        private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        private ScheduledExecutorService timer = TIMER;
+
+        public Builder(BulkLoader<K, V> loader) {
+            if (loader == null) throw new NullPointerException("loader");
+            this.loader = loader;
+        }
+
+        public Builder<K, V> maxBatchSize(int val) {
+            if (val <= 0) throw new IllegalArgumentException("maxBatchSize: " + val);
+            this.maxBatchSize = val;
+            return this;
+        }
+
+        public Builder<K, V> maxDelay(long val, TimeUnit unit) {
+            if (val < 0) throw new IllegalArgumentException("maxDelay: " + val);
+            this.maxDelayNanos = unit.toNanos(val);
+            return this;
+        }
+
+        // Sends the batches that are due by time; a shared daemon thread by default
+        public Builder<K, V> timer(ScheduledExecutorService val) {
+            if (val == null) throw new NullPointerException("timer");
+            this.timer = val;
+            return this;
+        }
+
+        public MicroBatcher<K, V> build() {
+            return new MicroBatcher<>(this);
+        }
+    }
+
+    private MicroBatcher(Builder<K, V> builder) {
+        loader = builder.loader;
+        maxBatchSize = builder.maxBatchSize;
+        maxDelayNanos = builder.maxDelayNanos;
+        timer = builder.timer;
+    }
+
+    public ListenableFuture<V> get(K key) {
+        if (key == null) throw new NullPointerException("key");
+        SettableFuture<V> future = SettableFuture.create();
+        Batch full = null;
+        synchronized (this) {
+            if (open == null) {
+                Batch batch = new Batch();
+                open = batch;
+                if (maxBatchSize > 1)
+                    timer.schedule(() -> sendIfOpen(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+            open.add(key, future);
+            if (open.requests.size() >= maxBatchSize) {
+                full = open;
+                open = null;
+            }
+        }
+        if (full != null) send(full);
+        return future;
+    }
+
+    /**
+     * Sends the open batch right away.
+     */
+    public void flush() {
+        Batch batch;
+        synchronized (this) {
+            batch = open;
+            open = null;
+        }
+        if (batch != null) send(batch);
+    }
+
+    private void sendIfOpen(Batch batch) {
+        synchronized (this) {
+            if (open != batch) return; // sent because it was full
+            open = null;
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        long sent = System.nanoTime();
+        List<K> keys = new ArrayList<>(batch.requests.keySet());
+        ListenableFuture<Map<K, V>> result;
+        try {
+            result = loader.load(keys);
+            if (result == null) throw new NullPointerException("loader returned null");
+        } catch (Throwable e) {
+            result = Futures.immediateFailedFuture(e);
+        }
+        Futures.addCallback(result, new FutureCallback<Map<K, V>>() {
+            @Override
+            public void onSuccess(Map<K, V> values) {
+                record(batch, sent, false);
+                for (Map.Entry<K, List<SettableFuture<V>>> e : batch.requests.entrySet()) {
+                    V value = values == null ? null : values.get(e.getKey());
+                    for (SettableFuture<V> future : e.getValue()) {
+                        if (value == null)
+                            future.setException(new IllegalStateException("No value loaded for " + e.getKey()));
+                        else
+                            future.set(value);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                record(batch, sent, true);
+                for (List<SettableFuture<V>> futures : batch.requests.values())
+                    for (SettableFuture<V> future : futures)
+                        future.setException(t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void record(Batch batch, long sent, boolean failed) {
+        long now = System.nanoTime();
+        synchronized (stats) {
+            batchSizes.record(batch.requests.size());
+            waitTimes.record(sent - batch.opened);
+            loadTimes.record(now - sent);
+            requests += batch.count;
+            if (failed) failedBatches++;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (stats) {
+            return new Stats(this);
+        }
+    }
+
+    /**
+     * A snapshot of the batches that completed so far.
+     */
+    public static final class Stats {
+        private final long requests;
+        private final long failedBatches;
+        private final LatencyHistogram batchSizes = new LatencyHistogram();
+        private final LatencyHistogram waitTimes = new LatencyHistogram();
+        private final LatencyHistogram loadTimes = new LatencyHistogram();
+
+        private Stats(MicroBatcher<?, ?> batcher) {
+            requests = batcher.requests;
+            failedBatches = batcher.failedBatches;
+            batchSizes.add(batcher.batchSizes);
+            waitTimes.add(batcher.waitTimes);
+            loadTimes.add(batcher.loadTimes);
+        }
+
+        public long getBatches() {
+            return batchSizes.getCount();
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getFailedBatches() {
+            return failedBatches;
+        }
+
+        /**
+         * Gets the distribution of the number of distinct keys per batch.
+         */
+        public LatencyHistogram getBatchSizes() {
+            return batchSizes;
+        }
+
+        /**
+         * Gets the distribution of the time from the first request of a batch until it was sent, in nanoseconds.
+         */
+        public LatencyHistogram getWaitTimes() {
+            return waitTimes;
+        }
+
+        /**
+         * Gets the distribution of the time the bulk calls took, in nanoseconds.
+         */
+        public LatencyHistogram getLoadTimes() {
+            return loadTimes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("batches=%d requests=%d failed=%d size p50=%d max=%d%nwait %s%nload %s",
+                    getBatches(), requests, failedBatches,
+                    batchSizes.getValueAtPercentile(50), batchSizes.getMax(),
+                    waitTimes.toString(TimeUnit.MICROSECONDS), loadTimes.toString(TimeUnit.MICROSECONDS));
+        }
+    }
+
+    private class Batch {
+        final long opened = System.nanoTime();
+        final Map<K, List<SettableFuture<V>>> requests = new LinkedHashMap<>();
+        int count;
+
+        void add(K key, SettableFuture<V> future) {
+            requests.computeIfAbsent(key, k -> new ArrayList<>(1)).add(future);
+            count++;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package cn.staynoob.trap.java.guava.concurrent;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent loads of the same key into one call of the loader: while a load of a key
+ * is in flight, further requests for the key get the same result instead of starting another
+ * load. Once the load completes, the next request starts a new one, so nothing is cached.
+ * <p>
+ * Each caller gets its own view of the shared future. Cancelling it only detaches that caller;
+ * the load goes on for the others.
+ */
+public class SingleFlight<K, V> {
+    private final AsyncFunction<? super K, V> loader;
+    private final ConcurrentMap<K, SettableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    public SingleFlight(AsyncFunction<? super K, V> loader) {
+        if (loader == null) throw new NullPointerException("loader");
+        this.loader = loader;
+    }
+
+    public ListenableFuture<V> get(K key) {
+        requests.increment();
+        SettableFuture<V> promise = SettableFuture.create();
+        SettableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) return Futures.nonCancellationPropagating(existing);
+
+        loads.increment();
+        promise.addListener(() -> inFlight.remove(key, promise), MoreExecutors.directExecutor());
+        try {
+            ListenableFuture<V> loaded = loader.apply(key);
+            if (loaded == null) throw new NullPointerException("loader returned null for " + key);
+            promise.setFuture(loaded);
+        } catch (Throwable e) {
+            promise.setException(e);
+        }
+        return Futures.nonCancellationPropagating(promise);
+    }
+
+    /**
+     * Gets the number of keys whose load is in flight.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Gets the number of times the loader was called; the other requests shared a load.
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d loads=%d inFlight=%d", getRequests(), getLoads(), getInFlight());
+    }
+}
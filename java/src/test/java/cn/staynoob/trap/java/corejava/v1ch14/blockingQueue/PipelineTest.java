@@ -0,0 +1,84 @@
+package cn.staynoob.trap.java.corejava.v1ch14.blockingQueue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PipelineTest {
+    private static final int N = 100_000;
+
+    private void sum(QueueType queueType) throws Exception {
+        AtomicLong sum = new AtomicLong();
+
+        Pipeline.Execution execution = Pipeline
+                .<Integer>from("source", out -> {
+                    for (int i = 1; i <= N; i++) out.emit(i);
+                })
+                .then("double", new Pipeline.Options().threads(3).queue(queueType, 4).batchSize(7),
+                        (Integer i, Pipeline.Emitter<Long> out) -> out.emit(2L * i))
+                .to("sum", new Pipeline.Options().threads(2).queue(queueType, 4).batchSize(5),
+                        sum::addAndGet);
+        execution.await();
+
+        assertThat(sum).hasValue((long) N * (N + 1));
+        List<Pipeline.StageStats> stats = execution.stats();
+        assertThat(stats).extracting(Pipeline.StageStats::getName).containsExactly("source", "double", "sum");
+        assertThat(stats).extracting(Pipeline.StageStats::getProcessed).containsOnly((long) N);
+        assertThat(stats).extracting(Pipeline.StageStats::getQueuedBatches).containsOnly(0);
+    }
+
+    @Test
+    @DisplayName("every item passes every stage exactly once with an ArrayBlockingQueue")
+    void test100() throws Exception {
+        sum(QueueType.ARRAY);
+    }
+
+    @Test
+    @DisplayName("every item passes every stage exactly once with a LinkedBlockingQueue")
+    void test110() throws Exception {
+        sum(QueueType.LINKED);
+    }
+
+    @Test
+    @DisplayName("every item passes every stage exactly once with a lock-free ring")
+    void test120() throws Exception {
+        sum(QueueType.RING);
+    }
+
+    @Test
+    @DisplayName("an exception in a stage cancels the pipeline and is rethrown by await")
+    void test200() {
+        Pipeline.Execution execution = Pipeline
+                .<Integer>from("source", out -> {
+                    for (int i = 0; ; i++) out.emit(i);
+                })
+                .to("sink", new Pipeline.Options(), i -> {
+                    if (i == 1000) throw new IllegalStateException("gotcha");
+                });
+
+        assertThatThrownBy(execution::await)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("the ring rounds its capacity up to a power of two and rejects elements when full")
+    void test300() {
+        MpmcRing<Integer> ring = new MpmcRing<>(3);
+
+        assertThat(ring.capacity()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) assertThat(ring.offer(i)).isTrue();
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.poll()).isEqualTo(0);
+        assertThat(ring.offer(4)).isTrue();
+        assertThat(ring.size()).isEqualTo(4);
+        for (int i = 1; i <= 4; i++) assertThat(ring.poll()).isEqualTo(i);
+        assertThat(ring.poll()).isNull();
+    }
+}
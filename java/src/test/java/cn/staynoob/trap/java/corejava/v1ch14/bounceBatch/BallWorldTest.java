@@ -0,0 +1,94 @@
+package cn.staynoob.trap.java.corejava.v1ch14.bounceBatch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class BallWorldTest {
+    @Test
+    @DisplayName("a ball moves by its velocity and bounces off the edges")
+    void test100() {
+        BallWorld world = new BallWorld(100, 50);
+        world.add(0, 0, 100, 100);
+
+        world.step(0.1);
+        assertThat(world.getX(0)).isCloseTo(10, within(1e-9));
+        assertThat(world.getY(0)).isCloseTo(10, within(1e-9));
+
+        world.step(0.5);
+        assertThat(world.getY(0)).isEqualTo(50 - BallWorld.YSIZE);
+        world.step(0.1);
+        assertThat(world.getY(0)).isCloseTo(50 - BallWorld.YSIZE - 10, within(1e-9));
+        assertThat(world.getX(0)).isCloseTo(70, within(1e-9));
+    }
+
+    @Test
+    @DisplayName("a step split among a pool's workers moves the balls exactly as a sequential one")
+    void test200() {
+        BallWorld sequential = new BallWorld(640, 480);
+        BallWorld parallel = new BallWorld(640, 480);
+        sequential.addRandom(100_000, 200, new Random(42));
+        parallel.addRandom(100_000, 200, new Random(42));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 100; i++) {
+                sequential.step(1 / 120.0);
+                parallel.step(1 / 120.0, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(parallel.getCount()).isEqualTo(100_000);
+        assertThat(parallel.copyPositions(null)).isEqualTo(sequential.copyPositions(null));
+    }
+
+    @Test
+    @DisplayName("the loop steps at a fixed rate, shows frames and runs submitted commands in between")
+    void test300() {
+        BallWorld world = new BallWorld(640, 480);
+        AtomicLong now = new AtomicLong(1_000_000);
+        int[] shown = new int[1];
+        FixedStepLoop[] loop = new FixedStepLoop[1];
+        loop[0] = new FixedStepLoop(world, TimeUnit.MILLISECONDS.toNanos(5),
+                TimeUnit.MILLISECONDS.toNanos(20), null, w -> {
+                    shown[0] = w.getCount();
+                    if (loop[0].getFrames() == 9) loop[0].stop();
+                }, now::get, now::addAndGet);
+        loop[0].submit(w -> w.addRandom(10, 200, new Random(42)));
+        loop[0].run();
+
+        assertThat(shown[0]).isEqualTo(10);
+        assertThat(loop[0].getFrames()).isEqualTo(10);
+        // no time has passed before the first frame, and each of the others is 4 steps later
+        assertThat(loop[0].getSteps()).isEqualTo(36);
+        assertThat(loop[0].getDroppedSteps()).isZero();
+    }
+
+    @Test
+    @DisplayName("a loop that falls behind drops the steps it can't catch up on in a frame")
+    void test400() {
+        BallWorld world = new BallWorld(640, 480);
+        AtomicLong now = new AtomicLong(1_000_000);
+        FixedStepLoop[] loop = new FixedStepLoop[1];
+        loop[0] = new FixedStepLoop(world, TimeUnit.MILLISECONDS.toNanos(5),
+                TimeUnit.MILLISECONDS.toNanos(20), null, w -> {
+                    long frames = loop[0].getFrames();
+                    if (frames == 2) now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100)); // a slow frame
+                    if (frames == 4) loop[0].stop();
+                }, now::get, now::addAndGet);
+        loop[0].run();
+
+        // the frame after the slow one is 100ms late: 4 steps are taken and the other 16 dropped
+        assertThat(loop[0].getFrames()).isEqualTo(5);
+        assertThat(loop[0].getSteps()).isEqualTo(16);
+        assertThat(loop[0].getDroppedSteps()).isEqualTo(16);
+    }
+}
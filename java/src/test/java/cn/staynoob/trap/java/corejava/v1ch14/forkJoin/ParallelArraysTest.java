@@ -0,0 +1,77 @@
+package cn.staynoob.trap.java.corejava.v1ch14.forkJoin;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.IntSummaryStatistics;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelArraysTest {
+    private static final int SIZE = 1_000_000;
+
+    @Test
+    @DisplayName("count should agree with the sequential stream")
+    void test100() {
+        double[] values = new Random(1).doubles(SIZE).toArray();
+        long expected = Arrays.stream(values).filter(x -> x > 0.5).count();
+
+        assertThat(ParallelArrays.count(values, x -> x > 0.5)).isEqualTo(expected);
+        assertThat(ParallelArrays.count(new ForkJoinPool(3), values, x -> x > 0.5))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("summarize should compute count, sum, min and max in one pass")
+    void test200() {
+        int[] values = new Random(2).ints(SIZE, -1000, 1000).toArray();
+        IntSummaryStatistics expected = Arrays.stream(values).filter(x -> x % 2 == 0).summaryStatistics();
+
+        IntSummaryStatistics actual = ParallelArrays.summarize(values, x -> x % 2 == 0);
+
+        assertThat(actual.getCount()).isEqualTo(expected.getCount());
+        assertThat(actual.getSum()).isEqualTo(expected.getSum());
+        assertThat(actual.getMin()).isEqualTo(expected.getMin());
+        assertThat(actual.getMax()).isEqualTo(expected.getMax());
+    }
+
+    @Test
+    @DisplayName("summarize an empty array")
+    void test210() {
+        DoubleSummaryStatistics actual = ParallelArrays.summarize(new double[0]);
+
+        assertThat(actual.getCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("histogram should ignore values outside of the range")
+    void test300() {
+        long[] values = {-1, 0, 1, 2, 3, 4, 5, 9, 10, 11};
+
+        assertThat(ParallelArrays.histogram(values, 0, 10, 5))
+                .containsExactly(2, 2, 2, 0, 1);
+    }
+
+    @Test
+    @DisplayName("histogram requires at least one bin")
+    void test310() {
+        assertThatThrownBy(() -> ParallelArrays.histogram(new int[0], 0, 1, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("leaves should shrink as the pool gets wider, but not below MIN_CHUNK")
+    void test400() {
+        assertThat(ParallelArrays.threshold(new ForkJoinPool(1), 100_000_000))
+                .isEqualTo(100_000_000 / ParallelArrays.CHUNKS_PER_WORKER);
+        assertThat(ParallelArrays.threshold(new ForkJoinPool(4), 100_000_000))
+                .isEqualTo(100_000_000 / 4 / ParallelArrays.CHUNKS_PER_WORKER);
+        assertThat(ParallelArrays.threshold(new ForkJoinPool(4), 1000))
+                .isEqualTo(ParallelArrays.MIN_CHUNK);
+    }
+}
@@ -0,0 +1,108 @@
+package cn.staynoob.trap.java.corejava.v1ch14.forkJoin;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelSortTest {
+    private static final int SIZE = 1_000_000;
+
+    @Test
+    @DisplayName("sort ints like Arrays.sort")
+    void test100() {
+        int[] values = new Random(1).ints(SIZE).toArray();
+        int[] expected = values.clone();
+        Arrays.sort(expected);
+
+        ParallelSort.sort(new ForkJoinPool(3), values);
+
+        assertThat(values).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("sort longs with many duplicates")
+    void test200() {
+        long[] values = new Random(2).longs(SIZE, 0, 100).toArray();
+        long[] expected = values.clone();
+        Arrays.sort(expected);
+
+        ParallelSort.sort(values);
+
+        assertThat(values).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("order doubles like Double.compare, including NaN and negative zero")
+    void test300() {
+        double[] values = new Random(3).doubles(SIZE, -1, 1).toArray();
+        for (int i = 0; i < SIZE; i += 1000) {
+            values[i] = Double.NaN;
+            values[i + 1] = -0.0;
+            values[i + 2] = 0.0;
+            values[i + 3] = Double.NEGATIVE_INFINITY;
+        }
+        double[] expected = values.clone();
+        Arrays.sort(expected);
+
+        ParallelSort.sort(values);
+
+        assertThat(values).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("sort only the given range")
+    void test400() {
+        int[] values = {9, 8, 7, 6, 5, 4, 3, 2, 1, 0};
+
+        ParallelSort.sort(ForkJoinPool.commonPool(), values, 2, 8);
+
+        assertThat(values).containsExactly(9, 8, 2, 3, 4, 5, 6, 7, 1, 0);
+        assertThatThrownBy(() -> ParallelSort.sort(ForkJoinPool.commonPool(), values, 5, 4))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ParallelSort.sort(ForkJoinPool.commonPool(), values, 0, 11))
+                .isInstanceOf(ArrayIndexOutOfBoundsException.class);
+    }
+
+    @Test
+    @DisplayName("sort objects stably")
+    void test500() {
+        Random random = new Random(5);
+        // the index breaks ties, so the expected order is unique
+        long[][] values = new long[SIZE][];
+        for (int i = 0; i < SIZE; i++) values[i] = new long[]{random.nextInt(1000), i};
+
+        ParallelSort.sort(values, Comparator.comparingLong(e -> e[0]));
+
+        for (int i = 1; i < SIZE; i++) {
+            long[] previous = values[i - 1];
+            long[] current = values[i];
+            assertThat(previous[0] < current[0] || previous[0] == current[0] && previous[1] < current[1])
+                    .as("order at %d", i)
+                    .isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("sort comparables in natural order, small and presorted inputs included")
+    void test600() {
+        Integer[] small = {3, 1, 2};
+        ParallelSort.sort(small);
+        assertThat(small).containsExactly(1, 2, 3);
+
+        Integer[] sorted = new Integer[100_000];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = i;
+        Integer[] reversed = sorted.clone();
+        Arrays.sort(reversed, Comparator.reverseOrder());
+
+        ParallelSort.sort(reversed);
+
+        assertThat(reversed).isEqualTo(sorted);
+    }
+}
@@ -0,0 +1,156 @@
+package cn.staynoob.trap.java.corejava.v1ch14.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AsyncSearchTest {
+    private static final int DIRECTORIES = 1 + 4 + 16 + 64;
+
+    private Path root;
+    private ExecutorService executor;
+    private AsyncSearch search;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("async");
+        // 3 levels of 4 directories, each with 5 files of which one mentions the keyword twice
+        createTree(root, 3);
+        executor = Executors.newFixedThreadPool(4);
+        search = new AsyncSearch(new KeywordSearch("volatile"), executor);
+    }
+
+    private void createTree(Path directory, int depth) throws IOException {
+        for (int i = 0; i < 4; i++)
+            Files.write(directory.resolve("plain" + i + ".txt"), "int x;\nint y;\n".getBytes());
+        Files.write(directory.resolve("match.txt"), "volatile int x;\nint y;\nvolatile int z;\n".getBytes());
+        if (depth == 0) return;
+        for (int i = 0; i < 4; i++)
+            createTree(Files.createDirectory(directory.resolve("dir" + i)), depth - 1);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        executor.shutdownNow();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("combine the results of all directories")
+    void test100() throws Exception {
+        List<AsyncSearch.Hit> hits = new CopyOnWriteArrayList<>();
+
+        AsyncSearch.SearchResult result = search.search(root, hits::add).get(10, TimeUnit.SECONDS);
+
+        assertThat(result.getSearchedFiles()).isEqualTo(DIRECTORIES * 5);
+        assertThat(result.getMatchingFiles()).isEqualTo(DIRECTORIES);
+        assertThat(result.getMatchingLines()).isEqualTo(DIRECTORIES * 2);
+        assertThat(hits).hasSize(DIRECTORIES * 2);
+        assertThat(hits).allSatisfy(hit -> {
+            assertThat(hit.getFile().getFileName().toString()).isEqualTo("match.txt");
+            assertThat(hit.getLineNumber()).isIn(1L, 3L);
+            assertThat(hit.getLine()).startsWith("volatile");
+        });
+    }
+
+    @Test
+    @DisplayName("stream hits before the search completes")
+    void test200() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstHit = new CountDownLatch(1);
+
+        CompletableFuture<AsyncSearch.SearchResult> future = search.search(root, hit -> {
+            firstHit.countDown();
+            await(release);
+        });
+
+        assertThat(firstHit.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(future).isNotDone();
+        release.countDown();
+        assertThat(future.get(10, TimeUnit.SECONDS).getMatchingLines()).isEqualTo(DIRECTORIES * 2);
+    }
+
+    @Test
+    @DisplayName("cancellation stops the tasks of the whole tree")
+    void test300() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger hits = new AtomicInteger();
+
+        CompletableFuture<AsyncSearch.SearchResult> future = search.search(root, hit -> {
+            hits.incrementAndGet();
+            await(release);
+        });
+        future.cancel(true);
+        release.countDown();
+
+        assertThat(future.isCancelled()).isTrue();
+        assertThatThrownBy(future::join).isInstanceOf(CancellationException.class);
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        // only the workers that were already blocked in the callback may have reported a hit
+        assertThat(hits.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("fail with a TimeoutException once the deadline passed")
+    void test400() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger hits = new AtomicInteger();
+
+        CompletableFuture<AsyncSearch.SearchResult> future = search.search(root, hit -> {
+            hits.incrementAndGet();
+            await(release);
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(hits.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("complete exceptionally if the callback throws")
+    void test500() {
+        CompletableFuture<AsyncSearch.SearchResult> future = search.search(root, hit -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
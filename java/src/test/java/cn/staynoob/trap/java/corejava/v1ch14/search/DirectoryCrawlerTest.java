@@ -0,0 +1,77 @@
+package cn.staynoob.trap.java.corejava.v1ch14.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DirectoryCrawlerTest {
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("crawler");
+        // 3 levels of 4 directories, each with 10 small files and one large file
+        createTree(root, 3);
+    }
+
+    private void createTree(Path directory, int depth) throws IOException {
+        for (int i = 0; i < 10; i++)
+            Files.write(directory.resolve("small" + i + ".txt"), ("file " + i).getBytes());
+        Files.write(directory.resolve("large.txt"), new byte[4096]);
+        if (depth == 0) return;
+        for (int i = 0; i < 4; i++)
+            createTree(Files.createDirectory(directory.resolve("dir" + i)), depth - 1);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("count matching files of the whole tree")
+    void test100() {
+        DirectoryCrawler crawler = new DirectoryCrawler(new ForkJoinPool(4), 2, 2, 1024, 3);
+
+        long count = crawler.count(root, file -> file.getFileName().toString().startsWith("small1"));
+
+        int directories = 1 + 4 + 16 + 64;
+        assertThat(count).isEqualTo(directories);
+        assertThat(crawler.stats().getVisitedFiles()).isEqualTo(directories * 11);
+        assertThat(crawler.stats().getQueuedDirectories()).isZero();
+    }
+
+    @Test
+    @DisplayName("never check more files at once than allowed")
+    void test200() {
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        DirectoryCrawler crawler = new DirectoryCrawler(new ForkJoinPool(8), 8, 2, 1024, 2);
+
+        crawler.count(root, file -> {
+            peak.accumulateAndGet(open.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            open.decrementAndGet();
+            return false;
+        });
+
+        assertThat(peak.get()).isBetween(1, 2);
+    }
+}
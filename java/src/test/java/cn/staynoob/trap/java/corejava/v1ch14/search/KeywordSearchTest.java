@@ -0,0 +1,109 @@
+package cn.staynoob.trap.java.corejava.v1ch14.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeywordSearchTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("keyword-search", ".txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    private List<String> hits(KeywordSearch search) throws IOException {
+        List<String> result = new ArrayList<>();
+        search.search(file, (lineNumber, line) -> result.add(lineNumber + ":" + line));
+        return result;
+    }
+
+    @Test
+    @DisplayName("report line numbers and lines of the hits only")
+    void test100() throws IOException {
+        Files.write(file, "a volatile field\nnothing here\r\nvolatile volatile\nvolat\nends with volatile"
+                .getBytes(StandardCharsets.UTF_8));
+
+        KeywordSearch search = new KeywordSearch("volatile", StandardCharsets.UTF_8);
+
+        assertThat(hits(search)).containsExactly(
+                "1:a volatile field",
+                "3:volatile volatile",
+                "5:ends with volatile");
+        assertThat(search.contains(file)).isTrue();
+        assertThat(new KeywordSearch("missing").contains(file)).isFalse();
+    }
+
+    @Test
+    @DisplayName("match multi-byte keywords as bytes")
+    void test200() throws IOException {
+        Files.write(file, "第一行\n第二行 关键字\n".getBytes(StandardCharsets.UTF_8));
+
+        KeywordSearch search = new KeywordSearch("关键字", StandardCharsets.UTF_8);
+
+        assertThat(hits(search)).containsExactly("2:第二行 关键字");
+    }
+
+    @Test
+    @DisplayName("a large file is mapped in windows without losing matches at the boundaries")
+    void test300() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; builder.length() <= 2 * KeywordSearch.BUFFER_SIZE; i++) {
+            String line = i % 997 == 0 ? "line " + i + " keyword" : "line " + i;
+            if (i % 997 == 0) expected.add(i + ":" + line);
+            builder.append(line).append('\n');
+        }
+        Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        // small windows, so that plenty of lines and matches straddle a boundary
+        KeywordSearch search = new KeywordSearch("keyword", StandardCharsets.UTF_8, 4093);
+
+        List<Long> lineNumbers = new ArrayList<>();
+        search.search(file, (lineNumber, line) -> lineNumbers.add(lineNumber));
+        assertThat(lineNumbers).hasSameSizeAs(expected);
+        assertThat(lineNumbers).allMatch(n -> n % 997 == 0);
+        assertThat(hits(new KeywordSearch("keyword", StandardCharsets.UTF_8))).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("a line that spans several windows is reported once")
+    void test400() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 1; builder.length() <= 2 * KeywordSearch.BUFFER_SIZE; i++) {
+            if (i % 3 == 0) {
+                // longer than a window, with a match in every window it touches
+                expected.add((long) i);
+                for (int j = 0; j < 20; j++)
+                    builder.append("keyword and some text that goes on for a while ").append(j).append(' ');
+            } else {
+                builder.append("line ").append(i);
+            }
+            builder.append('\n');
+        }
+        Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        KeywordSearch search = new KeywordSearch("keyword", StandardCharsets.UTF_8, 300);
+
+        List<Long> lineNumbers = new ArrayList<>();
+        int hits = search.search(file, (lineNumber, line) -> lineNumbers.add(lineNumber));
+        assertThat(lineNumbers).isEqualTo(expected);
+        assertThat(hits).isEqualTo(expected.size());
+    }
+}
@@ -0,0 +1,56 @@
+package cn.staynoob.trap.java.corejava.v1ch14.stamped;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BankTest {
+    @Test
+    @DisplayName("snapshots taken during transfers always add up to the same total")
+    void test100() throws InterruptedException {
+        Bank bank = new Bank(10_000, 1000, 100);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            writers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!done.get())
+                    bank.transfer(random.nextInt(10_000), random.nextInt(10_000), random.nextInt(500));
+            }));
+        }
+        writers.forEach(Thread::start);
+
+        for (int i = 0; i < 200; i++) {
+            Bank.Snapshot snapshot = bank.snapshot();
+            long sum = 0;
+            for (int j = 0; j < bank.size(); j++) sum += snapshot.getBalance(j);
+            assertThat(sum).isEqualTo(10_000 * 1000L);
+            assertThat(snapshot.getTotalBalance()).isEqualTo(10_000 * 1000L);
+            assertThat(bank.getTotalBalance()).isEqualTo(10_000 * 1000L);
+        }
+
+        done.set(true);
+        for (Thread writer : writers) writer.join();
+        assertThat(bank.getOptimisticReads() + bank.getLockedReads()).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("reads without concurrent writes never take a lock")
+    void test200() {
+        Bank bank = new Bank(3, 100, 2);
+
+        assertThat(bank.transfer(0, 2, 40)).isTrue();
+        assertThat(bank.transfer(1, 2, 101)).isFalse();
+
+        assertThat(bank.getBalance(0)).isEqualTo(60);
+        assertThat(bank.getBalance(2)).isEqualTo(140);
+        assertThat(bank.getTotalBalance()).isEqualTo(300);
+        assertThat(bank.getLockedReads()).isZero();
+    }
+}
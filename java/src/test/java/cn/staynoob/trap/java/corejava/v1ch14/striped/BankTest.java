@@ -0,0 +1,55 @@
+package cn.staynoob.trap.java.corejava.v1ch14.striped;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BankTest {
+    @Test
+    @DisplayName("concurrent transfers neither create nor destroy money, even with shared stripes")
+    void test100() throws InterruptedException {
+        Bank bank = new Bank(100, 1000, 8);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 100_000; j++)
+                    bank.transfer(random.nextInt(100), random.nextInt(100), random.nextInt(500));
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+
+        assertThat(bank.sumAccounts()).isEqualTo(100 * 1000);
+        assertThat(bank.getTotalBalance()).isEqualTo(100 * 1000);
+    }
+
+    @Test
+    @DisplayName("a transfer with insufficient funds is rejected")
+    void test200() {
+        Bank bank = new Bank(2, 100);
+
+        assertThat(bank.transfer(0, 1, 101)).isFalse();
+        assertThat(bank.transfer(0, 1, 100)).isTrue();
+        assertThat(bank.getBalance(0)).isZero();
+        assertThat(bank.getBalance(1)).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("deposits and withdrawals are reflected in the total balance")
+    void test300() {
+        Bank bank = new Bank(2, 100);
+
+        bank.deposit(0, 50);
+        assertThat(bank.withdraw(1, 30)).isTrue();
+        assertThat(bank.withdraw(1, 100)).isFalse();
+
+        assertThat(bank.getTotalBalance()).isEqualTo(220);
+        assertThat(bank.sumAccounts()).isEqualTo(220);
+    }
+}
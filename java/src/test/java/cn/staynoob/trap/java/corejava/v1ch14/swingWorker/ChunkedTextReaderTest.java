@@ -0,0 +1,62 @@
+package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChunkedTextReaderTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("chunked-text-reader", ".txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    private String readAll(Charset charset, int chunkSize) throws IOException {
+        StringBuilder result = new StringBuilder();
+        try (ChunkedTextReader in = new ChunkedTextReader(file, charset, chunkSize)) {
+            String chunk;
+            while ((chunk = in.next()) != null) {
+                assertThat(chunk.length()).isLessThanOrEqualTo(chunkSize);
+                result.append(chunk);
+            }
+            assertThat(in.getPosition()).isEqualTo(in.getSize());
+        }
+        return result.toString();
+    }
+
+    @Test
+    @DisplayName("characters split between chunks are decoded whole")
+    void test100() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) text.append("aé中😀\n");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertThat(readAll(StandardCharsets.UTF_8, 16)).isEqualTo(text.toString());
+        assertThat(readAll(StandardCharsets.UTF_8, 17)).isEqualTo(text.toString());
+    }
+
+    @Test
+    @DisplayName("malformed input is replaced, and an empty file has no chunks")
+    void test200() throws IOException {
+        Files.write(file, new byte[]{'a', (byte) 0xff, 'b', (byte) 0xe4});
+        assertThat(readAll(StandardCharsets.UTF_8, 16)).isEqualTo("a�b�");
+
+        Files.write(file, new byte[0]);
+        assertThat(readAll(StandardCharsets.UTF_8, 16)).isEmpty();
+    }
+}
@@ -0,0 +1,37 @@
+package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrameThrottleTest {
+    @Test
+    @DisplayName("at most maxPerFrame publications pass in a frame, and the next frame starts afresh")
+    void test100() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        FrameThrottle throttle = new FrameThrottle(2, 50, TimeUnit.NANOSECONDS, now::get);
+
+        assertThat(throttle.tryAcquire()).isTrue();
+        now.addAndGet(10);
+        assertThat(throttle.tryAcquire()).isTrue();
+        now.addAndGet(39);
+        assertThat(throttle.tryAcquire()).isFalse();
+        now.addAndGet(1);
+        assertThat(throttle.tryAcquire()).isTrue();
+        assertThat(throttle.tryAcquire()).isTrue();
+        assertThat(throttle.tryAcquire()).isFalse();
+    }
+
+    @Test
+    @DisplayName("the first frame is open from the start, whatever the clock reads")
+    void test200() {
+        FrameThrottle throttle = new FrameThrottle(1, 50, TimeUnit.NANOSECONDS, () -> Long.MIN_VALUE);
+
+        assertThat(throttle.tryAcquire()).isTrue();
+        assertThat(throttle.tryAcquire()).isFalse();
+    }
+}
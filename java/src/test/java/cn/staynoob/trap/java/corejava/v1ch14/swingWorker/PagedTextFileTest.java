@@ -0,0 +1,95 @@
+package cn.staynoob.trap.java.corejava.v1ch14.swingWorker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PagedTextFileTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("paged-text-file", ".txt");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    private void write(String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PagedTextFile open(int cachedPages) throws IOException {
+        return new PagedTextFile(file, StandardCharsets.UTF_8, cachedPages);
+    }
+
+    @Test
+    @DisplayName("lines are counted with or without a final line terminator, and lose their '\\r'")
+    void test100() throws IOException {
+        write("one\r\ntwo\n\nfünf");
+        try (PagedTextFile paged = open(1)) {
+            assertThat(paged.index(Long.MAX_VALUE)).isTrue();
+            assertThat(paged.getLineCount()).isEqualTo(4);
+            assertThat(paged.getLine(0)).isEqualTo("one");
+            assertThat(paged.getLine(2)).isEmpty();
+            assertThat(paged.getLine(3)).isEqualTo("fünf");
+            assertThatThrownBy(() -> paged.getLine(4)).isInstanceOf(IndexOutOfBoundsException.class);
+        }
+
+        write("one\ntwo\n");
+        try (PagedTextFile paged = open(1)) {
+            paged.index(Long.MAX_VALUE);
+            assertThat(paged.getLineCount()).isEqualTo(2);
+            assertThat(paged.getLine(1)).isEqualTo("two");
+        }
+
+        write("");
+        try (PagedTextFile paged = open(1)) {
+            assertThat(paged.index(Long.MAX_VALUE)).isTrue();
+            assertThat(paged.getLineCount()).isZero();
+            assertThat(paged.getIndexedFraction()).isEqualTo(1.0);
+        }
+    }
+
+    @Test
+    @DisplayName("lines on many pages are read back while the file is indexed bit by bit")
+    void test200() throws IOException {
+        int lines = 3 * PagedTextFile.LINES_PER_PAGE + 7;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) text.append("line ").append(i).append('\n');
+        write(text.toString());
+
+        try (PagedTextFile paged = open(2)) {
+            int steps = 0;
+            while (!paged.index(1000)) {
+                steps++;
+                int count = paged.getLineCount();
+                if (count > 0) assertThat(paged.getLine(count - 1)).isEqualTo("line " + (count - 1));
+            }
+            assertThat(steps).isGreaterThan(10);
+            assertThat(paged.getLineCount()).isEqualTo(lines);
+            assertThat(paged.getIndexedFraction()).isEqualTo(1.0);
+            for (int i = lines - 1; i >= 0; i -= 97) assertThat(paged.getLine(i)).isEqualTo("line " + i);
+            assertThat(paged.getLine(0)).isEqualTo("line 0");
+            assertThat(paged.getLine(lines - 1)).isEqualTo("line " + (lines - 1));
+        }
+    }
+
+    @Test
+    @DisplayName("charsets that do not encode '\\n' as a single byte are rejected")
+    void test300() {
+        assertThatThrownBy(() -> new PagedTextFile(file, StandardCharsets.UTF_16, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
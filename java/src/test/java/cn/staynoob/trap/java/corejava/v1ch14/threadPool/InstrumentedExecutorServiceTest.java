@@ -0,0 +1,138 @@
+package cn.staynoob.trap.java.corejava.v1ch14.threadPool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InstrumentedExecutorServiceTest {
+    @Test
+    @DisplayName("queue wait, execution time and counts are recorded per task")
+    void test100() throws Exception {
+        InstrumentedExecutorService executor = new InstrumentedExecutorService(Executors.newSingleThreadExecutor(), 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocker = executor.submit(() -> {
+            release.await();
+            return null;
+        });
+        Future<String> queued = executor.submit(() -> "done");
+        Thread.sleep(50L);
+        release.countDown();
+
+        assertThat(queued.get()).isEqualTo("done");
+        blocker.get();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        InstrumentedExecutorService.Stats stats = executor.getStats();
+        assertThat(stats.getSubmittedTasks()).isEqualTo(2);
+        assertThat(stats.getCompletedTasks()).isEqualTo(2);
+        assertThat(stats.getQueueWait().getMax()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40)); // less the histogram's precision
+        assertThat(stats.getExecutionTime().getMax()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+        assertThat(stats.getActiveThreads()).isZero();
+        assertThat(stats.getPeakThreads()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("failed and rejected tasks are counted, and failures still reach the caller")
+    void test200() throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+        InstrumentedExecutorService executor = new InstrumentedExecutorService(pool);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocker = executor.submit(() -> {
+            release.await();
+            throw new IllegalStateException("gotcha");
+        });
+
+        assertThatThrownBy(() -> executor.submit(() -> { })).isInstanceOf(RejectedExecutionException.class);
+        release.countDown();
+        assertThatThrownBy(blocker::get).isInstanceOf(ExecutionException.class).hasMessageContaining("gotcha");
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(executor.getRejectedTasks()).isEqualTo(1);
+        assertThat(executor.getFailedTasks()).isEqualTo(1);
+        assertThat(executor.getSubmittedTasks()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("tasks are broken down by class, and peak threads are tracked")
+    void test300() throws Exception {
+        class Slow implements Runnable {
+            private final CyclicBarrier barrier;
+
+            Slow(CyclicBarrier barrier) {
+                this.barrier = barrier;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    barrier.await();
+                } catch (InterruptedException | BrokenBarrierException ignored) {
+                }
+            }
+        }
+        InstrumentedExecutorService executor = new InstrumentedExecutorService(Executors.newFixedThreadPool(3));
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        for (int i = 0; i < 3; i++) executor.execute(new Slow(barrier));
+        executor.submit(() -> 42).get();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(executor.getPeakThreads()).isEqualTo(3);
+        assertThat(executor.getCompletedTasks()).isEqualTo(4);
+        assertThatThrownBy(() -> new InstrumentedExecutorService(executor, 3)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(executor.getStats().getTaskTypes())
+                .filteredOn(type -> type.getName().equals(Slow.class.getName()))
+                .extracting(InstrumentedExecutorService.TaskType::getCount)
+                .containsExactly(3L);
+        assertThat(executor.getTaskTypes()).hasSize(2);
+
+        executor.resetPeakThreads();
+        assertThat(executor.getPeakThreads()).isZero();
+    }
+
+    @Test
+    @DisplayName("the executor shows up as an MBean until it is shut down")
+    void test400() throws Exception {
+        InstrumentedExecutorService executor = new InstrumentedExecutorService(Executors.newSingleThreadExecutor());
+        ObjectName name = executor.registerMBean("test");
+        Runnable task = () -> { };
+        executor.submit(task).get();
+        executor.submit(task).get(); // the single thread has recorded the first one by now
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        assertThat((Long) server.getAttribute(name, "CompletedTasks")).isBetween(1L, 2L);
+        assertThat((String[]) server.getAttribute(name, "TaskTypes")).hasSize(1);
+
+        executor.shutdown();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    @Test
+    @DisplayName("the timings of threads that a pool retires are kept, and all are counted")
+    void test500() throws Exception {
+        // a pool that lets a thread go as soon as it is idle, so that most tasks get a new one
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 1, TimeUnit.NANOSECONDS,
+                new SynchronousQueue<>());
+        InstrumentedExecutorService executor = new InstrumentedExecutorService(pool, 1);
+        for (int i = 0; i < 500; i++) {
+            executor.submit(() -> { }).get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        InstrumentedExecutorService.Stats stats = executor.getStats();
+        assertThat(pool.getCompletedTaskCount()).isEqualTo(500);
+        assertThat(stats.getCompletedTasks()).isEqualTo(500);
+        assertThat(stats.getExecutionTime().getCount()).isEqualTo(500);
+        assertThat(stats.getQueueWait().getCount()).isEqualTo(500);
+    }
+}
@@ -0,0 +1,245 @@
+package cn.staynoob.trap.java.corejava.v1ch14.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The cases of {@link cn.staynoob.trap.java.basic.TimerSpec}, against the wheel.
+ */
+public class HashedWheelTimerTest {
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("a task runs once its delay has passed")
+    void test100() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.newTimeout(done::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(timer.getPendingTimeouts()).isZero();
+        timer.stop();
+    }
+
+    @Test
+    @DisplayName("a delay beyond the first wheel moves down to it and runs on time")
+    void test200() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.newTimeout(done::countDown, 600, TimeUnit.MILLISECONDS);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(elapsed).isBetween(600L, 1500L);
+        timer.stop();
+    }
+
+    @Test
+    @DisplayName("tasks run in the order of their deadlines")
+    void test300() throws InterruptedException {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, single);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(5);
+        for (int i = 4; i >= 0; i--) {
+            int n = i;
+            timer.newTimeout(() -> {
+                order.add(n);
+                done.countDown();
+            }, 20 + 40 * n, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly(0, 1, 2, 3, 4);
+        timer.stop();
+        single.shutdown();
+    }
+
+    @Test
+    @DisplayName("the facade runs a repeated task at a fixed rate")
+    void test400() throws InterruptedException {
+        WheelScheduledExecutor executor = new WheelScheduledExecutor(1, 1, TimeUnit.MILLISECONDS);
+        AtomicInteger counter = new AtomicInteger(0);
+        executor.scheduleAtFixedRate(counter::incrementAndGet, 0, 100, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(500L);
+        assertThat(counter).hasValueBetween(3, 7);
+        executor.shutdown();
+    }
+
+    @Nested
+    class Cancellation {
+        @Test
+        @DisplayName("a cancelled task doesn't run")
+        void test100() throws InterruptedException {
+            HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+            AtomicInteger counter = new AtomicInteger(0);
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(counter::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+
+            assertThat(timeout.cancel()).isTrue();
+            assertThat(timeout.cancel()).isFalse();
+            assertThat(timeout.isCancelled()).isTrue();
+            assertThat(timer.getPendingTimeouts()).isZero();
+
+            Thread.sleep(200L);
+            assertThat(counter).hasValue(0);
+            assertThat(timeout.isExpired()).isFalse();
+            timer.stop();
+        }
+
+        @Test
+        @DisplayName("an expired task can't be cancelled")
+        void test110() throws InterruptedException {
+            HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+            CountDownLatch done = new CountDownLatch(1);
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(done::countDown, 0, TimeUnit.MILLISECONDS);
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(timeout.isExpired()).isTrue();
+            assertThat(timeout.cancel()).isFalse();
+            timer.stop();
+        }
+
+        @Test
+        @DisplayName("a repeated task that cancels itself runs once")
+        void test200() throws InterruptedException {
+            WheelScheduledExecutor executor = new WheelScheduledExecutor(1, 1, TimeUnit.MILLISECONDS);
+            AtomicInteger counter = new AtomicInteger(0);
+            CompletableFuture<ScheduledFuture<?>> self = new CompletableFuture<>();
+            self.complete(executor.scheduleAtFixedRate(() -> {
+                counter.incrementAndGet();
+                self.join().cancel(false);
+            }, 0, 100, TimeUnit.MILLISECONDS));
+
+            Thread.sleep(500L);
+            assertThat(counter).hasValue(1);
+            assertThat(self.join().isCancelled()).isTrue();
+            executor.shutdown();
+        }
+
+        @Test
+        @DisplayName("shutting the facade down stops repeated tasks")
+        void test300() throws InterruptedException {
+            WheelScheduledExecutor executor = new WheelScheduledExecutor(1, 1, TimeUnit.MILLISECONDS);
+            AtomicInteger counter = new AtomicInteger(0);
+            ScheduledFuture<?> future = executor.scheduleAtFixedRate(counter::incrementAndGet, 0, 100, TimeUnit.MILLISECONDS);
+            Thread.sleep(200L);
+
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+            int runs = counter.get();
+            Thread.sleep(200L);
+
+            assertThat(counter).hasValue(runs);
+            assertThat(future.isCancelled()).isTrue();
+        }
+
+        @Test
+        @DisplayName("stopping the timer returns the tasks that didn't run")
+        void test400() {
+            HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+            HashedWheelTimer.Timeout kept = timer.newTimeout(() -> { }, 1, TimeUnit.HOURS);
+            HashedWheelTimer.Timeout cancelled = timer.newTimeout(() -> { }, 1, TimeUnit.HOURS);
+            cancelled.cancel();
+
+            Set<HashedWheelTimer.Timeout> unprocessed = timer.stop();
+            assertThat(unprocessed).containsExactly(kept);
+        }
+
+        @Test
+        @DisplayName("a stopped timer doesn't accept tasks any more")
+        void test500() {
+            HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+            timer.newTimeout(() -> { }, 100, TimeUnit.MILLISECONDS);
+            timer.stop();
+            assertThatThrownBy(() -> timer.newTimeout(() -> { }, 100, TimeUnit.MILLISECONDS))
+                    .isInstanceOf(IllegalStateException.class);
+
+            WheelScheduledExecutor executor = new WheelScheduledExecutor(1, 1, TimeUnit.MILLISECONDS);
+            executor.shutdown();
+            assertThatThrownBy(() -> executor.schedule(() -> { }, 100, TimeUnit.MILLISECONDS))
+                    .isInstanceOf(RejectedExecutionException.class);
+        }
+
+        @Test
+        @DisplayName("many cancelled timeouts leave nothing pending")
+        void test600() throws InterruptedException {
+            HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, workers);
+            AtomicInteger counter = new AtomicInteger(0);
+            for (int i = 0; i < 100_000; i++)
+                timer.newTimeout(counter::incrementAndGet, 50 + i % 1000, TimeUnit.MILLISECONDS).cancel();
+
+            assertThat(timer.getPendingTimeouts()).isZero();
+            Thread.sleep(100L);
+            assertThat(counter).hasValue(0);
+            assertThat(timer.stop()).isEmpty();
+        }
+    }
+
+    @Nested
+    class ExceptionHandling {
+        @Test
+        @DisplayName("unlike Timer, an exception doesn't kill the timer, so that subsequent tasks still run")
+        void test100() throws InterruptedException {
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            ExecutorService quiet = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r);
+                thread.setUncaughtExceptionHandler((t, e) -> errors.add(e));
+                return thread;
+            });
+            HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, quiet);
+            CountDownLatch done = new CountDownLatch(2);
+            timer.newTimeout(() -> {
+                done.countDown();
+                throw new RuntimeException("gotcha");
+            }, 10, TimeUnit.MILLISECONDS);
+            timer.newTimeout(done::countDown, 10, TimeUnit.MILLISECONDS);
+            timer.newTimeout(done::countDown, 50, TimeUnit.MILLISECONDS);
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(errors).hasSize(1);
+            assertThat(errors.get(0)).hasMessage("gotcha");
+            timer.stop();
+            quiet.shutdown();
+        }
+
+        @Test
+        @DisplayName("a repeated task that throws stops repeating, and its future reports the exception")
+        void test200() throws InterruptedException {
+            WheelScheduledExecutor executor = new WheelScheduledExecutor(1, 1, TimeUnit.MILLISECONDS);
+            AtomicInteger counter = new AtomicInteger(0);
+            ScheduledFuture<?> future = executor.scheduleAtFixedRate(() -> {
+                counter.incrementAndGet();
+                throw new RuntimeException("gotcha");
+            }, 0, 100, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> other = executor.schedule(() -> "still here", 300, TimeUnit.MILLISECONDS);
+
+            assertThatThrownBy(future::get)
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(RuntimeException.class);
+            Thread.sleep(400L);
+            assertThat(counter).hasValue(1);
+            assertThat(other.isDone()).isTrue();
+            executor.shutdown();
+        }
+    }
+}
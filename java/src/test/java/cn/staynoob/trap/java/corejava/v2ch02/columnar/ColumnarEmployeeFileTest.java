@@ -0,0 +1,99 @@
+package cn.staynoob.trap.java.corejava.v2ch02.columnar;
+
+import cn.staynoob.trap.java.corejava.v2ch02.textFile.Employee;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ColumnarEmployeeFileTest {
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = Files.createTempFile("columnar", ".col");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(path);
+    }
+
+    private List<Employee> write(int n, int blockRows) throws IOException {
+        List<Employee> staff = new ArrayList<>();
+        try (ColumnarEmployeeWriter out = new ColumnarEmployeeWriter(path, blockRows)) {
+            for (int i = 0; i < n; i++) {
+                // salaries and hire days grow with i, so that blocks cover distinct ranges
+                Employee e = new Employee(i % 3 == 0 ? "Carl Cräcker" : "Harry Hacker " + i % 7, 1000 + i,
+                        1980 + i / 100, 1 + i % 12, 1 + i % 28);
+                staff.add(e);
+                out.write(e);
+            }
+        }
+        return staff;
+    }
+
+    @Test
+    @DisplayName("all employees are read back, across blocks and with a partial last block")
+    void test100() throws IOException {
+        List<Employee> staff = write(1000, 64);
+        try (ColumnarEmployeeReader in = new ColumnarEmployeeReader(path)) {
+            assertThat(in.getBlocks()).hasSize(16);
+            assertThat(in.getRowCount()).isEqualTo(1000);
+            Employee[] read = in.readAll();
+            assertThat(read).hasSize(1000);
+            for (int i = 0; i < 1000; i++) {
+                assertThat(read[i].toString()).isEqualTo(staff.get(i).toString());
+            }
+        }
+
+        write(0, 64);
+        try (ColumnarEmployeeReader in = new ColumnarEmployeeReader(path)) {
+            assertThat(in.readAll()).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("only the requested columns are filled in, and filtered blocks are skipped")
+    void test200() throws IOException {
+        write(1000, 100);
+        try (ColumnarEmployeeReader in = new ColumnarEmployeeReader(path)) {
+            List<Integer> rows = new ArrayList<>();
+            double[] total = new double[1];
+            in.scan(EnumSet.of(Column.SALARY), block -> block.getMaxSalary() >= 1900, batch -> {
+                rows.add(batch.getRows());
+                assertThat(batch.getNames()).isEmpty();
+                assertThat(batch.getHireDays()).isEmpty();
+                for (int i = 0; i < batch.getRows(); i++) {
+                    if (batch.getSalaries()[i] >= 1900) total[0] += batch.getSalaries()[i];
+                }
+                assertThatThrownBy(() -> batch.toEmployee(0)).isInstanceOf(IllegalStateException.class);
+            });
+            assertThat(rows).containsExactly(100);
+            assertThat(total[0]).isEqualTo((1900 + 1999) * 100 / 2);
+
+            EmployeeBatch batch = in.newBatch(EnumSet.of(Column.NAME));
+            in.read(in.getBlocks().get(0), batch);
+            assertThat(batch.getNames()[0]).isEqualTo("Carl Cräcker");
+            assertThat(batch.getNames()[3]).isSameAs(batch.getNames()[0]);
+            assertThat(in.getBlocks().get(0).getMinHireDay().getYear()).isEqualTo(1980);
+        }
+    }
+
+    @Test
+    @DisplayName("a file that is not a columnar file is rejected")
+    void test300() throws IOException {
+        Files.write(path, "Carl Cracker|75000.0|1987-12-15\n".getBytes());
+        assertThatThrownBy(() -> new ColumnarEmployeeReader(path)).isInstanceOf(IOException.class);
+    }
+}
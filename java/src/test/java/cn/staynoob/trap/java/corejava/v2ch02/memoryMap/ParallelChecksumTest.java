@@ -0,0 +1,109 @@
+package cn.staynoob.trap.java.corejava.v2ch02.memoryMap;
+
+import cn.staynoob.trap.java.corejava.v2ch02.memoryMap.ParallelChecksum.Algorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelChecksumTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("parallel-checksum", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    @DisplayName("CRC32C gives the check values of the standard, for arrays and direct buffers alike")
+    void test100() {
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        CRC32C crc = new CRC32C();
+        crc.update(check, 0, check.length);
+        assertThat(crc.getValue()).isEqualTo(0xE3069283L);
+
+        crc.reset();
+        ByteBuffer direct = ByteBuffer.allocateDirect(check.length);
+        direct.put(check).flip();
+        crc.update(direct);
+        assertThat(crc.getValue()).isEqualTo(0xE3069283L);
+        assertThat(direct.hasRemaining()).isFalse();
+
+        crc.reset();
+        for (byte b : check) crc.update(b);
+        assertThat(crc.getValue()).isEqualTo(0xE3069283L);
+
+        crc.reset();
+        crc.update(new byte[32], 0, 32);
+        assertThat(crc.getValue()).isEqualTo(0x8A9136AAL);
+    }
+
+    @Test
+    @DisplayName("combining the checksums of two blocks gives the checksum of both")
+    void test200() {
+        byte[] bytes = new byte[1000];
+        new Random(42).nextBytes(bytes);
+        for (int split : new int[]{0, 1, 7, 500, 999, 1000}) {
+            CRC32 a = new CRC32();
+            CRC32 b = new CRC32();
+            CRC32 all = new CRC32();
+            a.update(bytes, 0, split);
+            b.update(bytes, split, bytes.length - split);
+            all.update(bytes, 0, bytes.length);
+            assertThat(Algorithm.CRC32.combine(a.getValue(), b.getValue(), bytes.length - split))
+                    .isEqualTo(all.getValue());
+
+            CRC32C c = new CRC32C();
+            CRC32C d = new CRC32C();
+            CRC32C both = new CRC32C();
+            c.update(bytes, 0, split);
+            d.update(bytes, split, bytes.length - split);
+            both.update(bytes, 0, bytes.length);
+            assertThat(Algorithm.CRC32C.combine(c.getValue(), d.getValue(), bytes.length - split))
+                    .isEqualTo(both.getValue());
+        }
+    }
+
+    @Test
+    @DisplayName("a file checksummed in parallel segments has the checksum of the sequential methods")
+    void test300() throws IOException {
+        byte[] bytes = new byte[100_003];
+        new Random(42).nextBytes(bytes);
+        Files.write(file, bytes);
+        long expected = MemoryMapTest2.checksumInputStream(file);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (long segmentSize : new long[]{4096, 4099, 100_003, ParallelChecksum.DEFAULT_SEGMENT_SIZE}) {
+                assertThat(ParallelChecksum.checksum(pool, file, Algorithm.CRC32, segmentSize)).isEqualTo(expected);
+                assertThat(ParallelChecksum.checksum(pool, file, Algorithm.CRC32C, segmentSize)).isEqualTo(crc.getValue());
+            }
+            assertThatThrownBy(() -> ParallelChecksum.checksum(pool, file, Algorithm.CRC32, 0))
+                    .isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            pool.shutdown();
+        }
+
+        Files.write(file, new byte[0]);
+        assertThat(ParallelChecksum.checksum(file, Algorithm.CRC32)).isZero();
+        assertThat(ParallelChecksum.checksum(file, Algorithm.CRC32C)).isZero();
+    }
+}
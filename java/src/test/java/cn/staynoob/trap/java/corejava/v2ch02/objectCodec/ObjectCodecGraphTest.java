@@ -0,0 +1,243 @@
+package cn.staynoob.trap.java.corejava.v2ch02.objectCodec;
+
+import cn.staynoob.trap.java.corejava.v2ch02.objectStream.Employee;
+import cn.staynoob.trap.java.corejava.v2ch02.objectStream.Manager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ObjectCodecGraphTest {
+    static class Node implements Serializable {
+        boolean flag;
+        byte b;
+        char c;
+        short s;
+        int i;
+        long l;
+        float f;
+        double d;
+        String text;
+        LocalDate day;
+        transient int ignored;
+        int[] ints;
+        String[] texts;
+        Node next;
+        Object any;
+    }
+
+    static class Holder implements Serializable {
+        Employee employee;
+    }
+
+    static class Custom implements Serializable {
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+        }
+    }
+
+    private static Employee[] staff() {
+        Employee harry = new Employee("Harry Hacker", 50000, 1989, 10, 1);
+        Manager carl = new Manager("Carl Cräcker", 80000, 1987, 12, 15);
+        carl.setSecretary(harry);
+        Manager tony = new Manager("Tony Tester", 40000.5, 1990, 3, 15);
+        tony.setSecretary(harry);
+        return new Employee[]{carl, harry, tony};
+    }
+
+    private static Object secretary(Employee manager) throws ReflectiveOperationException {
+        Field f = Manager.class.getDeclaredField("secretary");
+        f.setAccessible(true);
+        return f.get(manager);
+    }
+
+    private static ObjectCodec employeeCodec() {
+        return new ObjectCodec(Employee[].class, Employee.class, Manager.class);
+    }
+
+    @Test
+    @DisplayName("employees round trip, and a shared secretary stays shared")
+    void test100() throws Exception {
+        Employee[] staff = staff();
+        ObjectCodec codec = employeeCodec();
+        ByteBuffer encoded = codec.encode(staff);
+        Employee[] read = (Employee[]) codec.decode(encoded);
+        assertThat(encoded.hasRemaining()).isFalse();
+        assertThat(Arrays.toString(read)).isEqualTo(Arrays.toString(staff));
+        assertThat(secretary(read[0])).isSameAs(read[1]);
+        assertThat(secretary(read[2])).isSameAs(read[1]);
+
+        // a raise of the secretary shows through both managers
+        read[1].raiseSalary(10);
+        assertThat(read[0].toString()).contains("salary=55000.0");
+        assertThat(read[2].toString()).contains("salary=55000.0");
+    }
+
+    @Test
+    @DisplayName("the encoding is a fraction of the size of an object stream")
+    void test200() throws IOException {
+        Employee[] staff = staff();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bout)) {
+            out.writeObject(staff);
+        }
+        int size = employeeCodec().encode(staff).remaining();
+        assertThat(size).isLessThan(bout.size() / 4);
+    }
+
+    @Test
+    @DisplayName("cycles round trip, as do all kinds of fields")
+    void test300() throws IOException {
+        Node first = new Node();
+        first.flag = true;
+        first.b = -3;
+        first.c = 'ß';
+        first.s = Short.MIN_VALUE;
+        first.i = -1;
+        first.l = Long.MAX_VALUE;
+        first.f = 1.5f;
+        first.d = Math.PI;
+        first.text = "Jürgen";
+        first.day = LocalDate.of(1960, 2, 29);
+        first.ignored = 42;
+        first.ints = new int[]{0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        first.texts = new String[]{"a", null, "ü"};
+        Node second = new Node();
+        second.next = first;
+        second.any = first.texts; // the same array as a field of first
+        first.next = second;
+        first.any = "a string";
+
+        ObjectCodec codec = new ObjectCodec(Node.class, int[].class, String[].class);
+        Node read = (Node) codec.decode(codec.encode(first));
+        assertThat(read.flag).isTrue();
+        assertThat(read.b).isEqualTo((byte) -3);
+        assertThat(read.c).isEqualTo('ß');
+        assertThat(read.s).isEqualTo(Short.MIN_VALUE);
+        assertThat(read.i).isEqualTo(-1);
+        assertThat(read.l).isEqualTo(Long.MAX_VALUE);
+        assertThat(read.f).isEqualTo(1.5f);
+        assertThat(read.d).isEqualTo(Math.PI);
+        assertThat(read.text).isEqualTo("Jürgen");
+        assertThat(read.day).isEqualTo(LocalDate.of(1960, 2, 29));
+        assertThat(read.ignored).isEqualTo(0);
+        assertThat(read.ints).containsExactly(0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE);
+        assertThat(read.texts).containsExactly("a", null, "ü");
+        assertThat(read.any).isEqualTo("a string");
+        assertThat(read.next.next).isSameAs(read);
+        assertThat(read.next.any).isSameAs(read.texts);
+        assertThat(read.next.text).isNull();
+        assertThat(read.next.day).isNull();
+    }
+
+    @Test
+    @DisplayName("graphs are written one after the other to a stream, reusing the buffers")
+    void test400() throws IOException {
+        ObjectCodec codec = employeeCodec();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        Employee[] big = new Employee[1000];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = new Employee("Employee " + i, 1000 + i, 2000, 1, 1);
+        }
+        codec.write(staff(), bout);
+        codec.write(big, bout);
+        codec.write(null, bout);
+        codec.write(staff(), bout);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bout.toByteArray());
+        assertThat(Arrays.toString((Employee[]) codec.read(in))).isEqualTo(Arrays.toString(staff()));
+        assertThat(Arrays.toString((Employee[]) codec.read(in))).isEqualTo(Arrays.toString(big));
+        assertThat(codec.read(in)).isNull();
+        Employee[] last = (Employee[]) codec.read(in);
+        assertThat(Arrays.toString(last)).isEqualTo(Arrays.toString(staff()));
+        assertThatThrownBy(() -> codec.read(in)).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    @DisplayName("a deep copy keeps shared references and cycles but shares nothing with the original")
+    void test500() throws Exception {
+        Employee[] staff = staff();
+        Employee[] copy = ObjectCodec.deepCopy(staff);
+        assertThat(copy).isNotSameAs(staff);
+        assertThat(Arrays.toString(copy)).isEqualTo(Arrays.toString(staff));
+        for (int i = 0; i < staff.length; i++) {
+            assertThat(copy[i]).isNotSameAs(staff[i]);
+            assertThat(copy[i].getClass()).isEqualTo(staff[i].getClass());
+        }
+        assertThat(secretary(copy[0])).isSameAs(copy[1]);
+        assertThat(secretary(copy[2])).isSameAs(copy[1]);
+        staff[1].raiseSalary(10);
+        assertThat(copy[1].getSalary()).isEqualTo(50000);
+
+        Node node = new Node();
+        node.next = node;
+        node.ints = new int[]{1, 2, 3};
+        node.any = node.ints;
+        Node nodeCopy = ObjectCodec.deepCopy(node);
+        assertThat(nodeCopy.next).isSameAs(nodeCopy);
+        assertThat(nodeCopy.ints).containsExactly(1, 2, 3).isNotSameAs(node.ints);
+        assertThat(nodeCopy.any).isSameAs(nodeCopy.ints);
+        assertThat(ObjectCodec.deepCopy((Object) null)).isNull();
+    }
+
+    @Test
+    @DisplayName("unregistered classes and classes with their own serialization are rejected")
+    void test600() {
+        assertThatThrownBy(() -> new ObjectCodec(Employee.class).encode(staff()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("isn't registered");
+        assertThatThrownBy(() -> new ObjectCodec(Custom.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("writeObject");
+        assertThatThrownBy(() -> ObjectCodec.deepCopy(new Custom()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ObjectCodec(Thread.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("serializable");
+    }
+
+    @Test
+    @DisplayName("truncated or corrupt input fails with an IOException")
+    void test700() {
+        ObjectCodec codec = employeeCodec();
+        ByteBuffer encoded = codec.encode(staff());
+        byte[] bytes = Arrays.copyOf(encoded.array(), encoded.remaining());
+        assertThatThrownBy(() -> codec.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1)))
+                .isInstanceOf(EOFException.class);
+        assertThatThrownBy(() -> new ObjectCodec().decode(ByteBuffer.wrap(bytes)))
+                .isInstanceOf(StreamCorruptedException.class);
+        assertThatThrownBy(() -> codec.decode(ByteBuffer.wrap(new byte[]{3})))
+                .isInstanceOf(StreamCorruptedException.class);
+        // a holder (class 2) whose employee is the string "x" (class 0)
+        byte[] mistyped = {2 * (2 + 1), 2 * (0 + 1), 2, 'x'};
+        assertThatThrownBy(() -> new ObjectCodec(Holder.class).decode(ByteBuffer.wrap(mistyped)))
+                .isInstanceOf(StreamCorruptedException.class)
+                .hasMessageContaining("String");
+    }
+
+    @Test
+    @DisplayName("direct buffers are decoded, and the position moves past each graph")
+    void test800() throws IOException {
+        ObjectCodec codec = employeeCodec();
+        ByteBuffer direct = ByteBuffer.allocateDirect(1024);
+        direct.put(codec.encode(staff()));
+        direct.put(codec.encode("just a string"));
+        direct.flip();
+        assertThat(Arrays.toString((Employee[]) codec.decode(direct))).isEqualTo(Arrays.toString(staff()));
+        assertThat(codec.decode(direct)).isEqualTo("just a string");
+        assertThat(direct.hasRemaining()).isFalse();
+    }
+}
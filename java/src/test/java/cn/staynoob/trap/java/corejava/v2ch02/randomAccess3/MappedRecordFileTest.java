@@ -0,0 +1,109 @@
+package cn.staynoob.trap.java.corejava.v2ch02.randomAccess3;
+
+import cn.staynoob.trap.java.corejava.v2ch02.randomAccess.Employee;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedRecordFileTest {
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = Files.createTempFile("mapped-record-file", ".dat");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(path);
+    }
+
+    @Test
+    @DisplayName("appended records grow the file, survive reopening and are cut back to size on close")
+    void test100() throws IOException {
+        // windows of three records, so that records land in many windows
+        try (MappedRecordFile file = new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE, 3 * EmployeeRecord.RECORD_SIZE + 10)) {
+            EmployeeRecord record = new EmployeeRecord(file);
+            for (int i = 0; i < 100; i++) {
+                record.moveTo(file.append()).set(new Employee("Employee " + i, 1000 * i, 2000, 1 + i % 12, 1 + i % 28));
+            }
+            assertThat(record.moveTo(42).getName()).isEqualTo("Employee 42");
+        }
+        assertThat(Files.size(path)).isEqualTo(100L * EmployeeRecord.RECORD_SIZE);
+
+        try (MappedRecordFile file = new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE, 3 * EmployeeRecord.RECORD_SIZE)) {
+            EmployeeRecord record = new EmployeeRecord(file);
+            assertThat(file.getRecordCount()).isEqualTo(100);
+            for (int i = 99; i >= 0; i--) {
+                record.moveTo(i);
+                assertThat(record.getName()).isEqualTo("Employee " + i);
+                assertThat(record.getSalary()).isEqualTo(1000 * i);
+                assertThat(record.getHireDay()).isEqualTo(LocalDate.of(2000, 1 + i % 12, 1 + i % 28));
+            }
+
+            double[] total = new double[1];
+            file.forEach(record, r -> r.raiseSalary(10));
+            file.forEach(record, r -> total[0] += r.getSalary());
+            assertThat(total[0]).isEqualTo(1.1 * 1000 * 99 * 100 / 2, org.assertj.core.data.Offset.offset(1e-6));
+            assertThatThrownBy(() -> record.moveTo(100)).isInstanceOf(IndexOutOfBoundsException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("names are stored in UTF-8 and cut short at a character boundary")
+    void test200() throws IOException {
+        try (MappedRecordFile file = new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE)) {
+            EmployeeRecord record = new EmployeeRecord(file);
+            record.moveTo(file.append());
+
+            record.setName("Jürgen Müller 😀 张伟");
+            assertThat(record.getName()).isEqualTo("Jürgen Müller 😀 张伟");
+
+            StringBuilder longName = new StringBuilder();
+            for (int i = 0; i < 20; i++) longName.append('é');
+            record.setName(longName.toString());
+            assertThat(record.getName()).isEqualTo(longName.substring(0, 19)); // 39 bytes after the length
+
+            record.setName("");
+            assertThat(record.getName()).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("a file that does not hold whole records is rejected")
+    void test300() throws IOException {
+        Files.write(path, new byte[EmployeeRecord.RECORD_SIZE + 1]);
+        assertThatThrownBy(() -> new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("a file that was not closed shows its unused capacity as empty records")
+    void test400() throws IOException {
+        try (MappedRecordFile file = new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE)) {
+            EmployeeRecord record = new EmployeeRecord(file);
+            for (int i = 0; i < 3; i++)
+                record.moveTo(file.append()).set(new Employee("Employee " + i, 1000, 2000, 1, 1));
+            file.force();
+
+            // what a program sees that opens the file after this one died
+            try (MappedRecordFile reopened = new MappedRecordFile(path, EmployeeRecord.RECORD_SIZE)) {
+                EmployeeRecord view = new EmployeeRecord(reopened);
+                assertThat(reopened.getRecordCount()).isEqualTo(64);
+                assertThat(view.moveTo(2).getName()).isEqualTo("Employee 2");
+                assertThat(view.moveTo(3).getName()).isEmpty();
+                assertThat(view.moveTo(63).getSalary()).isZero();
+            }
+        }
+        assertThat(Files.size(path)).isEqualTo(3L * EmployeeRecord.RECORD_SIZE);
+    }
+}
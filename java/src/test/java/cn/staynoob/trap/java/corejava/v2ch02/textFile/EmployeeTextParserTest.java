@@ -0,0 +1,136 @@
+package cn.staynoob.trap.java.corejava.v2ch02.textFile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EmployeeTextParserTest {
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = Files.createTempFile("employee-text-parser", ".dat");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(path);
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static double parseDouble(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return EmployeeTextParser.parseDouble(bytes, 0, bytes.length);
+    }
+
+    private static int parseEpochDay(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return EmployeeTextParser.parseEpochDay(bytes, 0, bytes.length);
+    }
+
+    @Test
+    @DisplayName("numbers parse exactly as Double.parseDouble parses them")
+    void test100() {
+        String[] numbers = {"75000.0", "0.1", "-0.0", "0.05", "1.2345678E7", "123456789012345.6",
+                "9007199254740993", "1e-300", "NaN", "-Infinity", ".5", "1.", "3.0E-5", "+1"};
+        for (String number : numbers) {
+            assertThat(parseDouble(number)).as(number).isEqualTo(Double.parseDouble(number));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double d = random.nextDouble() * Math.pow(10, random.nextInt(20) - 5);
+            String s = Double.toString(d);
+            assertThat(parseDouble(s)).as(s).isEqualTo(d);
+        }
+        assertThatThrownBy(() -> parseDouble("-")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> parseDouble("1e")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    @DisplayName("dates parse to the epoch day of LocalDate")
+    void test200() {
+        LocalDate day = LocalDate.of(1900, 1, 1);
+        for (int i = 0; i < 80_000; i += 7, day = day.plusDays(7)) {
+            String s = day.toString();
+            assertThat(parseEpochDay(s)).as(s).isEqualTo((int) day.toEpochDay());
+        }
+        assertThat(parseEpochDay("2000-02-29")).isEqualTo((int) LocalDate.of(2000, 2, 29).toEpochDay());
+        assertThatThrownBy(() -> parseEpochDay("1999-02-29"))
+                .isInstanceOf(java.time.DateTimeException.class);
+    }
+
+    @Test
+    @DisplayName("lines are parsed like readEmployee parses them, with or without '\\r' and a final newline")
+    void test300() {
+        List<String> rows = new ArrayList<>();
+        EmployeeTextParser.parse(bytes("Carl Cracker|75000.0|1987-12-15\r\n\nJürgen|5.0E7|2000-02-29"), row ->
+                rows.add(row.toEmployee().toString()));
+        assertThat(rows).containsExactly(
+                new Employee("Carl Cracker", 75000, 1987, 12, 15).toString(),
+                new Employee("Jürgen", 5.0E7, 2000, 2, 29).toString());
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) longName.append('x');
+        byte[] lines = ("Tony Tester|40000.0|1990-03-15\n" + longName + "|1.0|2000-01-01\n"
+                + "Harry Hacker|50000.0|1989-10-01").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(lines.length);
+        direct.put(lines).flip();
+        List<String> names = new ArrayList<>();
+        EmployeeTextParser.parse(direct, row -> names.add(row.getName()));
+        assertThat(names).containsExactly("Tony Tester", longName.toString(), "Harry Hacker");
+
+        assertThatThrownBy(() -> EmployeeTextParser.parse(bytes("Carl Cracker|75000.0\n"), row -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("a file split into many chunks reads back the employees of TextFileTest in order")
+    void test400() throws IOException {
+        // lines of about 40 bytes, so that 1M of them make several chunks
+        int n = 1_000_000;
+        Random random = new Random(42);
+        List<Employee> staff = new ArrayList<>();
+        try (PrintWriter out = new PrintWriter(path.toFile(), "UTF-8")) {
+            out.println(n);
+            for (int i = 0; i < n; i++) {
+                Employee e = new Employee("Employée " + i, random.nextInt(100_000) / 100.0, 1950 + random.nextInt(70),
+                        1 + random.nextInt(12), 1 + random.nextInt(28));
+                if (i % 1000 == 0) staff.add(e);
+                TextFileTest.writeEmployee(out, e);
+            }
+        }
+        assertThat(Files.size(path)).isGreaterThan(2 * EmployeeTextParser.CHUNK_SIZE);
+
+        Employee[] read = EmployeeTextParser.readData(path);
+        assertThat(read).hasSize(n);
+        for (int i = 0; i < n; i += 1000) {
+            assertThat(read[i].toString()).isEqualTo(staff.get(i / 1000).toString());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            List<double[]> totals = EmployeeTextParser.parse(pool, path, () -> new double[1], (t, row) -> t[0] += row.getSalary());
+            assertThat(totals.size()).isGreaterThan(2);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item66.cancellation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Pipe;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ScopeTest {
+    @Test
+    @DisplayName("polling tasks stop once the scope is cancelled")
+    void test100() throws Exception {
+        Scope scope = Scope.open();
+        int tasks = 100;
+        CountDownLatch started = new CountDownLatch(tasks);
+        for (int t = 0; t < tasks; t++) {
+            scope.fork(token -> {
+                started.countDown();
+                while (!token.isCancellationRequested())
+                    Thread.yield();
+            });
+        }
+        started.await();
+        assertThat(scope.getRunningTasks()).isEqualTo(tasks);
+
+        assertThat(scope.cancel()).isTrue();
+        assertThat(scope.cancel()).isFalse();
+
+        assertThat(scope.awaitStopped(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(scope.getRunningTasks()).isZero();
+        assertThat(scope.getStopTimes().getCount()).isEqualTo(tasks);
+    }
+
+    @Test
+    @DisplayName("a task forked into a cancelled scope doesn't run")
+    void test200() {
+        Scope scope = Scope.open();
+        scope.cancel();
+        AtomicInteger runs = new AtomicInteger();
+
+        Future<?> future = scope.fork(token -> runs.incrementAndGet());
+
+        assertThat(future.isCancelled()).isTrue();
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("throwIfCancellationRequested ends a task with CancellationException")
+    void test300() throws Exception {
+        Scope scope = Scope.open();
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> future = scope.fork(token -> {
+            started.countDown();
+            while (true) {
+                token.throwIfCancellationRequested();
+                Thread.yield();
+            }
+        });
+        started.await();
+        scope.cancel();
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CancellationException.class);
+    }
+
+    @Nested
+    class Propagation {
+        @Test
+        @DisplayName("cancelling a parent cancels its children and theirs, but not the other way round")
+        void test100() {
+            Scope parent = Scope.open();
+            Scope child = parent.child();
+            Scope grandchild = child.child();
+            Scope sibling = parent.child();
+
+            sibling.cancel();
+            assertThat(parent.isCancelled()).isFalse();
+            assertThat(child.isCancelled()).isFalse();
+
+            parent.cancel();
+            assertThat(child.isCancelled()).isTrue();
+            assertThat(grandchild.isCancelled()).isTrue();
+        }
+
+        @Test
+        @DisplayName("a closed child is detached from its parent")
+        void test200() {
+            Scope parent = Scope.open();
+            try (Scope child = parent.child()) {
+                assertThat(child.isCancelled()).isFalse();
+            }
+            assertThat(parent.isCancelled()).isFalse();
+
+            Scope cancelled = Scope.open();
+            cancelled.cancel();
+            assertThat(cancelled.child().isCancelled()).isTrue();
+        }
+    }
+
+    @Nested
+    class Callbacks {
+        @Test
+        @DisplayName("closing the channel unblocks a read, as connectInterruptibly does")
+        void test100() throws Exception {
+            Scope scope = Scope.open();
+            Pipe pipe = Pipe.open();
+            CountDownLatch registered = new CountDownLatch(1);
+            Future<?> future = scope.fork(token -> {
+                CancellationToken.Registration registration = token.closeOnCancel(pipe.source());
+                try {
+                    registered.countDown();
+                    pipe.source().read(ByteBuffer.allocate(1));
+                } finally {
+                    registration.close();
+                }
+            });
+            registered.await();
+            Thread.sleep(50L);
+            scope.cancel();
+
+            assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(AsynchronousCloseException.class);
+            pipe.sink().close();
+        }
+
+        @Test
+        @DisplayName("interruptOnCancel unblocks a sleeping thread")
+        void test200() throws Exception {
+            Scope scope = Scope.open();
+            CountDownLatch registered = new CountDownLatch(1);
+            Future<?> future = scope.fork(token -> {
+                CancellationToken.Registration registration = token.interruptOnCancel();
+                try {
+                    registered.countDown();
+                    Thread.sleep(10_000L);
+                } finally {
+                    registration.close();
+                }
+            });
+            registered.await();
+            scope.cancel();
+
+            assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(InterruptedException.class);
+        }
+
+        @Test
+        @DisplayName("a callback runs once, right away if registered late, and never once closed")
+        void test300() {
+            Scope scope = Scope.open();
+            AtomicInteger early = new AtomicInteger();
+            AtomicInteger closed = new AtomicInteger();
+            scope.token().onCancel(early::incrementAndGet);
+            scope.token().onCancel(closed::incrementAndGet).close();
+
+            scope.cancel();
+            scope.cancel();
+            assertThat(early).hasValue(1);
+            assertThat(closed).hasValue(0);
+
+            AtomicInteger late = new AtomicInteger();
+            scope.token().onCancel(late::incrementAndGet);
+            assertThat(late).hasValue(1);
+        }
+
+        @Test
+        @DisplayName("a throwing callback doesn't keep the others from running")
+        void test400() {
+            Scope scope = Scope.open();
+            AtomicInteger runs = new AtomicInteger();
+            Thread.UncaughtExceptionHandler handler = Thread.currentThread().getUncaughtExceptionHandler();
+            Thread.currentThread().setUncaughtExceptionHandler((t, e) -> runs.addAndGet(10));
+            try {
+                scope.token().onCancel(() -> {
+                    throw new IllegalStateException("gotcha");
+                });
+                scope.token().onCancel(runs::incrementAndGet);
+                scope.cancel();
+            } finally {
+                Thread.currentThread().setUncaughtExceptionHandler(handler);
+            }
+            assertThat(runs).hasValue(11);
+        }
+    }
+}
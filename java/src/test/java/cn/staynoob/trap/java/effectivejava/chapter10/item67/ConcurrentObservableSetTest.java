@@ -0,0 +1,244 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item67;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class ConcurrentObservableSetTest {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("addAll notifies once with all added elements")
+    void test100() {
+        ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(new HashSet<>());
+        List<List<Integer>> notifications = new ArrayList<>();
+        set.addObserver((s, elements) -> notifications.add(new ArrayList<>(elements)));
+
+        set.add(1);
+        set.add(1);
+        set.addAll(Arrays.asList(1, 2, 3));
+        set.addAll(Arrays.asList(2, 3));
+
+        assertThat(notifications).containsExactly(Arrays.asList(1), Arrays.asList(2, 3));
+    }
+
+    @Test
+    @DisplayName("an observer may unsubscribe itself, even from another thread (Test2 and Test3)")
+    void test200() {
+        ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(new HashSet<>());
+        List<Integer> seen = new ArrayList<>();
+        set.addObserver(new BatchSetObserver<Integer>() {
+            public void added(ConcurrentObservableSet<Integer> s, List<Integer> elements) {
+                seen.addAll(elements);
+                if (elements.contains(23)) {
+                    BatchSetObserver<Integer> observer = this;
+                    try {
+                        executor.submit(() -> s.removeObserver(observer)).get();
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+        });
+
+        for (int i = 0; i < 100; i++)
+            set.add(i);
+
+        assertThat(seen).hasSize(24).endsWith(23);
+    }
+
+    @Test
+    @DisplayName("an asynchronous observer doesn't hold up the writer, and drops what doesn't fit")
+    void test300() throws InterruptedException {
+        ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(ConcurrentHashMap.newKeySet());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        set.addObserver((s, elements) -> {
+            started.countDown();
+            await(release);
+            seen.addAll(elements);
+        }, executor, 2, ConcurrentObservableSet.Backpressure.DROP);
+
+        set.add(0);
+        started.await();
+        for (int i = 1; i < 10; i++)
+            set.add(i);
+        release.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // the first element is being delivered, the next two wait in the queue
+        assertThat(seen).containsExactly(0, 1, 2);
+        assertThat(set.getDroppedNotifications()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("coalesce merges what doesn't fit into the last queued notification")
+    void test400() throws InterruptedException {
+        ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(ConcurrentHashMap.newKeySet());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Integer>> notifications = new CopyOnWriteArrayList<>();
+        set.addObserver((s, elements) -> {
+            started.countDown();
+            await(release);
+            notifications.add(new ArrayList<>(elements));
+        }, executor, 2, ConcurrentObservableSet.Backpressure.COALESCE);
+
+        set.add(0);
+        started.await();
+        for (int i = 1; i < 10; i++)
+            set.add(i);
+        release.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(notifications).containsExactly(
+                Arrays.asList(0), Arrays.asList(1), Arrays.asList(2, 3, 4, 5, 6, 7, 8, 9));
+        assertThat(set.getDroppedNotifications()).isZero();
+    }
+
+    @Test
+    @DisplayName("block makes the writer wait until the observer catches up")
+    void test500() throws InterruptedException {
+        ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(ConcurrentHashMap.newKeySet());
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        set.addObserver((s, elements) -> {
+            await(release);
+            seen.addAll(elements);
+        }, executor, 1, ConcurrentObservableSet.Backpressure.BLOCK);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 10; i++)
+                set.add(i);
+        });
+        writer.start();
+        writer.join(200);
+
+        assertThat(writer.isAlive()).isTrue();
+        assertThat(set).hasSize(3);
+        release.countDown();
+        writer.join();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        assertThat(seen).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    @Test
+    @DisplayName("an observer that adds to the set under block doesn't wait for itself, on any executor")
+    void test600() {
+        for (Executor e : Arrays.<Executor>asList(Runnable::run, executor)) {
+            ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(ConcurrentHashMap.newKeySet());
+            List<Integer> seen = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            set.addObserver((s, elements) -> {
+                seen.addAll(elements);
+                for (int element : elements) {
+                    // two adds in a row overflow a queue of one
+                    if (element < 100) {
+                        s.add(2 * element + 100);
+                        s.add(2 * element + 101);
+                    }
+                    if (element == 299) done.countDown();
+                }
+            }, e, 1, ConcurrentObservableSet.Backpressure.BLOCK);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                set.add(0);
+                set.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9));
+                for (int i = 10; i < 100; i++)
+                    set.add(i);
+                done.await();
+            });
+            assertThat(set).hasSize(300);
+            assertThat(seen).hasSize(300);
+        }
+    }
+
+    @Test
+    @DisplayName("notifications that the executor rejects are dropped, and later ones are delivered")
+    void test700() {
+        ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(new HashSet<>());
+        AtomicBoolean reject = new AtomicBoolean(true);
+        Executor rejecting = command -> {
+            if (reject.getAndSet(false))
+                throw new RejectedExecutionException();
+            command.run();
+        };
+        List<Integer> seen = new ArrayList<>();
+        set.addObserver((s, elements) -> seen.addAll(elements), rejecting, 4,
+                ConcurrentObservableSet.Backpressure.BLOCK);
+
+        set.add(1);
+        set.add(2);
+
+        assertThat(set).containsOnly(1, 2);
+        assertThat(set.getDroppedNotifications()).isEqualTo(1);
+        assertThat(seen).containsExactly(2);
+    }
+
+    @Test
+    @DisplayName("an observer that throws an error doesn't stop later notifications")
+    void test800() {
+        ConcurrentObservableSet<Integer> set = new ConcurrentObservableSet<>(ConcurrentHashMap.newKeySet());
+        Executor quiet = command -> {
+            Thread thread = new Thread(command);
+            thread.setUncaughtExceptionHandler((t, ex) -> {
+            });
+            thread.start();
+        };
+        CountDownLatch queued = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        set.addObserver((s, elements) -> {
+            seen.addAll(elements);
+            if (elements.contains(1)) {
+                await(queued);
+                throw new Error("boom");
+            }
+            if (elements.contains(3)) done.countDown();
+        }, quiet, 4, ConcurrentObservableSet.Backpressure.BLOCK);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            set.add(1);
+            set.add(2); // queued while the observer is still at 1
+            queued.countDown();
+            set.add(3);
+            done.await();
+        });
+        assertThat(seen).containsExactly(1, 2, 3);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item69;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InternerTest {
+    @Test
+    @DisplayName("return the first instance for equal strings, char sequences and byte slices")
+    void test100() {
+        Interner interner = new Interner.Builder(100).build();
+        String first = new String("café 😀");
+
+        assertThat(interner.intern(first)).isSameAs(first);
+        assertThat(interner.intern(new String(first))).isSameAs(first);
+        assertThat(interner.intern(new StringBuilder(first))).isSameAs(first);
+        byte[] bytes = ("[" + first + "]").getBytes(StandardCharsets.UTF_8);
+        assertThat(interner.intern(bytes, 1, bytes.length - 2)).isSameAs(first);
+
+        assertThat(interner.getHits()).isEqualTo(3);
+        assertThat(interner.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("byte slices hash like the decoded string")
+    void test200() {
+        Interner interner = new Interner.Builder(100).build();
+        for (String s : new String[]{"", "a", "ÿ", "€", "￿", "𐀀", "x􏿿y"}) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            assertThat(interner.intern(bytes, 0, bytes.length)).isEqualTo(s);
+            assertThat(interner.intern(s)).isSameAs(interner.intern(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    @DisplayName("decode malformed bytes like new String does")
+    void test300() {
+        Interner interner = new Interner.Builder(100).build();
+        byte[][] malformed = {
+                {(byte) 0xc3},                               // truncated
+                {(byte) 0xc0, (byte) 0x80},                  // overlong
+                {(byte) 0xed, (byte) 0xa0, (byte) 0x80},     // surrogate
+                {(byte) 0xff, 'a'},
+        };
+        for (byte[] bytes : malformed)
+            assertThat(interner.intern(bytes, 0, bytes.length))
+                    .isEqualTo(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("stay within the capacity and keep strings that are hit")
+    void test400() {
+        Interner interner = new Interner.Builder(64).shards(1).build();
+        String hot = interner.intern(new String("hot"));
+
+        for (int i = 0; i < 10_000; i++) {
+            interner.intern("cold" + i);
+            assertThat(interner.intern(new String("hot"))).isSameAs(hot);
+        }
+
+        assertThat(interner.size()).isEqualTo(64);
+        assertThat(interner.getEvictions()).isEqualTo(10_001 - 64);
+    }
+
+    @Test
+    @DisplayName("evicted strings are simply interned again")
+    void test500() {
+        Interner interner = new Interner.Builder(1_000).weakValues().build();
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++)
+            strings.add(interner.intern("s" + i));
+
+        for (int i = 0; i < 5_000; i++)
+            assertThat(interner.intern(new String("s" + i))).isEqualTo(strings.get(i));
+        assertThat(interner.size()).isLessThanOrEqualTo(1_000 + 64);
+    }
+
+    @Test
+    @DisplayName("all threads get the same instance, and only the first one misses")
+    void test600() throws Exception {
+        Interner interner = new Interner.Builder(10_000).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String[]>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+            futures.add(executor.submit(() -> {
+                String[] result = new String[1_000];
+                for (int i = 0; i < result.length; i++)
+                    result[i] = interner.intern(new String("k" + i));
+                return result;
+            }));
+        String[] first = futures.get(0).get();
+        for (Future<String[]> future : futures) {
+            String[] other = future.get();
+            for (int i = 0; i < first.length; i++)
+                assertThat(other[i]).isSameAs(first[i]);
+        }
+        executor.shutdown();
+        assertThat(interner.getMisses()).isEqualTo(1_000);
+        assertThat(interner.getHits()).isEqualTo(3_000);
+    }
+}
@@ -0,0 +1,71 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item69;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+    @Test
+    @DisplayName("bucket bounds are contiguous and keep the relative error below 1/64")
+    void test100() {
+        long previousHighest = -1;
+        for (int i = 0; LatencyHistogram.highestValue(i) != Long.MAX_VALUE; i++) {
+            long lowest = LatencyHistogram.lowestValue(i);
+            long highest = LatencyHistogram.highestValue(i);
+            assertThat(lowest).isEqualTo(previousHighest + 1);
+            assertThat(LatencyHistogram.index(lowest)).isEqualTo(i);
+            assertThat(LatencyHistogram.index(highest)).isEqualTo(i);
+            assertThat((double) (highest - lowest)).isLessThanOrEqualTo(lowest / 64.0);
+            previousHighest = highest;
+        }
+        assertThat(LatencyHistogram.index(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.index(previousHighest + 1));
+    }
+
+    @Test
+    @DisplayName("percentiles agree with the sorted values")
+    void test200() {
+        Random random = new Random(1);
+        long[] values = new long[100_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.abs(random.nextGaussian() * 1_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertThat((double) histogram.getValueAtPercentile(percentile))
+                    .isCloseTo(expected, within(expected / 64.0));
+        }
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(values[values.length - 1]);
+        assertThat(histogram.getMin()).isEqualTo(values[0]);
+        assertThat(histogram.getCount()).isEqualTo(values.length);
+    }
+
+    @Test
+    @DisplayName("add merges counts, min and max")
+    void test300() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        first.record(20);
+        second.record(5);
+        second.record(1_000);
+
+        first.add(second);
+
+        assertThat(first.getCount()).isEqualTo(4);
+        assertThat(first.getMin()).isEqualTo(5);
+        assertThat(first.getMax()).isEqualTo(1_000);
+        assertThat(first.getMean()).isEqualTo(258.75);
+        assertThat(first.getValueAtPercentile(50)).isEqualTo(10);
+        assertThatThrownBy(() -> first.record(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,147 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item69;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class LoadGeneratorTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("record every call of the measurement rounds, but none of the warmup")
+    void test100() throws Exception {
+        AtomicLong calls = new AtomicLong();
+        LoadGenerator generator = new LoadGenerator.Builder(calls::incrementAndGet)
+                .threads(2)
+                .warmupRounds(1)
+                .rounds(2)
+                .roundTime(50, TimeUnit.MILLISECONDS)
+                .build();
+
+        LoadGenerator.Result result = generator.run(executor);
+
+        assertThat(result.getHistogram().getCount()).isPositive().isLessThan(calls.get());
+        assertThat(result.getRoundThroughput()).hasSize(2);
+        assertThat(result.getThreadThroughput()).hasSize(2);
+        assertThat(result.getThroughput()).isPositive();
+    }
+
+    @Test
+    @DisplayName("fixed rate issues the scheduled number of calls")
+    void test200() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator generator = new LoadGenerator.Builder(calls::incrementAndGet)
+                .threads(2)
+                .warmupRounds(0)
+                .rounds(1)
+                .roundTime(200, TimeUnit.MILLISECONDS)
+                .rate(1000)
+                .build();
+
+        LoadGenerator.Result result = generator.run(executor);
+
+        assertThat(calls.get()).isEqualTo(200);
+        assertThat(result.getHistogram().getCount()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("fixed rate charges a stall to every call that was due during it")
+    void test300() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator generator = new LoadGenerator.Builder(() -> {
+            if (calls.incrementAndGet() == 10) sleep(100);
+        })
+                .warmupRounds(0)
+                .rounds(1)
+                .roundTime(200, TimeUnit.MILLISECONDS)
+                .rate(1000)
+                .build();
+
+        LatencyHistogram histogram = generator.run(executor).getHistogram();
+
+        // a closed loop would report a single slow call, here about 100 of 200 calls waited
+        assertThat(histogram.getCount()).isEqualTo(200);
+        assertThat(histogram.getValueAtPercentile(25)).isLessThan(TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(histogram.getValueAtPercentile(60)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    @DisplayName("fixed rate doesn't run the calls still due when a stall outlasts the round")
+    void test310() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator generator = new LoadGenerator.Builder(() -> {
+            if (calls.incrementAndGet() == 10) sleep(200);
+        })
+                .warmupRounds(0)
+                .rounds(1)
+                .roundTime(100, TimeUnit.MILLISECONDS)
+                .rate(1000)
+                .build();
+
+        LoadGenerator.Result result = generator.run(executor);
+
+        assertThat(calls.get()).isEqualTo(10);
+        assertThat(result.getMissed()).isEqualTo(90);
+        assertThat(result.getHistogram().getCount()).isEqualTo(100);
+        assertThat(result.getHistogram().getValueAtPercentile(50))
+                .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    @DisplayName("fixed rate stops waiting for the next call when interrupted")
+    void test320() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LoadGenerator generator = new LoadGenerator.Builder(calls::incrementAndGet)
+                .warmupRounds(0)
+                .rounds(1)
+                .roundTime(10, TimeUnit.SECONDS)
+                .rate(0.2)
+                .build();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            executor.submit(() -> {
+                sleep(100);
+                executor.shutdownNow(); // interrupts the worker while it waits 5 seconds
+            });
+            generator.run(executor);
+        });
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("report an exception of the action")
+    void test400() {
+        LoadGenerator generator = new LoadGenerator.Builder(() -> {
+            throw new IllegalStateException("boom");
+        }).warmupRounds(0).build();
+
+        assertThatThrownBy(() -> generator.run(executor))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
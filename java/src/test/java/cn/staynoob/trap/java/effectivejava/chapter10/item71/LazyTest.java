@@ -0,0 +1,80 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item71;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazyTest {
+    @Test
+    @DisplayName("compute on first use only, null included")
+    void test100() {
+        for (Lazy.Mode mode : Lazy.Mode.values()) {
+            AtomicInteger calls = new AtomicInteger();
+            Lazy<Object> lazy = Lazy.of(mode, () -> {
+                calls.incrementAndGet();
+                return null;
+            });
+
+            assertThat(calls).as(mode.name()).hasValue(0);
+            assertThat(lazy.get()).isNull();
+            assertThat(lazy.get()).isNull();
+            assertThat(calls).as(mode.name()).hasValue(1);
+        }
+    }
+
+    @Test
+    @DisplayName("all threads see the same instance")
+    void test200() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (Lazy.Mode mode : Lazy.Mode.values()) {
+            AtomicInteger calls = new AtomicInteger();
+            Lazy<Object> lazy = Lazy.of(mode, () -> {
+                calls.incrementAndGet();
+                return new Object();
+            });
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return lazy.get();
+                }));
+            start.countDown();
+
+            Set<Object> results = new HashSet<>();
+            for (Future<Object> future : futures) results.add(future.get());
+
+            assertThat(results).as(mode.name()).hasSize(1);
+            if (mode != Lazy.Mode.RACY) assertThat(calls).as(mode.name()).hasValue(1);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("reset and expiry compute again")
+    void test300() throws InterruptedException {
+        for (Lazy.Mode mode : Lazy.Mode.values()) {
+            AtomicInteger calls = new AtomicInteger();
+            LazyLong lazy = LazyLong.of(mode, calls::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+
+            assertThat(lazy.getAsLong()).as(mode.name()).isEqualTo(1);
+            assertThat(lazy.getAsLong()).as(mode.name()).isEqualTo(1);
+            lazy.reset();
+            assertThat(lazy.getAsLong()).as(mode.name()).isEqualTo(2);
+            Thread.sleep(60);
+            assertThat(lazy.getAsLong()).as(mode.name()).isEqualTo(3);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SpinBarrierTest {
+    private static final Backoff[] BACKOFFS = {Backoff.PARK, Backoff.DEFAULT, new Backoff(1 << 20, 100)};
+
+    @Test
+    @DisplayName("basic usage, as with CyclicBarrier")
+    void test100() throws InterruptedException {
+        for (Backoff backoff : BACKOFFS) {
+            AtomicBoolean executed = new AtomicBoolean(false);
+            AtomicInteger counter = new AtomicInteger(0);
+
+            SpinBarrier barrier = new SpinBarrier(3, () -> executed.set(true), backoff);
+
+            Runnable runnable = () -> {
+                try {
+                    counter.incrementAndGet();
+                    barrier.arriveAndAwaitAdvance();
+                } catch (InterruptedException ignored) {
+                }
+            };
+
+            Thread thread1 = new Thread(runnable);
+            Thread thread2 = new Thread(runnable);
+
+            thread1.start();
+            thread2.start();
+
+            Thread.sleep(100);
+            assertThat(executed).isFalse();
+
+            assertThat(barrier.arriveAndAwaitAdvance()).isEqualTo(1);
+
+            assertThat(executed).as(backoff.toString()).isTrue();
+            assertThat(counter).hasValue(2);
+
+            thread1.join();
+            thread2.join();
+        }
+    }
+
+    @Test
+    @DisplayName("the barrier can be used over and over, and nobody overtakes a phase")
+    void test200() throws InterruptedException {
+        for (Backoff backoff : BACKOFFS) {
+            int parties = 4;
+            int rounds = 2000;
+            AtomicInteger actions = new AtomicInteger();
+            AtomicInteger arrivals = new AtomicInteger();
+            AtomicBoolean overtaken = new AtomicBoolean();
+            SpinBarrier barrier = new SpinBarrier(parties, () -> {
+                if (arrivals.get() != (actions.get() + 1) * parties) overtaken.set(true);
+                actions.incrementAndGet();
+            }, backoff);
+
+            Thread[] threads = new Thread[parties];
+            for (int i = 0; i < parties; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        for (int r = 0; r < rounds; r++) {
+                            arrivals.incrementAndGet();
+                            barrier.arriveAndAwaitAdvance();
+                        }
+                    } catch (InterruptedException ignored) {
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) thread.join();
+
+            assertThat(actions).as(backoff.toString()).hasValue(rounds);
+            assertThat(overtaken).isFalse();
+            assertThat(barrier.getPhase()).isEqualTo(rounds);
+            assertThat(barrier.getArrivedParties()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("arrive doesn't wait, awaitAdvance does")
+    void test300() throws InterruptedException {
+        SpinBarrier barrier = new SpinBarrier(2);
+
+        int phase = barrier.arrive();
+        assertThat(phase).isZero();
+        assertThat(barrier.getArrivedParties()).isEqualTo(1);
+        assertThat(barrier.awaitAdvance(phase, 20, TimeUnit.MILLISECONDS)).isFalse();
+
+        assertThat(barrier.arrive()).isZero();
+        assertThat(barrier.getPhase()).isEqualTo(1);
+        assertThat(barrier.awaitAdvance(phase)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a throwing barrier action still advances the phase")
+    void test400() throws InterruptedException {
+        SpinBarrier barrier = new SpinBarrier(1, () -> {
+            throw new IllegalStateException("gotcha");
+        });
+
+        assertThatThrownBy(barrier::arrive).hasMessage("gotcha");
+        assertThat(barrier.getPhase()).isEqualTo(1);
+        assertThat(barrier.awaitAdvance(0, 0, TimeUnit.MILLISECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,168 @@
+package cn.staynoob.trap.java.effectivejava.chapter10.item72;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SpinLatchTest {
+    private static final Backoff[] BACKOFFS = {Backoff.PARK, Backoff.DEFAULT, new Backoff(1 << 20, 100)};
+
+    @Test
+    @DisplayName("use SpinLatch to convert asynchronous code to synchronous code")
+    void test100() throws InterruptedException {
+        for (Backoff backoff : BACKOFFS) {
+            SpinLatch latch = new SpinLatch(1, backoff);
+
+            Thread thread = new Thread(() -> {
+                try {
+                    Thread.sleep(100L);
+                    latch.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            thread.start();
+
+            latch.await();
+            thread.join();
+
+            assertThat(latch.getCount()).as(backoff.toString()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("all waiters are released by the last countDown, and not before")
+    void test200() throws InterruptedException {
+        for (Backoff backoff : BACKOFFS) {
+            SpinLatch latch = new SpinLatch(3, backoff);
+            AtomicInteger released = new AtomicInteger();
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        latch.await();
+                        released.incrementAndGet();
+                    } catch (InterruptedException ignored) {
+                    }
+                });
+                threads[i].start();
+            }
+
+            latch.countDown();
+            latch.countDown();
+            Thread.sleep(50L);
+            assertThat(released).as(backoff.toString()).hasValue(0);
+
+            latch.countDown();
+            latch.countDown(); // no effect below zero
+            for (Thread thread : threads) thread.join(5000L);
+            assertThat(released).as(backoff.toString()).hasValue(4);
+            assertThat(latch.getCount()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("a timed await returns false when the time runs out")
+    void test300() throws InterruptedException {
+        SpinLatch latch = new SpinLatch(1);
+        long start = System.nanoTime();
+
+        assertThat(latch.await(50, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+
+        latch.countDown();
+        assertThat(latch.await(0, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("unlike SlowCountDownLatch, await is interruptible")
+    void test400() throws InterruptedException {
+        SpinLatch latch = new SpinLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        thread.start();
+        Thread.sleep(50L);
+        thread.interrupt();
+        thread.join(5000L);
+
+        assertThat(interrupted).isTrue();
+        assertThatThrownBy(() -> new SpinLatch(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("timed awaits on a latch that is never released don't leave nodes behind")
+    void test500() throws InterruptedException {
+        for (Backoff backoff : BACKOFFS) {
+            SpinLatch latch = new SpinLatch(1, backoff);
+            for (int i = 0; i < 1000; i++)
+                assertThat(latch.await(1, TimeUnit.MICROSECONDS)).isFalse();
+            assertThat(latch.waiterCount()).as(backoff.toString()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("a waiter that wakes up spuriously keeps its one node, and an interrupted one removes it")
+    void test600() throws InterruptedException {
+        SpinLatch latch = new SpinLatch(1, Backoff.PARK);
+        Thread thread = new Thread(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        thread.start();
+        while (latch.waiterCount() == 0)
+            Thread.yield();
+        for (int i = 0; i < 1000; i++)
+            LockSupport.unpark(thread);
+        Thread.sleep(20L);
+        assertThat(latch.waiterCount()).isEqualTo(1);
+
+        thread.interrupt();
+        thread.join(5000L);
+        assertThat(latch.waiterCount()).isZero();
+    }
+
+    @Nested
+    class SpinEventSpec {
+        @Test
+        @DisplayName("waiters go on once the event is set, and later waiters don't wait")
+        void test100() throws InterruptedException {
+            for (Backoff backoff : BACKOFFS) {
+                SpinEvent event = new SpinEvent(backoff);
+                AtomicInteger released = new AtomicInteger();
+                Thread thread = new Thread(() -> {
+                    try {
+                        event.await();
+                        released.incrementAndGet();
+                    } catch (InterruptedException ignored) {
+                    }
+                });
+                thread.start();
+
+                assertThat(event.await(20, TimeUnit.MILLISECONDS)).isFalse();
+                assertThat(released).hasValue(0);
+
+                event.set();
+                event.set();
+                thread.join(5000L);
+                assertThat(released).as(backoff.toString()).hasValue(1);
+                assertThat(event.isSet()).isTrue();
+                assertThat(event.await(0, TimeUnit.MILLISECONDS)).isTrue();
+            }
+        }
+    }
+}
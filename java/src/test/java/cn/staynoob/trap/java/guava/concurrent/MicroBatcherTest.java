@@ -0,0 +1,128 @@
+package cn.staynoob.trap.java.guava.concurrent;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MicroBatcherTest {
+    private final List<List<Integer>> calls = new CopyOnWriteArrayList<>();
+
+    private ListenableFuture<Map<Integer, String>> load(List<Integer> keys) {
+        calls.add(keys);
+        Map<Integer, String> values = new HashMap<>();
+        for (Integer key : keys)
+            if (key >= 0) values.put(key, "v" + key);
+        return Futures.immediateFuture(values);
+    }
+
+    @Test
+    @DisplayName("a full batch is sent right away")
+    void test100() throws Exception {
+        MicroBatcher<Integer, String> batcher = new MicroBatcher.Builder<Integer, String>(this::load)
+                .maxBatchSize(3)
+                .maxDelay(1, TimeUnit.HOURS)
+                .build();
+
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) futures.add(batcher.get(i));
+
+        assertThat(calls).containsExactly(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5));
+        for (int i = 0; i < 6; i++) assertThat(futures.get(i).get()).isEqualTo("v" + i);
+        assertThat(batcher.getStats().getBatches()).isEqualTo(2);
+        assertThat(batcher.getStats().getBatchSizes().getMax()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("a batch that doesn't fill up is sent after the delay")
+    void test200() throws Exception {
+        MicroBatcher<Integer, String> batcher = new MicroBatcher.Builder<Integer, String>(this::load)
+                .maxBatchSize(100)
+                .maxDelay(50, TimeUnit.MILLISECONDS)
+                .build();
+
+        ListenableFuture<String> a = batcher.get(1);
+        ListenableFuture<String> b = batcher.get(2);
+        assertThat(calls).isEmpty();
+
+        assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo("v1");
+        assertThat(b.get()).isEqualTo("v2");
+        assertThat(calls).hasSize(1);
+        assertThat(batcher.getStats().getWaitTimes().getMin())
+                .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    @DisplayName("requests for the same key in a batch share its entry")
+    void test300() throws Exception {
+        MicroBatcher<Integer, String> batcher = new MicroBatcher.Builder<Integer, String>(this::load)
+                .maxDelay(1, TimeUnit.HOURS)
+                .build();
+
+        ListenableFuture<String> a1 = batcher.get(1);
+        ListenableFuture<String> a2 = batcher.get(1);
+        batcher.flush();
+
+        assertThat(calls).containsExactly(Arrays.asList(1));
+        assertThat(a1.get()).isEqualTo("v1");
+        assertThat(a2.get()).isEqualTo("v1");
+        assertThat(batcher.getStats().getRequests()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("a missing value fails its request only, and a failing bulk call fails all of them")
+    void test400() {
+        MicroBatcher<Integer, String> batcher = new MicroBatcher.Builder<Integer, String>(this::load)
+                .maxDelay(1, TimeUnit.HOURS)
+                .build();
+        ListenableFuture<String> missing = batcher.get(-1);
+        ListenableFuture<String> present = batcher.get(1);
+        batcher.flush();
+
+        assertThatThrownBy(missing::get).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(present).isDone();
+
+        MicroBatcher<Integer, String> failing = new MicroBatcher.Builder<Integer, String>(keys -> {
+            throw new IllegalStateException("gotcha");
+        }).maxDelay(1, TimeUnit.HOURS).build();
+        ListenableFuture<String> a = failing.get(1);
+        ListenableFuture<String> b = failing.get(2);
+        failing.flush();
+
+        assertThatThrownBy(a::get).hasMessageContaining("gotcha");
+        assertThatThrownBy(b::get).hasMessageContaining("gotcha");
+        assertThat(failing.getStats().getFailedBatches()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("with a SingleFlight in front, requests share loads that are in flight, too")
+    void test500() throws Exception {
+        MicroBatcher<Integer, String> batcher = new MicroBatcher.Builder<Integer, String>(this::load)
+                .maxBatchSize(2)
+                .maxDelay(1, TimeUnit.HOURS)
+                .build();
+        SingleFlight<Integer, String> flight = new SingleFlight<>(batcher::get);
+
+        ListenableFuture<String> a1 = flight.get(1);
+        ListenableFuture<String> a2 = flight.get(1);
+        ListenableFuture<String> b = flight.get(2);
+
+        assertThat(calls).containsExactly(Arrays.asList(1, 2));
+        assertThat(a1.get()).isEqualTo("v1");
+        assertThat(a2.get()).isEqualTo("v1");
+        assertThat(b.get()).isEqualTo("v2");
+    }
+}
@@ -0,0 +1,87 @@
+package cn.staynoob.trap.java.guava.concurrent;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+    @Test
+    @DisplayName("concurrent requests for a key share one load")
+    void test100() throws Exception {
+        Map<String, SettableFuture<Integer>> pending = new HashMap<>();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(key -> {
+            SettableFuture<Integer> future = SettableFuture.create();
+            pending.put(key, future);
+            return future;
+        });
+
+        ListenableFuture<Integer> a1 = flight.get("a");
+        ListenableFuture<Integer> a2 = flight.get("a");
+        ListenableFuture<Integer> b = flight.get("b");
+        assertThat(flight.getLoads()).isEqualTo(2);
+        assertThat(flight.getInFlight()).isEqualTo(2);
+
+        pending.get("a").set(1);
+        pending.get("b").set(2);
+        assertThat(a1.get()).isEqualTo(1);
+        assertThat(a2.get()).isEqualTo(1);
+        assertThat(b.get()).isEqualTo(2);
+        assertThat(flight.getInFlight()).isZero();
+        assertThat(flight.getRequests()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("a completed load isn't cached")
+    void test200() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(key -> Futures.immediateFuture(loads.incrementAndGet()));
+
+        assertThat(flight.get("a").get()).isEqualTo(1);
+        assertThat(flight.get("a").get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("cancelling one request doesn't cancel the load for the others")
+    void test300() throws Exception {
+        SettableFuture<Integer> load = SettableFuture.create();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(key -> load);
+
+        ListenableFuture<Integer> cancelled = flight.get("a");
+        ListenableFuture<Integer> other = flight.get("a");
+        cancelled.cancel(true);
+
+        assertThat(load.isCancelled()).isFalse();
+        load.set(1);
+        assertThat(other.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a failing loader fails all requests that share the load, and the next request loads again")
+    void test400() throws Exception {
+        SettableFuture<Integer> load = SettableFuture.create();
+        AtomicInteger calls = new AtomicInteger();
+        SingleFlight<String, Integer> flight = new SingleFlight<>(key -> {
+            if (calls.incrementAndGet() == 1) return load;
+            throw new IllegalStateException("thrown");
+        });
+
+        ListenableFuture<Integer> a1 = flight.get("a");
+        ListenableFuture<Integer> a2 = flight.get("a");
+        load.setException(new IllegalStateException("gotcha"));
+
+        assertThatThrownBy(a1::get).isInstanceOf(ExecutionException.class).hasMessageContaining("gotcha");
+        assertThatThrownBy(a2::get).isInstanceOf(ExecutionException.class).hasMessageContaining("gotcha");
+        assertThatThrownBy(flight.get("a")::get).hasMessageContaining("thrown");
+        assertThat(flight.getInFlight()).isZero();
+    }
+}